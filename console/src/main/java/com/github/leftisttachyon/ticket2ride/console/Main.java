@@ -1,6 +1,7 @@
 package com.github.leftisttachyon.ticket2ride.console;
 
 import com.github.leftisttachyon.ticket2ride.game.*;
+import com.github.leftisttachyon.ticket2ride.game.action.GameEndedEvent;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.BufferedReader;
@@ -43,7 +44,7 @@ public class Main {
                 System.out.println(x);
                 eventLog.add(x);
 
-                if ("ENDGAME".equals(evt.getActionCommand())) {
+                if (evt instanceof GameEndedEvent) {
                     loop[0] = false;
                 }
             });
@@ -84,7 +85,9 @@ public class Main {
                         ConsoleColors.clearScreen();
                         continue outer;
                     case "RANDCARD":
-                        g.pickRandom();
+                        if (!g.pickRandom()) {
+                            System.out.println(RED + "There are no cards left to pick." + RESET);
+                        }
                         continue outer;
                     case "PICKCARD":
                         while (true) {
@@ -164,7 +167,7 @@ public class Main {
                                             System.out.println(RED + "That's not a valid index." + RESET);
                                             continue;
                                         } else {
-                                            HashMap<Color, Integer> cards = g.getCurrentPlayer().getCards(),
+                                            Map<Color, Integer> cards = g.getCurrentPlayer().getCards(),
                                                     toUse = new HashMap<>();
 
                                             for (Map.Entry<Color, Integer> entry : cards.entrySet()) {
@@ -294,13 +297,13 @@ public class Main {
                                 // view the outward railways
                                 for (Railway r : g.getBoard().getRailways(line)) {
                                     System.out.println(r);
-                                    int claimedBy = r.getClaimedBy();
+                                    int claimedBy = g.getBoard().getClaimedBy(r);
                                     if (claimedBy == -1) {
                                         System.out.println("\tOwned by " + YELLOW + "nobody" + RESET);
                                     } else if (claimedBy == Integer.MAX_VALUE) {
-                                        System.out.println("\tOwned by " + YELLOW + g.getPlayer(claimedBy) + RESET);
-                                    } else {
                                         System.out.println("\tOwned by " + YELLOW + "the game" + RESET);
+                                    } else {
+                                        System.out.println("\tOwned by " + YELLOW + g.getPlayer(claimedBy).getName() + RESET);
                                     }
                                 }
                             } else {
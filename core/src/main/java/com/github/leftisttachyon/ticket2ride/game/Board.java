@@ -1,12 +1,12 @@
 package com.github.leftisttachyon.ticket2ride.game;
 
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
-import static com.github.leftisttachyon.ticket2ride.game.Color.*;
+import static com.github.leftisttachyon.ticket2ride.game.Color.RAINBOW;
 
 /**
  * A class that represents the entire playing board.
@@ -17,22 +17,83 @@ import static com.github.leftisttachyon.ticket2ride.game.Color.*;
 @Slf4j
 public class Board {
     /**
-     * A {@link Stack} that represents the stack of train cards that sit there.
+     * The value in {@link #owners} for {@link Railway}s claimed by the game
      */
-    private Stack<Color> cardStack;
+    private static final byte BLOCKED = (byte) 0xFF;
+    /**
+     * All {@link Color}s, indexed by ordinal
+     */
+    private static final Color[] COLORS = Color.values();
+
+    /**
+     * The deck of train cards that sit there, along with its discard pile.
+     */
+    @Getter
+    private final CardDeck deck;
     /**
      * An array of {@link Color} objects that represent cards that just sit there next to the stack.
      */
     @Getter
     private Color[] sideCards;
     /**
-     * An object that represents the map.
+     * An object that registers every city, {@link Railway} and {@link Route} on this board. It is immutable and may
+     * be shared with other {@link Board}s.
      */
-    private HashMap<String, HashMap<String, List<Railway>>> map;
+    @Getter
+    private final GameMap map;
     /**
-     * A {@link Queue} of {@link Route}s that can be taken.
+     * Who claimed every {@link Railway}, indexed by id. {@code 0} means unclaimed, {@link #BLOCKED} means claimed by
+     * the game and anything else is the turn number of the claimer plus one.
      */
-    private Queue<Route> routes;
+    private final byte[] owners;
+    /**
+     * An object that represents the connections between cities.
+     */
+    @Getter
+    private final CityGraph graph;
+    /**
+     * The deck of {@link Route}s that can be taken.
+     */
+    @Getter
+    private final TicketDeck tickets;
+    /**
+     * The Zobrist hash of the owners and the side cards
+     */
+    @Getter
+    private long hash;
+    /**
+     * The journal of changes that {@link #rollback(int)} undoes: pairs of a value and a tagged index
+     */
+    private int[] journal = new int[32];
+    /**
+     * The number of used entries in {@link #journal}
+     */
+    private int journalSize;
+    /**
+     * The number of outstanding marks; changes are only recorded while this is positive
+     */
+    private int marks;
+
+    /**
+     * The journal tag of a change to a side card; the value is the old color ordinal, or {@code -1} for none
+     */
+    private static final int SIDE_CARD = 1 << 24;
+    /**
+     * The journal tag of a change to an owner; the value is the old owner
+     */
+    private static final int OWNER = 2 << 24;
+    /**
+     * The journal tag of a drawn {@link Route}; the value is the route id
+     */
+    private static final int TICKET_DRAW = 3 << 24;
+    /**
+     * The journal tag of a {@link Route} put back into the deck
+     */
+    private static final int TICKET_PUT_BACK = 4 << 24;
+    /**
+     * The journal tag of a mark; the value is the mark of {@link #deck}
+     */
+    private static final int MARK = 5 << 24;
 
     /**
      * Creates a new {@link Board} given the map structure.
@@ -41,222 +102,92 @@ public class Board {
      * @param routes   the {@link Route}s associated with this map
      */
     public Board(Collection<Railway> railways, List<Route> routes) {
-        cardStack = new Stack<>();
-        sideCards = new Color[5];
-        populateCards();
-
-        map = new HashMap<>();
-        for (Railway r : railways) {
-            HashMap<String, List<Railway>> tempMap;
-            String dest1 = r.getDest1(), dest2 = r.getDest2();
-
-            if (map.containsKey(dest1)) {
-                tempMap = map.get(dest1);
-                if (tempMap.containsKey(dest2)) {
-                    tempMap.get(dest2).add(r);
-                } else {
-                    LinkedList<Railway> list = new LinkedList<>();
-                    list.add(r);
-                    tempMap.put(dest2, list);
-                }
-            } else {
-                tempMap = new HashMap<>();
-                map.put(dest1, tempMap);
-
-                LinkedList<Railway> list = new LinkedList<>();
-                list.add(r);
-                tempMap.put(dest2, list);
-            }
+        this(new GameMap(railways, routes));
+    }
 
-            if (map.containsKey(dest2)) {
-                tempMap = map.get(dest2);
-                if (tempMap.containsKey(dest1)) {
-                    tempMap.get(dest1).add(r);
-                } else {
-                    LinkedList<Railway> list = new LinkedList<>();
-                    list.add(r);
-                    tempMap.put(dest1, list);
-                }
-            } else {
-                tempMap = new HashMap<>();
-                map.put(dest2, tempMap);
+    /**
+     * Creates a new {@link Board} for a new game on the given map.
+     *
+     * @param map the {@link GameMap} to play on
+     */
+    public Board(GameMap map) {
+        this(map, GameRandom.newSeed());
+    }
 
-                LinkedList<Railway> list = new LinkedList<>();
-                list.add(r);
-                tempMap.put(dest1, list);
-            }
-        }
+    /**
+     * Creates a new {@link Board} for a new game on the given map, shuffling with the given seed. Boards created with
+     * the same map and seed are identical.
+     *
+     * @param map  the {@link GameMap} to play on
+     * @param seed the seed to shuffle with
+     */
+    public Board(GameMap map, long seed) {
+        this(map, new GameRandom(seed));
+    }
 
-        log.trace("Up to previous");
+    /**
+     * Creates a new {@link Board} for a new game on the given map. The train cards and the {@link Route}s are each
+     * shuffled with their own generator split off of the given one.
+     *
+     * @param map    the {@link GameMap} to play on
+     * @param random the generator to shuffle with
+     */
+    public Board(GameMap map, GameRandom random) {
+        this(map, new CardDeck(random.split()), new TicketDeck(map.getNumRoutes(), random.split()));
+        refillSideCards();
+    }
 
-        Random r = new Random();
-        this.routes = new LinkedList<>();
-        for (; !routes.isEmpty(); ) {
-            int idx = r.nextInt(routes.size());
-            log.trace("Removing #{} (out of {})", idx, routes.size());
-            this.routes.add(routes.remove(idx));
-        }
+    /**
+     * Creates a new {@link Board} on the given map with the given decks, no side cards and no claimed
+     * {@link Railway}s. Nothing is shuffled or dealt, so this is cheap for a {@link Board} that is restored right
+     * away.
+     *
+     * @param map     the {@link GameMap} to play on
+     * @param deck    the deck of train cards
+     * @param tickets the deck of {@link Route}s
+     */
+    Board(GameMap map, CardDeck deck, TicketDeck tickets) {
+        this.deck = deck;
+        this.tickets = tickets;
+        sideCards = new Color[5];
 
-        log.trace("Up to new");
+        this.map = map;
+        graph = map.getGraph();
+        owners = new byte[map.getNumRailways()];
     }
 
     /**
-     * Creates a standard issue US-related {@link Board}.
+     * Creates a standard issue US-related {@link Board}. The map itself is only loaded once.
      *
      * @return a {@link Board} with US data.
      */
     public static Board createUSBoard() {
-        List<Railway> railways = new LinkedList<>();
-        railways.add(new Railway(1, NONE, "Vancouver", "Seattle"));
-        railways.add(new Railway(1, NONE, "Vancouver", "Seattle"));
-        railways.add(new Railway(1, NONE, "Portland", "Seattle"));
-        railways.add(new Railway(1, NONE, "Portland", "Seattle"));
-        railways.add(new Railway(3, NONE, "Vancouver", "Calgary"));
-        railways.add(new Railway(4, NONE, "Seattle", "Calgary"));
-        railways.add(new Railway(6, YELLOW, "Seattle", "Helena"));
-        railways.add(new Railway(4, NONE, "Calgary", "Helena"));
-        railways.add(new Railway(6, WHITE, "Calgary", "Winnipeg"));
-        railways.add(new Railway(4, BLUE, "Helena", "Winnipeg"));
-        railways.add(new Railway(6, BLUE, "Portland", "Salt Lake City"));
-        railways.add(new Railway(5, GREEN, "Portland", "San Francisco"));
-        railways.add(new Railway(5, PINK, "Portland", "San Francisco"));
-        railways.add(new Railway(5, ORANGE, "Salt Lake City", "San Francisco"));
-        railways.add(new Railway(5, WHITE, "Salt Lake City", "San Francisco"));
-        railways.add(new Railway(3, PINK, "Salt Lake City", "Helena"));
-        railways.add(new Railway(3, ORANGE, "Salt Lake City", "Las Vegas"));
-        railways.add(new Railway(2, NONE, "Los Angeles", "Las Vegas"));
-        railways.add(new Railway(3, PINK, "Los Angeles", "San Francisco"));
-        railways.add(new Railway(3, YELLOW, "Los Angeles", "San Francisco"));
-        railways.add(new Railway(3, NONE, "Los Angeles", "Phoenix"));
-        railways.add(new Railway(6, BLACK, "Los Angeles", "El Paso"));
-        railways.add(new Railway(3, NONE, "Phoenix", "El Paso"));
-        railways.add(new Railway(5, WHITE, "Phoenix", "Denver"));
-        railways.add(new Railway(3, RED, "Salt Lake City", "Denver"));
-        railways.add(new Railway(3, YELLOW, "Salt Lake City", "Denver"));
-        railways.add(new Railway(3, GREEN, "Helena", "Denver"));
-        railways.add(new Railway(2, NONE, "Santa Fe", "Denver"));
-        railways.add(new Railway(3, NONE, "Santa Fe", "Phoenix"));
-        railways.add(new Railway(2, NONE, "Santa Fe", "El Paso"));
-        railways.add(new Railway(6, GREEN, "Houston", "El Paso"));
-        railways.add(new Railway(4, RED, "Dallas", "El Paso"));
-        railways.add(new Railway(5, YELLOW, "Oklahoma City", "El Paso"));
-        railways.add(new Railway(3, BLUE, "Oklahoma City", "Santa Fe"));
-        railways.add(new Railway(4, RED, "Oklahoma City", "Denver"));
-        railways.add(new Railway(4, BLACK, "Kansas City", "Denver"));
-        railways.add(new Railway(4, ORANGE, "Kansas City", "Denver"));
-        railways.add(new Railway(4, PINK, "Omaha", "Denver"));
-        railways.add(new Railway(5, RED, "Omaha", "Helena"));
-        railways.add(new Railway(6, ORANGE, "Duluth", "Helena"));
-        railways.add(new Railway(4, BLACK, "Duluth", "Winnipeg"));
-        railways.add(new Railway(6, NONE, "Winnipeg", "Sault St. Marie"));
-        railways.add(new Railway(3, NONE, "Duluth", "Sault St. Marie"));
-        railways.add(new Railway(2, NONE, "Duluth", "Omaha"));
-        railways.add(new Railway(2, NONE, "Duluth", "Omaha"));
-        railways.add(new Railway(1, NONE, "Kansas City", "Omaha"));
-        railways.add(new Railway(1, NONE, "Kansas City", "Omaha"));
-        railways.add(new Railway(2, NONE, "Kansas City", "Oklahoma City"));
-        railways.add(new Railway(2, NONE, "Kansas City", "Oklahoma City"));
-        railways.add(new Railway(2, NONE, "Dallas", "Oklahoma City"));
-        railways.add(new Railway(2, NONE, "Dallas", "Oklahoma City"));
-        railways.add(new Railway(1, NONE, "Dallas", "Houston"));
-        railways.add(new Railway(1, NONE, "Dallas", "Houston"));
-        railways.add(new Railway(2, NONE, "New Orleans", "Houston"));
-        railways.add(new Railway(3, GREEN, "New Orleans", "Little Rock"));
-        railways.add(new Railway(2, NONE, "Dallas", "Little Rock"));
-        railways.add(new Railway(2, NONE, "Oklahoma City", "Little Rock"));
-        railways.add(new Railway(2, NONE, "Saint Louis", "Little Rock"));
-        railways.add(new Railway(2, BLUE, "Saint Louis", "Kansas City"));
-        railways.add(new Railway(2, PINK, "Saint Louis", "Kansas City"));
-        railways.add(new Railway(2, WHITE, "Saint Louis", "Chicago"));
-        railways.add(new Railway(2, GREEN, "Saint Louis", "Chicago"));
-        railways.add(new Railway(4, BLUE, "Omaha", "Chicago"));
-        railways.add(new Railway(3, RED, "Duluth", "Chicago"));
-        railways.add(new Railway(6, PINK, "Duluth", "Toronto"));
-        railways.add(new Railway(2, NONE, "Sault St. Marie", "Toronto"));
-        railways.add(new Railway(5, BLACK, "Sault St. Marie", "Montreal"));
-        railways.add(new Railway(2, NONE, "Boston", "Montreal"));
-        railways.add(new Railway(2, NONE, "Boston", "Montreal"));
-        railways.add(new Railway(3, BLUE, "New York", "Montreal"));
-        railways.add(new Railway(3, NONE, "Toronto", "Montreal"));
-        railways.add(new Railway(4, WHITE, "Toronto", "Chicago"));
-        railways.add(new Railway(2, NONE, "Toronto", "Pittsburgh"));
-        railways.add(new Railway(3, BLACK, "Chicago", "Pittsburgh"));
-        railways.add(new Railway(3, ORANGE, "Chicago", "Pittsburgh"));
-        railways.add(new Railway(5, GREEN, "Saint Louis", "Pittsburgh"));
-        railways.add(new Railway(4, YELLOW, "Nashville", "Pittsburgh"));
-        railways.add(new Railway(2, NONE, "Nashville", "Saint Louis"));
-        railways.add(new Railway(3, WHITE, "Nashville", "Little Rock"));
-        railways.add(new Railway(1, NONE, "Nashville", "Atlanta"));
-        railways.add(new Railway(4, YELLOW, "New Orleans", "Atlanta"));
-        railways.add(new Railway(4, ORANGE, "New Orleans", "Atlanta"));
-        railways.add(new Railway(5, RED, "New Orleans", "Miami"));
-        railways.add(new Railway(5, BLUE, "Atlanta", "Miami"));
-        railways.add(new Railway(4, PINK, "Charleston", "Miami"));
-        railways.add(new Railway(2, NONE, "Charleston", "Atlanta"));
-        railways.add(new Railway(2, NONE, "Charleston", "Raleigh"));
-        railways.add(new Railway(2, NONE, "Atlanta", "Raleigh"));
-        railways.add(new Railway(2, NONE, "Atlanta", "Raleigh"));
-        railways.add(new Railway(3, BLACK, "Nashville", "Raleigh"));
-        railways.add(new Railway(2, NONE, "Pittsburgh", "Raleigh"));
-        railways.add(new Railway(2, NONE, "Washington", "Raleigh"));
-        railways.add(new Railway(2, NONE, "Washington", "Raleigh"));
-        railways.add(new Railway(2, NONE, "Washington", "Pittsburgh"));
-        railways.add(new Railway(2, ORANGE, "Washington", "New York"));
-        railways.add(new Railway(2, BLACK, "Washington", "New York"));
-        railways.add(new Railway(2, WHITE, "Pittsburgh", "New York"));
-        railways.add(new Railway(2, GREEN, "Pittsburgh", "New York"));
-        railways.add(new Railway(2, YELLOW, "Boston", "New York"));
-        railways.add(new Railway(2, RED, "Boston", "New York"));
-        log.trace("All railways created");
-
-        List<Route> routes = new LinkedList<>();
-        routes.add(new Route("Denver", "El Paso", 4));
-        routes.add(new Route("Kansas City", "Houston", 5));
-        routes.add(new Route("New York", "Atlanta", 6));
-        routes.add(new Route("Chicago", "New Orleans", 7));
-        routes.add(new Route("Calgary", "Salt Lake City", 7));
-        routes.add(new Route("Helena", "Los Angeles", 8));
-        routes.add(new Route("Duluth", "Houston", 8));
-        routes.add(new Route("Sault St. Marie", "Nashville", 8));
-        routes.add(new Route("Montreal", "Atlanta", 9));
-        routes.add(new Route("Sault St. Marie", "Oklahoma City", 9));
-        routes.add(new Route("Seattle", "Los Angeles", 9));
-        routes.add(new Route("Chicago", "Santa Fe", 9));
-        routes.add(new Route("Duluth", "El Paso", 10));
-        routes.add(new Route("Toronto", "Miami", 10));
-        routes.add(new Route("Portland", "Phoenix", 11));
-        routes.add(new Route("Dallas", "New York City", 11));
-        routes.add(new Route("Denver", "Pittsburgh", 11));
-        routes.add(new Route("Winnipeg", "Little Rock", 11));
-        routes.add(new Route("Winnipeg", "Houston", 12));
-        routes.add(new Route("Boston", "Miami", 12));
-        routes.add(new Route("Vancouver", "Santa Fe", 13));
-        routes.add(new Route("Calgary", "Phoenix", 13));
-        routes.add(new Route("Montreal", "New Orleans", 13));
-        routes.add(new Route("Los Angeles", "Chicago", 16));
-        routes.add(new Route("San Francisco", "Atlanta", 17));
-        routes.add(new Route("Portland", "Nashville", 17));
-        routes.add(new Route("Vancouver", "Montreal", 20));
-        routes.add(new Route("Los Angeles", "Miami", 20));
-        routes.add(new Route("Los Angeles", "New York City", 21));
-        routes.add(new Route("Seattle", "New York", 22));
-        log.trace("All routes added");
-
-        return new Board(railways, routes);
+        return new Board(MapCache.get("us"));
     }
 
     /**
      * Picks the top card of the stack and removes it.
      *
-     * @return the top card
+     * @return the top card, or {@code null} if there are no cards left
      */
     public Color pickRandom() {
-        return cardStack.pop();
+        return deck.draw();
+    }
+
+    /**
+     * Puts the given cards on the discard pile. Visible side cards that ran out are refilled.
+     *
+     * @param color the color of the cards
+     * @param num   the number of cards
+     */
+    public void discard(Color color, int num) {
+        deck.discard(color, num);
+        refillSideCards();
     }
 
     /**
      * Picks a card on the visible four and replaces it with the top one from the stack.<br>
-     * If "drawing power" is not sufficient, then {@code null} is returned.
+     * If "drawing power" is not sufficient or there is no card at the given index, then {@code null} is returned.
      *
      * @param idx       the index of the card in the four
      * @param drawPower the amount of "drawing power" that this player still has
@@ -268,37 +199,45 @@ public class Board {
         }
 
         Color c = sideCards[idx];
-        if (c == RAINBOW && drawPower < 2 || c != RAINBOW && drawPower < 1) {
+        if (c == null || c == RAINBOW && drawPower < 2 || c != RAINBOW && drawPower < 1) {
             return null;
         }
 
-        sideCards[idx] = cardStack.pop();
+        setSideCard(idx, deck.draw());
 
         return c;
     }
 
     /**
-     * Gets the first {@code num} {@link Route}s from the {@link Stack} of {@link Route}s.
+     * Gets the first {@code num} {@link Route}s from the deck of {@link Route}s.
      *
-     * @param num the number of {@link Route}s to remove from the {@link Stack}
+     * @param num the number of {@link Route}s to remove from the deck
      * @return a {@link List} of {@link Route}s that were removed
      */
     public List<Route> getRoutes(int num) {
-        List<Route> output = new LinkedList<>();
-        while (num-- > 0 && !routes.isEmpty()) {
-            output.add(routes.remove());
+        List<Route> output = new ArrayList<>(num);
+        int id;
+        while (num-- > 0 && (id = tickets.draw()) != -1) {
+            if (marks > 0) record(id, TICKET_DRAW);
+            output.add(map.getRoute(id));
         }
 
         return output;
     }
 
     /**
-     * Adds the given {@link Route} back to the internal {@link Stack} of {@link Route}s.
+     * Puts the given {@link Route} back at the bottom of the deck of {@link Route}s.
      *
      * @param toAdd the {@link Route} to add back
      */
     public void addRoute(Route toAdd) {
-        routes.offer(toAdd);
+        int id = map.indexOf(toAdd);
+        if (id == -1) {
+            throw new IllegalArgumentException("The route " + toAdd.toMessageString() + " is not on this board");
+        }
+
+        tickets.putBack(id);
+        if (marks > 0) record(id, TICKET_PUT_BACK);
     }
 
     /**
@@ -308,18 +247,19 @@ public class Board {
      * @return a {@link List} containing all {@link Railway}s going out of the given city
      */
     public List<Railway> getRailways(String start) {
-        Collection<List<Railway>> values = map.get(start).values();
-        LinkedList<Railway> output = new LinkedList<>();
+        int city = requireCity(start);
+        int end = graph.endSlot(city);
+        List<Railway> output = new ArrayList<>(end - graph.firstSlot(city));
 
-        for (List<Railway> value : values) {
-            output.addAll(value);
+        for (int slot = graph.firstSlot(city); slot < end; slot++) {
+            output.add(map.getRailway(graph.slotRailway(slot)));
         }
 
         return output;
     }
 
     public List<Railway> altGetRailways(String start) {
-        return map.get(start).values().stream().flatMap(Collection::stream).collect(Collectors.toList());
+        return getRailways(start);
     }
 
     /**
@@ -329,13 +269,13 @@ public class Board {
      * @return a {@link List} containing all unclaimed {@link Railway}s going out of the given city
      */
     public List<Railway> getUnclaimedRailways(String start) {
-        Collection<List<Railway>> values = map.get(start).values();
-        LinkedList<Railway> output = new LinkedList<>();
+        int city = requireCity(start);
+        int end = graph.endSlot(city);
+        List<Railway> output = new ArrayList<>(end - graph.firstSlot(city));
 
-        for (List<Railway> value : values) {
-            for (Railway r : value) {
-                if(!r.isClaimed()) output.add(r);
-            }
+        for (int slot = graph.firstSlot(city); slot < end; slot++) {
+            Railway r = map.getRailway(graph.slotRailway(slot));
+            if (owners[r.getId()] == 0) output.add(r);
         }
 
         return output;
@@ -349,15 +289,12 @@ public class Board {
      * @return a {@link List} of {@link String}s of adjacent cities
      */
     public List<String> getAdjacents(String start) {
-        LinkedList<String> output = new LinkedList<>();
+        int city = requireCity(start);
+        int num = graph.getNumAdjacents(city);
+        List<String> output = new ArrayList<>(num);
 
-        for (List<Railway> l : map.get(start).values()) {
-            for (Railway r : l) {
-                String s = r.getOtherDestination(start);
-                if (s != null && !output.contains(s)) {
-                    output.add(s);
-                }
-            }
+        for (int i = 0; i < num; i++) {
+            output.add(graph.getCityName(graph.getAdjacent(city, i)));
         }
 
         return output;
@@ -370,18 +307,70 @@ public class Board {
      * @return an equivalent {@link Railway}, if any exists
      */
     public Railway getRailway(Railway railway) {
-        if (!map.containsKey(railway.getDest1()))
-            return null;
+        int id = map.indexOf(railway);
+        return id == -1 ? null : map.getRailway(id);
+    }
 
-        HashMap<String, List<Railway>> tempMap = map.get(railway.getDest1());
-        if (!tempMap.containsKey(railway.getDest2()))
-            return null;
+    /**
+     * Returns the {@link Railway} with the given id.
+     *
+     * @param id the id of the {@link Railway}
+     * @return the {@link Railway} with the given id
+     */
+    public Railway getRailway(int id) {
+        return map.getRailway(id);
+    }
 
-        List<Railway> railways = tempMap.get(railway.getDest2());
-        int idx = railways.indexOf(railway);
+    /**
+     * Returns the number of {@link Railway}s on this board.
+     *
+     * @return the number of {@link Railway}s on this board
+     */
+    public int getNumRailways() {
+        return map.getNumRailways();
+    }
 
-        if (idx == -1) return null;
-        else return railways.get(idx);
+    /**
+     * Returns whether the given {@link Railway}, or the equivalent one on this board, has been claimed.
+     *
+     * @param railway the {@link Railway} to check
+     * @return whether the {@link Railway} has been claimed
+     */
+    public boolean isClaimed(Railway railway) {
+        return getClaimedBy(railway) != -1;
+    }
+
+    /**
+     * Returns who claimed the given {@link Railway}, or the equivalent one on this board. This is {@code -1} if the
+     * {@link Railway} is unclaimed, {@link Integer#MAX_VALUE} if it was claimed by the game, and the turn number of
+     * the claiming {@link Player} otherwise.
+     *
+     * @param railway the {@link Railway} to check
+     * @return who claimed the {@link Railway}
+     */
+    public int getClaimedBy(Railway railway) {
+        int id = map.indexOf(railway);
+        if (id == -1) {
+            throw new IllegalArgumentException("The railway " + railway.toMessageString() + " is not on this board");
+        }
+
+        return getClaimedBy(id);
+    }
+
+    /**
+     * Returns who claimed the {@link Railway} with the given id.
+     *
+     * @param id the id of the {@link Railway}
+     * @return who claimed the {@link Railway}
+     * @see #getClaimedBy(Railway)
+     */
+    public int getClaimedBy(int id) {
+        byte owner = owners[id];
+        if (owner == 0) {
+            return -1;
+        } else if (owner == BLOCKED) {
+            return Integer.MAX_VALUE;
+        } else return (owner & 0xFF) - 1;
     }
 
     /**
@@ -390,7 +379,7 @@ public class Board {
      * @return a {@link Set} that contains all the cities
      */
     public Set<String> getCities() {
-        return map.keySet();
+        return graph.getCities();
     }
 
     /**
@@ -404,27 +393,19 @@ public class Board {
      * @return whether the operation was successful
      */
     boolean claimRailway(Railway r, Player claimer, boolean removeDuplicates) {
-        HashMap<String, List<Railway>> map1 = map.get(r.getDest1());
-        if (map1 == null) return false;
-
-        List<Railway> railways = map1.get(r.getDest2());
-        label:
-        {
-            for (Railway rail : railways) {
-                if (rail.getColor() == r.getColor()) {
-                    rail.setClaimedBy(claimer.getTurn());
-                    claimer.addRailway(rail);
-                    break label;
-                }
-            }
+        int id = map.indexOf(r);
+        if (id == -1) return false;
 
-            return false;
-        }
+        Railway claimed = map.getRailway(id);
+        setOwner(id, (byte) (claimer.getTurn() + 1));
+        claimer.addRailway(claimed);
 
         if (removeDuplicates) {
-            for (Railway rail : railways) {
-                if (rail.getColor() != r.getColor()) {
-                    rail.setClaimedBy(Integer.MAX_VALUE);
+            int city1 = claimed.getCity1(), city2 = claimed.getCity2();
+            for (int slot = graph.firstSlot(city1), end = graph.endSlot(city1); slot < end; slot++) {
+                Railway rail = map.getRailway(graph.slotRailway(slot));
+                if (graph.slotCity(slot) == city2 && rail.getColor() != claimed.getColor()) {
+                    setOwner(rail.getId(), BLOCKED);
                 }
             }
         }
@@ -433,26 +414,154 @@ public class Board {
     }
 
     /**
-     * Populates the card stack and the visible side cards.
+     * Copies the owner of every {@link Railway}, indexed by id, into the given array. {@code 0} means unclaimed,
+     * {@code 0xFF} means claimed by the game and anything else is the turn number of the claimer plus one.
+     *
+     * @param dest the array to copy into
+     */
+    public void copyOwners(byte[] dest) {
+        System.arraycopy(owners, 0, dest, 0, owners.length);
+    }
+
+    /**
+     * Replaces the owner of every {@link Railway} and the visible side cards. Outstanding marks are discarded.
+     *
+     * @param owners    the owner of every {@link Railway}, as written by {@link #copyOwners(byte[])}
+     * @param sideCards the ordinal of every side card, or {@code -1} for none
      */
-    private void populateCards() {
-        for (int i = 0; i < 12; i++) {
-            cardStack.push(WHITE);
-            cardStack.push(BLUE);
-            cardStack.push(GREEN);
-            cardStack.push(YELLOW);
-            cardStack.push(ORANGE);
-            cardStack.push(RED);
-            cardStack.push(PINK);
-            cardStack.push(BLACK);
+    void restore(byte[] owners, byte[] sideCards) {
+        System.arraycopy(owners, 0, this.owners, 0, this.owners.length);
+        for (int i = 0; i < this.sideCards.length; i++) {
+            this.sideCards[i] = sideCards[i] == -1 ? null : COLORS[sideCards[i]];
         }
-        for (int i = 0; i < 14; i++) {
-            cardStack.push(RAINBOW);
+        journalSize = marks = 0;
+
+        hash = 0;
+        for (int i = 0; i < this.owners.length; i++) {
+            hash ^= Zobrist.owner(i, this.owners[i]);
         }
+        for (int i = 0; i < this.sideCards.length; i++) {
+            hash ^= Zobrist.sideCard(i, this.sideCards[i]);
+        }
+    }
 
-        Collections.shuffle(cardStack);
+    /**
+     * Starts recording changes to this board, including its decks, so that they can be undone with
+     * {@link #rollback(int)}. Marks nest.
+     *
+     * @return the mark to roll back to
+     */
+    int mark() {
+        int mark = journalSize;
+        marks++;
+        record(deck.mark(), MARK);
+        return mark;
+    }
+
+    /**
+     * Undoes every change made to this board since the given mark was taken, and releases the mark. Marks must be
+     * rolled back in the reverse order that they were taken in.
+     *
+     * @param mark a mark returned by {@link #mark()}
+     */
+    void rollback(int mark) {
+        if (marks == 0 || mark >= journalSize || (journal[mark + 1] & 0xFF000000) != MARK) {
+            throw new IllegalStateException("Invalid mark " + mark);
+        }
+
+        while (journalSize > mark + 2) {
+            int entry = journal[--journalSize], value = journal[--journalSize];
+            int index = entry & 0xFFFFFF;
+            switch (entry & 0xFF000000) {
+                case SIDE_CARD:
+                    Color color = value == -1 ? null : COLORS[value];
+                    hash ^= Zobrist.sideCard(index, sideCards[index]) ^ Zobrist.sideCard(index, color);
+                    sideCards[index] = color;
+                    break;
+                case OWNER:
+                    hash ^= Zobrist.owner(index, owners[index]) ^ Zobrist.owner(index, (byte) value);
+                    owners[index] = (byte) value;
+                    break;
+                case TICKET_DRAW:
+                    tickets.undoDraw(value);
+                    break;
+                case TICKET_PUT_BACK:
+                    tickets.undoPutBack();
+                    break;
+                case MARK:
+                    throw new IllegalStateException("Marks rolled back out of order");
+                default:
+                    throw new IllegalStateException("Corrupt journal");
+            }
+        }
+
+        deck.rollback(journal[mark]);
+        journalSize = mark;
+        marks--;
+    }
+
+    /**
+     * Sets a visible side card, recording the old one if needed.
+     *
+     * @param idx   the index of the side card
+     * @param color the new card, or {@code null}
+     */
+    private void setSideCard(int idx, Color color) {
+        if (marks > 0) record(sideCards[idx] == null ? -1 : sideCards[idx].ordinal(), SIDE_CARD | idx);
+        hash ^= Zobrist.sideCard(idx, sideCards[idx]) ^ Zobrist.sideCard(idx, color);
+        sideCards[idx] = color;
+    }
+
+    /**
+     * Sets the owner of a {@link Railway}, recording the old one if needed.
+     *
+     * @param id    the id of the {@link Railway}
+     * @param owner the new owner
+     */
+    private void setOwner(int id, byte owner) {
+        if (marks > 0) record(owners[id], OWNER | id);
+        hash ^= Zobrist.owner(id, owners[id]) ^ Zobrist.owner(id, owner);
+        owners[id] = owner;
+    }
+
+    /**
+     * Adds an entry to the journal.
+     *
+     * @param value the old value
+     * @param entry the tag and index of the change
+     */
+    private void record(int value, int entry) {
+        if (journalSize + 2 > journal.length) {
+            journal = Arrays.copyOf(journal, journal.length * 2);
+        }
+        journal[journalSize++] = value;
+        journal[journalSize++] = entry;
+    }
+
+    /**
+     * Gets the id of the given city. Throws a {@link NullPointerException} if the city is not on this board.
+     *
+     * @param name the name of the city
+     * @return the id of the city
+     */
+    private int requireCity(String name) {
+        int city = graph.getCityId(name);
+        if (city == -1) {
+            throw new NullPointerException("Unknown city: " + name);
+        }
+        return city;
+    }
+
+    /**
+     * Fills every empty visible side card from the stack, as long as there are cards left.
+     */
+    private void refillSideCards() {
         for (int i = 0; i < sideCards.length; i++) {
-            sideCards[i] = cardStack.pop();
+            if (sideCards[i] == null) {
+                Color c = deck.draw();
+                if (c == null) return;
+                setSideCard(i, c);
+            }
         }
     }
 }
@@ -0,0 +1,394 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import java.util.Arrays;
+
+import static com.github.leftisttachyon.ticket2ride.game.Color.RAINBOW;
+
+/**
+ * A class that represents the deck of train cards and its discard pile. Cards are stored as {@link Color} ordinals in
+ * primitive arrays; when the draw pile runs out, the discard pile is shuffled into it.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class CardDeck {
+    /**
+     * The number of cards of every normal color in a full deck
+     */
+    public static final int CARDS_PER_COLOR = 12;
+    /**
+     * The number of {@link Color#RAINBOW} cards in a full deck
+     */
+    public static final int RAINBOW_CARDS = 14;
+    /**
+     * The number of cards in a full deck
+     */
+    public static final int TOTAL_CARDS = 8 * CARDS_PER_COLOR + RAINBOW_CARDS;
+    /**
+     * All {@link Color}s, indexed by ordinal
+     */
+    private static final Color[] COLORS = Color.values();
+
+    /**
+     * The draw pile; the top card is at {@code drawPile[drawSize - 1]}
+     */
+    private final byte[] drawPile;
+    /**
+     * The discard pile
+     */
+    private final byte[] discardPile;
+    /**
+     * The number of cards of every color left in the draw pile, indexed by ordinal
+     */
+    private final int[] remaining;
+    /**
+     * The number of cards of every color in the discard pile, indexed by ordinal
+     */
+    private final int[] discarded;
+    /**
+     * The generator used to shuffle
+     */
+    private final GameRandom random;
+    /**
+     * The number of cards in the draw pile
+     */
+    private int drawSize;
+    /**
+     * The number of cards in the discard pile
+     */
+    private int discardSize;
+    /**
+     * The journal of changes that {@link #rollback(int)} undoes. Draws record the card, discards record their color
+     * and count, and reshuffles record the old discard pile and the state of the generator.
+     */
+    private int[] journal = new int[64];
+    /**
+     * The number of used entries in {@link #journal}
+     */
+    private int journalSize;
+    /**
+     * The number of outstanding marks; changes are only recorded while this is positive
+     */
+    private int marks;
+
+    /**
+     * The journal tag of a draw
+     */
+    private static final int DRAW = 1 << 24;
+    /**
+     * The journal tag of a discard
+     */
+    private static final int DISCARD = 2 << 24;
+    /**
+     * The journal tag of a reshuffle
+     */
+    private static final int RESHUFFLE = 3 << 24;
+
+    /**
+     * Creates a full, shuffled deck.
+     *
+     * @param random the generator to shuffle with
+     */
+    public CardDeck(GameRandom random) {
+        this.random = random;
+        drawPile = new byte[TOTAL_CARDS];
+        discardPile = new byte[TOTAL_CARDS];
+        remaining = new int[COLORS.length];
+        discarded = new int[COLORS.length];
+
+        for (Color c : COLORS) {
+            if (c == Color.NONE) continue;
+
+            int num = c == RAINBOW ? RAINBOW_CARDS : CARDS_PER_COLOR;
+            for (int i = 0; i < num; i++) {
+                drawPile[drawSize++] = (byte) c.ordinal();
+            }
+            remaining[c.ordinal()] = num;
+        }
+
+        shuffle(drawPile, drawSize);
+    }
+
+    /**
+     * Creates an empty deck, without shuffling anything, to {@link #restore(byte[], int, byte[], int, long)} a deck into.
+     */
+    CardDeck() {
+        random = new GameRandom(0L);
+        drawPile = new byte[TOTAL_CARDS];
+        discardPile = new byte[TOTAL_CARDS];
+        remaining = new int[COLORS.length];
+        discarded = new int[COLORS.length];
+    }
+
+    /**
+     * Creates a copy of the given deck that shuffles with the given generator.
+     *
+     * @param other  the deck to copy
+     * @param random the generator to shuffle with
+     */
+    public CardDeck(CardDeck other, GameRandom random) {
+        this.random = random;
+        drawPile = other.drawPile.clone();
+        discardPile = other.discardPile.clone();
+        remaining = other.remaining.clone();
+        discarded = other.discarded.clone();
+        drawSize = other.drawSize;
+        discardSize = other.discardSize;
+    }
+
+    /**
+     * Creates an independent copy of this deck, including the state of its generator.
+     *
+     * @return a copy of this deck
+     */
+    public CardDeck copy() {
+        return new CardDeck(this, new GameRandom(random.getState()));
+    }
+
+    /**
+     * Draws the top card. If the draw pile is empty, the discard pile is shuffled into it first. If both are empty,
+     * {@code null} is returned.
+     *
+     * @return the top card, or {@code null} if there are no cards left
+     */
+    public Color draw() {
+        if (drawSize == 0 && !reshuffle()) {
+            return null;
+        }
+
+        byte card = drawPile[--drawSize];
+        remaining[card]--;
+        if (marks > 0) record(DRAW | card);
+        return COLORS[card];
+    }
+
+    /**
+     * Puts the given cards on the discard pile.
+     *
+     * @param color the color of the cards
+     * @param num   the number of cards
+     */
+    public void discard(Color color, int num) {
+        if (color == Color.NONE) {
+            throw new IllegalArgumentException("Cannot discard a \"NONE\" card");
+        }
+
+        for (int i = 0; i < num; i++) {
+            discardPile[discardSize++] = (byte) color.ordinal();
+        }
+        discarded[color.ordinal()] += num;
+        if (marks > 0 && num > 0) record(DISCARD | color.ordinal() << 16 | num);
+    }
+
+    /**
+     * Returns the number of cards of the given color left in the draw pile.
+     *
+     * @param color the color to count
+     * @return the number of cards of the given color left in the draw pile
+     */
+    public int getRemaining(Color color) {
+        return remaining[color.ordinal()];
+    }
+
+    /**
+     * Returns the number of cards of the given color in the discard pile.
+     *
+     * @param color the color to count
+     * @return the number of cards of the given color in the discard pile
+     */
+    public int getDiscarded(Color color) {
+        return discarded[color.ordinal()];
+    }
+
+    /**
+     * Returns the number of cards in the draw pile.
+     *
+     * @return the number of cards in the draw pile
+     */
+    public int size() {
+        return drawSize;
+    }
+
+    /**
+     * Returns the number of cards in the discard pile.
+     *
+     * @return the number of cards in the discard pile
+     */
+    public int getDiscardSize() {
+        return discardSize;
+    }
+
+    /**
+     * Copies the draw pile into the given array, bottom card first, as {@link Color} ordinals.
+     *
+     * @param dest the array to copy into; must hold at least {@link #size()} cards
+     */
+    public void copyDrawPile(byte[] dest) {
+        System.arraycopy(drawPile, 0, dest, 0, drawSize);
+    }
+
+    /**
+     * Copies the discard pile into the given array, in the order the cards were discarded, as {@link Color}
+     * ordinals.
+     *
+     * @param dest the array to copy into; must hold at least {@link #getDiscardSize()} cards
+     */
+    public void copyDiscardPile(byte[] dest) {
+        System.arraycopy(discardPile, 0, dest, 0, discardSize);
+    }
+
+    /**
+     * Returns the state of the generator used to shuffle.
+     *
+     * @return the state of the generator
+     */
+    public long getRandomState() {
+        return random.getState();
+    }
+
+    /**
+     * Replaces the contents of this deck. Outstanding marks are discarded.
+     *
+     * @param draw        the draw pile, bottom card first, as {@link Color} ordinals
+     * @param drawSize    the number of cards in the draw pile
+     * @param discard     the discard pile, as {@link Color} ordinals
+     * @param discardSize the number of cards in the discard pile
+     * @param randomState the state of the generator used to shuffle
+     */
+    public void restore(byte[] draw, int drawSize, byte[] discard, int discardSize, long randomState) {
+        if (drawSize + discardSize > TOTAL_CARDS) {
+            throw new IllegalArgumentException("Too many cards");
+        }
+
+        Arrays.fill(remaining, 0);
+        Arrays.fill(discarded, 0);
+        for (int i = 0; i < drawSize; i++) {
+            drawPile[i] = draw[i];
+            remaining[draw[i]]++;
+        }
+        for (int i = 0; i < discardSize; i++) {
+            discardPile[i] = discard[i];
+            discarded[discard[i]]++;
+        }
+        this.drawSize = drawSize;
+        this.discardSize = discardSize;
+        random.setState(randomState);
+        journalSize = marks = 0;
+    }
+
+    /**
+     * Starts recording changes so that they can be undone with {@link #rollback(int)}. Marks nest.
+     *
+     * @return the mark to roll back to
+     */
+    public int mark() {
+        marks++;
+        return journalSize;
+    }
+
+    /**
+     * Undoes every draw, discard and reshuffle since the given mark was taken, including the effect that reshuffles
+     * had on the generator, and releases the mark. Marks must be rolled back in the reverse order that they were
+     * taken in.
+     *
+     * @param mark a mark returned by {@link #mark()}
+     */
+    public void rollback(int mark) {
+        if (marks == 0 || mark > journalSize) {
+            throw new IllegalStateException("Invalid mark " + mark);
+        }
+
+        while (journalSize > mark) {
+            int entry = journal[--journalSize];
+            int tag = entry & 0xFF000000;
+            if (tag == DRAW) {
+                byte card = (byte) (entry & 0xFF);
+                drawPile[drawSize++] = card;
+                remaining[card]++;
+            } else if (tag == DISCARD) {
+                int num = entry & 0xFFFF;
+                discardSize -= num;
+                discarded[entry >>> 16 & 0xFF] -= num;
+            } else if (tag == RESHUFFLE) {
+                int num = entry & 0xFFFFFF;
+                long high = journal[--journalSize], low = journal[--journalSize];
+                random.setState(high << 32 | low & 0xFFFFFFFFL);
+
+                // every card drawn since the reshuffle has been put back, so the draw pile is exactly the old
+                // discard pile
+                drawSize = 0;
+                journalSize -= num;
+                for (int i = 0; i < num; i++) {
+                    byte card = (byte) journal[journalSize + i];
+                    discardPile[i] = card;
+                    remaining[card]--;
+                    discarded[card]++;
+                }
+                discardSize = num;
+            } else {
+                throw new IllegalStateException("Corrupt journal");
+            }
+        }
+        marks--;
+    }
+
+    /**
+     * Adds an entry to the journal.
+     *
+     * @param entry the entry
+     */
+    private void record(int entry) {
+        if (journalSize == journal.length) {
+            journal = Arrays.copyOf(journal, journalSize * 2);
+        }
+        journal[journalSize++] = entry;
+    }
+
+    /**
+     * Shuffles the discard pile into the draw pile. Only called when the draw pile is empty.
+     *
+     * @return whether there were any cards to shuffle in
+     */
+    private boolean reshuffle() {
+        if (discardSize == 0) {
+            return false;
+        }
+
+        if (marks > 0) {
+            // the discard pile is overwritten by later discards, so its order has to be saved
+            for (int i = 0; i < discardSize; i++) {
+                record(discardPile[i]);
+            }
+            long state = random.getState();
+            record((int) state);
+            record((int) (state >>> 32));
+            record(RESHUFFLE | discardSize);
+        }
+
+        System.arraycopy(discardPile, 0, drawPile, 0, discardSize);
+        drawSize = discardSize;
+        discardSize = 0;
+        for (int i = 0; i < COLORS.length; i++) {
+            remaining[i] += discarded[i];
+            discarded[i] = 0;
+        }
+
+        shuffle(drawPile, drawSize);
+        return true;
+    }
+
+    /**
+     * Shuffles the first {@code size} cards of the given pile (Fisher-Yates).
+     *
+     * @param pile the pile to shuffle
+     * @param size the number of cards in the pile
+     */
+    private void shuffle(byte[] pile, int size) {
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte temp = pile[i];
+            pile[i] = pile[j];
+            pile[j] = temp;
+        }
+    }
+}
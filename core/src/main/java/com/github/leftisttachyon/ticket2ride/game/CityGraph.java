@@ -0,0 +1,252 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import java.util.*;
+
+/**
+ * An immutable, integer-indexed representation of the connections between cities. Cities are given dense ids in the
+ * order that they are first seen and the railways leaving every city are stored in compressed-sparse-row arrays.<br>
+ * The railways leaving a city are grouped by the city on the other end, in the order that those cities were first
+ * connected to it, and keep their insertion order inside of each group.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class CityGraph {
+    /**
+     * The names of the cities, indexed by city id
+     */
+    private final String[] cityNames;
+    /**
+     * A {@link Map} from city names to city ids
+     */
+    private final Map<String, Integer> cityIds;
+    /**
+     * An unmodifiable {@link Set} of all city names, in id order
+     */
+    private final Set<String> citySet;
+    /**
+     * The first railway slot for every city; the slots for city {@code c} are {@code [offsets[c], offsets[c + 1])}
+     */
+    private final int[] offsets;
+    /**
+     * The railway index stored in every slot
+     */
+    private final int[] slotRailways;
+    /**
+     * The city on the other end of the railway stored in every slot
+     */
+    private final int[] slotCities;
+    /**
+     * The first adjacent city for every city; the adjacents of city {@code c} are
+     * {@code [adjOffsets[c], adjOffsets[c + 1])}
+     */
+    private final int[] adjOffsets;
+    /**
+     * The distinct adjacent cities of every city
+     */
+    private final int[] adjCities;
+
+    /**
+     * Creates a new {@link CityGraph} with the given railway endpoints. The railway at index {@code i} connects
+     * {@code dest1[i]} and {@code dest2[i]}.
+     *
+     * @param dest1 one endpoint of every railway
+     * @param dest2 the other endpoint of every railway
+     */
+    public CityGraph(String[] dest1, String[] dest2) {
+        if (dest1.length != dest2.length) {
+            throw new IllegalArgumentException("Endpoint arrays differ in length");
+        }
+        int numRailways = dest1.length;
+
+        cityIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] ends1 = new int[numRailways], ends2 = new int[numRailways];
+        for (int i = 0; i < numRailways; i++) {
+            ends1[i] = intern(dest1[i], names);
+            ends2[i] = intern(dest2[i], names);
+        }
+        cityNames = names.toArray(new String[0]);
+        citySet = Collections.unmodifiableSet(new LinkedHashSet<>(names));
+
+        int numCities = cityNames.length;
+        offsets = new int[numCities + 1];
+        for (int i = 0; i < numRailways; i++) {
+            offsets[ends1[i] + 1]++;
+            offsets[ends2[i] + 1]++;
+        }
+        for (int c = 0; c < numCities; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+
+        // order every city's neighbours by first appearance, then lay out the railways neighbour by neighbour
+        List<List<Integer>> neighbours = new ArrayList<>(numCities);
+        List<List<List<Integer>>> groups = new ArrayList<>(numCities);
+        for (int c = 0; c < numCities; c++) {
+            neighbours.add(new ArrayList<>());
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < numRailways; i++) {
+            group(neighbours.get(ends1[i]), groups.get(ends1[i]), ends2[i]).add(i);
+            group(neighbours.get(ends2[i]), groups.get(ends2[i]), ends1[i]).add(i);
+        }
+
+        slotRailways = new int[offsets[numCities]];
+        slotCities = new int[offsets[numCities]];
+        adjOffsets = new int[numCities + 1];
+        for (int c = 0; c < numCities; c++) {
+            adjOffsets[c + 1] = adjOffsets[c] + neighbours.get(c).size();
+        }
+        adjCities = new int[adjOffsets[numCities]];
+
+        for (int c = 0; c < numCities; c++) {
+            int slot = offsets[c], adj = adjOffsets[c];
+            List<Integer> cityNeighbours = neighbours.get(c);
+            for (int n = 0; n < cityNeighbours.size(); n++) {
+                int other = cityNeighbours.get(n);
+                adjCities[adj++] = other;
+                for (int railway : groups.get(c).get(n)) {
+                    slotRailways[slot] = railway;
+                    slotCities[slot] = other;
+                    slot++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cities in this graph.
+     *
+     * @return the number of cities in this graph
+     */
+    public int getNumCities() {
+        return cityNames.length;
+    }
+
+    /**
+     * Returns the id of the given city, or {@code -1} if the city is not in this graph.
+     *
+     * @param name the name of the city
+     * @return the id of the given city, or {@code -1}
+     */
+    public int getCityId(String name) {
+        Integer id = cityIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the name of the city with the given id.
+     *
+     * @param city the id of the city
+     * @return the name of the city
+     */
+    public String getCityName(int city) {
+        return cityNames[city];
+    }
+
+    /**
+     * Returns an unmodifiable {@link Set} of all city names, in id order.
+     *
+     * @return an unmodifiable {@link Set} of all city names
+     */
+    public Set<String> getCities() {
+        return citySet;
+    }
+
+    /**
+     * Returns the first railway slot of the given city.
+     *
+     * @param city the id of the city
+     * @return the first railway slot of the given city
+     */
+    public int firstSlot(int city) {
+        return offsets[city];
+    }
+
+    /**
+     * Returns one past the last railway slot of the given city.
+     *
+     * @param city the id of the city
+     * @return one past the last railway slot of the given city
+     */
+    public int endSlot(int city) {
+        return offsets[city + 1];
+    }
+
+    /**
+     * Returns the index of the railway stored in the given slot.
+     *
+     * @param slot the slot to look at
+     * @return the index of the railway stored in the given slot
+     */
+    public int slotRailway(int slot) {
+        return slotRailways[slot];
+    }
+
+    /**
+     * Returns the city on the other end of the railway stored in the given slot.
+     *
+     * @param slot the slot to look at
+     * @return the id of the city on the other end
+     */
+    public int slotCity(int slot) {
+        return slotCities[slot];
+    }
+
+    /**
+     * Returns the number of distinct cities adjacent to the given one.
+     *
+     * @param city the id of the city
+     * @return the number of distinct adjacent cities
+     */
+    public int getNumAdjacents(int city) {
+        return adjOffsets[city + 1] - adjOffsets[city];
+    }
+
+    /**
+     * Returns the {@code n}th distinct city adjacent to the given one.
+     *
+     * @param city the id of the city
+     * @param n    the index of the adjacent city
+     * @return the id of the adjacent city
+     */
+    public int getAdjacent(int city, int n) {
+        return adjCities[adjOffsets[city] + n];
+    }
+
+    /**
+     * Gives the given city an id if it does not have one already.
+     *
+     * @param name  the name of the city
+     * @param names the names of all cities seen so far
+     * @return the id of the city
+     */
+    private int intern(String name, List<String> names) {
+        Integer id = cityIds.get(name);
+        if (id == null) {
+            id = names.size();
+            cityIds.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * Finds the group of railways leading to the given city, creating it if needed.
+     *
+     * @param neighbours the neighbours seen so far
+     * @param groups     the railway groups, parallel to {@code neighbours}
+     * @param other      the city on the other end
+     * @return the group of railways leading to the given city
+     */
+    private static List<Integer> group(List<Integer> neighbours, List<List<Integer>> groups, int other) {
+        int idx = neighbours.indexOf(other);
+        if (idx == -1) {
+            neighbours.add(other);
+            List<Integer> group = new ArrayList<>();
+            groups.add(group);
+            return group;
+        }
+        return groups.get(idx);
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import java.util.Arrays;
+
+/**
+ * A disjoint-set forest over city ids that keeps track of which cities are connected to each other. Unions are by
+ * size and finds compress paths, so both are effectively constant time. The forest grows as larger city ids are seen.
+ * <br>
+ * While a {@link #mark()} is outstanding, every write to the forest is recorded on a trail so that
+ * {@link #rollback(int)} can undo it exactly.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class CityNetwork {
+    /**
+     * The parent of every city; roots are their own parent
+     */
+    private int[] parent;
+    /**
+     * The number of cities in the tree of every root
+     */
+    private int[] size;
+    /**
+     * The trail of overwritten entries: pairs of an index (bitwise negated for {@code size}) and the old value
+     */
+    private int[] trail = new int[32];
+    /**
+     * The number of used entries in {@link #trail}
+     */
+    private int trailSize;
+    /**
+     * The number of outstanding marks; writes are only recorded while this is positive
+     */
+    private int marks;
+
+    /**
+     * Creates a new {@link CityNetwork} in which no cities are connected.
+     *
+     * @param numCities the expected number of cities
+     */
+    public CityNetwork(int numCities) {
+        parent = new int[0];
+        size = new int[0];
+        ensureCapacity(numCities);
+    }
+
+    /**
+     * Connects the two given cities.
+     *
+     * @param city1 one city
+     * @param city2 another city
+     * @return whether the two cities were not connected before
+     */
+    public boolean union(int city1, int city2) {
+        ensureCapacity(Math.max(city1, city2) + 1);
+
+        int root1 = find(city1), root2 = find(city2);
+        if (root1 == root2) {
+            return false;
+        }
+
+        if (size[root1] < size[root2]) {
+            int temp = root1;
+            root1 = root2;
+            root2 = temp;
+        }
+
+        setParent(root2, root1);
+        setSize(root1, size[root1] + size[root2]);
+        return true;
+    }
+
+    /**
+     * Finds the representative city of the given city's network.
+     *
+     * @param city the city to look for
+     * @return the representative city
+     */
+    public int find(int city) {
+        if (city >= parent.length) {
+            return city;
+        }
+
+        while (parent[city] != city) {
+            // path halving
+            setParent(city, parent[parent[city]]);
+            city = parent[city];
+        }
+
+        return city;
+    }
+
+    /**
+     * Determines whether the two given cities are connected.
+     *
+     * @param city1 one city
+     * @param city2 another city
+     * @return whether the two cities are connected
+     */
+    public boolean connected(int city1, int city2) {
+        return city1 == city2 || find(city1) == find(city2);
+    }
+
+    /**
+     * Disconnects all cities. Outstanding marks are discarded.
+     */
+    public void clear() {
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        Arrays.fill(size, 1);
+        trailSize = marks = 0;
+    }
+
+    /**
+     * Starts recording changes so that they can be undone with {@link #rollback(int)}. Marks nest.
+     *
+     * @return the mark to roll back to
+     */
+    public int mark() {
+        marks++;
+        return trailSize;
+    }
+
+    /**
+     * Undoes every change made since the given mark was taken, and releases the mark. Marks must be rolled back in
+     * the reverse order that they were taken in.
+     *
+     * @param mark a mark returned by {@link #mark()}
+     */
+    public void rollback(int mark) {
+        if (marks == 0 || mark > trailSize) {
+            throw new IllegalStateException("Invalid mark " + mark);
+        }
+
+        while (trailSize > mark) {
+            int value = trail[--trailSize];
+            int index = trail[--trailSize];
+            if (index >= 0) {
+                parent[index] = value;
+            } else {
+                size[~index] = value;
+            }
+        }
+        marks--;
+    }
+
+    /**
+     * Sets the parent of the given city, recording the old one if needed.
+     *
+     * @param city  the city
+     * @param value the new parent
+     */
+    private void setParent(int city, int value) {
+        if (marks > 0) record(city, parent[city]);
+        parent[city] = value;
+    }
+
+    /**
+     * Sets the size of the tree of the given root, recording the old one if needed.
+     *
+     * @param root  the root
+     * @param value the new size
+     */
+    private void setSize(int root, int value) {
+        if (marks > 0) record(~root, size[root]);
+        size[root] = value;
+    }
+
+    /**
+     * Adds an entry to the trail.
+     *
+     * @param index the index, bitwise negated for {@code size}
+     * @param value the old value
+     */
+    private void record(int index, int value) {
+        if (trailSize + 2 > trail.length) {
+            trail = Arrays.copyOf(trail, trail.length * 2);
+        }
+        trail[trailSize++] = index;
+        trail[trailSize++] = value;
+    }
+
+    /**
+     * Makes sure the given number of cities fit.
+     *
+     * @param numCities the number of cities
+     */
+    private void ensureCapacity(int numCities) {
+        int old = parent.length;
+        if (numCities <= old) {
+            return;
+        }
+
+        parent = Arrays.copyOf(parent, numCities);
+        size = Arrays.copyOf(size, numCities);
+        for (int i = old; i < numCities; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+}
@@ -1,14 +1,11 @@
 package com.github.leftisttachyon.ticket2ride.game;
 
-import com.github.leftisttachyon.ticket2ride.game.action.TurnChangeEvent;
-import com.github.leftisttachyon.ticket2ride.game.action.TurnChangeListener;
+import com.github.leftisttachyon.ticket2ride.game.action.*;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +18,19 @@ import java.util.Map;
 @Slf4j
 @Getter
 public class Game {
+    /**
+     * The number of points awarded to the {@link Player}s with the longest continuous path at the end of the game
+     */
+    public static final int LONGEST_PATH_BONUS = 10;
+    /**
+     * The number of points awarded for claiming a {@link Railway}, indexed by length
+     */
+    private static final int[] RAILWAY_POINTS = {0, 1, 2, 4, 7, 10, 15};
+    /**
+     * All {@link Color}s, indexed by ordinal
+     */
+    private static final Color[] COLORS = Color.values();
+
     /**
      * The internally stored board.
      */
@@ -30,15 +40,20 @@ public class Game {
      */
     private Player[] players;
     /**
-     * A {@link List} of {@link TurnChangeListener}s that are notified when turns change.
+     * The listeners that are notified when turns change.
      */
     @Getter(AccessLevel.NONE)
-    private List<TurnChangeListener> turnChangeListeners;
+    private ListenerRegistry<TurnChangeEvent> turnChangeListeners;
     /**
-     * A {@link List} of {@link ActionListener}s that are notified when actions occur.
+     * The listeners that are notified when actions occur.
      */
     @Getter(AccessLevel.NONE)
-    private List<ActionListener> actionListeners;
+    private ListenerRegistry<GameEvent> actionListeners;
+    /**
+     * The journal that every action is appended to, or {@code null}
+     */
+    @Getter(AccessLevel.NONE)
+    private GameJournal journal;
     /**
      * An integer that stores whose turn it is
      */
@@ -46,13 +61,92 @@ public class Game {
     /**
      * An integer that stores how many cards the current player can draw
      */
-    @Getter(AccessLevel.NONE)
+    @Getter(AccessLevel.PACKAGE)
     private int drawPower = 2;
     /**
      * An integer that stores how many turns in the game. Normally, {@code -1} is stored in this variable.
      */
-    @Getter(AccessLevel.NONE)
+    @Getter(AccessLevel.PACKAGE)
     private int turnsLeft = -1;
+    /**
+     * Whether the game has been scored, so that it is never scored twice
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private boolean finished = false;
+    /**
+     * A scratch array used to convert card {@link Map}s into counts
+     */
+    @Getter(AccessLevel.NONE)
+    private final int[] payment = new int[COLORS.length];
+    /**
+     * The stack of moves made with {@link #makeMove(int)}, as frames of {@link #frameSize} ints laid out as described
+     * by the {@code FRAME_} constants
+     */
+    @Getter(AccessLevel.NONE)
+    private int[] undoStack = new int[0];
+    /**
+     * The number of used entries in {@link #undoStack}
+     */
+    @Getter(AccessLevel.NONE)
+    private int undoSize = 0;
+    /**
+     * The number of ints in every frame of {@link #undoStack}
+     */
+    @Getter(AccessLevel.NONE)
+    private final int frameSize;
+
+    /**
+     * Frame offset of the move that was made
+     */
+    private static final int FRAME_MOVE = 0;
+    /**
+     * Frame offset of {@link #turn}
+     */
+    private static final int FRAME_TURN = 1;
+    /**
+     * Frame offset of {@link #drawPower}
+     */
+    private static final int FRAME_DRAW_POWER = 2;
+    /**
+     * Frame offset of {@link #turnsLeft}
+     */
+    private static final int FRAME_TURNS_LEFT = 3;
+    /**
+     * Frame offset of the mark of the {@link Board}
+     */
+    private static final int FRAME_BOARD_MARK = 4;
+    /**
+     * Frame offset of the mark of the network of the moving {@link Player}, or {@code -1} if none was taken
+     */
+    private static final int FRAME_NETWORK_MARK = 5;
+    /**
+     * Frame offset of the number of {@link Route}s of the moving {@link Player}
+     */
+    private static final int FRAME_ROUTES = 6;
+    /**
+     * Frame offset of the number of trains of the moving {@link Player}
+     */
+    private static final int FRAME_TRAINS = 7;
+    /**
+     * Frame offset of the return allowance of the moving {@link Player}
+     */
+    private static final int FRAME_RETURN_ALLOWANCE = 8;
+    /**
+     * Frame offset of a bit set of which {@link Player}s have had their {@link Route}s scored
+     */
+    private static final int FRAME_SCORED = 9;
+    /**
+     * Frame offset of {@link #finished}, {@code 1} if the game had been scored
+     */
+    private static final int FRAME_FINISHED = 10;
+    /**
+     * Frame offset of the number of completed {@link Route}s of the moving {@link Player}
+     */
+    private static final int FRAME_COMPLETED = 11;
+    /**
+     * Frame offset of the cards of the moving {@link Player}, followed by the points of every {@link Player}
+     */
+    private static final int FRAME_CARDS = 12;
 
     /**
      * Creates a new {@link Game} object.
@@ -73,8 +167,9 @@ public class Game {
             players[i].setTurn(i);
         }
 
-        turnChangeListeners = new LinkedList<>();
-        actionListeners = new LinkedList<>();
+        turnChangeListeners = new ListenerRegistry<>();
+        actionListeners = new ListenerRegistry<>();
+        frameSize = FRAME_CARDS + COLORS.length + numPlayers;
     }
 
     /**
@@ -85,6 +180,8 @@ public class Game {
      * @return whether the operation was successful
      */
     public boolean pickCard(int idx) {
+        if (gameEnded()) return false;
+
         Color c = board.pickCard(idx, drawPower);
         if (c == null) {
             log.debug("Cannot pick the card up at the index {}", idx);
@@ -99,27 +196,45 @@ public class Game {
             drawPower--;
         }
 
-        notifyAction("PICK " + c + " " + idx);
+        if (!actionListeners.isEmpty()) {
+            actionListeners.fire(new CardDrawnEvent(this, turn, c, idx));
+        }
 
         if (drawPower == 0) {
             advanceTurn();
         }
 
+        if (journal != null) journal.pickCard(idx);
         return true;
     }
 
     /**
-     * Makes the current player pick up a card from the high pile.
+     * Makes the current player pick up a card from the high pile.<br>
+     * If there are no cards left, even after reshuffling the discard pile, then false is returned and nothing
+     * changes.
+     *
+     * @return whether the operation was successful
      */
-    public void pickRandom() {
+    public boolean pickRandom() {
+        if (gameEnded()) return false;
+
         Color c = board.pickRandom();
+        if (c == null) {
+            log.debug("There are no cards left to pick");
+            return false;
+        }
         players[turn].addCard(c);
 
-        notifyAction("PICK RANDOM");
+        if (!actionListeners.isEmpty()) {
+            actionListeners.fire(new CardDrawnEvent(this, turn, c, -1));
+        }
 
         if (--drawPower == 0) {
             advanceTurn();
         }
+
+        if (journal != null) journal.pickRandom();
+        return true;
     }
 
     /**
@@ -128,15 +243,18 @@ public class Game {
      * @return whether the operation was successful
      */
     public boolean drawRoutes() {
-        if (drawPower != 2) {
+        if (drawPower != 2 || gameEnded()) {
             return false;
         }
 
-        for (Route r : board.getRoutes(3)) {
+        List<Route> drawn = board.getRoutes(3);
+        for (Route r : drawn) {
             players[turn].addRoute(r);
         }
 
-        notifyAction("DRAWROUTES");
+        if (!actionListeners.isEmpty()) {
+            actionListeners.fire(new RoutesDrawnEvent(this, turn, drawn.size()));
+        }
 
         Player temp = getCurrentPlayer();
 
@@ -144,22 +262,33 @@ public class Game {
 
         temp.incrementReturnAllowance();
 
+        if (journal != null) journal.drawRoutes();
         return true;
     }
 
     /**
-     * Puts a {@link Route} card back to the internally stored {@link java.util.Stack}.
+     * Puts a {@link Route} card, or the registered {@link Route} that matches it, back at the bottom of the deck of
+     * {@link Route}s.
      *
      * @param p     the {@link Player} to remote the {@link Route} from
      * @param route the {@link Route} to put back
      */
     public boolean returnRoute(Player p, Route route) {
+        int id = board.getMap().indexOf(route);
+        if (id == -1) {
+            return false;
+        }
+        route = board.getMap().getRoute(id);
         if (!p.removeRoute(route)) {
             return false;
         }
         board.addRoute(route);
 
-        notifyAction("RETURNROUTE " + p.getName());
+        if (!actionListeners.isEmpty()) {
+            actionListeners.fire(new RouteReturnedEvent(this, p, route));
+        }
+
+        if (journal != null) journal.returnRoute(p.getTurn(), id);
         return true;
     }
 
@@ -171,24 +300,48 @@ public class Game {
      * @return whether the operation was successful
      */
     public boolean claimRailway(Railway railway, Map<Color, Integer> toUse) {
+        Arrays.fill(payment, 0);
+        for (Map.Entry<Color, Integer> entry : toUse.entrySet()) {
+            payment[entry.getKey().ordinal()] += entry.getValue();
+        }
+
+        return claimRailway(railway, payment);
+    }
+
+    /**
+     * Makes the current player claim the given {@link Railway} or equivalent one. Does not allocate.
+     *
+     * @param railway the {@link Railway} to claim
+     * @param toUse   the number of cards of every color to use to claim the {@link Railway}, indexed by
+     *                {@link Color#ordinal()}
+     * @return whether the operation was successful
+     */
+    public boolean claimRailway(Railway railway, int[] toUse) {
         // check if it's doable
-        if (railway == null || drawPower != 2) return false;
+        if (railway == null || drawPower != 2 || gameEnded()) return false;
+        if (toUse.length != COLORS.length) {
+            throw new IllegalArgumentException("Expected " + COLORS.length + " card counts");
+        }
 
         Railway temp = board.getRailway(railway);
-        if (temp == null || temp.isClaimed()) return false;
+        if (temp == null || board.isClaimed(temp)) return false;
+
+        Player current = players[turn];
+        if (current.getTrains() < temp.getLength() || toUse[Color.NONE.ordinal()] != 0)
+            return false;
 
         int cardsUsed = 0;
         boolean isAnyColor = temp.getColor() == Color.NONE;
-        Player current = players[turn];
+        int railColor = temp.getColor().ordinal(), rainbow = Color.RAINBOW.ordinal();
 
-        for (Map.Entry<Color, Integer> entry : toUse.entrySet()) {
-            Color cardColor = entry.getKey();
-            if (!current.hasCards(cardColor, entry.getValue())) {
+        for (int i = 0; i < toUse.length; i++) {
+            int num = toUse[i];
+            if (num < 0 || !current.hasCards(COLORS[i], num)) {
                 return false;
             }
 
-            if (isAnyColor || cardColor == Color.RAINBOW || cardColor == temp.getColor()) {
-                cardsUsed += entry.getValue();
+            if (isAnyColor || i == rainbow || i == railColor) {
+                cardsUsed += num;
             }
         }
 
@@ -196,50 +349,46 @@ public class Game {
             return false;
 
         // do it
-        if(!board.claimRailway(temp, current, players.length > 3))
+        if (!board.claimRailway(temp, current, players.length > 3))
             return false;
 
-        if (current.getTrains() >= temp.getLength()) {
-            current.removeTrains(temp.getLength());
-        } else {
-            return false;
+        current.removeTrains(temp.getLength());
+        current.removeCards(toUse);
+        for (int i = 0; i < toUse.length; i++) {
+            if (toUse[i] > 0) {
+                board.discard(COLORS[i], toUse[i]);
+            }
         }
+        current.addPoints(getRailwayPoints(temp.getLength()));
 
-        current.removeCards(toUse);
-        switch (temp.getLength()) {
-            case 1:
-                current.addPoints(1);
-                break;
-            case 2:
-                current.addPoints(2);
-                break;
-            case 3:
-                current.addPoints(4);
-                break;
-            case 4:
-                current.addPoints(7);
-                break;
-            case 5:
-                current.addPoints(10);
-                break;
-            case 6:
-                current.addPoints(15);
-                break;
-        }
-
-        notifyAction("CLAIM " + temp.toMessageString());
+        if (!actionListeners.isEmpty()) {
+            actionListeners.fire(new RailwayClaimedEvent(this, turn, temp));
+        }
 
         advanceTurn();
+
+        if (journal != null) journal.claimRailway(temp.getId(), toUse);
         return true;
     }
 
+    /**
+     * Returns the number of points awarded for claiming a {@link Railway} of the given length.
+     *
+     * @param length the length of the {@link Railway}
+     * @return the number of points awarded
+     */
+    public static int getRailwayPoints(int length) {
+        return length < RAILWAY_POINTS.length ? RAILWAY_POINTS[length] : 0;
+    }
+
     /**
      * Starts the game.
      */
     public void startGame() {
         for (Player player : players) {
             for (int j = 0; j < 4; j++) {
-                player.addCard(board.pickRandom());
+                Color c = board.pickRandom();
+                if (c != null) player.addCard(c);
             }
 
             for (Route r : board.getRoutes(3)) {
@@ -249,24 +398,50 @@ public class Game {
             player.incrementReturnAllowance();
         }
 
-        notifyAction("STARTGAME");
+        if (!actionListeners.isEmpty()) {
+            actionListeners.fire(new GameStartedEvent(this));
+        }
+
+        if (journal != null) journal.startGame();
     }
 
     /**
-     * Ends the game.
+     * Ends the game. Scores every {@link Route} and gives the {@link Player}s tied for the longest continuous path
+     * {@value #LONGEST_PATH_BONUS} points. A game that has already been scored is not scored again.
      */
     public void endGame() {
+        finish();
+
+        if (journal != null) journal.endGame();
+    }
+
+    /**
+     * Scores the game and notifies listeners that it has ended, unless that has already happened.
+     */
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        int longest = 0;
         for (Player p : players) {
-            for (Route r : p.getRoutes()) {
-                if (p.isCompleted(r)) {
-                    p.addPoints(r.getValue());
-                } else {
-                    p.addPoints(-r.getValue());
+            p.scoreRoutes();
+
+            longest = Math.max(longest, p.getLongestConnection());
+        }
+
+        if (longest > 0) {
+            for (Player p : players) {
+                if (p.getLongestConnection() == longest) {
+                    p.addPoints(LONGEST_PATH_BONUS);
                 }
             }
         }
 
-        notifyAction("ENDGAME");
+        if (!actionListeners.isEmpty()) {
+            actionListeners.fire(new GameEndedEvent(this));
+        }
     }
 
     /**
@@ -295,13 +470,111 @@ public class Game {
      * @return whether this game has ended
      */
     public boolean gameEnded() {
-        return turnsLeft != 0;
+        return turnsLeft == 0;
+    }
+
+    /**
+     * Lists every legal move of the current {@link Player} into the given buffer, encoded as described in
+     * {@link Move}. The moves are checked against the same rules as {@link #pickCard(int)}, {@link #pickRandom()},
+     * {@link #drawRoutes()} and {@link #claimRailway(Railway, int[])}. Claims are listed once for every way to pay
+     * with cards of a single color plus rainbow cards. Does not allocate.<br>
+     * If the buffer is too small, only the first {@code buffer.length} moves are written, but all of them are still
+     * counted, so the caller can retry with a bigger buffer.
+     *
+     * @param buffer the buffer to write the moves into
+     * @return the number of legal moves, which is {@code 0} once the game has ended
+     */
+    public int generateMoves(int[] buffer) {
+        if (gameEnded()) return 0;
+
+        int n = 0;
+
+        Color[] sideCards = board.getSideCards();
+        for (int i = 0; i < sideCards.length; i++) {
+            Color c = sideCards[i];
+            if (c != null && (c == Color.RAINBOW ? drawPower >= 2 : drawPower >= 1)) {
+                n = addMove(buffer, n, Move.pickCard(i));
+            }
+        }
+
+        CardDeck deck = board.getDeck();
+        if (deck.size() + deck.getDiscardSize() > 0) {
+            n = addMove(buffer, n, Move.pickRandom());
+        }
+
+        if (drawPower != 2) {
+            return n;
+        }
+
+        n = addMove(buffer, n, Move.drawRoutes());
+
+        Player current = players[turn];
+        int trains = current.getTrains();
+        int rainbows = current.getNumCards(Color.RAINBOW);
+        for (int id = 0, numRailways = board.getNumRailways(); id < numRailways; id++) {
+            Railway r = board.getRailway(id);
+            int length = r.getLength();
+            if (length > trains || board.getClaimedBy(id) != -1) continue;
+
+            if (r.getColor() == Color.NONE) {
+                for (int c = Color.NONE.ordinal() + 1; c < Color.RAINBOW.ordinal(); c++) {
+                    // paying with rainbows only is listed once, below
+                    int max = Math.min(length - 1, rainbows);
+                    for (int rb = Math.max(0, length - current.getNumCards(COLORS[c])); rb <= max; rb++) {
+                        n = addMove(buffer, n, Move.claim(id, COLORS[c], rb));
+                    }
+                }
+                if (rainbows >= length) {
+                    n = addMove(buffer, n, Move.claim(id, Color.RAINBOW, length));
+                }
+            } else {
+                Color color = r.getColor();
+                int max = Math.min(length, rainbows);
+                for (int rb = Math.max(0, length - current.getNumCards(color)); rb <= max; rb++) {
+                    n = addMove(buffer, n, Move.claim(id, rb == length ? Color.RAINBOW : color, rb));
+                }
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Makes the current {@link Player} perform the given move, encoded as described in {@link Move}. Does not
+     * allocate by itself.
+     *
+     * @param move the move to perform
+     * @return whether the move was legal and was performed
+     */
+    public boolean applyMove(int move) {
+        switch (Move.getType(move)) {
+            case Move.PICK_CARD:
+                return Move.getIndex(move) < board.getSideCards().length && pickCard(Move.getIndex(move));
+            case Move.PICK_RANDOM:
+                return pickRandom();
+            case Move.DRAW_ROUTES:
+                return drawRoutes();
+            case Move.CLAIM:
+                int id = Move.getRailway(move);
+                if (id >= board.getNumRailways()) return false;
+
+                Railway r = board.getRailway(id);
+                int rainbow = Move.getRainbow(move);
+                if (rainbow > r.getLength()) return false;
+
+                Arrays.fill(payment, 0);
+                payment[Move.getColor(move).ordinal()] += r.getLength() - rainbow;
+                payment[Color.RAINBOW.ordinal()] += rainbow;
+                return claimRailway(r, payment);
+            default:
+                return false;
+        }
     }
 
     // listener code
 
     /**
-     * Adds an {@link TurnChangeListener} to the internally stored {@link List}.
+     * Adds a {@link TurnChangeListener} that is notified whenever the turn changes.
      *
      * @param listener the {@link TurnChangeListener} to add
      */
@@ -310,7 +583,7 @@ public class Game {
     }
 
     /**
-     * Removes an {@link TurnChangeListener} from the internal {@link List}.
+     * Removes a {@link TurnChangeListener}.
      *
      * @param listener the {@link TurnChangeListener} to remove
      */
@@ -326,30 +599,224 @@ public class Game {
     }
 
     /**
-     * Adds an {@link ActionListener} to the internally stored {@link List}.
+     * Adds a listener that is notified of every action that occurs in this game.
      *
-     * @param listener the {@link ActionListener} to add
+     * @param listener the listener to add
      */
-    public void addActionListener(ActionListener listener) {
+    public void addActionListener(GameListener<? super GameEvent> listener) {
         actionListeners.add(listener);
     }
 
     /**
-     * Removes an {@link ActionListener} from the internal {@link List}.
+     * Adds a listener that is notified of the actions of the given type that occur in this game, for example only
+     * {@link CardDrawnEvent}s.
+     *
+     * @param type     the type of events to listen to
+     * @param listener the listener to add
+     * @param <E>      the type of events to listen to
+     */
+    public <E extends GameEvent> void addActionListener(Class<E> type, GameListener<? super E> listener) {
+        actionListeners.add(type, listener);
+    }
+
+    /**
+     * Removes a listener of actions.
      *
-     * @param listener the {@link ActionListener} to remove
+     * @param listener the listener to remove
      */
-    public void removeActionListener(ActionListener listener) {
+    public void removeActionListener(GameListener<?> listener) {
         actionListeners.remove(listener);
     }
 
     /**
-     * Clears all {@link ActionListener}s from this object.
+     * Clears all listeners of actions from this object.
      */
     public void clearActionListeners() {
         actionListeners.clear();
     }
 
+    /**
+     * Makes the current {@link Player} perform the given move, encoded as described in {@link Move}, in a way that
+     * can be undone with {@link #unmakeMove()}. Listeners are notified as usual. Instead of copying the game, only
+     * the changes are recorded, so this is cheap enough to search the game tree in place.<br>
+     * Moves made with this method must be undone in the reverse order that they were made in, and the game must not
+     * be changed in any other way in between.
+     *
+     * @param move the move to perform
+     * @return whether the move was legal and was performed; illegal moves change nothing and need not be undone
+     * @throws IllegalStateException if a {@link GameJournal} is attached to this game
+     */
+    public boolean makeMove(int move) {
+        if (journal != null) {
+            throw new IllegalStateException("Moves cannot be undone while they are journaled");
+        }
+        if (undoSize + frameSize > undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, Math.max(undoStack.length * 2, frameSize * 16));
+        }
+
+        int base = undoSize;
+        Player mover = players[turn];
+        undoStack[base + FRAME_MOVE] = move;
+        undoStack[base + FRAME_TURN] = turn;
+        undoStack[base + FRAME_DRAW_POWER] = drawPower;
+        undoStack[base + FRAME_TURNS_LEFT] = turnsLeft;
+        undoStack[base + FRAME_BOARD_MARK] = board.mark();
+        undoStack[base + FRAME_NETWORK_MARK] = Move.getType(move) == Move.CLAIM ? mover.markNetwork() : -1;
+        undoStack[base + FRAME_ROUTES] = mover.getRoutes().size();
+        undoStack[base + FRAME_COMPLETED] = mover.getNumCompletedRoutes();
+        undoStack[base + FRAME_TRAINS] = mover.getTrains();
+        undoStack[base + FRAME_RETURN_ALLOWANCE] = mover.getReturnAllowance();
+        int scored = 0;
+        for (int i = 0; i < players.length; i++) {
+            if (players[i].isRoutesScored()) scored |= 1 << i;
+            undoStack[base + FRAME_CARDS + COLORS.length + i] = players[i].getPoints();
+        }
+        undoStack[base + FRAME_SCORED] = scored;
+        undoStack[base + FRAME_FINISHED] = finished ? 1 : 0;
+        mover.copyCards(undoStack, base + FRAME_CARDS);
+
+        if (!applyMove(move)) {
+            // nothing changed, but the marks still have to be released
+            if (undoStack[base + FRAME_NETWORK_MARK] != -1) {
+                mover.rollbackNetwork(undoStack[base + FRAME_NETWORK_MARK]);
+            }
+            board.rollback(undoStack[base + FRAME_BOARD_MARK]);
+            return false;
+        }
+
+        undoSize += frameSize;
+        return true;
+    }
+
+    /**
+     * Undoes the last move made with {@link #makeMove(int)}, restoring the turn, the hands, the claims, the decks and
+     * the connections of the {@link Player}s exactly. Listeners are not notified.
+     */
+    public void unmakeMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("There are no moves to undo");
+        }
+
+        undoSize -= frameSize;
+        int base = undoSize;
+        int move = undoStack[base + FRAME_MOVE];
+        turn = undoStack[base + FRAME_TURN];
+        drawPower = undoStack[base + FRAME_DRAW_POWER];
+        turnsLeft = undoStack[base + FRAME_TURNS_LEFT];
+        finished = undoStack[base + FRAME_FINISHED] != 0;
+
+        Player mover = players[turn];
+        if (Move.getType(move) == Move.CLAIM) {
+            mover.undoAddRailway(board.getRailway(Move.getRailway(move)), undoStack[base + FRAME_NETWORK_MARK],
+                    undoStack[base + FRAME_COMPLETED]);
+        } else if (Move.getType(move) == Move.DRAW_ROUTES) {
+            mover.undoAddRoutes(mover.getRoutes().size() - undoStack[base + FRAME_ROUTES]);
+        }
+        board.rollback(undoStack[base + FRAME_BOARD_MARK]);
+        mover.restoreCards(undoStack, base + FRAME_CARDS);
+
+        int scored = undoStack[base + FRAME_SCORED];
+        for (int i = 0; i < players.length; i++) {
+            Player p = players[i];
+            boolean moving = p == mover;
+            p.restoreCounters(undoStack[base + FRAME_CARDS + COLORS.length + i],
+                    moving ? undoStack[base + FRAME_TRAINS] : p.getTrains(),
+                    moving ? undoStack[base + FRAME_RETURN_ALLOWANCE] : p.getReturnAllowance(),
+                    (scored & 1 << i) != 0);
+        }
+    }
+
+    /**
+     * Returns the number of moves made with {@link #makeMove(int)} that can still be undone.
+     *
+     * @return the number of moves that can be undone
+     */
+    public int getUndoDepth() {
+        return undoSize / frameSize;
+    }
+
+    /**
+     * Attaches a journal that every action is appended to, or detaches it.
+     *
+     * @param journal the journal, or {@code null}
+     */
+    void setJournal(GameJournal journal) {
+        if (journal != null && this.journal != null) {
+            throw new IllegalStateException("A journal is already attached");
+        }
+        this.journal = journal;
+    }
+
+    /**
+     * Returns a 64-bit Zobrist hash of the state of this game: who owns every {@link Railway}, the side cards, whose
+     * turn it is, how many more cards can be drawn, the number of turns left and the hand and {@link Route}s of every
+     * {@link Player}. The parts are kept up to date in constant time by every action, so this is cheap enough to key
+     * a transposition table with. States reached by different orders of moves have the same hash.<br>
+     * The order of the decks is not part of the hash, as the {@link Player}s cannot see it.
+     *
+     * @return the hash of the state of this game
+     */
+    public long getHash() {
+        long hash = board.getHash() ^ Zobrist.turn(turn) ^ Zobrist.drawPower(drawPower)
+                ^ Zobrist.turnsLeft(turnsLeft);
+        for (Player p : players) {
+            hash ^= p.getHash();
+        }
+        return hash;
+    }
+
+    /**
+     * Captures the full state of this game in a {@link GameSnapshot}.
+     *
+     * @return a snapshot of this game
+     */
+    public GameSnapshot snapshot() {
+        return new GameSnapshot(this);
+    }
+
+    /**
+     * Creates an independent copy of this game in its current state. The copy shares the immutable {@link GameMap}
+     * but has no listeners. Every call allocates a new game; to copy the state repeatedly, restore a
+     * {@link GameSnapshot} into a game kept for the purpose.
+     *
+     * @return a copy of this game
+     */
+    public Game fork() {
+        return snapshot().fork();
+    }
+
+    /**
+     * Restores the turn counters, without notifying listeners. Moves made with {@link #makeMove(int)} can no longer
+     * be undone.
+     *
+     * @param turn      whose turn it is
+     * @param drawPower how many more cards the current {@link Player} can draw
+     * @param turnsLeft the number of turns left, or {@code -1} if the last round has not started
+     * @param finished  whether the game has been scored
+     */
+    void restoreState(int turn, int drawPower, int turnsLeft, boolean finished) {
+        this.turn = turn;
+        this.drawPower = drawPower;
+        this.turnsLeft = turnsLeft;
+        this.finished = finished;
+        undoSize = 0;
+    }
+
+    /**
+     * Stores a move in the given buffer if there is room for it.
+     *
+     * @param buffer the buffer to store the move in
+     * @param n      the number of moves found so far
+     * @param move   the move to store
+     * @return the new number of moves found
+     */
+    private static int addMove(int[] buffer, int n, int move) {
+        if (n < buffer.length) {
+            buffer[n] = move;
+        }
+        return n + 1;
+    }
+
     /**
      * Advances turns.
      */
@@ -371,28 +838,12 @@ public class Game {
                 }
             }
         } else if (--turnsLeft == 0) {
-            endGame();
+            finish();
         }
 
+        if (journal != null) journal.turnEnded();
         if (!turnChangeListeners.isEmpty()) {
-            TurnChangeEvent evt = new TurnChangeEvent(this, ActionEvent.ACTION_PERFORMED, "Turn changed", turn);
-            for (TurnChangeListener turnChangeListener : turnChangeListeners) {
-                turnChangeListener.turnChanged(evt);
-            }
-        }
-    }
-
-    /**
-     * Notifies {@link ActionListener}s that something happened
-     *
-     * @param message the message to relay
-     */
-    private void notifyAction(String message) {
-        if (!actionListeners.isEmpty()) {
-            ActionEvent evt = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, message);
-            for (ActionListener listener : actionListeners) {
-                listener.actionPerformed(evt);
-            }
+            turnChangeListeners.fire(new TurnChangeEvent(this, turn));
         }
     }
 }
@@ -0,0 +1,348 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import com.github.leftisttachyon.ticket2ride.game.io.BitWriter;
+import com.github.leftisttachyon.ticket2ride.game.io.GameCodec;
+
+import java.io.*;
+
+/**
+ * An append-only binary journal of every action performed on a {@link Game}. Once attached, the {@link Game} appends
+ * every successful call to {@link Game#pickCard(int)}, {@link Game#pickRandom()}, {@link Game#drawRoutes()},
+ * {@link Game#returnRoute(Player, Route)}, {@link Game#claimRailway(Railway, int[])}, {@link Game#startGame()} and
+ * {@link Game#endGame()}. The journal starts with the full position at the time it was attached, which includes the
+ * states of the generators that shuffle the decks, so a {@link GameReplayer} can repeat every action exactly. Every
+ * few turns, the full position is written again as a keyframe so that replays can start close to where they are
+ * needed.<br>
+ * The format is, with all numbers big-endian:
+ * <pre>
+ * int   magic ("T2RJ")
+ * short version
+ * UTF   the name of the map, or an empty string
+ * int   length, then the starting position encoded by {@link GameCodec}
+ * then records, each starting with a byte telling what it is:
+ *   PICK_CARD    byte index
+ *   PICK_RANDOM
+ *   DRAW_ROUTES
+ *   RETURN_ROUTE byte turn number of the player, short route id
+ *   CLAIM        short railway id, byte number of colors, then per color: byte ordinal, byte count
+ *   START_GAME
+ *   END_GAME
+ *   TURN         the previous action ended a turn
+ *   KEYFRAME     int turns so far, int actions so far, int length, the position encoded by {@link GameCodec}
+ * </pre>
+ * Moves made with {@link Game#makeMove(int)} cannot be undone while a journal is attached.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ * @see GameReplayer
+ */
+public final class GameJournal implements Flushable, Closeable {
+    /**
+     * The magic number at the start of every journal
+     */
+    static final int MAGIC = 0x5432524A;
+    /**
+     * The current version of the format
+     */
+    static final short VERSION = 1;
+
+    /**
+     * The record of {@link Game#pickCard(int)}
+     */
+    static final byte PICK_CARD = 1;
+    /**
+     * The record of {@link Game#pickRandom()}
+     */
+    static final byte PICK_RANDOM = 2;
+    /**
+     * The record of {@link Game#drawRoutes()}
+     */
+    static final byte DRAW_ROUTES = 3;
+    /**
+     * The record of {@link Game#returnRoute(Player, Route)}
+     */
+    static final byte RETURN_ROUTE = 4;
+    /**
+     * The record of {@link Game#claimRailway(Railway, int[])}
+     */
+    static final byte CLAIM = 5;
+    /**
+     * The record of {@link Game#startGame()}
+     */
+    static final byte START_GAME = 6;
+    /**
+     * The record of {@link Game#endGame()}
+     */
+    static final byte END_GAME = 7;
+    /**
+     * The record of the end of a turn
+     */
+    static final byte TURN = 8;
+    /**
+     * The record of a keyframe
+     */
+    static final byte KEYFRAME = 9;
+
+    /**
+     * The journaled {@link Game}
+     */
+    private final Game game;
+    /**
+     * The stream that records are written to
+     */
+    private final DataOutputStream out;
+    /**
+     * The number of turns between keyframes, or {@code 0} for none
+     */
+    private final int keyframeInterval;
+    /**
+     * Scratch space for keyframes
+     */
+    private final GameSnapshot snapshot;
+    /**
+     * Scratch space for encoding keyframes
+     */
+    private final BitWriter bits = new BitWriter(256);
+    /**
+     * The number of journaled actions
+     */
+    private int numActions;
+    /**
+     * The number of journaled turns
+     */
+    private int numTurns;
+    /**
+     * Whether the action being performed ended a turn
+     */
+    private boolean turnEnded;
+    /**
+     * Whether this journal was closed
+     */
+    private boolean closed;
+
+    /**
+     * Creates a new {@link GameJournal} and writes its header.
+     *
+     * @param game             the {@link Game} to journal
+     * @param out              the stream to write to
+     * @param keyframeInterval the number of turns between keyframes, or {@code 0} for none
+     * @throws IOException if writing fails
+     */
+    private GameJournal(Game game, OutputStream out, int keyframeInterval) throws IOException {
+        if (keyframeInterval < 0) {
+            throw new IllegalArgumentException("Invalid keyframe interval " + keyframeInterval);
+        }
+
+        this.game = game;
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.keyframeInterval = keyframeInterval;
+        snapshot = game.snapshot();
+
+        String mapName = game.getBoard().getMap().getName();
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+        this.out.writeUTF(mapName == null ? "" : mapName);
+        writePosition();
+    }
+
+    /**
+     * Starts journaling the given {@link Game}. The journal starts at its current position, so attaching before
+     * {@link Game#startGame()} records the whole game.
+     *
+     * @param game             the {@link Game} to journal
+     * @param out              the stream to write to; it is closed when the journal is closed
+     * @param keyframeInterval the number of turns between keyframes, or {@code 0} for none
+     * @return the new journal
+     * @throws IOException if writing the header fails
+     */
+    public static GameJournal attach(Game game, OutputStream out, int keyframeInterval) throws IOException {
+        GameJournal journal = new GameJournal(game, out, keyframeInterval);
+        game.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Returns the number of actions journaled so far.
+     *
+     * @return the number of actions
+     */
+    public int getNumActions() {
+        return numActions;
+    }
+
+    /**
+     * Returns the number of turns journaled so far.
+     *
+     * @return the number of turns
+     */
+    public int getNumTurns() {
+        return numTurns;
+    }
+
+    /**
+     * Writes everything journaled so far to the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Stops journaling and closes the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            game.setJournal(null);
+            out.close();
+        }
+    }
+
+    /**
+     * Journals {@link Game#pickCard(int)}.
+     *
+     * @param index the index of the picked card
+     */
+    void pickCard(int index) {
+        try {
+            out.writeByte(PICK_CARD);
+            out.writeByte(index);
+            endAction();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Journals {@link Game#pickRandom()}.
+     */
+    void pickRandom() {
+        simple(PICK_RANDOM);
+    }
+
+    /**
+     * Journals {@link Game#drawRoutes()}.
+     */
+    void drawRoutes() {
+        simple(DRAW_ROUTES);
+    }
+
+    /**
+     * Journals {@link Game#returnRoute(Player, Route)}.
+     *
+     * @param player the turn number of the {@link Player}
+     * @param route  the id of the {@link Route}
+     */
+    void returnRoute(int player, int route) {
+        try {
+            out.writeByte(RETURN_ROUTE);
+            out.writeByte(player);
+            out.writeShort(route);
+            endAction();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Journals {@link Game#claimRailway(Railway, int[])}.
+     *
+     * @param railway the id of the {@link Railway}
+     * @param toUse   the number of cards of every color that were used, indexed by {@link Color#ordinal()}
+     */
+    void claimRailway(int railway, int[] toUse) {
+        try {
+            out.writeByte(CLAIM);
+            out.writeShort(railway);
+
+            int colors = 0;
+            for (int count : toUse) {
+                if (count > 0) colors++;
+            }
+            out.writeByte(colors);
+            for (int i = 0; i < toUse.length; i++) {
+                if (toUse[i] > 0) {
+                    out.writeByte(i);
+                    out.writeByte(toUse[i]);
+                }
+            }
+            endAction();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Journals {@link Game#startGame()}.
+     */
+    void startGame() {
+        simple(START_GAME);
+    }
+
+    /**
+     * Journals {@link Game#endGame()}.
+     */
+    void endGame() {
+        simple(END_GAME);
+    }
+
+    /**
+     * Notes that the action being performed ended a turn.
+     */
+    void turnEnded() {
+        turnEnded = true;
+    }
+
+    /**
+     * Journals an action without arguments.
+     *
+     * @param record the record of the action
+     */
+    private void simple(byte record) {
+        try {
+            out.writeByte(record);
+            endAction();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Counts the action that was just journaled, and marks the end of the turn and writes a keyframe if needed.
+     *
+     * @throws IOException if writing fails
+     */
+    private void endAction() throws IOException {
+        numActions++;
+        if (turnEnded) {
+            turnEnded = false;
+            numTurns++;
+            out.writeByte(TURN);
+
+            if (keyframeInterval > 0 && numTurns % keyframeInterval == 0) {
+                out.writeByte(KEYFRAME);
+                out.writeInt(numTurns);
+                out.writeInt(numActions);
+                writePosition();
+            }
+        }
+    }
+
+    /**
+     * Writes the length and the encoded form of the current position of the {@link Game}.
+     *
+     * @throws IOException if writing fails
+     */
+    private void writePosition() throws IOException {
+        snapshot.capture(game);
+        bits.clear();
+        GameCodec.encode(snapshot, bits);
+        out.writeInt(bits.size());
+        out.write(bits.getBuffer(), 0, bits.size());
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A class that registers every city, {@link Railway} and {@link Route} of a map and gives each of them a stable,
+ * small integer id. The {@link Railway}s and {@link Route}s stored in here are interned copies of the ones that the
+ * map was created with; they carry their ids and compare by them.<br>
+ * A {@link GameMap} is immutable, so one instance is shared by every {@link Board} that plays on it.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class GameMap {
+    /**
+     * The name of this map
+     */
+    private final String name;
+    /**
+     * The graph of cities and the railways between them
+     */
+    private final CityGraph graph;
+    /**
+     * All registered {@link Railway}s, indexed by id
+     */
+    private final Railway[] railways;
+    /**
+     * All registered {@link Route}s, indexed by id
+     */
+    private final Route[] routes;
+
+    /**
+     * Creates a new, unnamed {@link GameMap} and registers the given {@link Railway}s and {@link Route}s in iteration
+     * order.
+     *
+     * @param railways the {@link Railway}s on this map
+     * @param routes   the {@link Route}s associated with this map
+     */
+    public GameMap(Collection<Railway> railways, Collection<Route> routes) {
+        this(null, railways, routes);
+    }
+
+    /**
+     * Creates a new {@link GameMap} and registers the given {@link Railway}s and {@link Route}s in iteration order.
+     *
+     * @param name     the name of this map
+     * @param railways the {@link Railway}s on this map
+     * @param routes   the {@link Route}s associated with this map
+     */
+    public GameMap(String name, Collection<Railway> railways, Collection<Route> routes) {
+        this.name = name;
+
+        Railway[] templates = railways.toArray(new Railway[0]);
+        String[] dest1 = new String[templates.length], dest2 = new String[templates.length];
+        for (int i = 0; i < templates.length; i++) {
+            dest1[i] = templates[i].getDest1();
+            dest2[i] = templates[i].getDest2();
+        }
+        graph = new CityGraph(dest1, dest2);
+
+        this.railways = new Railway[templates.length];
+        for (int i = 0; i < templates.length; i++) {
+            this.railways[i] = new Railway(templates[i], this, i,
+                    graph.getCityId(dest1[i]), graph.getCityId(dest2[i]));
+        }
+
+        this.routes = new Route[routes.size()];
+        int i = 0;
+        for (Route r : routes) {
+            int city1 = graph.getCityId(r.getDest1()), city2 = graph.getCityId(r.getDest2());
+            if (city1 == -1 || city2 == -1) {
+                throw new IllegalArgumentException("The route " + r.toMessageString() + " has an unknown city");
+            }
+            this.routes[i] = new Route(r, this, i, city1, city2);
+            i++;
+        }
+    }
+
+    /**
+     * Returns the name of this map, or {@code null} if it has none.
+     *
+     * @return the name of this map
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the graph of cities and the railways between them. Railway indices in the graph are {@link Railway}
+     * ids.
+     *
+     * @return the graph of this map
+     */
+    public CityGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of {@link Railway}s on this map.
+     *
+     * @return the number of {@link Railway}s on this map
+     */
+    public int getNumRailways() {
+        return railways.length;
+    }
+
+    /**
+     * Returns the {@link Railway} with the given id.
+     *
+     * @param id the id of the {@link Railway}
+     * @return the {@link Railway} with the given id
+     */
+    public Railway getRailway(int id) {
+        return railways[id];
+    }
+
+    /**
+     * Returns the number of {@link Route}s on this map.
+     *
+     * @return the number of {@link Route}s on this map
+     */
+    public int getNumRoutes() {
+        return routes.length;
+    }
+
+    /**
+     * Returns the {@link Route} with the given id.
+     *
+     * @param id the id of the {@link Route}
+     * @return the {@link Route} with the given id
+     */
+    public Route getRoute(int id) {
+        return routes[id];
+    }
+
+    /**
+     * Returns an immutable {@link List} of all registered {@link Route}s, in id order.
+     *
+     * @return all registered {@link Route}s
+     */
+    public List<Route> getRoutes() {
+        return List.of(routes);
+    }
+
+    /**
+     * Finds the id of a registered {@link Railway} with the same length, color and destinations as the given one.
+     * {@link Railway}s already registered with this map are resolved in constant time.
+     *
+     * @param railway the {@link Railway} to look for
+     * @return the id of a matching {@link Railway}, or {@code -1} if there is none
+     */
+    public int indexOf(Railway railway) {
+        if (railway.getMap() == this) {
+            return railway.getId();
+        }
+
+        int city1 = graph.getCityId(railway.getDest1()), city2 = graph.getCityId(railway.getDest2());
+        if (city1 == -1 || city2 == -1) return -1;
+
+        for (int slot = graph.firstSlot(city1), end = graph.endSlot(city1); slot < end; slot++) {
+            int id = graph.slotRailway(slot);
+            if (graph.slotCity(slot) == city2 && railways[id].matches(railway)) {
+                return id;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the id of a registered {@link Route} with the same destinations and value as the given one. {@link Route}s
+     * already registered with this map are resolved in constant time.
+     *
+     * @param route the {@link Route} to look for
+     * @return the id of a matching {@link Route}, or {@code -1} if there is none
+     */
+    public int indexOf(Route route) {
+        if (route.getMap() == this) {
+            return route.getId();
+        }
+
+        for (int i = 0; i < routes.length; i++) {
+            if (routes[i].matches(route)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
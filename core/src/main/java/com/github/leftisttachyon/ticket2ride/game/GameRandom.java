@@ -0,0 +1,107 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small, seedable pseudo-random number generator (SplitMix64). Unlike {@link java.util.Random}, its whole state is
+ * a single {@code long} that can be read and restored, so games using it can be reproduced exactly.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class GameRandom {
+    /**
+     * The increment of the generator
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    /**
+     * The source of seeds for unseeded generators
+     */
+    private static final AtomicLong SEEDS = new AtomicLong(System.nanoTime());
+
+    /**
+     * The state of this generator
+     */
+    private long state;
+
+    /**
+     * Creates a new {@link GameRandom} with the given seed.
+     *
+     * @param seed the seed to use
+     */
+    public GameRandom(long seed) {
+        state = seed;
+    }
+
+    /**
+     * Returns a new seed that is different from all seeds previously returned by this method.
+     *
+     * @return a new seed
+     */
+    public static long newSeed() {
+        return mix(SEEDS.addAndGet(GOLDEN_GAMMA));
+    }
+
+    /**
+     * Returns the next pseudo-random {@code long}.
+     *
+     * @return the next pseudo-random {@code long}
+     */
+    public long nextLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns a pseudo-random {@code int} between {@code 0} (inclusive) and {@code bound} (exclusive).
+     *
+     * @param bound the upper bound; must be positive
+     * @return a pseudo-random {@code int} in {@code [0, bound)}
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("The bound must be positive");
+        }
+
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Splits off a new generator whose sequence is independent of this one. Both generators stay deterministic: the
+     * same seed always splits into the same generators.
+     *
+     * @return a new generator
+     */
+    public GameRandom split() {
+        return new GameRandom(nextLong());
+    }
+
+    /**
+     * Returns the current state of this generator.
+     *
+     * @return the current state of this generator
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restores a state previously returned by {@link #getState()}.
+     *
+     * @param state the state to restore
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * The SplitMix64 output function.
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
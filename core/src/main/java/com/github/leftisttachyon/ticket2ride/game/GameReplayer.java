@@ -0,0 +1,350 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import com.github.leftisttachyon.ticket2ride.game.io.BitReader;
+import com.github.leftisttachyon.ticket2ride.game.io.GameCodec;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.github.leftisttachyon.ticket2ride.game.GameJournal.*;
+
+/**
+ * A class that reconstructs {@link Game}s from journals written by {@link GameJournal}. The journal is scanned once
+ * when it is loaded to find its keyframes; afterwards, any point of the game can be reconstructed by decoding the
+ * closest keyframe before it and repeating the actions after that. Reconstructed {@link Game}s have no listeners and
+ * no journal.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class GameReplayer {
+    /**
+     * All {@link Color}s, indexed by ordinal
+     */
+    private static final Color[] COLORS = Color.values();
+
+    /**
+     * The journal
+     */
+    private final byte[] data;
+    /**
+     * The map that the game is played on
+     */
+    @Getter
+    private final GameMap map;
+    /**
+     * The number of actions in the journal
+     */
+    @Getter
+    private int numActions;
+    /**
+     * The number of turns in the journal
+     */
+    @Getter
+    private int numTurns;
+    /**
+     * The number of keyframes, including the starting position
+     */
+    private int numKeyframes;
+    /**
+     * The offset in {@link #data} of the length of every keyframe
+     */
+    private int[] keyframeOffsets = new int[8];
+    /**
+     * The number of turns before every keyframe
+     */
+    private int[] keyframeTurns = new int[8];
+    /**
+     * The number of actions before every keyframe
+     */
+    private int[] keyframeActions = new int[8];
+    /**
+     * Scratch space for the cards used to claim {@link Railway}s
+     */
+    private final int[] payment = new int[COLORS.length];
+
+    /**
+     * Loads a journal of a game on a map that can be found by name with {@link MapCache}.
+     *
+     * @param data the journal
+     * @throws IOException if the data is not a valid journal
+     */
+    public GameReplayer(byte[] data) throws IOException {
+        this(data, null);
+    }
+
+    /**
+     * Loads a journal of a game on the given map.
+     *
+     * @param data the journal
+     * @param map  the map that the game is played on, or {@code null} to look it up by name with {@link MapCache}
+     * @throws IOException if the data is not a valid journal
+     */
+    public GameReplayer(byte[] data, GameMap map) throws IOException {
+        this.data = data;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a game journal");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal version " + version);
+            }
+
+            String mapName = readUTF(buffer);
+            if (map == null) {
+                if (mapName.isEmpty()) {
+                    throw new IOException("The journal does not name its map");
+                }
+                map = MapCache.get(mapName);
+            }
+            this.map = map;
+
+            addKeyframe(buffer.position(), 0, 0);
+            skipPosition(buffer);
+            scan(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt game journal", e);
+        }
+    }
+
+    /**
+     * Loads the journal in the given file.
+     *
+     * @param file the file to read
+     * @return the loaded journal
+     * @throws IOException if the file cannot be read or is not a valid journal
+     */
+    public static GameReplayer read(Path file) throws IOException {
+        return new GameReplayer(Files.readAllBytes(file));
+    }
+
+    /**
+     * Reconstructs the whole game.
+     *
+     * @return the {@link Game} after every journaled action
+     * @throws IOException if the journal cannot be replayed
+     */
+    public Game replay() throws IOException {
+        return seekAction(numActions);
+    }
+
+    /**
+     * Reconstructs the game after the given number of actions.
+     *
+     * @param action the number of actions to perform
+     * @return the {@link Game} after that many actions
+     * @throws IOException if the journal cannot be replayed
+     */
+    public Game seekAction(int action) throws IOException {
+        if (action < 0 || action > numActions) {
+            throw new IllegalArgumentException("Action " + action + " is not between 0 and " + numActions);
+        }
+
+        int k = numKeyframes - 1;
+        while (keyframeActions[k] > action) k--;
+        return replay(k, Integer.MAX_VALUE, action);
+    }
+
+    /**
+     * Reconstructs the game at the start of the given turn.
+     *
+     * @param turn the number of turns to play
+     * @return the {@link Game} after that many turns
+     * @throws IOException if the journal cannot be replayed
+     */
+    public Game seekTurn(int turn) throws IOException {
+        if (turn < 0 || turn > numTurns) {
+            throw new IllegalArgumentException("Turn " + turn + " is not between 0 and " + numTurns);
+        }
+
+        int k = numKeyframes - 1;
+        while (keyframeTurns[k] > turn) k--;
+        return replay(k, turn, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decodes a keyframe and repeats the actions after it until either target is reached.
+     *
+     * @param keyframe    the index of the keyframe to start at
+     * @param turnLimit   the number of turns to stop at
+     * @param actionLimit the number of actions to stop at
+     * @return the reconstructed {@link Game}
+     * @throws IOException if the journal cannot be replayed
+     */
+    private Game replay(int keyframe, int turnLimit, int actionLimit) throws IOException {
+        try {
+            return replayUnchecked(keyframe, turnLimit, actionLimit);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt game journal", e);
+        }
+    }
+
+    /**
+     * Does the work of {@link #replay(int, int, int)}, letting problems with the data surface as runtime exceptions.
+     *
+     * @param keyframe    the index of the keyframe to start at
+     * @param turnLimit   the number of turns to stop at
+     * @param actionLimit the number of actions to stop at
+     * @return the reconstructed {@link Game}
+     * @throws IOException if the journal cannot be replayed
+     */
+    private Game replayUnchecked(int keyframe, int turnLimit, int actionLimit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.position(keyframeOffsets[keyframe]);
+        int length = buffer.getInt();
+        Game game = GameCodec.decode(map, new BitReader(data, buffer.position(), length)).fork();
+        buffer.position(buffer.position() + length);
+
+        int turns = keyframeTurns[keyframe], actions = keyframeActions[keyframe];
+        while (turns < turnLimit && actions < actionLimit) {
+            byte record = buffer.get();
+            boolean ok;
+            switch (record) {
+                case PICK_CARD:
+                    ok = game.pickCard(buffer.get());
+                    break;
+                case PICK_RANDOM:
+                    ok = game.pickRandom();
+                    break;
+                case DRAW_ROUTES:
+                    ok = game.drawRoutes();
+                    break;
+                case RETURN_ROUTE:
+                    Player p = game.getPlayer(buffer.get());
+                    ok = game.returnRoute(p, map.getRoute(buffer.getShort() & 0xFFFF));
+                    break;
+                case CLAIM:
+                    Railway railway = map.getRailway(buffer.getShort() & 0xFFFF);
+                    Arrays.fill(payment, 0);
+                    for (int i = buffer.get(); i > 0; i--) {
+                        int color = buffer.get();
+                        payment[color] = buffer.get();
+                    }
+                    ok = game.claimRailway(railway, payment);
+                    break;
+                case START_GAME:
+                    game.startGame();
+                    ok = true;
+                    break;
+                case END_GAME:
+                    game.endGame();
+                    ok = true;
+                    break;
+                case TURN:
+                    turns++;
+                    continue;
+                case KEYFRAME:
+                    buffer.position(buffer.position() + 8);
+                    skipPosition(buffer);
+                    continue;
+                default:
+                    throw new IOException("Corrupt game journal");
+            }
+
+            if (!ok) {
+                throw new IOException("Action " + actions + " could not be replayed");
+            }
+            actions++;
+        }
+
+        return game;
+    }
+
+    /**
+     * Finds the keyframes and counts the actions and turns.
+     *
+     * @param buffer the journal, positioned after the starting position
+     * @throws IOException if the journal is corrupt
+     */
+    private void scan(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            byte record = buffer.get();
+            switch (record) {
+                case PICK_CARD:
+                    buffer.get();
+                    break;
+                case PICK_RANDOM:
+                case DRAW_ROUTES:
+                case START_GAME:
+                case END_GAME:
+                    break;
+                case RETURN_ROUTE:
+                    buffer.position(buffer.position() + 3);
+                    break;
+                case CLAIM:
+                    buffer.getShort();
+                    int colors = buffer.get();
+                    buffer.position(buffer.position() + 2 * colors);
+                    break;
+                case TURN:
+                    numTurns++;
+                    continue;
+                case KEYFRAME:
+                    int turns = buffer.getInt(), actions = buffer.getInt();
+                    if (turns != numTurns || actions != numActions) {
+                        throw new IOException("Misplaced keyframe");
+                    }
+                    addKeyframe(buffer.position(), turns, actions);
+                    skipPosition(buffer);
+                    continue;
+                default:
+                    throw new IOException("Corrupt game journal");
+            }
+            numActions++;
+        }
+    }
+
+    /**
+     * Remembers a keyframe.
+     *
+     * @param offset  the offset of its length
+     * @param turns   the number of turns before it
+     * @param actions the number of actions before it
+     */
+    private void addKeyframe(int offset, int turns, int actions) {
+        if (numKeyframes == keyframeOffsets.length) {
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, numKeyframes * 2);
+            keyframeTurns = Arrays.copyOf(keyframeTurns, numKeyframes * 2);
+            keyframeActions = Arrays.copyOf(keyframeActions, numKeyframes * 2);
+        }
+        keyframeOffsets[numKeyframes] = offset;
+        keyframeTurns[numKeyframes] = turns;
+        keyframeActions[numKeyframes] = actions;
+        numKeyframes++;
+    }
+
+    /**
+     * Skips over an encoded position.
+     *
+     * @param buffer the journal, positioned at the length of the position
+     */
+    private static void skipPosition(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Reads a string written by {@link java.io.DataOutputStream#writeUTF(String)}.
+     *
+     * @param buffer the buffer to read from
+     * @return the string that was read
+     * @throws IOException if the string is malformed
+     */
+    private static String readUTF(ByteBuffer buffer) throws IOException {
+        int length = buffer.getShort() & 0xFFFF;
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(buffer.array(), buffer.position() - 2, length + 2));
+        buffer.position(buffer.position() + length);
+        return in.readUTF();
+    }
+}
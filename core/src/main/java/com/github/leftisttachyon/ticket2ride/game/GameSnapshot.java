@@ -0,0 +1,573 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import com.github.leftisttachyon.ticket2ride.game.io.BitReader;
+import com.github.leftisttachyon.ticket2ride.game.io.BitWriter;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.leftisttachyon.ticket2ride.game.io.BitWriter.bitsFor;
+
+/**
+ * A flat copy of the full state of a {@link Game}: the claims on the board, both decks, the side cards and the hand,
+ * {@link Route}s and counters of every {@link Player}. Everything is stored in primitive arrays that are reused by
+ * later calls to {@link #capture(Game)}, and {@link Railway}s and {@link Route}s are stored by id, so capturing,
+ * restoring and forking take a few microseconds. Capturing and restoring write into arrays that the snapshot and the
+ * {@link Game} already have, so once they have grown to fit, neither allocates; a search that needs many copies
+ * should keep one {@link Game} per copy and restore into it rather than fork.<br>
+ * Which {@link Railway}s a {@link Player} owns is not stored separately, as it follows from the claims on the board.
+ * Listeners are never captured, and restoring does not notify them.<br>
+ * A snapshot can also be written bit by bit with {@link #write(BitWriter)}: every owner takes just enough bits for
+ * the number of {@link Player}s, hands are counts per {@link Color}, {@link Route}s are id lists and both decks are
+ * written as permutations, where every card only takes enough bits to pick among what is left.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class GameSnapshot {
+    /**
+     * The number of {@link Color}s
+     */
+    private static final int NUM_COLORS = Color.values().length;
+    /**
+     * The number of ints stored in {@link #playerData} for every {@link Player}
+     */
+    private static final int PLAYER_STRIDE = 4 + NUM_COLORS;
+    /**
+     * All {@link Color}s, indexed by ordinal
+     */
+    private static final Color[] COLORS = Color.values();
+    /**
+     * The owner that {@link Board} uses for {@link Railway}s claimed by the game
+     */
+    private static final byte BLOCKED = (byte) 0xFF;
+    /**
+     * The number of bits used to write the number of cards of one {@link Color} in a pile
+     */
+    private static final int PILE_COUNT_BITS = bitsFor(Math.max(CardDeck.CARDS_PER_COLOR, CardDeck.RAINBOW_CARDS));
+
+    /**
+     * The map that the ids in this snapshot refer to
+     */
+    @Getter
+    private final GameMap map;
+    /**
+     * The number of {@link Player}s
+     */
+    @Getter
+    private final int numPlayers;
+    /**
+     * The names of the {@link Player}s
+     */
+    private final String[] names;
+    /**
+     * The owner of every {@link Railway}, in the format used by {@link Board}
+     */
+    private final byte[] owners;
+    /**
+     * The ordinal of every side card, or {@code -1} for none
+     */
+    private final byte[] sideCards = new byte[5];
+    /**
+     * The draw pile of the train card deck
+     */
+    private final byte[] drawPile = new byte[CardDeck.TOTAL_CARDS];
+    /**
+     * The discard pile of the train card deck
+     */
+    private final byte[] discardPile = new byte[CardDeck.TOTAL_CARDS];
+    /**
+     * The ids of the {@link Route}s in the ticket deck, top card first
+     */
+    private final int[] tickets;
+    /**
+     * The counters of every {@link Player}: points, trains, return allowance and whether the {@link Route}s were
+     * scored, followed by the number of cards of every {@link Color}
+     */
+    private final int[] playerData;
+    /**
+     * The ids of the {@link Route}s of every {@link Player}, one after the other
+     */
+    private int[] routes = new int[32];
+    /**
+     * The index in {@link #routes} where the {@link Route}s of every {@link Player} start, plus the end
+     */
+    private final int[] routeStarts;
+
+    /**
+     * Scratch space for writing and reading piles: the number of cards of every {@link Color} left
+     */
+    private final int[] pileCounts = new int[NUM_COLORS];
+    /**
+     * Scratch space for writing and reading the ticket deck: the ids that were already written, as a bitmask
+     */
+    private final long[] usedTickets;
+    /**
+     * Scratch space for reading names
+     */
+    private byte[] nameBytes = new byte[32];
+
+    /**
+     * The number of cards in {@link #drawPile}
+     */
+    private int drawSize;
+    /**
+     * The number of cards in {@link #discardPile}
+     */
+    private int discardSize;
+    /**
+     * The state of the generator of the train card deck
+     */
+    private long randomState;
+    /**
+     * The number of {@link Route}s in the ticket deck
+     */
+    private int ticketSize;
+    /**
+     * Whose turn it is
+     */
+    private int turn;
+    /**
+     * How many more cards the current {@link Player} can draw
+     */
+    private int drawPower;
+    /**
+     * The number of turns left, or {@code -1} if the last round has not started
+     */
+    private int turnsLeft;
+    /**
+     * Whether the game has been scored
+     */
+    private boolean finished;
+
+    /**
+     * Creates a new {@link GameSnapshot} that holds the current state of the given {@link Game}.
+     *
+     * @param game the {@link Game} to capture
+     */
+    public GameSnapshot(Game game) {
+        this(game.getBoard().getMap(), game.getPlayers().length);
+        capture(game);
+    }
+
+    /**
+     * Creates a new, empty {@link GameSnapshot} to be filled by {@link #read(BitReader)}.
+     *
+     * @param map        the map that the ids refer to
+     * @param numPlayers the number of {@link Player}s
+     */
+    private GameSnapshot(GameMap map, int numPlayers) {
+        this.map = map;
+        this.numPlayers = numPlayers;
+        names = new String[numPlayers];
+        owners = new byte[map.getNumRailways()];
+        tickets = new int[map.getNumRoutes()];
+        usedTickets = new long[(map.getNumRoutes() + 63) >>> 6];
+        playerData = new int[numPlayers * PLAYER_STRIDE];
+        routeStarts = new int[numPlayers + 1];
+    }
+
+    /**
+     * Overwrites this snapshot with the current state of the given {@link Game}, reusing its arrays.
+     *
+     * @param game the {@link Game} to capture; it must be played on the same map with the same number of
+     *             {@link Player}s
+     */
+    public void capture(Game game) {
+        requireCompatible(game);
+
+        Board board = game.getBoard();
+        board.copyOwners(owners);
+        Color[] sides = board.getSideCards();
+        for (int i = 0; i < sideCards.length; i++) {
+            sideCards[i] = (byte) (sides[i] == null ? -1 : sides[i].ordinal());
+        }
+
+        CardDeck deck = board.getDeck();
+        drawSize = deck.size();
+        discardSize = deck.getDiscardSize();
+        deck.copyDrawPile(drawPile);
+        deck.copyDiscardPile(discardPile);
+        randomState = deck.getRandomState();
+
+        TicketDeck ticketDeck = board.getTickets();
+        ticketSize = ticketDeck.size();
+        ticketDeck.copyTo(tickets);
+
+        turn = game.getTurn();
+        drawPower = game.getDrawPower();
+        turnsLeft = game.getTurnsLeft();
+        finished = game.isFinished();
+
+        int numRoutes = 0;
+        for (int i = 0; i < numPlayers; i++) {
+            Player p = game.getPlayer(i);
+            names[i] = p.getName();
+
+            int base = i * PLAYER_STRIDE;
+            playerData[base] = p.getPoints();
+            playerData[base + 1] = p.getTrains();
+            playerData[base + 2] = p.getReturnAllowance();
+            playerData[base + 3] = p.isRoutesScored() ? 1 : 0;
+            p.copyCards(playerData, base + 4);
+
+            List<Route> held = p.getRoutes();
+            if (numRoutes + held.size() > routes.length) {
+                routes = Arrays.copyOf(routes, Math.max(routes.length * 2, numRoutes + held.size()));
+            }
+            routeStarts[i] = numRoutes;
+            for (Route r : held) {
+                routes[numRoutes++] = r.getId();
+            }
+        }
+        routeStarts[numPlayers] = numRoutes;
+    }
+
+    /**
+     * Puts the given {@link Game} back into the captured state. Nobody is notified, and moves made with
+     * {@link Game#makeMove(int)} can no longer be undone. Every {@link Player} is refilled in place from the ids of
+     * the {@link Railway}s and {@link Route}s, so nothing is allocated once the {@link Game} has held as much before.
+     *
+     * @param game the {@link Game} to restore; it must be played on the same map with the same number of
+     *             {@link Player}s
+     */
+    public void restore(Game game) {
+        requireCompatible(game);
+
+        Board board = game.getBoard();
+        board.restore(owners, sideCards);
+        board.getDeck().restore(drawPile, drawSize, discardPile, discardSize, randomState);
+        board.getTickets().restore(tickets, ticketSize);
+        game.restoreState(turn, drawPower, turnsLeft, finished);
+
+        for (int i = 0; i < numPlayers; i++) {
+            Player p = game.getPlayer(i);
+            p.setName(names[i]);
+
+            int base = i * PLAYER_STRIDE;
+            p.restoreCounters(playerData[base], playerData[base + 1], playerData[base + 2], playerData[base + 3] != 0);
+            p.restoreCards(playerData, base + 4);
+            p.restoreHoldings(map, routes, routeStarts[i], routeStarts[i + 1], owners);
+        }
+    }
+
+    /**
+     * Creates a new {@link Game} in the captured state. It shares the {@link GameMap} of the captured {@link Game},
+     * but nothing else, and has no listeners. Since the copy has to be independent, its board, decks and
+     * {@link Player}s are always new objects; use {@link #restore(Game)} to reuse a {@link Game} instead.
+     *
+     * @return a new {@link Game} in the captured state
+     */
+    public Game fork() {
+        // nothing is shuffled or dealt, since restoring overwrites all of it
+        Game game = new Game(new Board(map, new CardDeck(), new TicketDeck(map.getNumRoutes())), numPlayers);
+        restore(game);
+        return game;
+    }
+
+    /**
+     * Writes this snapshot bit by bit. The {@link GameMap} is not written; it has to be known when reading.
+     *
+     * @param out the {@link BitWriter} to write to
+     */
+    public void write(BitWriter out) {
+        out.writeVarInt(numPlayers - 1, 2);
+
+        int ownerBits = bitsFor(numPlayers + 1);
+        for (byte owner : owners) {
+            out.write(owner == BLOCKED ? numPlayers + 1 : owner, ownerBits);
+        }
+        for (byte side : sideCards) {
+            out.write(side + 1, bitsFor(NUM_COLORS));
+        }
+        out.write(turn, bitsFor(numPlayers - 1));
+        out.write(drawPower, 2);
+        out.writeVarInt(turnsLeft + 1, 2);
+        out.write(finished ? 1 : 0, 1);
+
+        writePile(out, drawPile, drawSize);
+        writePile(out, discardPile, discardSize);
+        out.write(randomState, Long.SIZE);
+        writeTickets(out);
+
+        int routeBits = bitsFor(map.getNumRoutes() - 1);
+        for (int i = 0; i < numPlayers; i++) {
+            out.writeBoolean(names[i] != null);
+            if (names[i] != null) {
+                byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+                out.writeVarInt(name.length, 5);
+                out.writeBytes(name);
+            }
+
+            int base = i * PLAYER_STRIDE;
+            out.writeSignedVarInt(playerData[base], 4);
+            out.writeVarInt(playerData[base + 1], 4);
+            out.writeVarInt(playerData[base + 2], 2);
+            out.writeBoolean(playerData[base + 3] != 0);
+            for (int c = 1; c < NUM_COLORS; c++) {
+                out.writeVarInt(playerData[base + 4 + c], 2);
+            }
+
+            out.writeVarInt(routeStarts[i + 1] - routeStarts[i], 3);
+            for (int r = routeStarts[i]; r < routeStarts[i + 1]; r++) {
+                out.write(routes[r], routeBits);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(BitWriter)}.
+     *
+     * @param map the map that the snapshot was taken on
+     * @param in  the {@link BitReader} to read from
+     * @return the snapshot that was read
+     * @throws IllegalArgumentException if the bits do not hold a valid snapshot for the given map
+     * @throws java.nio.BufferUnderflowException if the bits end too early
+     */
+    public static GameSnapshot read(GameMap map, BitReader in) {
+        int numPlayers = (int) in.readVarInt(2) + 1;
+        if (numPlayers > 0xFE) {
+            throw new IllegalArgumentException("Too many players: " + numPlayers);
+        }
+
+        GameSnapshot snapshot = new GameSnapshot(map, numPlayers);
+        snapshot.readBody(in);
+        return snapshot;
+    }
+
+    /**
+     * Overwrites this snapshot with one written by {@link #write(BitWriter)}, reusing its arrays.
+     *
+     * @param in the {@link BitReader} to read from
+     * @throws IllegalArgumentException if the bits do not hold a valid snapshot for the map and number of
+     *                                  {@link Player}s of this one
+     * @throws java.nio.BufferUnderflowException if the bits end too early
+     */
+    public void read(BitReader in) {
+        int n = (int) in.readVarInt(2) + 1;
+        if (n != numPlayers) {
+            throw new IllegalArgumentException("Expected " + numPlayers + " players, but found " + n);
+        }
+        readBody(in);
+    }
+
+    /**
+     * Reads everything that {@link #write(BitWriter)} writes after the number of {@link Player}s.
+     *
+     * @param in the {@link BitReader} to read from
+     */
+    private void readBody(BitReader in) {
+        int ownerBits = bitsFor(numPlayers + 1);
+        for (int i = 0; i < owners.length; i++) {
+            int owner = in.readInt(ownerBits);
+            if (owner > numPlayers + 1) {
+                throw new IllegalArgumentException("Invalid owner " + owner);
+            }
+            owners[i] = owner == numPlayers + 1 ? BLOCKED : (byte) owner;
+        }
+        for (int i = 0; i < sideCards.length; i++) {
+            int side = in.readInt(bitsFor(NUM_COLORS)) - 1;
+            if (side >= NUM_COLORS || side == Color.NONE.ordinal()) {
+                throw new IllegalArgumentException("Invalid side card " + side);
+            }
+            sideCards[i] = (byte) side;
+        }
+        turn = in.readInt(bitsFor(numPlayers - 1));
+        drawPower = in.readInt(2);
+        turnsLeft = (int) in.readVarInt(2) - 1;
+        finished = in.readInt(1) != 0;
+        if (turn >= numPlayers || drawPower > 2 || turnsLeft > numPlayers) {
+            throw new IllegalArgumentException("Invalid turn counters");
+        }
+
+        drawSize = readPile(in, drawPile);
+        discardSize = readPile(in, discardPile);
+        if (drawSize + discardSize > CardDeck.TOTAL_CARDS) {
+            throw new IllegalArgumentException("Too many train cards");
+        }
+        randomState = in.read(Long.SIZE);
+        readTickets(in);
+
+        int numRoutes = 0, routeBits = bitsFor(map.getNumRoutes() - 1);
+        for (int i = 0; i < numPlayers; i++) {
+            if (in.readBoolean()) {
+                int length = (int) in.readVarInt(5);
+                if (length > in.remaining() / 8) {
+                    throw new IllegalArgumentException("Invalid name length " + length);
+                }
+                if (length > nameBytes.length) {
+                    nameBytes = new byte[Math.max(length, nameBytes.length * 2)];
+                }
+                in.readBytes(nameBytes, 0, length);
+                names[i] = new String(nameBytes, 0, length, StandardCharsets.UTF_8);
+            } else {
+                names[i] = null;
+            }
+
+            int base = i * PLAYER_STRIDE;
+            playerData[base] = (int) in.readSignedVarInt(4);
+            playerData[base + 1] = (int) in.readVarInt(4);
+            playerData[base + 2] = (int) in.readVarInt(2);
+            playerData[base + 3] = in.readBoolean() ? 1 : 0;
+            playerData[base + 4] = 0;
+            for (int c = 1; c < NUM_COLORS; c++) {
+                playerData[base + 4 + c] = (int) in.readVarInt(2);
+            }
+
+            int held = (int) in.readVarInt(3);
+            if (held > in.remaining()) {
+                throw new IllegalArgumentException("Invalid number of routes " + held);
+            }
+            if (numRoutes + held > routes.length) {
+                routes = Arrays.copyOf(routes, Math.max(routes.length * 2, numRoutes + held));
+            }
+            routeStarts[i] = numRoutes;
+            for (int r = 0; r < held; r++) {
+                int id = in.readInt(routeBits);
+                if (id >= map.getNumRoutes()) {
+                    throw new IllegalArgumentException("Invalid route id " + id);
+                }
+                routes[numRoutes++] = id;
+            }
+        }
+        routeStarts[numPlayers] = numRoutes;
+    }
+
+    /**
+     * Writes a pile of train cards: the number of cards of every {@link Color}, then every card as its index among
+     * the {@link Color}s that are left.
+     *
+     * @param out  the {@link BitWriter} to write to
+     * @param pile the pile, as {@link Color} ordinals
+     * @param size the number of cards in the pile
+     */
+    private void writePile(BitWriter out, byte[] pile, int size) {
+        Arrays.fill(pileCounts, 0);
+        for (int i = 0; i < size; i++) {
+            pileCounts[pile[i]]++;
+        }
+        for (int c = 1; c < NUM_COLORS; c++) {
+            out.write(pileCounts[c], PILE_COUNT_BITS);
+        }
+
+        for (int i = 0; i < size; i++) {
+            int live = 0, index = 0;
+            for (int c = 1; c < NUM_COLORS; c++) {
+                if (pileCounts[c] > 0) {
+                    if (c < pile[i]) index++;
+                    live++;
+                }
+            }
+            out.write(index, bitsFor(live - 1));
+            pileCounts[pile[i]]--;
+        }
+    }
+
+    /**
+     * Reads a pile of train cards written by {@link #writePile(BitWriter, byte[], int)}.
+     *
+     * @param in   the {@link BitReader} to read from
+     * @param pile the array to read the pile into
+     * @return the number of cards in the pile
+     */
+    private int readPile(BitReader in, byte[] pile) {
+        int size = 0;
+        for (int c = 1; c < NUM_COLORS; c++) {
+            pileCounts[c] = in.readInt(PILE_COUNT_BITS);
+            size += pileCounts[c];
+        }
+        if (size > pile.length) {
+            throw new IllegalArgumentException("Too many train cards: " + size);
+        }
+
+        for (int i = 0; i < size; i++) {
+            int live = 0;
+            for (int c = 1; c < NUM_COLORS; c++) {
+                if (pileCounts[c] > 0) live++;
+            }
+            int index = in.readInt(bitsFor(live - 1));
+            if (index >= live) {
+                throw new IllegalArgumentException("Invalid train card " + index);
+            }
+
+            int c = 1;
+            while (pileCounts[c] == 0 || index > 0) {
+                if (pileCounts[c] > 0) index--;
+                c++;
+            }
+            pile[i] = (byte) c;
+            pileCounts[c]--;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the ticket deck: its size, then every id as its index among the ids that were not written yet.
+     *
+     * @param out the {@link BitWriter} to write to
+     */
+    private void writeTickets(BitWriter out) {
+        int numRoutes = map.getNumRoutes();
+        out.write(ticketSize, bitsFor(numRoutes));
+
+        Arrays.fill(usedTickets, 0);
+        for (int i = 0; i < ticketSize; i++) {
+            int id = tickets[i], rank = id;
+            for (int w = 0; w < (id >>> 6); w++) {
+                rank -= Long.bitCount(usedTickets[w]);
+            }
+            rank -= Long.bitCount(usedTickets[id >>> 6] & ((1L << id) - 1));
+
+            out.write(rank, bitsFor(numRoutes - i - 1));
+            usedTickets[id >>> 6] |= 1L << id;
+        }
+    }
+
+    /**
+     * Reads the ticket deck written by {@link #writeTickets(BitWriter)}.
+     *
+     * @param in the {@link BitReader} to read from
+     */
+    private void readTickets(BitReader in) {
+        int numRoutes = map.getNumRoutes();
+        ticketSize = in.readInt(bitsFor(numRoutes));
+        if (ticketSize > numRoutes) {
+            throw new IllegalArgumentException("Too many tickets: " + ticketSize);
+        }
+
+        Arrays.fill(usedTickets, 0);
+        for (int i = 0; i < ticketSize; i++) {
+            int rank = in.readInt(bitsFor(numRoutes - i - 1));
+            if (rank >= numRoutes - i) {
+                throw new IllegalArgumentException("Invalid ticket " + rank);
+            }
+
+            // find the unused id with the given rank
+            int w = 0;
+            for (int free; rank >= (free = Long.bitCount(~usedTickets[w])); w++) {
+                rank -= free;
+            }
+            long unused = ~usedTickets[w];
+            for (; rank > 0; rank--) {
+                unused &= unused - 1;
+            }
+            int id = w << 6 | Long.numberOfTrailingZeros(unused);
+
+            tickets[i] = id;
+            usedTickets[w] |= 1L << id;
+        }
+    }
+
+    /**
+     * Makes sure that the given {@link Game} matches the shape of this snapshot.
+     *
+     * @param game the {@link Game} to check
+     */
+    private void requireCompatible(Game game) {
+        if (game.getBoard().getMap() != map || game.getPlayers().length != numPlayers) {
+            throw new IllegalArgumentException("The game does not match this snapshot");
+        }
+    }
+}
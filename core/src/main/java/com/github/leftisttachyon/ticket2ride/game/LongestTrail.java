@@ -0,0 +1,497 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+import java.util.Arrays;
+
+/**
+ * A class that finds the longest continuous path (trail) through a set of {@link Railway}s: a walk that may visit a
+ * city more than once but never uses the same railway twice.<br>
+ * Railways are numbered in the order they are added and sets of railways are stored as bitmasks of {@code long}
+ * words: a single word for up to 64 railways, with more words added whenever the number of railways outgrows them.
+ * Every connected component caches its longest trail; adding a railway only invalidates the component it lands in,
+ * and components that cannot beat the current best are never searched. The last railway can be removed again in
+ * constant time, which undoes the merge it caused.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class LongestTrail {
+    /**
+     * The number of {@code long} words in every bitmask
+     */
+    private int words = 1;
+    /**
+     * The number of railways that the bitmasks can currently hold
+     */
+    private int capacity = Long.SIZE;
+
+    /**
+     * The local vertex ids of the endpoints of every railway
+     */
+    private int[] ends1 = new int[capacity], ends2 = new int[capacity];
+    /**
+     * The length of every railway
+     */
+    private int[] lengths = new int[capacity];
+    /**
+     * The railways touching every local vertex, as bitmasks of {@link #words} words each
+     */
+    private long[] incident = new long[8];
+    /**
+     * The local vertex id of every city id, or {@code -1} if the city has not been seen
+     */
+    private int[] localIds = new int[0];
+    /**
+     * The city id of every local vertex
+     */
+    private int[] vertexCities = new int[8];
+    /**
+     * The railways in every component, as bitmasks of {@link #words} words each
+     */
+    private long[] components = new long[capacity];
+    /**
+     * The total length of every component
+     */
+    private int[] totals = new int[capacity];
+    /**
+     * The longest trail in every component, or a lower bound of it if the component is dirty
+     */
+    private int[] bests = new int[capacity];
+    /**
+     * Whether the longest trail of every component needs to be recomputed
+     */
+    private boolean[] dirty = new boolean[capacity];
+    /**
+     * The railways of the components merged by every railway, stacked in the order that they were merged, as
+     * bitmasks of {@link #words} words each
+     */
+    private long[] mergedComponents = new long[capacity];
+    /**
+     * The total lengths of the stacked components
+     */
+    private int[] mergedTotals = new int[capacity];
+    /**
+     * The longest trails of the stacked components
+     */
+    private int[] mergedBests = new int[capacity];
+    /**
+     * Whether the longest trail of every stacked component needed to be recomputed
+     */
+    private boolean[] mergedDirty = new boolean[capacity];
+    /**
+     * The number of components merged by every railway
+     */
+    private int[] numMerged = new int[capacity];
+    /**
+     * The number of local vertices before every railway was added
+     */
+    private int[] verticesBefore = new int[capacity];
+    /**
+     * The railways used by the walk that is being searched, as a bitmask
+     */
+    private long[] used = new long[1];
+    /**
+     * The memoized states of the search: the used railways, as bitmasks of {@link #words} words each
+     */
+    private long[] memoUsed = new long[256];
+    /**
+     * The memoized states of the search: the current vertex plus one, or {@code 0} for an empty entry
+     */
+    private int[] memoVertex = new int[256];
+    /**
+     * The memoized states of the search: the longest extension from that state
+     */
+    private int[] memoValue = new int[256];
+
+    /**
+     * The number of railways
+     */
+    private int numRailways;
+    /**
+     * The number of local vertices
+     */
+    private int numVertices;
+    /**
+     * The number of components
+     */
+    private int numComponents;
+    /**
+     * The number of memoized states
+     */
+    private int memoSize;
+    /**
+     * The number of stacked merged components
+     */
+    private int mergedTop;
+
+    /**
+     * Adds a railway.
+     *
+     * @param city1  the city id of one endpoint
+     * @param city2  the city id of the other endpoint
+     * @param length the length of the railway
+     */
+    public void add(int city1, int city2, int length) {
+        if (numRailways == capacity) {
+            grow();
+        }
+
+        int e = numRailways++;
+        int word = e >>> 6;
+        long bit = 1L << e;
+        verticesBefore[e] = numVertices;
+        int v1 = localId(city1), v2 = localId(city2);
+        ends1[e] = v1;
+        ends2[e] = v2;
+        lengths[e] = length;
+
+        // merge the components touching either endpoint into one new component, remembering them for removeLast
+        int total = length, best = length;
+        int merged = 0;
+        for (int c = numComponents - 1; c >= 0; c--) {
+            if (touches(c, v1, v2)) {
+                total += totals[c];
+                best = Math.max(best, bests[c]);
+
+                System.arraycopy(components, c * words, mergedComponents, mergedTop * words, words);
+                mergedTotals[mergedTop] = totals[c];
+                mergedBests[mergedTop] = bests[c];
+                mergedDirty[mergedTop] = dirty[c];
+                mergedTop++;
+                merged++;
+
+                removeComponent(c);
+            }
+        }
+        numMerged[e] = merged;
+
+        incident[v1 * words + word] |= bit;
+        incident[v2 * words + word] |= bit;
+
+        // the merged components are the top of the stack
+        int c = numComponents++;
+        Arrays.fill(components, c * words, c * words + words, 0L);
+        components[c * words + word] = bit;
+        for (int m = mergedTop - merged; m < mergedTop; m++) {
+            for (int i = 0; i < words; i++) {
+                components[c * words + i] |= mergedComponents[m * words + i];
+            }
+        }
+        totals[c] = total;
+        bests[c] = best;
+        dirty[c] = true;
+    }
+
+    /**
+     * Removes the railway that was added last. The components it merged are restored together with their cached
+     * longest trails.
+     */
+    public void removeLast() {
+        if (numRailways == 0) {
+            throw new IllegalStateException("There are no railways");
+        }
+
+        int e = --numRailways;
+        int word = e >>> 6;
+        long bit = 1L << e;
+        incident[ends1[e] * words + word] &= ~bit;
+        incident[ends2[e] * words + word] &= ~bit;
+
+        // the component containing the railway was created by it and nothing has been merged into it since
+        for (int c = numComponents - 1; c >= 0; c--) {
+            if ((components[c * words + word] & bit) != 0) {
+                removeComponent(c);
+                break;
+            }
+        }
+        for (int i = 0; i < numMerged[e]; i++) {
+            mergedTop--;
+            System.arraycopy(mergedComponents, mergedTop * words, components, numComponents * words, words);
+            totals[numComponents] = mergedTotals[mergedTop];
+            bests[numComponents] = mergedBests[mergedTop];
+            dirty[numComponents] = mergedDirty[mergedTop];
+            numComponents++;
+        }
+
+        while (numVertices > verticesBefore[e]) {
+            localIds[vertexCities[--numVertices]] = -1;
+        }
+    }
+
+    /**
+     * Removes all railways.
+     */
+    public void clear() {
+        Arrays.fill(localIds, -1);
+        Arrays.fill(incident, 0, numVertices * words, 0);
+        numRailways = numVertices = numComponents = mergedTop = 0;
+    }
+
+    /**
+     * Returns the length of the longest trail.
+     *
+     * @return the length of the longest trail, or {@code 0} if there are no railways
+     */
+    public int getLongest() {
+        int longest = 0;
+        for (int c = 0; c < numComponents; c++) {
+            longest = Math.max(longest, bests[c]);
+        }
+
+        for (int c = 0; c < numComponents; c++) {
+            // a component can only matter if it is long enough to beat what we already have
+            if (dirty[c] && totals[c] > longest) {
+                bests[c] = search(c, totals[c]);
+                dirty[c] = false;
+                longest = Math.max(longest, bests[c]);
+            }
+        }
+
+        return longest;
+    }
+
+    /**
+     * Returns the number of railways.
+     *
+     * @return the number of railways
+     */
+    public int size() {
+        return numRailways;
+    }
+
+    /**
+     * Finds the longest trail in the given component.
+     *
+     * @param c     the index of the component
+     * @param total the total length of the component
+     * @return the length of the longest trail
+     */
+    private int search(int c, int total) {
+        memoSize = 0;
+        Arrays.fill(memoVertex, 0);
+        Arrays.fill(used, 0L);
+
+        int best = 0;
+        for (int v = 0; v < numVertices && best < total; v++) {
+            // a vertex touches the component if it touches any of its railways
+            boolean touching = false;
+            for (int i = 0; i < words && !touching; i++) {
+                touching = (incident[v * words + i] & components[c * words + i]) != 0;
+            }
+            if (touching) {
+                best = Math.max(best, extend(v, total));
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Finds the longest trail starting at the given vertex that does not use any of the railways in {@link #used}.
+     * {@link #used} is the same when this method returns as when it was called.
+     *
+     * @param v         the vertex to start at
+     * @param remaining the total length of the unused railways in the component
+     * @return the length of the longest such trail
+     */
+    private int extend(int v, int remaining) {
+        int base = v * words;
+        boolean any = false;
+        for (int i = 0; i < words && !any; i++) {
+            any = (incident[base + i] & ~used[i]) != 0;
+        }
+        if (!any) {
+            return 0;
+        }
+
+        int slot = memoSlot(v, used, 0);
+        if (memoVertex[slot] != 0) {
+            return memoValue[slot];
+        }
+
+        int best = 0;
+        for (int i = 0; i < words && best < remaining; i++) {
+            long available = incident[base + i] & ~used[i];
+            while (available != 0 && best < remaining) {
+                long bit = Long.lowestOneBit(available);
+                available ^= bit;
+
+                int e = (i << 6) + Long.numberOfTrailingZeros(bit);
+                int other = ends1[e] == v ? ends2[e] : ends1[e];
+                used[i] |= bit;
+                int length = lengths[e] + extend(other, remaining - lengths[e]);
+                used[i] ^= bit;
+                best = Math.max(best, length);
+            }
+        }
+
+        // the table may have grown during the recursion
+        slot = memoSlot(v, used, 0);
+        memoVertex[slot] = v + 1;
+        System.arraycopy(used, 0, memoUsed, slot * words, words);
+        memoValue[slot] = best;
+        if (++memoSize * 2 > memoVertex.length) {
+            growMemo();
+        }
+
+        return best;
+    }
+
+    /**
+     * Finds the slot of the given state in the memo table: either the slot holding it or the empty slot it belongs
+     * in.
+     *
+     * @param v      the current vertex
+     * @param set    the array holding the used railways
+     * @param offset the index of the first word of the used railways in {@code set}
+     * @return the slot of the given state
+     */
+    private int memoSlot(int v, long[] set, int offset) {
+        long h = v;
+        for (int i = 0; i < words; i++) {
+            h = h * 0x9E3779B97F4A7C15L + set[offset + i];
+        }
+        int mask = memoVertex.length - 1;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (memoVertex[slot] != 0 && (memoVertex[slot] != v + 1 || !memoMatches(slot, set, offset))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Checks whether the memoized state in the given slot used the given railways.
+     *
+     * @param slot   the slot in the memo table
+     * @param set    the array holding the used railways
+     * @param offset the index of the first word of the used railways in {@code set}
+     * @return whether the used railways are the same
+     */
+    private boolean memoMatches(int slot, long[] set, int offset) {
+        for (int i = 0; i < words; i++) {
+            if (memoUsed[slot * words + i] != set[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the size of the memo table.
+     */
+    private void growMemo() {
+        long[] oldUsed = memoUsed;
+        int[] oldVertex = memoVertex, oldValue = memoValue;
+
+        memoUsed = new long[oldUsed.length * 2];
+        memoVertex = new int[oldVertex.length * 2];
+        memoValue = new int[oldValue.length * 2];
+        for (int i = 0; i < oldVertex.length; i++) {
+            if (oldVertex[i] != 0) {
+                int slot = memoSlot(oldVertex[i] - 1, oldUsed, i * words);
+                memoVertex[slot] = oldVertex[i];
+                System.arraycopy(oldUsed, i * words, memoUsed, slot * words, words);
+                memoValue[slot] = oldValue[i];
+            }
+        }
+    }
+
+    /**
+     * Doubles the number of railways that the bitmasks can hold, widening every stored bitmask.
+     */
+    private void grow() {
+        int oldWords = words;
+        capacity *= 2;
+        words = capacity / Long.SIZE;
+
+        ends1 = Arrays.copyOf(ends1, capacity);
+        ends2 = Arrays.copyOf(ends2, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        totals = Arrays.copyOf(totals, capacity);
+        bests = Arrays.copyOf(bests, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        mergedTotals = Arrays.copyOf(mergedTotals, capacity);
+        mergedBests = Arrays.copyOf(mergedBests, capacity);
+        mergedDirty = Arrays.copyOf(mergedDirty, capacity);
+        numMerged = Arrays.copyOf(numMerged, capacity);
+        verticesBefore = Arrays.copyOf(verticesBefore, capacity);
+
+        incident = widen(incident, incident.length / oldWords, oldWords);
+        components = widen(components, capacity, oldWords);
+        mergedComponents = widen(mergedComponents, capacity, oldWords);
+
+        // the memo table only lives for the duration of a search
+        used = new long[words];
+        memoUsed = new long[memoVertex.length * words];
+    }
+
+    /**
+     * Copies the given bitmasks into bitmasks of {@link #words} words each.
+     *
+     * @param sets     the bitmasks
+     * @param count    the number of bitmasks to make room for
+     * @param oldWords the number of words in every given bitmask
+     * @return the widened bitmasks
+     */
+    private long[] widen(long[] sets, int count, int oldWords) {
+        long[] wide = new long[count * words];
+        for (int s = 0; s < sets.length / oldWords; s++) {
+            System.arraycopy(sets, s * oldWords, wide, s * words, oldWords);
+        }
+        return wide;
+    }
+
+    /**
+     * Checks whether the given component touches either of the given vertices.
+     *
+     * @param c  the index of the component
+     * @param v1 one vertex
+     * @param v2 the other vertex
+     * @return whether the component has a railway at either vertex
+     */
+    private boolean touches(int c, int v1, int v2) {
+        for (int i = 0; i < words; i++) {
+            if ((components[c * words + i] & (incident[v1 * words + i] | incident[v2 * words + i])) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the local vertex id of the given city, assigning one if needed.
+     *
+     * @param city the city id
+     * @return the local vertex id
+     */
+    private int localId(int city) {
+        if (city >= localIds.length) {
+            int old = localIds.length;
+            localIds = Arrays.copyOf(localIds, Math.max(city + 1, old * 2));
+            Arrays.fill(localIds, old, localIds.length, -1);
+        }
+
+        if (localIds[city] == -1) {
+            if (numVertices == vertexCities.length) {
+                incident = Arrays.copyOf(incident, numVertices * 2 * words);
+                vertexCities = Arrays.copyOf(vertexCities, numVertices * 2);
+            }
+            vertexCities[numVertices] = city;
+            localIds[city] = numVertices++;
+        }
+
+        return localIds[city];
+    }
+
+    /**
+     * Removes the given component by moving the last one into its place.
+     *
+     * @param c the index of the component
+     */
+    private void removeComponent(int c) {
+        int last = --numComponents;
+        System.arraycopy(components, last * words, components, c * words, words);
+        totals[c] = totals[last];
+        bests[c] = bests[last];
+        dirty[c] = dirty[last];
+    }
+}
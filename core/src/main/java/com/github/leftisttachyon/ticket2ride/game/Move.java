@@ -0,0 +1,183 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+/**
+ * A class that packs the moves of a {@link Game} into single {@code int}s, so that they can be generated and stored
+ * without allocating. The fields of a move are laid out as follows, from the most significant bit:
+ * <pre>
+ *  31..28   27..12        11..8        7..4            3..0
+ * [type ] [railway id ] [side index] [payment color] [rainbow cards]
+ * </pre>
+ * A claim pays with {@code rainbow cards} {@link Color#RAINBOW} cards and fills up the rest of the length of the
+ * {@link Railway} with cards of the {@code payment color}. Paying with rainbow cards only is always encoded with
+ * {@link Color#RAINBOW} as the payment color, so every payment has exactly one encoding.
+ *
+ * @author Jed Wang
+ * @see Game#generateMoves(int[])
+ * @see Game#applyMove(int)
+ * @since 1.0.0
+ */
+public final class Move {
+    /**
+     * The type of a move that picks up one of the visible cards
+     */
+    public static final int PICK_CARD = 0;
+    /**
+     * The type of a move that picks up the top card of the deck
+     */
+    public static final int PICK_RANDOM = 1;
+    /**
+     * The type of a move that draws {@link Route}s
+     */
+    public static final int DRAW_ROUTES = 2;
+    /**
+     * The type of a move that claims a {@link Railway}
+     */
+    public static final int CLAIM = 3;
+
+    /**
+     * All {@link Color}s, indexed by ordinal
+     */
+    private static final Color[] COLORS = Color.values();
+
+    /**
+     * The position of the type field
+     */
+    private static final int TYPE_SHIFT = 28;
+    /**
+     * The position of the railway id field
+     */
+    private static final int RAILWAY_SHIFT = 12;
+    /**
+     * The position of the side index field
+     */
+    private static final int INDEX_SHIFT = 8;
+    /**
+     * The position of the payment color field
+     */
+    private static final int COLOR_SHIFT = 4;
+    /**
+     * The largest value that fits in the railway id field
+     */
+    public static final int MAX_RAILWAY_ID = 0xFFFF;
+
+    /**
+     * No instantiation for you!
+     */
+    private Move() {
+    }
+
+    /**
+     * Creates a move that picks up the visible card at the given index.
+     *
+     * @param index the index of the card
+     * @return the move
+     */
+    public static int pickCard(int index) {
+        return PICK_CARD << TYPE_SHIFT | (index & 0xF) << INDEX_SHIFT;
+    }
+
+    /**
+     * Creates a move that picks up the top card of the deck.
+     *
+     * @return the move
+     */
+    public static int pickRandom() {
+        return PICK_RANDOM << TYPE_SHIFT;
+    }
+
+    /**
+     * Creates a move that draws {@link Route}s.
+     *
+     * @return the move
+     */
+    public static int drawRoutes() {
+        return DRAW_ROUTES << TYPE_SHIFT;
+    }
+
+    /**
+     * Creates a move that claims the {@link Railway} with the given id.
+     *
+     * @param railway the id of the {@link Railway}
+     * @param color   the color of the non-rainbow cards to pay with
+     * @param rainbow the number of rainbow cards to pay with
+     * @return the move
+     */
+    public static int claim(int railway, Color color, int rainbow) {
+        if (railway < 0 || railway > MAX_RAILWAY_ID || rainbow < 0 || rainbow > 0xF) {
+            throw new IllegalArgumentException("Unencodable claim");
+        }
+
+        return CLAIM << TYPE_SHIFT | railway << RAILWAY_SHIFT | color.ordinal() << COLOR_SHIFT | rainbow;
+    }
+
+    /**
+     * Returns the type of the given move.
+     *
+     * @param move the move
+     * @return the type of the move
+     */
+    public static int getType(int move) {
+        return move >>> TYPE_SHIFT;
+    }
+
+    /**
+     * Returns the id of the {@link Railway} claimed by the given move.
+     *
+     * @param move the move
+     * @return the id of the {@link Railway}
+     */
+    public static int getRailway(int move) {
+        return move >>> RAILWAY_SHIFT & MAX_RAILWAY_ID;
+    }
+
+    /**
+     * Returns the index of the visible card picked up by the given move.
+     *
+     * @param move the move
+     * @return the index of the card
+     */
+    public static int getIndex(int move) {
+        return move >>> INDEX_SHIFT & 0xF;
+    }
+
+    /**
+     * Returns the color of the non-rainbow cards paid by the given move.
+     *
+     * @param move the move
+     * @return the payment color
+     */
+    public static Color getColor(int move) {
+        return COLORS[move >>> COLOR_SHIFT & 0xF];
+    }
+
+    /**
+     * Returns the number of rainbow cards paid by the given move.
+     *
+     * @param move the move
+     * @return the number of rainbow cards
+     */
+    public static int getRainbow(int move) {
+        return move & 0xF;
+    }
+
+    /**
+     * Returns a human-readable representation of the given move.
+     *
+     * @param move the move
+     * @return a {@link String} representing the move
+     */
+    public static String toString(int move) {
+        switch (getType(move)) {
+            case PICK_CARD:
+                return "PICK " + getIndex(move);
+            case PICK_RANDOM:
+                return "PICK RANDOM";
+            case DRAW_ROUTES:
+                return "DRAWROUTES";
+            case CLAIM:
+                return "CLAIM " + getRailway(move) + " " + getColor(move) + " +" + getRainbow(move) + " RAINBOW";
+            default:
+                return "UNKNOWN " + Integer.toHexString(move);
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package com.github.leftisttachyon.ticket2ride.game;
 
+import com.github.leftisttachyon.ticket2ride.game.action.*;
+import com.github.leftisttachyon.ticket2ride.game.action.PlayerEvent.Type;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.util.*;
 
 /**
@@ -22,27 +22,92 @@ public class Player {
     @Setter
     private String name;
     /**
-     * A {@link HashMap} that contains all of the cards that this player has.
+     * All {@link Color}s, indexed by ordinal
      */
-    private HashMap<Color, Integer> cards;
+    private static final Color[] COLORS = Color.values();
+
     /**
-     * A {@link List} of all owned {@link Railway}s.
+     * The number of cards of every color that this player has, indexed by {@link Color#ordinal()}.
+     */
+    @Getter(AccessLevel.NONE)
+    private int[] cards;
+    /**
+     * The total number of cards that this player has.
+     */
+    @Getter(AccessLevel.NONE)
+    private int numCards = 0;
+    /**
+     * A read-only view of all owned {@link Railway}s.
      */
     private Set<Railway> ownedRailways;
+    /**
+     * The owned {@link Railway}s, in no particular order; only the first {@code numOwned} entries are used
+     */
+    @Getter(AccessLevel.NONE)
+    private Railway[] owned = new Railway[16];
+    /**
+     * The number of owned {@link Railway}s
+     */
+    @Getter(AccessLevel.NONE)
+    private int numOwned = 0;
+    /**
+     * The index in {@code owned} of every owned {@link Railway}, indexed by {@link Railway#getId()}. Entries of
+     * {@link Railway}s that are not owned are stale and are never cleared, so forgetting every {@link Railway} only
+     * resets {@code numOwned}
+     */
+    @Getter(AccessLevel.NONE)
+    private int[] ownedSlots = new int[0];
     /**
      * A {@link List} of all {@link Route}s that this {@link Player} is working towards.
      */
     private List<Route> routes;
     /**
-     * A {@link List} that stores the networks that this {@link Player} has connections to
+     * The {@link Route}s in {@code routes} that are already completed
+     */
+    @Getter(AccessLevel.NONE)
+    private List<Route> completedRoutes;
+    /**
+     * The {@link Route}s in {@code routes} that are not completed yet
+     */
+    @Getter(AccessLevel.NONE)
+    private List<Route> uncompletedRoutes;
+    /**
+     * The points that {@code routes} would be worth if the game ended now: the values of the completed {@link Route}s
+     * minus the values of the uncompleted ones
+     */
+    @Getter(AccessLevel.NONE)
+    private int routePoints = 0;
+    /**
+     * The indices in {@code uncompletedRoutes} that the {@link Route}s moved over to {@code completedRoutes} had, in
+     * the order that they were moved, so that {@link #undoAddRailway(Railway, int, int)} can put them back
+     */
+    @Getter(AccessLevel.NONE)
+    private int[] completionTrail = new int[8];
+    /**
+     * The number of used entries in {@code completionTrail}
+     */
+    @Getter(AccessLevel.NONE)
+    private int completionTrailSize = 0;
+    /**
+     * Whether {@code routePoints} has already been added to {@code points}
+     */
+    @Getter(AccessLevel.NONE)
+    private boolean routesScored = false;
+    /**
+     * An object that stores which cities this {@link Player} has connected
      */
     @Getter(AccessLevel.NONE)
-    private List<Set<String>> network;
+    private CityNetwork network;
     /**
-     * A {@link List} of {@link ActionListener}s that listen to actions related to this {@link Player}
+     * An object that keeps track of the longest continuous path through this {@link Player}'s {@link Railway}s
      */
     @Getter(AccessLevel.NONE)
-    private List<ActionListener> listeners;
+    private LongestTrail longestTrail;
+    /**
+     * The listeners that listen to events related to this {@link Player}
+     */
+    @Getter(AccessLevel.NONE)
+    private ListenerRegistry<GameEvent> listeners;
     /**
      * The amounts of points this player has
      */
@@ -54,8 +119,11 @@ public class Player {
     /**
      * The turn number associated with this {@link Player}
      */
-    @Setter
     private int turn = -1;
+    /**
+     * The Zobrist hash of the hand and the {@link Route}s of this {@link Player}
+     */
+    private long hash;
     /**
      * The maximum number of cards this {@link Player} can return now
      */
@@ -70,15 +138,32 @@ public class Player {
     public Player(String name) {
         this.name = name;
 
-        cards = new HashMap<>();
-        for (Color c : Color.values()) {
-            if (c != Color.NONE) cards.put(c, 0);
-        }
+        cards = new int[COLORS.length];
 
-        ownedRailways = new HashSet<>();
-        routes = new LinkedList<>();
-        network = new LinkedList<>();
-        listeners = new LinkedList<>();
+        ownedRailways = new OwnedRailways();
+        routes = new ArrayList<>();
+        completedRoutes = new ArrayList<>();
+        uncompletedRoutes = new ArrayList<>();
+        network = new CityNetwork(0);
+        longestTrail = new LongestTrail();
+        listeners = new ListenerRegistry<>();
+    }
+
+    /**
+     * Sets the turn number associated with this {@link Player}.
+     *
+     * @param turn the turn number
+     */
+    public void setTurn(int turn) {
+        this.turn = turn;
+
+        hash = 0;
+        for (int i = 0; i < cards.length; i++) {
+            hash ^= Zobrist.cards(turn, i, cards[i]);
+        }
+        for (Route r : routes) {
+            hash ^= Zobrist.route(turn, r.getId());
+        }
     }
 
     /**
@@ -89,7 +174,7 @@ public class Player {
     public void addPoints(int num) {
         points += num;
 
-        notifyListeners("POINTS " + num);
+        notifyListeners(Type.POINTS, num, null, null, null);
     }
 
     /**
@@ -101,9 +186,10 @@ public class Player {
         if (cardColor == Color.NONE) {
             throw new IllegalArgumentException("Cannot add a \"NONE\" card to a player's hand");
         } else {
-            cards.put(cardColor, cards.get(cardColor) + 1);
+            setCount(cardColor.ordinal(), cards[cardColor.ordinal()] + 1);
+            numCards++;
 
-            notifyListeners("CARD ADD " + cardColor);
+            notifyListeners(Type.CARD_ADD, 1, cardColor, null, null);
         }
     }
 
@@ -119,25 +205,62 @@ public class Player {
     }
 
     /**
-     * Adds a {@link Railway} to the collection of owned {@link Railway}s
+     * Removes the given numbers of cards from this {@link Player}'s hand.
      *
-     * @param railway the {@link Railway} to add to the owned collection of {@link Railway}s
+     * @param toRemove the number of cards of every color to remove, indexed by {@link Color#ordinal()}
      */
-    public void addRailway(Railway railway) {
-        ownedRailways.add(railway);
-
-        Set<String> temp = new HashSet<>(railway.getDestinations());
-        for (int i = network.size() - 1; i >= 0; i--) {
-            Set<String> tempList = network.get(i);
-            if (railway.containsEndpoint(tempList)) {
-                network.remove(i);
-                temp.addAll(tempList);
+    public void removeCards(int[] toRemove) {
+        for (int i = 0; i < toRemove.length; i++) {
+            if (toRemove[i] != 0) {
+                removeCards(COLORS[i], toRemove[i]);
             }
         }
+    }
+
+    /**
+     * Returns a {@link Map} with the number of cards of every color that this {@link Player} has. The {@link Map} is
+     * a copy; changing it does not change this {@link Player}'s hand.
+     *
+     * @return the number of cards of every color
+     */
+    public Map<Color, Integer> getCards() {
+        Map<Color, Integer> output = new EnumMap<>(Color.class);
+        for (Color c : COLORS) {
+            if (c != Color.NONE) output.put(c, cards[c.ordinal()]);
+        }
+
+        return output;
+    }
+
+    /**
+     * Gets the number of cards of the given color this {@link Player} has.
+     *
+     * @param color the color to count
+     * @return the number of cards of the given color
+     */
+    public int getNumCards(Color color) {
+        return cards[color.ordinal()];
+    }
+
+    /**
+     * Adds a {@link Railway} to the collection of owned {@link Railway}s
+     *
+     * @param railway the {@link Railway} to add to the owned collection of {@link Railway}s; must be registered with a
+     *                {@link GameMap}
+     */
+    public void addRailway(Railway railway) {
+        requireRegistered(railway);
+        own(railway);
+
+        boolean merged = network.union(railway.getCity1(), railway.getCity2());
+        longestTrail.add(railway.getCity1(), railway.getCity2(), railway.getLength());
 
-        network.add(temp);
+        notifyListeners(Type.RAIL_ADD, 0, null, railway, null);
 
-        notifyListeners("RAIL ADD " + railway.toMessageString());
+        // only a railway that joins two separate groups of cities can complete a route
+        if (merged) {
+            updateCompletedRoutes();
+        }
     }
 
     /**
@@ -146,11 +269,12 @@ public class Player {
      * @param railway the {@link Railway} to remove from the owned collection of {@link Railway}s
      */
     public void removeRailway(Railway railway) {
-        ownedRailways.remove(railway);
+        disown(railway);
 
         regenerateNetwork();
+        regenerateRoutes();
 
-        notifyListeners("RAIL REMOVE " + railway.toMessageString());
+        notifyListeners(Type.RAIL_REMOVE, 0, null, railway, null);
     }
 
     /**
@@ -160,18 +284,35 @@ public class Player {
      * @return whether the given {@link Railway} is owned by this {@link Player}
      */
     public boolean ownsRailway(Railway railway) {
-        return ownedRailways.contains(railway);
+        // unregistered railways have the id -1 and are never owned
+        int id = railway.getId();
+        return id >= 0 && id < ownedSlots.length && ownedSlots[id] < numOwned && owned[ownedSlots[id]] == railway;
     }
 
     /**
      * Adds the given {@link Route} to the list of owned {@link Route}s
      *
-     * @param route the {@link Route} to add
+     * @param route the {@link Route} to add; must be registered with a {@link GameMap}
      */
     public void addRoute(Route route) {
+        requireRegistered(route);
         routes.add(route);
+        hash ^= Zobrist.route(turn, route.getId());
+
+        boolean completed = isCompleted(route);
+        if (completed) {
+            completedRoutes.add(route);
+            routePoints += route.getValue();
+        } else {
+            uncompletedRoutes.add(route);
+            routePoints -= route.getValue();
+        }
 
-        notifyListeners("ROUTE ADD " + route.toMessageString());
+        notifyListeners(Type.ROUTE_ADD, 0, null, null, route);
+
+        if (completed) {
+            notifyRouteCompleted(route);
+        }
     }
 
     /**
@@ -186,7 +327,15 @@ public class Player {
         } else return false;
 
         if (routes.remove(route)) {
-            notifyListeners("ROUTE REMOVE " + route.toMessageString());
+            hash ^= Zobrist.route(turn, route.getId());
+            if (completedRoutes.remove(route)) {
+                routePoints -= route.getValue();
+            } else {
+                uncompletedRoutes.remove(route);
+                routePoints += route.getValue();
+            }
+
+            notifyListeners(Type.ROUTE_REMOVE, 0, null, null, route);
             return true;
         } else return false;
     }
@@ -208,11 +357,62 @@ public class Player {
      * @return whether the given {@link Route} is completed
      */
     public boolean isCompleted(Route route) {
-        for (Set<String> set : network) {
-            if (route.containsEndpoint(set)) return true;
-        }
+        requireRegistered(route);
+
+        return network.connected(route.getCity1(), route.getCity2());
+    }
+
+    /**
+     * Determines whether this {@link Player}'s {@link Railway}s connect the two given cities.
+     *
+     * @param city1 the id of one city
+     * @param city2 the id of another city
+     * @return whether the two cities are connected
+     */
+    public boolean isConnected(int city1, int city2) {
+        return network.connected(city1, city2);
+    }
+
+    /**
+     * Returns an unmodifiable view of the {@link Route}s that this {@link Player} has completed. It is kept up to date
+     * as {@link Railway}s and {@link Route}s are added and removed.
+     *
+     * @return the completed {@link Route}s
+     */
+    public List<Route> getCompletedRoutes() {
+        return Collections.unmodifiableList(completedRoutes);
+    }
 
-        return false;
+    /**
+     * Returns an unmodifiable view of the {@link Route}s that this {@link Player} has not completed yet. It is kept up
+     * to date as {@link Railway}s and {@link Route}s are added and removed.
+     *
+     * @return the uncompleted {@link Route}s
+     */
+    public List<Route> getUncompletedRoutes() {
+        return Collections.unmodifiableList(uncompletedRoutes);
+    }
+
+    /**
+     * Returns the score this {@link Player} would end with if the game ended now: the current points plus the values
+     * of all completed {@link Route}s minus the values of all uncompleted ones. The bonus for the longest path is not
+     * included. This is kept up to date incrementally, so calling it is cheap.
+     *
+     * @return the projected final score
+     */
+    public int getProjectedScore() {
+        return routesScored ? points : points + routePoints;
+    }
+
+    /**
+     * Adds the values of all completed {@link Route}s to and subtracts the values of all uncompleted ones from this
+     * {@link Player}'s points. This only has an effect the first time that it is called.
+     */
+    public void scoreRoutes() {
+        if (!routesScored) {
+            routesScored = true;
+            addPoints(routePoints);
+        }
     }
 
     /**
@@ -223,7 +423,7 @@ public class Player {
     public void removeTrains(int num) {
         trains -= num;
 
-        notifyListeners("REMOVE-TRAINS " + num);
+        notifyListeners(Type.REMOVE_TRAINS, num, null, null, null);
     }
 
     /**
@@ -232,50 +432,18 @@ public class Player {
      * @return the number of cards this {@link Player} has
      */
     public int getNumCards() {
-        int output = 0;
-        for (int num : cards.values()) {
-            output += num;
-        }
-
-        return output;
+        return numCards;
     }
 
     /**
-     * Gets the most amount of contiguous trains this {@link Player} has.
+     * Gets the most amount of contiguous trains this {@link Player} has: the length of the longest continuous path
+     * through this {@link Player}'s {@link Railway}s that does not use any {@link Railway} twice. The result is cached
+     * until another {@link Railway} is added or removed.
      *
-     * @return the most amount of contiguous trains
+     * @return the most amount of contiguous trains, or {@code 0} if this {@link Player} has no {@link Railway}s
      */
     public int getLongestConnection() {
-        HashMap<Set<String>, Integer> temp = new HashMap<>();
-        outer:
-        for (Railway r : ownedRailways) {
-            for (Set<String> s : temp.keySet()) {
-                if (s.contains(r.getDest1())) {
-                    s.add(r.getDest2());
-                    temp.put(s, temp.get(s) + r.getLength());
-                    continue outer;
-                } else if (s.contains(r.getDest2())) {
-                    s.add(r.getDest1());
-                    temp.put(s, temp.get(s) + r.getLength());
-                    continue outer;
-                }
-            }
-
-            // doesn't exist yet, create new one
-            Set<String> s = new HashSet<>();
-            s.add(r.getDest1());
-            s.add(r.getDest2());
-            temp.put(s, r.getLength());
-        }
-
-        int largest = -1;
-        for (int i : temp.values()) {
-            if (i > largest) {
-                largest = i;
-            }
-        }
-
-        return largest;
+        return longestTrail.getLongest();
     }
 
     /**
@@ -304,30 +472,59 @@ public class Player {
     // listener code
 
     /**
-     * Adds an {@link ActionListener} to the internal {@link List} of listeners that is listening to this object.
+     * Adds a listener that is notified of every event related to this {@link Player}.
      *
-     * @param listener the {@link ActionListener} to add
+     * @param listener the listener to add
      */
-    public void addActionListener(ActionListener listener) {
+    public void addActionListener(GameListener<? super GameEvent> listener) {
         listeners.add(listener);
     }
 
     /**
-     * Removes an {@link ActionListener} from the internal {@link List} of listeners that is listening to this object.
+     * Adds a listener that is notified of the events of the given type related to this {@link Player}.
      *
-     * @param listener the {@link ActionListener} to add
+     * @param type     the type of events to listen to
+     * @param listener the listener to add
+     * @param <E>      the type of events to listen to
      */
-    public void removeActionListener(ActionListener listener) {
-        listeners.add(listener);
+    public <E extends GameEvent> void addActionListener(Class<E> type, GameListener<? super E> listener) {
+        listeners.add(type, listener);
     }
 
     /**
-     * Clears all {@link ActionListener}s from this object.
+     * Removes a listener that is listening to this object.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeActionListener(GameListener<?> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Clears all listeners, including {@link RouteCompletionListener}s, from this object.
      */
     public void clearActionListeners() {
         listeners.clear();
     }
 
+    /**
+     * Adds a {@link RouteCompletionListener} that is listening to this object.
+     *
+     * @param listener the {@link RouteCompletionListener} to add
+     */
+    public void addRouteCompletionListener(RouteCompletionListener listener) {
+        listeners.add(RouteCompletedEvent.class, listener);
+    }
+
+    /**
+     * Removes a {@link RouteCompletionListener} that is listening to this object.
+     *
+     * @param listener the {@link RouteCompletionListener} to remove
+     */
+    public void removeRouteCompletionListener(RouteCompletionListener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * Determines whether this {@link Player} has at least the given number of the given card type.
      *
@@ -335,8 +532,22 @@ public class Player {
      * @param num  the number to have at least of in order to return {@code true}
      * @return whether the criterion are met
      */
-    boolean hasCards(Color type, int num) {
-        return cards.get(type) >= num;
+    public boolean hasCards(Color type, int num) {
+        return cards[type.ordinal()] >= num;
+    }
+
+    /**
+     * Determines whether this {@link Player} has at least the given numbers of cards.
+     *
+     * @param toUse the number of cards of every color, indexed by {@link Color#ordinal()}
+     * @return whether the criterion are met
+     */
+    public boolean hasCards(int[] toUse) {
+        for (int i = 0; i < toUse.length; i++) {
+            if (cards[i] < toUse[i]) return false;
+        }
+
+        return true;
     }
 
     /**
@@ -346,42 +557,369 @@ public class Player {
      * @param num the number of cards to remove
      */
     void removeCards(Color key, int num) {
-        cards.put(key, Math.max(0, cards.get(key) - num));
+        int removed = Math.min(cards[key.ordinal()], Math.max(0, num));
+        setCount(key.ordinal(), cards[key.ordinal()] - removed);
+        numCards -= removed;
+
+        notifyListeners(Type.CARDS_REMOVE, num, key, null, null);
+    }
+
+    /**
+     * Copies the number of cards of every color into the given array, indexed by {@link Color#ordinal()}.
+     *
+     * @param dest   the array to copy into
+     * @param offset the index to start at
+     */
+    void copyCards(int[] dest, int offset) {
+        System.arraycopy(cards, 0, dest, offset, cards.length);
+    }
+
+    /**
+     * Replaces the number of cards of every color with the given ones, without notifying listeners.
+     *
+     * @param src    the array to copy from, as written by {@link #copyCards(int[], int)}
+     * @param offset the index to start at
+     */
+    void restoreCards(int[] src, int offset) {
+        numCards = 0;
+        for (int i = 0; i < cards.length; i++) {
+            setCount(i, src[offset + i]);
+            numCards += cards[i];
+        }
+    }
 
-        notifyListeners("CARDS REMOVE " + key + " " + num);
+    /**
+     * Returns the maximum number of cards this {@link Player} can return now.
+     *
+     * @return the return allowance
+     */
+    int getReturnAllowance() {
+        return returnAllowance;
     }
 
     /**
-     * Recreates the {@code network} variable to ensure its accuracy.
+     * Returns whether the values of the {@link Route}s have already been added to the points.
+     *
+     * @return whether {@link #scoreRoutes()} has been called
+     */
+    boolean isRoutesScored() {
+        return routesScored;
+    }
+
+    /**
+     * Restores the given counters, without notifying listeners.
+     *
+     * @param points          the number of points
+     * @param trains          the number of trains
+     * @param returnAllowance the return allowance
+     * @param routesScored    whether the values of the {@link Route}s have been added to the points
+     */
+    void restoreCounters(int points, int trains, int returnAllowance, boolean routesScored) {
+        this.points = points;
+        this.trains = trains;
+        this.returnAllowance = returnAllowance;
+        this.routesScored = routesScored;
+    }
+
+    /**
+     * Replaces the {@link Route}s and {@link Railway}s of this {@link Player}, without notifying listeners. The
+     * {@link Railway}s are the ones that the given owners assign to this {@link Player}'s turn.
+     *
+     * @param map      the {@link GameMap} that the ids refer to
+     * @param routeIds the ids of the {@link Route}s
+     * @param from     the index of the first {@link Route} id
+     * @param to       one past the index of the last {@link Route} id
+     * @param owners   the owner of every {@link Railway}, in the format used by {@link Board}
+     */
+    void restoreHoldings(GameMap map, int[] routeIds, int from, int to, byte[] owners) {
+        numOwned = 0;
+        network.clear();
+        longestTrail.clear();
+        byte owner = (byte) (turn + 1);
+        for (int id = 0; id < owners.length; id++) {
+            if (owners[id] == owner) {
+                Railway r = map.getRailway(id);
+                own(r);
+                network.union(r.getCity1(), r.getCity2());
+                longestTrail.add(r.getCity1(), r.getCity2(), r.getLength());
+            }
+        }
+
+        for (int i = 0; i < routes.size(); i++) {
+            hash ^= Zobrist.route(turn, routes.get(i).getId());
+        }
+        routes.clear();
+        for (int i = from; i < to; i++) {
+            routes.add(map.getRoute(routeIds[i]));
+            hash ^= Zobrist.route(turn, routeIds[i]);
+        }
+        regenerateRoutes();
+    }
+
+    /**
+     * Starts recording changes to the connections of this {@link Player}, so that
+     * {@link #undoAddRailway(Railway, int, int)} can undo them.
+     *
+     * @return the mark to pass to {@link #undoAddRailway(Railway, int, int)}
+     */
+    int markNetwork() {
+        return network.mark();
+    }
+
+    /**
+     * Undoes every change to the connections of this {@link Player} since the given mark was taken, and releases the
+     * mark.
+     *
+     * @param mark the mark returned by {@link #markNetwork()}
+     */
+    void rollbackNetwork(int mark) {
+        network.rollback(mark);
+    }
+
+    /**
+     * Returns the number of {@link Route}s that this {@link Player} has completed, without creating a view.
+     *
+     * @return the number of completed {@link Route}s
+     */
+    int getNumCompletedRoutes() {
+        return completedRoutes.size();
+    }
+
+    /**
+     * Undoes the last {@link #addRailway(Railway)}, without notifying listeners. Only the {@link Route}s that it
+     * completed are moved back, into the places they had among the uncompleted ones.
+     *
+     * @param railway   the {@link Railway} that was added
+     * @param mark      the mark returned by {@link #markNetwork()} before it was added
+     * @param completed the number of completed {@link Route}s before it was added
+     */
+    void undoAddRailway(Railway railway, int mark, int completed) {
+        disown(railway);
+        rollbackNetwork(mark);
+        longestTrail.removeLast();
+
+        // the completed routes were appended in the order they were taken out, so put them back in reverse
+        for (int last = completedRoutes.size() - 1; last >= completed; last--) {
+            Route r = completedRoutes.remove(last);
+            uncompletedRoutes.add(completionTrail[--completionTrailSize], r);
+            routePoints -= 2 * r.getValue();
+        }
+    }
+
+    /**
+     * Undoes the last {@code num} calls to {@link #addRoute(Route)}, without notifying listeners.
+     *
+     * @param num the number of {@link Route}s to remove
+     */
+    void undoAddRoutes(int num) {
+        for (int i = 0; i < num; i++) {
+            Route r = routes.remove(routes.size() - 1);
+            hash ^= Zobrist.route(turn, r.getId());
+
+            // the route was the last one added to whichever list it is in
+            int last = completedRoutes.size() - 1;
+            if (last >= 0 && completedRoutes.get(last) == r) {
+                completedRoutes.remove(last);
+                routePoints -= r.getValue();
+            } else {
+                uncompletedRoutes.remove(uncompletedRoutes.size() - 1);
+                routePoints += r.getValue();
+            }
+        }
+    }
+
+    /**
+     * Adds a registered {@link Railway} to {@code owned}, unless it is already owned.
+     *
+     * @param railway the {@link Railway} to add
+     */
+    private void own(Railway railway) {
+        if (ownsRailway(railway)) {
+            return;
+        }
+
+        int id = railway.getId();
+        if (id >= ownedSlots.length) {
+            ownedSlots = Arrays.copyOf(ownedSlots, Math.max(id + 1, ownedSlots.length * 2));
+        }
+        if (numOwned == owned.length) {
+            owned = Arrays.copyOf(owned, numOwned * 2);
+        }
+        ownedSlots[id] = numOwned;
+        owned[numOwned++] = railway;
+    }
+
+    /**
+     * Removes a {@link Railway} from {@code owned} by moving the last owned {@link Railway} into its place, if it is
+     * owned.
+     *
+     * @param railway the {@link Railway} to remove
+     */
+    private void disown(Railway railway) {
+        if (!ownsRailway(railway)) {
+            return;
+        }
+
+        int slot = ownedSlots[railway.getId()];
+        Railway last = owned[--numOwned];
+        owned[slot] = last;
+        ownedSlots[last.getId()] = slot;
+        owned[numOwned] = null;
+    }
+
+    /**
+     * Sets the number of cards of a color, updating the hash.
+     *
+     * @param color the ordinal of the color
+     * @param count the new number of cards
+     */
+    private void setCount(int color, int count) {
+        hash ^= Zobrist.cards(turn, color, cards[color]) ^ Zobrist.cards(turn, color, count);
+        cards[color] = count;
+    }
+
+    /**
+     * Recreates the {@code network} and {@code longestTrail} variables to ensure their accuracy.
      */
     private void regenerateNetwork() {
         network.clear();
+        longestTrail.clear();
+
+        for (int i = 0; i < numOwned; i++) {
+            Railway r = owned[i];
+            network.union(r.getCity1(), r.getCity2());
+            longestTrail.add(r.getCity1(), r.getCity2(), r.getLength());
+        }
+    }
+
+    /**
+     * Moves every uncompleted {@link Route} that is now completed over to {@code completedRoutes}.
+     */
+    private void updateCompletedRoutes() {
+        for (int i = 0; i < uncompletedRoutes.size(); ) {
+            Route r = uncompletedRoutes.get(i);
+            if (network.connected(r.getCity1(), r.getCity2())) {
+                uncompletedRoutes.remove(i);
+                completedRoutes.add(r);
+                routePoints += 2 * r.getValue();
 
-        for (Railway r : ownedRailways) {
-            Set<String> temp = r.getDestinations();
-            for (int i = network.size() - 1; i >= 0; i--) {
-                Set<String> tempList = network.get(i);
-                if (r.containsEndpoint(tempList)) {
-                    network.remove(i);
-                    temp.addAll(tempList);
+                if (completionTrailSize == completionTrail.length) {
+                    completionTrail = Arrays.copyOf(completionTrail, completionTrailSize * 2);
                 }
+                completionTrail[completionTrailSize++] = i;
+
+                notifyRouteCompleted(r);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Sorts every {@link Route} into {@code completedRoutes} or {@code uncompletedRoutes} from scratch.
+     */
+    private void regenerateRoutes() {
+        completedRoutes.clear();
+        uncompletedRoutes.clear();
+        routePoints = 0;
+        completionTrailSize = 0;
+
+        for (int i = 0; i < routes.size(); i++) {
+            Route r = routes.get(i);
+            if (network.connected(r.getCity1(), r.getCity2())) {
+                completedRoutes.add(r);
+                routePoints += r.getValue();
+            } else {
+                uncompletedRoutes.add(r);
+                routePoints -= r.getValue();
             }
+        }
+    }
 
-            network.add(temp);
+    /**
+     * Makes sure that the given {@link Route} is registered with a {@link GameMap}.
+     *
+     * @param route the {@link Route} to check
+     */
+    private static void requireRegistered(Route route) {
+        if (route.getMap() == null) {
+            throw new IllegalArgumentException("The route " + route.toMessageString() + " is not registered");
         }
     }
 
     /**
-     * Notifies the associated listeners of the given message
+     * Makes sure that the given {@link Railway} is registered with a {@link GameMap}.
      *
-     * @param message the message to send to the listeners
+     * @param railway the {@link Railway} to check
      */
-    private void notifyListeners(String message) {
+    private static void requireRegistered(Railway railway) {
+        if (!railway.isRegistered()) {
+            throw new IllegalArgumentException("The railway " + railway.toMessageString() + " is not registered");
+        }
+    }
+
+    /**
+     * Notifies the associated listeners of a change to this {@link Player}. Nothing is allocated if there are no
+     * listeners.
+     *
+     * @param type    the kind of change
+     * @param amount  the number of points, cards or trains involved
+     * @param color   the color of the cards involved, or {@code null}
+     * @param railway the {@link Railway} involved, or {@code null}
+     * @param route   the {@link Route} involved, or {@code null}
+     */
+    private void notifyListeners(Type type, int amount, Color color, Railway railway, Route route) {
         if (!listeners.isEmpty()) {
-            ActionEvent evt = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, message);
-            for (ActionListener listener : listeners) {
-                listener.actionPerformed(evt);
-            }
+            listeners.fire(new PlayerEvent(this, type, amount, color, railway, route));
+        }
+    }
+
+    /**
+     * Notifies the associated {@link RouteCompletionListener}s that the given {@link Route} was completed
+     *
+     * @param route the {@link Route} that was completed
+     */
+    private void notifyRouteCompleted(Route route) {
+        if (!listeners.isEmpty()) {
+            listeners.fire(new RouteCompletedEvent(this, route, getProjectedScore()));
+        }
+    }
+
+    /**
+     * A read-only {@link Set} view of the owned {@link Railway}s.
+     */
+    private final class OwnedRailways extends AbstractSet<Railway> {
+        @Override
+        public int size() {
+            return numOwned;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Railway && ownsRailway((Railway) o);
+        }
+
+        @Override
+        public Iterator<Railway> iterator() {
+            return new Iterator<>() {
+                /**
+                 * The index of the next {@link Railway} in {@code owned}
+                 */
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < numOwned;
+                }
+
+                @Override
+                public Railway next() {
+                    if (next >= numOwned) {
+                        throw new NoSuchElementException();
+                    }
+                    return owned[next++];
+                }
+            };
         }
     }
 }
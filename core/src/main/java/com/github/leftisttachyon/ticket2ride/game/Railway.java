@@ -1,8 +1,8 @@
 package com.github.leftisttachyon.ticket2ride.game;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.Setter;
 
 import java.util.Collection;
 import java.util.Objects;
@@ -11,7 +11,8 @@ import java.util.Set;
 import static com.github.leftisttachyon.ticket2ride.game.ConsoleColors.RESET;
 
 /**
- * A class that represents a path between two cities.
+ * A class that represents a path between two cities. {@link Railway}s are immutable, so registered ones can be shared
+ * between every {@link Board} that uses the same {@link GameMap}; who claimed them is stored in the {@link Board}.
  *
  * @author Jed Wang
  * @since 1.0.0
@@ -31,10 +32,22 @@ public class Railway {
      */
     private final String dest1, dest2;
     /**
-     * A boolean that stores whether this {@link Railway} has been claimed or not
+     * The {@link GameMap} that this {@link Railway} is registered with, or {@code null} if it is not registered
      */
-    @Setter
-    private transient int claimedBy = -1;
+    private final GameMap map;
+    /**
+     * The id of this {@link Railway} in its {@link GameMap}, or {@code -1} if it is not registered
+     */
+    private final int id;
+    /**
+     * The city ids of the destinations of this {@link Railway}, or {@code -1} if it is not registered
+     */
+    private final int city1, city2;
+    /**
+     * A hash of the length, color and destinations of this {@link Railway}
+     */
+    @Getter(AccessLevel.NONE)
+    private final int hash;
 
     /**
      * Creates a new {@link Railway}
@@ -57,6 +70,32 @@ public class Railway {
         }
         this.dest1 = dest1;
         this.dest2 = dest2;
+
+        map = null;
+        id = city1 = city2 = -1;
+        hash = computeHash();
+    }
+
+    /**
+     * Creates a registered copy of the given {@link Railway}
+     *
+     * @param template the {@link Railway} to copy
+     * @param map      the {@link GameMap} to register with
+     * @param id       the id of the new {@link Railway}
+     * @param city1    the city id of {@code dest1}
+     * @param city2    the city id of {@code dest2}
+     */
+    Railway(Railway template, GameMap map, int id, int city1, int city2) {
+        length = template.length;
+        color = template.color;
+        dest1 = template.dest1;
+        dest2 = template.dest2;
+        hash = template.hash;
+
+        this.map = map;
+        this.id = id;
+        this.city1 = city1;
+        this.city2 = city2;
     }
 
     /**
@@ -103,14 +142,39 @@ public class Railway {
     }
 
     /**
-     * Returns whether this {@link Railway} is claimed by someone.
+     * Given the city id of one of the endpoints, returns the city id of the other one. If an endpoint is not supplied,
+     * then {@code -1} is returned.
+     *
+     * @param city the city id of the first destination
+     * @return the city id of the other destination
+     */
+    public int getOtherCity(int city) {
+        if (city1 == city) {
+            return city2;
+        } else if (city2 == city) {
+            return city1;
+        } else return -1;
+    }
+
+    /**
+     * Returns whether this {@link Railway} is registered with a {@link GameMap}.
      *
-     * @return whether this {@link Railway} is claimed by someone
+     * @return whether this {@link Railway} is registered with a {@link GameMap}
      */
-    public boolean isClaimed() {
-        return claimedBy != -1;
+    public boolean isRegistered() {
+        return map != null;
     }
 
+    /**
+     * Compares this {@link Railway} with another one. Registered {@link Railway}s are equal only if they are the same
+     * {@link Railway} of the same {@link GameMap}, since a map may hold duplicates; unregistered ones are equal if they
+     * have the same length, color and destinations. A registered {@link Railway} never equals an unregistered one, so
+     * that equality stays transitive; use {@link GameMap#indexOf(Railway)} to find the registered {@link Railway} that
+     * matches an unregistered one.
+     *
+     * @param o the object to compare with
+     * @return whether the objects are equal
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -118,7 +182,21 @@ public class Railway {
 
         Railway railway = (Railway) o;
 
-        if (length != railway.length || color != railway.color)
+        if (map != null || railway.map != null)
+            return map == railway.map && id == railway.id;
+
+        return matches(railway);
+    }
+
+    /**
+     * Determines whether the given {@link Railway} has the same length, color and destinations as this one, whether
+     * or not either is registered.
+     *
+     * @param railway the {@link Railway} to compare with
+     * @return whether the {@link Railway}s match
+     */
+    boolean matches(Railway railway) {
+        if (hash != railway.hash || length != railway.length || color != railway.color)
             return false;
 
         return Objects.equals(dest1, railway.dest1) && Objects.equals(dest2, railway.dest2) ||
@@ -127,11 +205,7 @@ public class Railway {
 
     @Override
     public int hashCode() {
-        int result = length;
-        result = 31 * result + color.hashCode();
-        result = 31 * result + 10 * (dest2.hashCode() + dest1.hashCode());
-        result = 31 * result + claimedBy;
-        return result;
+        return hash;
     }
 
     @Override
@@ -152,6 +226,19 @@ public class Railway {
                 color.getANSIColor(), length, color.toString(), dest, getOtherDestination(dest), RESET);
     }
 
+    /**
+     * Computes a hash from the length, color and destinations of this {@link Railway}. The order of the destinations
+     * does not matter.
+     *
+     * @return a hash of this {@link Railway}
+     */
+    private int computeHash() {
+        int result = length;
+        result = 31 * result + color.hashCode();
+        result = 31 * result + 10 * (dest2.hashCode() + dest1.hashCode());
+        return result;
+    }
+
     /**
      * Returns a {@link String} that can be parsed into an equivalent object.
      *
@@ -160,4 +247,20 @@ public class Railway {
     public String toMessageString() {
         return length + "|" + color + "|" + dest1 + "|" + dest2;
     }
+
+    /**
+     * Parses a {@link String} created by {@link #toMessageString()} into an equivalent object.
+     *
+     * @param message the {@link String} to parse
+     * @return an equivalent, unregistered {@link Railway}
+     */
+    public static Railway fromMessageString(String message) {
+        String[] parts = message.split("\\|");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Not a railway: " + message);
+        }
+
+        return new Railway(Integer.parseInt(parts[0].trim()), Color.valueOf(parts[1].trim()),
+                parts[2].trim(), parts[3].trim());
+    }
 }
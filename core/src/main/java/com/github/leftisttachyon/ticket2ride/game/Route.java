@@ -1,6 +1,5 @@
 package com.github.leftisttachyon.ticket2ride.game;
 
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import java.util.Collection;
@@ -16,7 +15,6 @@ import static com.github.leftisttachyon.ticket2ride.game.ConsoleColors.RESET;
  * @author Jed Wang
  * @since 1.0.0
  */
-@EqualsAndHashCode
 public class Route {
     /**
      * Destinations for this route
@@ -28,6 +26,21 @@ public class Route {
      */
     @Getter
     private final int value;
+    /**
+     * The {@link GameMap} that this {@link Route} is registered with, or {@code null} if it is not registered
+     */
+    @Getter
+    private final GameMap map;
+    /**
+     * The id of this {@link Route} in its {@link GameMap}, or {@code -1} if it is not registered
+     */
+    @Getter
+    private final int id;
+    /**
+     * The city ids of the destinations of this {@link Route}, or {@code -1} if it is not registered
+     */
+    @Getter
+    private final int city1, city2;
 
     /**
      * Creates a new {@link Route}.
@@ -40,6 +53,29 @@ public class Route {
         this.dest1 = dest1;
         this.dest2 = dest2;
         this.value = value;
+
+        map = null;
+        id = city1 = city2 = -1;
+    }
+
+    /**
+     * Creates a registered copy of the given {@link Route}.
+     *
+     * @param template the {@link Route} to copy
+     * @param map      the {@link GameMap} to register with
+     * @param id       the id of the new {@link Route}
+     * @param city1    the city id of {@code dest1}
+     * @param city2    the city id of {@code dest2}
+     */
+    Route(Route template, GameMap map, int id, int city1, int city2) {
+        dest1 = template.dest1;
+        dest2 = template.dest2;
+        value = template.value;
+
+        this.map = map;
+        this.id = id;
+        this.city1 = city1;
+        this.city2 = city2;
     }
 
     /**
@@ -76,6 +112,62 @@ public class Route {
         return dest1 + "|" + dest2 + "|" + value;
     }
 
+    /**
+     * Parses a {@link String} created by {@link #toMessageString()} into an equivalent object.
+     *
+     * @param message the {@link String} to parse
+     * @return an equivalent, unregistered {@link Route}
+     */
+    public static Route fromMessageString(String message) {
+        String[] parts = message.split("\\|");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Not a route: " + message);
+        }
+
+        return new Route(parts[0].trim(), parts[1].trim(), Integer.parseInt(parts[2].trim()));
+    }
+
+    /**
+     * Compares this {@link Route} with another one. Registered {@link Route}s are equal only if they are the same
+     * {@link Route} of the same {@link GameMap}; unregistered ones are equal if they have the same destinations and
+     * value. A registered {@link Route} never equals an unregistered one, so that equality stays transitive; use
+     * {@link GameMap#indexOf(Route)} to find the registered {@link Route} that matches an unregistered one.
+     *
+     * @param o the object to compare with
+     * @return whether the objects are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Route)) return false;
+
+        Route route = (Route) o;
+
+        if (map != null || route.map != null)
+            return map == route.map && id == route.id;
+
+        return matches(route);
+    }
+
+    /**
+     * Determines whether the given {@link Route} has the same destinations and value as this one, whether or not
+     * either is registered.
+     *
+     * @param route the {@link Route} to compare with
+     * @return whether the {@link Route}s match
+     */
+    boolean matches(Route route) {
+        return value == route.value && dest1.equals(route.dest1) && dest2.equals(route.dest2);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = dest1.hashCode();
+        result = 31 * result + dest2.hashCode();
+        result = 31 * result + value;
+        return result;
+    }
+
     @Override
     public String toString() {
         return PURPLE + dest1 + RESET + " to " + PURPLE + dest2 + RESET + " : " + value;
@@ -0,0 +1,174 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+/**
+ * A class that represents the deck of {@link Route} cards. Route ids are kept in a fixed-size ring buffer: cards are
+ * drawn from the top and returned cards go to the bottom, neither of which allocates.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class TicketDeck {
+    /**
+     * The route ids in the deck, as a ring buffer starting at {@link #head}
+     */
+    private final int[] tickets;
+    /**
+     * The index of the top card
+     */
+    private int head;
+    /**
+     * The number of cards in the deck
+     */
+    private int size;
+
+    /**
+     * Creates a deck holding the route ids {@code 0} to {@code numRoutes - 1}, shuffled with the given generator.
+     *
+     * @param numRoutes the number of routes
+     * @param random    the generator to shuffle with
+     */
+    public TicketDeck(int numRoutes, GameRandom random) {
+        tickets = new int[numRoutes];
+        for (int i = 0; i < numRoutes; i++) {
+            tickets[i] = i;
+        }
+        size = numRoutes;
+
+        // Fisher-Yates
+        for (int i = numRoutes - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = tickets[i];
+            tickets[i] = tickets[j];
+            tickets[j] = temp;
+        }
+    }
+
+    /**
+     * Creates an empty deck with room for the given number of routes, to {@link #restore(int[], int)} a deck into.
+     *
+     * @param numRoutes the number of routes
+     */
+    TicketDeck(int numRoutes) {
+        tickets = new int[numRoutes];
+    }
+
+    /**
+     * Creates a copy of the given deck.
+     *
+     * @param other the deck to copy
+     */
+    public TicketDeck(TicketDeck other) {
+        tickets = other.tickets.clone();
+        head = other.head;
+        size = other.size;
+    }
+
+    /**
+     * Draws the top card.
+     *
+     * @return the route id of the top card, or {@code -1} if the deck is empty
+     */
+    public int draw() {
+        if (size == 0) {
+            return -1;
+        }
+
+        int id = tickets[head];
+        head = (head + 1) % tickets.length;
+        size--;
+        return id;
+    }
+
+    /**
+     * Puts the given card at the bottom of the deck.
+     *
+     * @param id the route id of the card
+     */
+    public void putBack(int id) {
+        if (id < 0 || id >= tickets.length) {
+            throw new IllegalArgumentException("Invalid route id " + id);
+        }
+        if (size == tickets.length) {
+            throw new IllegalStateException("The deck is already full");
+        }
+
+        tickets[(head + size) % tickets.length] = id;
+        size++;
+    }
+
+    /**
+     * Returns the route id of the {@code n}th card from the top, without drawing it.
+     *
+     * @param n the position of the card, {@code 0} being the top
+     * @return the route id of the card
+     */
+    public int peek(int n) {
+        if (n < 0 || n >= size) {
+            throw new IndexOutOfBoundsException("Position " + n + " out of " + size);
+        }
+
+        return tickets[(head + n) % tickets.length];
+    }
+
+    /**
+     * Returns the number of cards in the deck.
+     *
+     * @return the number of cards in the deck
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copies the route ids in the deck into the given array, top card first.
+     *
+     * @param dest the array to copy into; must hold at least {@link #size()} ids
+     */
+    public void copyTo(int[] dest) {
+        int first = Math.min(size, tickets.length - head);
+        System.arraycopy(tickets, head, dest, 0, first);
+        System.arraycopy(tickets, 0, dest, first, size - first);
+    }
+
+    /**
+     * Replaces the contents of the deck.
+     *
+     * @param ids  the route ids, top card first
+     * @param size the number of cards
+     */
+    public void restore(int[] ids, int size) {
+        if (size > tickets.length) {
+            throw new IllegalArgumentException("Too many cards");
+        }
+
+        System.arraycopy(ids, 0, tickets, 0, size);
+        head = 0;
+        this.size = size;
+    }
+
+    /**
+     * Undoes the last {@link #draw()}, putting the given card back on top.
+     *
+     * @param id the route id that was drawn
+     */
+    public void undoDraw(int id) {
+        if (size == tickets.length) {
+            throw new IllegalStateException("The deck is already full");
+        }
+
+        head = (head + tickets.length - 1) % tickets.length;
+        tickets[head] = id;
+        size++;
+    }
+
+    /**
+     * Undoes the last {@link #putBack(int)}, taking the bottom card out again.
+     */
+    public void undoPutBack() {
+        if (size == 0) {
+            throw new IllegalStateException("The deck is empty");
+        }
+
+        size--;
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.leftisttachyon.ticket2ride.game;
+
+/**
+ * The keys used to hash the state of a {@link Game}. Every feature of the state, such as a {@link Railway} being
+ * owned by a certain {@link Player}, has its own pseudo-random key, and the hash of a state is the exclusive or of
+ * the keys of its features, so it can be updated in constant time whenever a single feature changes.<br>
+ * Keys are computed by mixing a unique number for every feature instead of being looked up in a table. The mixing
+ * function is a bijection, so no two features share a key, and the keys are the same for every {@link Game}. Absent
+ * features, such as an unclaimed {@link Railway}, have the key {@code 0}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+final class Zobrist {
+    /**
+     * The kind of key of an owned {@link Railway}
+     */
+    private static final int OWNER = 1;
+    /**
+     * The kind of key of a visible side card
+     */
+    private static final int SIDE_CARD = 2;
+    /**
+     * The kind of key of the current turn
+     */
+    private static final int TURN = 3;
+    /**
+     * The kind of key of the number of cards the current {@link Player} can still draw
+     */
+    private static final int DRAW_POWER = 4;
+    /**
+     * The kind of key of the number of turns left
+     */
+    private static final int TURNS_LEFT = 5;
+    /**
+     * The kind of key of the number of cards of a {@link Color} in a hand
+     */
+    private static final int CARDS = 6;
+    /**
+     * The kind of key of a {@link Route} held by a {@link Player}
+     */
+    private static final int ROUTE = 7;
+
+    /**
+     * No instances.
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key of a {@link Railway} owner.
+     *
+     * @param railway the id of the {@link Railway}
+     * @param owner   the owner, in the format used by {@link Board}
+     * @return the key
+     */
+    static long owner(int railway, byte owner) {
+        return owner == 0 ? 0 : key(OWNER, railway, owner & 0xFF);
+    }
+
+    /**
+     * Returns the key of a visible side card.
+     *
+     * @param index the index of the side card
+     * @param color the card, or {@code null}
+     * @return the key
+     */
+    static long sideCard(int index, Color color) {
+        return color == null ? 0 : key(SIDE_CARD, index, color.ordinal());
+    }
+
+    /**
+     * Returns the key of the current turn.
+     *
+     * @param turn whose turn it is
+     * @return the key
+     */
+    static long turn(int turn) {
+        return key(TURN, 0, turn);
+    }
+
+    /**
+     * Returns the key of the number of cards the current {@link Player} can still draw.
+     *
+     * @param drawPower the number of cards
+     * @return the key
+     */
+    static long drawPower(int drawPower) {
+        return key(DRAW_POWER, 0, drawPower);
+    }
+
+    /**
+     * Returns the key of the number of turns left.
+     *
+     * @param turnsLeft the number of turns left, or {@code -1} if the last round has not started
+     * @return the key
+     */
+    static long turnsLeft(int turnsLeft) {
+        return turnsLeft == -1 ? 0 : key(TURNS_LEFT, 0, turnsLeft);
+    }
+
+    /**
+     * Returns the key of the number of cards of a {@link Color} in a hand.
+     *
+     * @param turn  the turn number of the {@link Player}
+     * @param color the ordinal of the {@link Color}
+     * @param count the number of cards
+     * @return the key
+     */
+    static long cards(int turn, int color, int count) {
+        return count == 0 ? 0 : key(CARDS, turn << 8 | color, count);
+    }
+
+    /**
+     * Returns the key of a {@link Route} held by a {@link Player}.
+     *
+     * @param turn  the turn number of the {@link Player}
+     * @param route the id of the {@link Route}
+     * @return the key
+     */
+    static long route(int turn, int route) {
+        return key(ROUTE, turn, route);
+    }
+
+    /**
+     * Computes a key.
+     *
+     * @param kind  the kind of feature
+     * @param major the first number identifying the feature; at most 32 bits
+     * @param minor the second number identifying the feature; at most 24 bits
+     * @return the key
+     */
+    private static long key(int kind, int major, int minor) {
+        return GameRandom.mix(((long) kind << 56 | (major & 0xFFFFFFFFL) << 24 | minor & 0xFFFFFF)
+                + 0x9E3779B97F4A7C15L);
+    }
+}
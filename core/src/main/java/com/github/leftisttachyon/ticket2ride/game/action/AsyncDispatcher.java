@@ -0,0 +1,378 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link GameListener} that hands events off to other listeners on dedicated threads, so that slow listeners do not
+ * slow down the thread that fires the events.<br>
+ * Published events are stored in a bounded, preallocated ring buffer. Every downstream listener gets its own consumer
+ * thread and its own sequence into the buffer, so each one sees every event in publishing order no matter how far
+ * behind the others it is. When the buffer is full, the publisher waits for the slowest listener with the
+ * {@link WaitStrategy}, without holding any lock, so other publishers and {@link #close()} are not held up. A listener
+ * may publish from its own thread, but it cannot wait for itself: if the buffer is full of events that it has not
+ * handled yet, publishing fails instead of deadlocking.<br>
+ * Listeners are added before the dispatcher is started; afterwards the dispatcher is registered with a
+ * {@link com.github.leftisttachyon.ticket2ride.game.Game} like any other listener:
+ * <pre>{@code
+ * AsyncDispatcher<GameEvent> dispatcher = new AsyncDispatcher<>(1024, new BlockingWaitStrategy());
+ * dispatcher.addListener(slowListener);
+ * dispatcher.start();
+ * game.addActionListener(dispatcher);
+ * game.addTurnChangeListener(dispatcher::eventFired);
+ * }</pre>
+ *
+ * @param <E> the type of events dispatched
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class AsyncDispatcher<E extends GameEvent> implements GameListener<E>, AutoCloseable {
+    /**
+     * The ring buffer of published events
+     */
+    private final GameEvent[] slots;
+    /**
+     * {@code slots.length - 1}, used to turn sequences into indices
+     */
+    private final int mask;
+    /**
+     * How consumers wait for events
+     */
+    private final WaitStrategy waitStrategy;
+    /**
+     * The last published sequence
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /**
+     * Whether the consumers should keep running
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+    /**
+     * The consumers, one per listener
+     */
+    private final List<Consumer> consumers = new ArrayList<>();
+    /**
+     * The number of publishers waiting for room in the buffer, so that consumers only signal when someone listens
+     */
+    private final AtomicInteger waitingPublishers = new AtomicInteger();
+    /**
+     * The smallest consumer sequence seen by the publisher, cached so that it does not need to look every time
+     */
+    private long cachedGatingSequence = -1;
+    /**
+     * Whether {@link #start()} has been called
+     */
+    private boolean started = false;
+
+    /**
+     * Creates a new {@link AsyncDispatcher}
+     *
+     * @param capacity     the number of events that the ring buffer holds; must be a power of two
+     * @param waitStrategy how consumers wait for events
+     */
+    public AsyncDispatcher(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two");
+        }
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Null wait strategy");
+        }
+
+        slots = new GameEvent[capacity];
+        mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Adds a listener that is notified of every event on its own thread.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(GameListener<? super E> listener) {
+        addConsumer(GameEvent.class, listener);
+    }
+
+    /**
+     * Adds a listener that is notified of events of the given type on its own thread.
+     *
+     * @param type     the type of events to listen to
+     * @param listener the listener to add
+     * @param <T>      the type of events to listen to
+     */
+    public <T extends E> void addListener(Class<T> type, GameListener<? super T> listener) {
+        addConsumer(type, listener);
+    }
+
+    /**
+     * Starts a consumer thread for every listener.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Already started");
+        }
+        started = true;
+        running.set(true);
+
+        for (int i = 0; i < consumers.size(); i++) {
+            Thread t = new Thread(consumers.get(i), "event-dispatch-" + i);
+            t.setDaemon(true);
+            consumers.get(i).thread = t;
+            t.start();
+        }
+    }
+
+    /**
+     * Publishes an event. The event is handed to the listeners asynchronously.
+     *
+     * @param evt the event to publish
+     */
+    @Override
+    public void eventFired(E evt) {
+        publish(evt);
+    }
+
+    /**
+     * Publishes an event into the ring buffer. If the buffer is full, this waits for the slowest listener with the
+     * {@link WaitStrategy}, without holding the lock on this dispatcher.
+     *
+     * @param evt the event to publish
+     * @throws IllegalStateException if the dispatcher is not running, if it is closed or the calling thread is
+     *                               interrupted while waiting, or if the calling thread is a dispatch thread whose
+     *                               own unhandled events fill the buffer
+     */
+    public void publish(E evt) {
+        while (true) {
+            Consumer gate;
+            long wrapPoint;
+            synchronized (this) {
+                if (!running.get()) {
+                    throw new IllegalStateException(started ? "The dispatcher has been closed"
+                            : "The dispatcher has not been started");
+                }
+
+                long next = cursor.get() + 1;
+                wrapPoint = next - slots.length;
+                Consumer self = dispatchingConsumer();
+                if (wrapPoint <= cachedGatingSequence
+                        || wrapPoint <= (cachedGatingSequence = minimumSequence(next - 1, self))) {
+                    slots[(int) next & mask] = evt;
+                    cursor.set(next);
+                    break;
+                }
+
+                if (self != null && wrapPoint > self.current) {
+                    throw new IllegalStateException("The buffer is full of events that this dispatch thread has "
+                            + "not handled yet");
+                }
+                gate = gatingConsumer(wrapPoint, self);
+            }
+
+            // wait without the lock so that close() and the listeners can get on with it
+            waitingPublishers.incrementAndGet();
+            try {
+                waitStrategy.waitFor(wrapPoint, gate.sequence, running);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for room in the buffer", e);
+            } finally {
+                waitingPublishers.decrementAndGet();
+            }
+        }
+
+        waitStrategy.signalAll();
+    }
+
+    /**
+     * Returns the number of events that have been published but not yet handled by the slowest listener.
+     *
+     * @return the number of pending events
+     */
+    public long getBacklog() {
+        long published = cursor.get();
+        return published - minimumSequence(published);
+    }
+
+    /**
+     * Stops the consumer threads after they have handled every event that was published, and waits for them to
+     * finish. If the calling thread is interrupted, it stops waiting and keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!running.getAndSet(false)) {
+                return;
+            }
+        }
+        waitStrategy.signalAll();
+
+        try {
+            for (Consumer c : consumers) {
+                // a listener closing the dispatcher cannot wait for itself
+                if (c.thread != Thread.currentThread()) {
+                    c.thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a consumer for the given listener.
+     *
+     * @param type     the type of events to listen to
+     * @param listener the listener to add
+     */
+    private synchronized void addConsumer(Class<?> type, GameListener<?> listener) {
+        if (started) {
+            throw new IllegalStateException("Listeners must be added before the dispatcher is started");
+        }
+        if (type == null || listener == null) {
+            throw new IllegalArgumentException("Null listener or type");
+        }
+
+        consumers.add(new Consumer(type, listener));
+    }
+
+    /**
+     * Finds the sequence of the slowest consumer.
+     *
+     * @param defaultValue the value to return if there are no consumers
+     * @return the smallest consumer sequence
+     */
+    private long minimumSequence(long defaultValue) {
+        return minimumSequence(defaultValue, null);
+    }
+
+    /**
+     * Finds the sequence of the slowest consumer, counting the event that the given consumer is handling as handled:
+     * it was taken out of the buffer already.
+     *
+     * @param defaultValue the value to return if there are no consumers
+     * @param self         the consumer running on the calling thread, or {@code null}
+     * @return the smallest consumer sequence
+     */
+    private long minimumSequence(long defaultValue, Consumer self) {
+        long min = defaultValue;
+        for (int i = 0; i < consumers.size(); i++) {
+            Consumer c = consumers.get(i);
+            min = Math.min(min, c == self ? c.current : c.sequence.get());
+        }
+        return min;
+    }
+
+    /**
+     * Finds a consumer other than the given one that has not handled the given sequence yet.
+     *
+     * @param sequence the sequence
+     * @param self     the consumer running on the calling thread, or {@code null}
+     * @return a consumer that the publisher has to wait for
+     */
+    private Consumer gatingConsumer(long sequence, Consumer self) {
+        for (int i = 0; i < consumers.size(); i++) {
+            Consumer c = consumers.get(i);
+            if (c != self && c.sequence.get() < sequence) {
+                return c;
+            }
+        }
+        throw new IllegalStateException("No consumer is behind");
+    }
+
+    /**
+     * Finds the consumer running on the calling thread.
+     *
+     * @return the consumer running on the calling thread, or {@code null} if it is not a dispatch thread
+     */
+    private Consumer dispatchingConsumer() {
+        Thread current = Thread.currentThread();
+        for (int i = 0; i < consumers.size(); i++) {
+            if (consumers.get(i).thread == current) {
+                return consumers.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A class that feeds events from the ring buffer to a single listener.
+     */
+    private final class Consumer implements Runnable {
+        /**
+         * The type of events that the listener listens to
+         */
+        private final Class<?> type;
+        /**
+         * The listener
+         */
+        private final GameListener<?> listener;
+        /**
+         * The last sequence that the listener has handled, or {@link Long#MAX_VALUE} once the consumer has stopped
+         */
+        private final AtomicLong sequence = new AtomicLong(-1);
+        /**
+         * The sequence of the event that the listener is handling; only read by the thread that runs this consumer
+         */
+        private long current = -1;
+        /**
+         * The thread that runs this consumer
+         */
+        private Thread thread;
+
+        /**
+         * Creates a new {@link Consumer}
+         *
+         * @param type     the type of events that the listener listens to
+         * @param listener the listener
+         */
+        private Consumer(Class<?> type, GameListener<?> listener) {
+            this.type = type;
+            this.listener = listener;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            long next = sequence.get() + 1;
+            try {
+                while (true) {
+                    long available = waitStrategy.waitFor(next, cursor, running);
+                    // the cursor may have moved between the strategy reading it and seeing that the dispatcher stopped
+                    if (available < next && (available = cursor.get()) < next) {
+                        // stopped, and everything that was published has been handled
+                        return;
+                    }
+
+                    // handle the whole batch before publishing progress to the publisher
+                    for (; next <= available; next++) {
+                        GameEvent evt = slots[(int) next & mask];
+                        current = next;
+                        if (type.isInstance(evt)) {
+                            try {
+                                ((GameListener<GameEvent>) listener).eventFired(evt);
+                            } catch (RuntimeException e) {
+                                log.warn("Listener failed to handle {}", evt, e);
+                            }
+                        }
+                    }
+                    sequence.set(available);
+                    if (waitingPublishers.get() > 0) {
+                        waitStrategy.signalAll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.warn("Event dispatch thread interrupted; its listener gets no more events");
+                Thread.currentThread().interrupt();
+            } finally {
+                // a stopped consumer must not hold the publisher back
+                sequence.set(Long.MAX_VALUE);
+                waitStrategy.signalAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link WaitStrategy} that parks waiting threads on a lock. It uses no CPU while idle at the cost of a wake-up per
+ * burst of events. The publisher only takes the lock when a consumer is actually waiting.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class BlockingWaitStrategy implements WaitStrategy {
+    /**
+     * The lock that waiting threads park on
+     */
+    private final Lock lock = new ReentrantLock();
+    /**
+     * The condition that is signalled when a sequence is published
+     */
+    private final Condition published = lock.newCondition();
+    /**
+     * Whether a thread may be waiting and needs to be signalled
+     */
+    private final AtomicBoolean signalNeeded = new AtomicBoolean();
+
+    @Override
+    public long waitFor(long sequence, AtomicLong cursor, AtomicBoolean running) throws InterruptedException {
+        long available = cursor.get();
+        if (available >= sequence) {
+            return available;
+        }
+
+        lock.lock();
+        try {
+            // the flag must be raised before the cursor is checked again so that no signal is missed
+            while (true) {
+                signalNeeded.set(true);
+                if ((available = cursor.get()) >= sequence || !running.get()) {
+                    return available;
+                }
+                published.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signalAll() {
+        if (signalNeeded.getAndSet(false)) {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link WaitStrategy} that spins in a tight loop. It has the lowest latency but keeps one core busy per consumer, so
+ * it should only be used when consumers can be pinned to otherwise idle cores.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class BusySpinWaitStrategy implements WaitStrategy {
+    @Override
+    public long waitFor(long sequence, AtomicLong cursor, AtomicBoolean running) {
+        long available;
+        while ((available = cursor.get()) < sequence && running.get()) {
+            Thread.onSpinWait();
+        }
+        return available;
+    }
+
+    @Override
+    public void signalAll() {
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import com.github.leftisttachyon.ticket2ride.game.Color;
+import lombok.Getter;
+
+/**
+ * A class that represents an event that occurs when a player draws a train card.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Getter
+public class CardDrawnEvent extends GameEvent {
+    /**
+     * The turn number of the player that drew the card.
+     */
+    private final int player;
+    /**
+     * The color of the card that was drawn.
+     */
+    private final Color color;
+    /**
+     * The index of the visible card that was drawn, or {@code -1} if the card was drawn from the top of the deck.
+     */
+    private final int index;
+
+    /**
+     * Creates a new {@link CardDrawnEvent}
+     *
+     * @param source the source of the event
+     * @param player the turn number of the player that drew the card
+     * @param color  the color of the card that was drawn
+     * @param index  the index of the visible card that was drawn, or {@code -1} for the top of the deck
+     */
+    public CardDrawnEvent(Object source, int player, Color color, int index) {
+        super(source);
+
+        this.player = player;
+        this.color = color;
+        this.index = index;
+    }
+
+    /**
+     * Returns whether the card was drawn from the top of the deck instead of from the visible cards.
+     *
+     * @return whether the card was drawn from the top of the deck
+     */
+    public boolean isFromDeck() {
+        return index == -1;
+    }
+
+    @Override
+    protected String formatCommand() {
+        // cards from the deck are hidden from the other players
+        return isFromDeck() ? "PICK RANDOM" : "PICK " + color + " " + index;
+    }
+}
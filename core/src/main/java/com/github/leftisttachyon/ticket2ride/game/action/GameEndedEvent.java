@@ -0,0 +1,23 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+/**
+ * A class that represents an event that occurs when a game ends and every player has been scored.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class GameEndedEvent extends GameEvent {
+    /**
+     * Creates a new {@link GameEndedEvent}
+     *
+     * @param source the source of the event
+     */
+    public GameEndedEvent(Object source) {
+        super(source);
+    }
+
+    @Override
+    protected String formatCommand() {
+        return "ENDGAME";
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import lombok.Getter;
+
+/**
+ * The base class of every event fired by a game or a player. Events carry their data as typed fields; the textual
+ * description returned by {@link #getActionCommand()} is only built when it is first asked for.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public abstract class GameEvent {
+    /**
+     * The object that fired this event.
+     */
+    @Getter
+    private final Object source;
+    /**
+     * The textual description of this event, or {@code null} if it has not been built yet.
+     */
+    private String command;
+
+    /**
+     * Creates a new {@link GameEvent}
+     *
+     * @param source the object that fired this event
+     */
+    protected GameEvent(Object source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns a textual description of this event. It is built on the first call and cached afterwards.
+     *
+     * @return a textual description of this event
+     */
+    public String getActionCommand() {
+        if (command == null) {
+            command = formatCommand();
+        }
+        return command;
+    }
+
+    /**
+     * Builds the textual description of this event.
+     *
+     * @return the textual description of this event
+     */
+    protected abstract String formatCommand();
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + getActionCommand() + "]";
+    }
+}
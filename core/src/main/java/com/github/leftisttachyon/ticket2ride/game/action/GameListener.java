@@ -0,0 +1,18 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+/**
+ * An interface that outlines a class that listens to {@link GameEvent}s of a certain type.
+ *
+ * @param <E> the type of events listened to
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface GameListener<E extends GameEvent> {
+    /**
+     * Fired when an event occurs.
+     *
+     * @param evt an object that represents the event
+     */
+    void eventFired(E evt);
+}
@@ -0,0 +1,23 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+/**
+ * A class that represents an event that occurs when a game starts.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class GameStartedEvent extends GameEvent {
+    /**
+     * Creates a new {@link GameStartedEvent}
+     *
+     * @param source the source of the event
+     */
+    public GameStartedEvent(Object source) {
+        super(source);
+    }
+
+    @Override
+    protected String formatCommand() {
+        return "STARTGAME";
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import java.util.Arrays;
+
+/**
+ * A registry of {@link GameListener}s. Every listener may be registered for a subtype of the events that the registry
+ * dispatches and is then only notified of events of that subtype.<br>
+ * Registrations are stored in a copy-on-write array, so dispatching neither allocates nor breaks when a listener adds
+ * or removes listeners while being notified.
+ *
+ * @param <E> the type of events dispatched
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class ListenerRegistry<E extends GameEvent> {
+    /**
+     * The registrations: the type of events at every even index, followed by the listener for them
+     */
+    private volatile Object[] entries = new Object[0];
+
+    /**
+     * Registers a listener for all events.
+     *
+     * @param listener the listener to add
+     */
+    public void add(GameListener<? super E> listener) {
+        register(GameEvent.class, listener);
+    }
+
+    /**
+     * Registers a listener for events of the given type.
+     *
+     * @param type     the type of events to listen to
+     * @param listener the listener to add
+     * @param <T>      the type of events to listen to
+     */
+    public <T extends E> void add(Class<T> type, GameListener<? super T> listener) {
+        register(type, listener);
+    }
+
+    /**
+     * Adds a registration.
+     *
+     * @param type     the type of events to listen to
+     * @param listener the listener to add
+     */
+    private synchronized void register(Class<?> type, GameListener<?> listener) {
+        if (type == null || listener == null) {
+            throw new IllegalArgumentException("Null listener or type");
+        }
+
+        Object[] old = entries;
+        Object[] updated = Arrays.copyOf(old, old.length + 2);
+        updated[old.length] = type;
+        updated[old.length + 1] = listener;
+        entries = updated;
+    }
+
+    /**
+     * Removes the first registration of the given listener.
+     *
+     * @param listener the listener to remove
+     * @return whether the listener was registered
+     */
+    public synchronized boolean remove(GameListener<?> listener) {
+        Object[] old = entries;
+        for (int i = 1; i < old.length; i += 2) {
+            if (old[i] == listener) {
+                Object[] updated = new Object[old.length - 2];
+                System.arraycopy(old, 0, updated, 0, i - 1);
+                System.arraycopy(old, i + 1, updated, i - 1, old.length - i - 1);
+                entries = updated;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes all listeners.
+     */
+    public synchronized void clear() {
+        entries = new Object[0];
+    }
+
+    /**
+     * Returns whether no listeners are registered. Callers should check this before creating an event.
+     *
+     * @return whether no listeners are registered
+     */
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    /**
+     * Returns the number of registrations.
+     *
+     * @return the number of registrations
+     */
+    public int size() {
+        return entries.length / 2;
+    }
+
+    /**
+     * Notifies every listener registered for the type of the given event, in registration order.
+     *
+     * @param evt the event to dispatch
+     */
+    @SuppressWarnings("unchecked")
+    public void fire(E evt) {
+        Object[] current = entries;
+        for (int i = 0; i < current.length; i += 2) {
+            if (((Class<?>) current[i]).isInstance(evt)) {
+                ((GameListener<? super E>) current[i + 1]).eventFired(evt);
+            }
+        }
+    }
+}
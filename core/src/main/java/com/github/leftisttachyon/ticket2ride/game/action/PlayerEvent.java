@@ -0,0 +1,119 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import com.github.leftisttachyon.ticket2ride.game.Color;
+import com.github.leftisttachyon.ticket2ride.game.Railway;
+import com.github.leftisttachyon.ticket2ride.game.Route;
+import lombok.Getter;
+
+/**
+ * A class that represents an event that occurs when the state of a player changes. Which of the fields are set
+ * depends on the {@link Type} of the event.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Getter
+public class PlayerEvent extends GameEvent {
+    /**
+     * The kinds of changes to a player.
+     */
+    public enum Type {
+        /**
+         * Points were added; {@code amount} is set
+         */
+        POINTS,
+        /**
+         * A card was added; {@code color} is set
+         */
+        CARD_ADD,
+        /**
+         * Cards were removed; {@code color} and {@code amount} are set
+         */
+        CARDS_REMOVE,
+        /**
+         * A {@link Railway} was added; {@code railway} is set
+         */
+        RAIL_ADD,
+        /**
+         * A {@link Railway} was removed; {@code railway} is set
+         */
+        RAIL_REMOVE,
+        /**
+         * A {@link Route} was added; {@code route} is set
+         */
+        ROUTE_ADD,
+        /**
+         * A {@link Route} was removed; {@code route} is set
+         */
+        ROUTE_REMOVE,
+        /**
+         * Trains were removed; {@code amount} is set
+         */
+        REMOVE_TRAINS
+    }
+
+    /**
+     * The kind of change.
+     */
+    private final Type type;
+    /**
+     * The number of points, cards or trains involved, if any.
+     */
+    private final int amount;
+    /**
+     * The color of the cards involved, if any.
+     */
+    private final Color color;
+    /**
+     * The {@link Railway} involved, if any.
+     */
+    private final Railway railway;
+    /**
+     * The {@link Route} involved, if any.
+     */
+    private final Route route;
+
+    /**
+     * Creates a new {@link PlayerEvent}
+     *
+     * @param source  the source of the event
+     * @param type    the kind of change
+     * @param amount  the number of points, cards or trains involved
+     * @param color   the color of the cards involved, or {@code null}
+     * @param railway the {@link Railway} involved, or {@code null}
+     * @param route   the {@link Route} involved, or {@code null}
+     */
+    public PlayerEvent(Object source, Type type, int amount, Color color, Railway railway, Route route) {
+        super(source);
+
+        this.type = type;
+        this.amount = amount;
+        this.color = color;
+        this.railway = railway;
+        this.route = route;
+    }
+
+    @Override
+    protected String formatCommand() {
+        switch (type) {
+            case POINTS:
+                return "POINTS " + amount;
+            case CARD_ADD:
+                return "CARD ADD " + color;
+            case CARDS_REMOVE:
+                return "CARDS REMOVE " + color + " " + amount;
+            case RAIL_ADD:
+                return "RAIL ADD " + railway.toMessageString();
+            case RAIL_REMOVE:
+                return "RAIL REMOVE " + railway.toMessageString();
+            case ROUTE_ADD:
+                return "ROUTE ADD " + route.toMessageString();
+            case ROUTE_REMOVE:
+                return "ROUTE REMOVE " + route.toMessageString();
+            case REMOVE_TRAINS:
+                return "REMOVE-TRAINS " + amount;
+            default:
+                throw new IllegalStateException("Unknown type " + type);
+        }
+    }
+}
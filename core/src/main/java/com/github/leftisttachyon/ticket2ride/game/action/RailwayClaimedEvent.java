@@ -0,0 +1,50 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import com.github.leftisttachyon.ticket2ride.game.Railway;
+import lombok.Getter;
+
+/**
+ * A class that represents an event that occurs when a player claims a {@link Railway}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Getter
+public class RailwayClaimedEvent extends GameEvent {
+    /**
+     * The turn number of the player that claimed the {@link Railway}.
+     */
+    private final int player;
+    /**
+     * The {@link Railway} that was claimed.
+     */
+    private final Railway railway;
+
+    /**
+     * Creates a new {@link RailwayClaimedEvent}
+     *
+     * @param source  the source of the event
+     * @param player  the turn number of the player that claimed the {@link Railway}
+     * @param railway the registered {@link Railway} that was claimed
+     */
+    public RailwayClaimedEvent(Object source, int player, Railway railway) {
+        super(source);
+
+        this.player = player;
+        this.railway = railway;
+    }
+
+    /**
+     * Returns the id of the {@link Railway} that was claimed.
+     *
+     * @return the id of the {@link Railway}
+     */
+    public int getRailwayId() {
+        return railway.getId();
+    }
+
+    @Override
+    protected String formatCommand() {
+        return "CLAIM " + railway.toMessageString();
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import com.github.leftisttachyon.ticket2ride.game.Route;
+import lombok.Getter;
+
+/**
+ * A class that represents an event that occurs when a {@link Route} held by a player becomes completed.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Getter
+public class RouteCompletedEvent extends GameEvent {
+    /**
+     * The {@link Route} that was completed.
+     */
+    private final Route route;
+    /**
+     * The projected final score of the player after the {@link Route} was completed.
+     */
+    private final int projectedScore;
+
+    /**
+     * Creates a new {@link RouteCompletedEvent}
+     *
+     * @param source         the source of the event
+     * @param route          the {@link Route} that was completed
+     * @param projectedScore the projected final score of the player
+     */
+    public RouteCompletedEvent(Object source, Route route, int projectedScore) {
+        super(source);
+
+        this.route = route;
+        this.projectedScore = projectedScore;
+    }
+
+    @Override
+    protected String formatCommand() {
+        return "ROUTE COMPLETE " + route.toMessageString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+/**
+ * An interface that outlines a class that listens to {@link com.github.leftisttachyon.ticket2ride.game.Route}s
+ * becoming completed.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface RouteCompletionListener extends GameListener<RouteCompletedEvent> {
+    /**
+     * Fired when a route is completed.
+     *
+     * @param evt an object that represents the completion
+     */
+    void routeCompleted(RouteCompletedEvent evt);
+
+    @Override
+    default void eventFired(RouteCompletedEvent evt) {
+        routeCompleted(evt);
+    }
+}
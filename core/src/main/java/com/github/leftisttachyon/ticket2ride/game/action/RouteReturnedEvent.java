@@ -0,0 +1,42 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import com.github.leftisttachyon.ticket2ride.game.Player;
+import com.github.leftisttachyon.ticket2ride.game.Route;
+import lombok.Getter;
+
+/**
+ * A class that represents an event that occurs when a player puts a {@link Route} card back into the deck.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Getter
+public class RouteReturnedEvent extends GameEvent {
+    /**
+     * The {@link Player} that returned the {@link Route}.
+     */
+    private final Player player;
+    /**
+     * The {@link Route} that was returned.
+     */
+    private final Route route;
+
+    /**
+     * Creates a new {@link RouteReturnedEvent}
+     *
+     * @param source the source of the event
+     * @param player the {@link Player} that returned the {@link Route}
+     * @param route  the {@link Route} that was returned
+     */
+    public RouteReturnedEvent(Object source, Player player, Route route) {
+        super(source);
+
+        this.player = player;
+        this.route = route;
+    }
+
+    @Override
+    protected String formatCommand() {
+        return "RETURNROUTE " + player.getName();
+    }
+}
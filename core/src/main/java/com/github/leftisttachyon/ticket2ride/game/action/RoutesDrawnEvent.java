@@ -0,0 +1,41 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import lombok.Getter;
+
+/**
+ * A class that represents an event that occurs when a player draws {@link com.github.leftisttachyon.ticket2ride.game.Route}
+ * cards.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Getter
+public class RoutesDrawnEvent extends GameEvent {
+    /**
+     * The turn number of the player that drew the cards.
+     */
+    private final int player;
+    /**
+     * The number of cards that were drawn.
+     */
+    private final int count;
+
+    /**
+     * Creates a new {@link RoutesDrawnEvent}
+     *
+     * @param source the source of the event
+     * @param player the turn number of the player that drew the cards
+     * @param count  the number of cards that were drawn
+     */
+    public RoutesDrawnEvent(Object source, int player, int count) {
+        super(source);
+
+        this.player = player;
+        this.count = count;
+    }
+
+    @Override
+    protected String formatCommand() {
+        return "DRAWROUTES";
+    }
+}
@@ -2,8 +2,6 @@ package com.github.leftisttachyon.ticket2ride.game.action;
 
 import lombok.Getter;
 
-import java.awt.event.ActionEvent;
-
 /**
  * A class that represents an event that occurs after turns are exchanged.
  *
@@ -11,7 +9,7 @@ import java.awt.event.ActionEvent;
  * @since 1.0.0
  */
 @Getter
-public class TurnChangeEvent extends ActionEvent {
+public class TurnChangeEvent extends GameEvent {
     /**
      * The number for the new turn.
      */
@@ -21,13 +19,16 @@ public class TurnChangeEvent extends ActionEvent {
      * Creates a new {@link TurnChangeEvent}
      *
      * @param source  the source of the event
-     * @param id      the ID for this event
-     * @param command a {@link String} associated with this event
      * @param newTurn the player number of the person whose turn it is now
      */
-    public TurnChangeEvent(Object source, int id, String command, int newTurn) {
-        super(source, id, command);
+    public TurnChangeEvent(Object source, int newTurn) {
+        super(source);
 
         this.newTurn = newTurn;
     }
+
+    @Override
+    protected String formatCommand() {
+        return "TURN " + newTurn;
+    }
 }
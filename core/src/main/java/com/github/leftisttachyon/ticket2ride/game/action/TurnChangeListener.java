@@ -6,11 +6,17 @@ package com.github.leftisttachyon.ticket2ride.game.action;
  * @author Jed Wang
  * @since 1.0.0
  */
-public interface TurnChangeListener {
+@FunctionalInterface
+public interface TurnChangeListener extends GameListener<TurnChangeEvent> {
     /**
      * Fired when a turn is changed.
      *
      * @param evt an object that represents the action performed
      */
     void turnChanged(TurnChangeEvent evt);
+
+    @Override
+    default void eventFired(TurnChangeEvent evt) {
+        turnChanged(evt);
+    }
 }
@@ -0,0 +1,32 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An interface that outlines how the consumer threads of an {@link AsyncDispatcher} wait for events to be published.
+ * Strategies trade CPU usage for latency.
+ *
+ * @author Jed Wang
+ * @see BusySpinWaitStrategy
+ * @see YieldingWaitStrategy
+ * @see BlockingWaitStrategy
+ * @since 1.0.0
+ */
+public interface WaitStrategy {
+    /**
+     * Waits until the given sequence has been published or the dispatcher stops running.
+     *
+     * @param sequence the sequence to wait for
+     * @param cursor   the last published sequence
+     * @param running  whether the dispatcher is still running
+     * @return the last published sequence, which is less than {@code sequence} only if the dispatcher stopped
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    long waitFor(long sequence, AtomicLong cursor, AtomicBoolean running) throws InterruptedException;
+
+    /**
+     * Wakes up every waiting thread after a sequence has been published or the dispatcher stopped.
+     */
+    void signalAll();
+}
@@ -0,0 +1,37 @@
+package com.github.leftisttachyon.ticket2ride.game.action;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link WaitStrategy} that spins for a while and then yields its thread between checks. It keeps latency low while
+ * letting other threads run when there are more threads than cores.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class YieldingWaitStrategy implements WaitStrategy {
+    /**
+     * The number of times to spin before yielding
+     */
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public long waitFor(long sequence, AtomicLong cursor, AtomicBoolean running) {
+        int counter = SPIN_TRIES;
+        long available;
+        while ((available = cursor.get()) < sequence && running.get()) {
+            if (counter > 0) {
+                counter--;
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public void signalAll() {
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import java.nio.BufferUnderflowException;
+
+/**
+ * Reads numbers bit by bit from bytes written by a {@link BitWriter}, most significant bit first.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ * @see BitWriter
+ */
+public final class BitReader {
+    /**
+     * The bytes to read from
+     */
+    private byte[] buffer;
+    /**
+     * The position of the next bit to read
+     */
+    private long position;
+    /**
+     * The position after the last bit that can be read
+     */
+    private long limit;
+
+    /**
+     * Creates a new {@link BitReader} that reads all of the given bytes.
+     *
+     * @param buffer the bytes to read from
+     */
+    public BitReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Creates a new {@link BitReader} that reads part of the given bytes.
+     *
+     * @param buffer the bytes to read from
+     * @param offset the index of the first byte to read
+     * @param length the number of bytes to read
+     */
+    public BitReader(byte[] buffer, int offset, int length) {
+        reset(buffer, offset, length);
+    }
+
+    /**
+     * Starts reading part of the given bytes, so that one reader can be reused for many buffers.
+     *
+     * @param buffer the bytes to read from
+     * @param offset the index of the first byte to read
+     * @param length the number of bytes to read
+     */
+    public void reset(byte[] buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IllegalArgumentException("Invalid range " + offset + "+" + length);
+        }
+
+        this.buffer = buffer;
+        position = (long) offset << 3;
+        limit = (long) (offset + length) << 3;
+    }
+
+    /**
+     * Reads an unsigned number.
+     *
+     * @param count the number of bits to read, from {@code 0} to {@code 64}
+     * @return the number that was read
+     * @throws BufferUnderflowException if there are not enough bits left
+     */
+    public long read(int count) {
+        if (count < 0 || count > Long.SIZE) {
+            throw new IllegalArgumentException("Cannot read " + count + " bits");
+        }
+        if (position + count > limit) {
+            throw new BufferUnderflowException();
+        }
+
+        long value = 0;
+        while (count > 0) {
+            int index = (int) (position >>> 3), available = 8 - (int) (position & 7);
+            int n = Math.min(available, count);
+            int chunk = (buffer[index] >>> (available - n)) & ((1 << n) - 1);
+            value = value << n | chunk;
+            position += n;
+            count -= n;
+        }
+        return value;
+    }
+
+    /**
+     * Reads an unsigned number that fits in an {@code int}.
+     *
+     * @param count the number of bits to read, from {@code 0} to {@code 31}
+     * @return the number that was read
+     * @throws BufferUnderflowException if there are not enough bits left
+     */
+    public int readInt(int count) {
+        if (count > 31) {
+            throw new IllegalArgumentException("Cannot read " + count + " bits into an int");
+        }
+        return (int) read(count);
+    }
+
+    /**
+     * Reads a single bit.
+     *
+     * @return whether the bit was set
+     * @throws BufferUnderflowException if there are no bits left
+     */
+    public boolean readBoolean() {
+        return read(1) != 0;
+    }
+
+    /**
+     * Reads a number written by {@link BitWriter#writeVarInt(long, int)}.
+     *
+     * @param groupBits the number of bits in every group
+     * @return the number that was read
+     * @throws BufferUnderflowException if there are not enough bits left
+     */
+    public long readVarInt(int groupBits) {
+        long value = 0;
+        for (int shift = 0; ; shift += groupBits) {
+            if (shift >= Long.SIZE) {
+                throw new IllegalStateException("Number too long");
+            }
+            value |= read(groupBits) << shift;
+            if (!readBoolean()) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads a number written by {@link BitWriter#writeSignedVarInt(long, int)}.
+     *
+     * @param groupBits the number of bits in every group
+     * @return the number that was read
+     * @throws BufferUnderflowException if there are not enough bits left
+     */
+    public long readSignedVarInt(int groupBits) {
+        long value = readVarInt(groupBits);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads bytes, eight bits each.
+     *
+     * @param dest   the array to read into
+     * @param offset the index of the first byte to fill
+     * @param length the number of bytes to read
+     * @throws BufferUnderflowException if there are not enough bits left
+     */
+    public void readBytes(byte[] dest, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[offset + i] = (byte) read(8);
+        }
+    }
+
+    /**
+     * Skips to the start of the next whole byte.
+     */
+    public void align() {
+        position = Math.min(limit, (position + 7) & ~7L);
+    }
+
+    /**
+     * Returns the number of bits that can still be read.
+     *
+     * @return the number of bits left
+     */
+    public long remaining() {
+        return limit - position;
+    }
+}
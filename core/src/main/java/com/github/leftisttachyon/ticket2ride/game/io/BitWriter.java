@@ -0,0 +1,191 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer that numbers are written into bit by bit, most significant bit first. The buffer can be cleared
+ * and reused, so writing many values does not allocate once it has grown large enough.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ * @see BitReader
+ */
+public final class BitWriter {
+    /**
+     * The written bytes; the last one may be partially filled
+     */
+    private byte[] buffer;
+    /**
+     * The number of written bits
+     */
+    private long bits;
+
+    /**
+     * Creates a new, empty {@link BitWriter}.
+     */
+    public BitWriter() {
+        this(64);
+    }
+
+    /**
+     * Creates a new, empty {@link BitWriter}.
+     *
+     * @param capacity the initial capacity in bytes
+     */
+    public BitWriter(int capacity) {
+        buffer = new byte[Math.max(capacity, 8)];
+    }
+
+    /**
+     * Writes the lowest bits of the given value.
+     *
+     * @param value the value to write
+     * @param count the number of bits to write, from {@code 0} to {@code 64}
+     */
+    public void write(long value, int count) {
+        if (count < 0 || count > Long.SIZE) {
+            throw new IllegalArgumentException("Cannot write " + count + " bits");
+        }
+
+        ensureCapacity(bits + count);
+        while (count > 0) {
+            int index = (int) (bits >>> 3), free = 8 - (int) (bits & 7);
+            int n = Math.min(free, count);
+            int chunk = (int) (value >>> (count - n)) & ((1 << n) - 1);
+            buffer[index] |= chunk << (free - n);
+            bits += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Writes a single bit.
+     *
+     * @param value the bit to write
+     */
+    public void writeBoolean(boolean value) {
+        write(value ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes a non-negative number in groups of the given size, each followed by a bit telling whether more groups
+     * follow. Small numbers take few bits.
+     *
+     * @param value     the number to write
+     * @param groupBits the number of bits in every group
+     */
+    public void writeVarInt(long value, int groupBits) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot write negative number " + value);
+        }
+
+        long mask = (1L << groupBits) - 1;
+        while (true) {
+            write(value & mask, groupBits);
+            value >>>= groupBits;
+            writeBoolean(value != 0);
+            if (value == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a possibly negative number in groups of the given size, zigzag-encoding it so that numbers close to
+     * zero take few bits.
+     *
+     * @param value     the number to write
+     * @param groupBits the number of bits in every group
+     * @see #writeVarInt(long, int)
+     */
+    public void writeSignedVarInt(long value, int groupBits) {
+        writeVarInt((value << 1) ^ (value >> 63), groupBits);
+    }
+
+    /**
+     * Writes the given bytes, eight bits each.
+     *
+     * @param bytes the bytes to write
+     */
+    public void writeBytes(byte[] bytes) {
+        for (byte b : bytes) {
+            write(b, 8);
+        }
+    }
+
+    /**
+     * Pads the written bits with zeroes up to a whole byte.
+     */
+    public void align() {
+        bits = (bits + 7) & ~7L;
+    }
+
+    /**
+     * Returns the number of written bits.
+     *
+     * @return the number of written bits
+     */
+    public long bitLength() {
+        return bits;
+    }
+
+    /**
+     * Returns the number of bytes that hold the written bits.
+     *
+     * @return the number of written bytes
+     */
+    public int size() {
+        return (int) ((bits + 7) >>> 3);
+    }
+
+    /**
+     * Returns the written bytes. The array is only valid until this writer is written to or cleared again.
+     *
+     * @return the internal buffer; only the first {@link #size()} bytes are meaningful
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns a copy of the written bytes.
+     *
+     * @return a copy of the written bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size());
+    }
+
+    /**
+     * Discards everything written so far.
+     */
+    public void clear() {
+        Arrays.fill(buffer, 0, size(), (byte) 0);
+        bits = 0;
+    }
+
+    /**
+     * Returns the number of bits needed to write every number from {@code 0} to {@code max}.
+     *
+     * @param max the largest number
+     * @return the number of bits needed
+     */
+    public static int bitsFor(long max) {
+        return Long.SIZE - Long.numberOfLeadingZeros(max);
+    }
+
+    /**
+     * Makes sure the given number of bits fit.
+     *
+     * @param numBits the number of bits
+     */
+    private void ensureCapacity(long numBits) {
+        long needed = (numBits + 7) >>> 3;
+        if (needed > buffer.length) {
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("The buffer is full");
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.max(needed, Math.min(buffer.length * 2L, Integer.MAX_VALUE - 8)));
+        }
+    }
+}
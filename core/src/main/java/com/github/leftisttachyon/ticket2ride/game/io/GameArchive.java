@@ -0,0 +1,519 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * A read-only archive of finished games. An archive is a directory of segment files, each holding a header followed
+ * by records (see {@link GameRecord}), that are written by {@link GameArchiveWriter}. A segment file is laid out as:
+ * <pre>
+ * int   magic ("T2RA")
+ * short version
+ * then records until the end of the file
+ * </pre>
+ * Opening an archive memory-maps every segment and its {@link SegmentIndex}, which tells where the records are and
+ * which records belong to every map and player; the games themselves stay in the mapped files, and only the order of
+ * the records by time is kept on the heap. A segment without an up to date index, such as the one still being
+ * appended to, is indexed on the heap instead. Records are numbered in the order they were appended.
+ * <br>
+ * {@link #scan(int[], Supplier, BiConsumer, BinaryOperator)} splits the records across a {@link ForkJoinPool}, giving
+ * every task its own {@link GameRecord} view and its own result, and combines the results at the end.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class GameArchive implements Closeable {
+    /**
+     * The magic number at the start of every segment
+     */
+    static final int MAGIC = 0x54325241;
+    /**
+     * The current version of the format
+     */
+    static final short VERSION = 1;
+    /**
+     * The size of the header of every segment
+     */
+    static final int HEADER_SIZE = 6;
+    /**
+     * The extension of segment files
+     */
+    static final String SEGMENT_EXTENSION = ".t2ra";
+    /**
+     * The number of records below which scans stop splitting
+     */
+    private static final int SCAN_THRESHOLD = 4096;
+
+    /**
+     * The mapped segments
+     */
+    private ByteBuffer[] segments;
+    /**
+     * The index of every segment
+     */
+    private SegmentIndex[] indexes;
+    /**
+     * The number of the first record of every segment
+     */
+    private int[] bases;
+    /**
+     * The number of records
+     */
+    private int size;
+    /**
+     * The records sorted by time
+     */
+    private int[] timeOrder;
+    /**
+     * The times of the records in {@link #timeOrder}
+     */
+    private long[] sortedTimes;
+
+    /**
+     * Opens the archive in the given directory.
+     *
+     * @param directory the directory of the archive
+     * @throws IOException if the archive cannot be read
+     */
+    public GameArchive(Path directory) throws IOException {
+        int[] numbers = listSegments(directory);
+        segments = new ByteBuffer[numbers.length];
+        indexes = new SegmentIndex[numbers.length];
+        bases = new int[numbers.length];
+        for (int s = 0; s < numbers.length; s++) {
+            Path file = directory.resolve(segmentName(numbers[s]));
+            segments[s] = map(file);
+            indexes[s] = SegmentIndex.open(file, segments[s]);
+            bases[s] = size;
+            size += indexes[s].size();
+        }
+        sortByTime();
+    }
+
+    /**
+     * Returns the number of archived games.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates a view of the given record.
+     *
+     * @param id the number of the record
+     * @return a view of the record
+     */
+    public GameRecord get(int id) {
+        return moveTo(new GameRecord(), id);
+    }
+
+    /**
+     * Returns the records of the games played on the given map, in the order they were appended.
+     *
+     * @param mapName the name of the map
+     * @return the numbers of the records
+     */
+    public int[] byMap(String mapName) {
+        byte[] name = mapName.getBytes(StandardCharsets.UTF_8);
+        IntList records = new IntList();
+        for (int s = 0; s < indexes.length; s++) {
+            indexes[s].findMap(name, bases[s], records);
+        }
+        return records.toArray();
+    }
+
+    /**
+     * Returns the records of the games that the given player played in, in the order they were appended.
+     *
+     * @param playerName the name of the player
+     * @return the numbers of the records
+     */
+    public int[] byPlayer(String playerName) {
+        byte[] name = playerName.getBytes(StandardCharsets.UTF_8);
+        IntList records = new IntList();
+        for (int s = 0; s < indexes.length; s++) {
+            indexes[s].findPlayer(name, bases[s], records);
+        }
+        return records.toArray();
+    }
+
+    /**
+     * Returns the records of the games that finished in the given time range, sorted by time.
+     *
+     * @param from the earliest time, inclusive, in milliseconds since the epoch
+     * @param to   the latest time, exclusive, in milliseconds since the epoch
+     * @return the numbers of the records
+     */
+    public int[] byTime(long from, long to) {
+        int start = lowerBound(from), end = Math.max(start, lowerBound(to));
+        return Arrays.copyOfRange(timeOrder, start, end);
+    }
+
+    /**
+     * Scans every record on the common {@link ForkJoinPool}.
+     *
+     * @param supplier    creates a new result for every task
+     * @param accumulator adds a record to a result; the {@link GameRecord} is only valid during the call
+     * @param combiner    combines two results
+     * @param <A>         the type of the result
+     * @return the combined result
+     */
+    public <A> A scan(Supplier<A> supplier, BiConsumer<A, GameRecord> accumulator, BinaryOperator<A> combiner) {
+        return scan(null, supplier, accumulator, combiner);
+    }
+
+    /**
+     * Scans the given records on the common {@link ForkJoinPool}.
+     *
+     * @param records     the numbers of the records to scan, or {@code null} for all of them
+     * @param supplier    creates a new result for every task
+     * @param accumulator adds a record to a result; the {@link GameRecord} is only valid during the call
+     * @param combiner    combines two results
+     * @param <A>         the type of the result
+     * @return the combined result
+     */
+    public <A> A scan(int[] records, Supplier<A> supplier, BiConsumer<A, GameRecord> accumulator,
+                      BinaryOperator<A> combiner) {
+        return scan(ForkJoinPool.commonPool(), records, supplier, accumulator, combiner);
+    }
+
+    /**
+     * Scans the given records on the given {@link ForkJoinPool}.
+     *
+     * @param pool        the pool to scan on
+     * @param records     the numbers of the records to scan, or {@code null} for all of them
+     * @param supplier    creates a new result for every task
+     * @param accumulator adds a record to a result; the {@link GameRecord} is only valid during the call
+     * @param combiner    combines two results
+     * @param <A>         the type of the result
+     * @return the combined result
+     */
+    public <A> A scan(ForkJoinPool pool, int[] records, Supplier<A> supplier,
+                      BiConsumer<A, GameRecord> accumulator, BinaryOperator<A> combiner) {
+        int count = records == null ? size : records.length;
+        return pool.invoke(new ScanTask<>(records, 0, count, supplier, accumulator, combiner));
+    }
+
+    /**
+     * Releases the mapped segments. The mappings themselves are released by the garbage collector.
+     */
+    @Override
+    public void close() {
+        segments = new ByteBuffer[0];
+        indexes = new SegmentIndex[0];
+        bases = new int[0];
+        size = 0;
+    }
+
+    /**
+     * Lists the numbers of the segments in the given directory, in increasing order.
+     *
+     * @param directory the directory of an archive
+     * @return the numbers of the segments
+     * @throws IOException if the directory cannot be listed
+     */
+    static int[] listSegments(Path directory) throws IOException {
+        IntList numbers = new IntList();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_EXTENSION)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    try {
+                        numbers.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_EXTENSION.length())));
+                    } catch (NumberFormatException e) {
+                        log.warn("Ignoring unexpected file {} in archive {}", name, directory);
+                    }
+                }
+            }
+        }
+
+        int[] sorted = numbers.toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Returns the name of the file of the given segment.
+     *
+     * @param segment the number of the segment
+     * @return the name of the file
+     */
+    static String segmentName(int segment) {
+        return String.format("%08d%s", segment, SEGMENT_EXTENSION);
+    }
+
+    /**
+     * Maps a segment and checks its header.
+     *
+     * @param file the file of the segment
+     * @return the mapped segment
+     * @throws IOException if the segment cannot be read or is not a segment
+     */
+    static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+                throw new IOException("Not a game archive segment: " + file);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Points the given view at a record.
+     *
+     * @param record the view
+     * @param id     the number of the record
+     * @return the view
+     */
+    private GameRecord moveTo(GameRecord record, int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Record " + id + " out of " + size);
+        }
+        int s = segmentOf(id);
+        return record.moveTo(segments[s], indexes[s].getOffset(id - bases[s]));
+    }
+
+    /**
+     * Finds the segment that holds a record.
+     *
+     * @param id the number of the record
+     * @return the index of the segment
+     */
+    private int segmentOf(int id) {
+        int lo = 0, hi = bases.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (bases[mid] <= id) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Builds the time index. Records are usually appended in time order, in which case no sorting is needed; otherwise
+     * the record numbers are sorted as primitives.
+     */
+    private void sortByTime() {
+        long[] times = new long[size];
+        timeOrder = new int[size];
+        boolean sorted = true;
+        for (int s = 0; s < indexes.length; s++) {
+            for (int r = 0; r < indexes[s].size(); r++) {
+                int i = bases[s] + r;
+                times[i] = indexes[s].getTime(r);
+                timeOrder[i] = i;
+                if (i > 0 && times[i] < times[i - 1]) sorted = false;
+            }
+        }
+        sortedTimes = times;
+        if (sorted) {
+            return;
+        }
+
+        sortByKey(timeOrder, times);
+        sortedTimes = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortedTimes[i] = times[timeOrder[i]];
+        }
+    }
+
+    /**
+     * Sorts record numbers by a key with a bottom-up merge sort, so that nothing is boxed. Records with the same key
+     * keep their order.
+     *
+     * @param order the record numbers to sort
+     * @param keys  the key of every record, by number
+     */
+    private static void sortByKey(int[] order, long[] keys) {
+        int n = order.length;
+        int[] from = order, to = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    to[k++] = keys[from[j]] < keys[from[i]] ? from[j++] : from[i++];
+                }
+                while (i < mid) to[k++] = from[i++];
+                while (j < hi) to[k++] = from[j++];
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != order) {
+            System.arraycopy(from, 0, order, 0, n);
+        }
+    }
+
+    /**
+     * Finds the first position in the time index whose time is not before the given one.
+     *
+     * @param time the time to look for
+     * @return the position
+     */
+    private int lowerBound(long time) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedTimes[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * A task that scans a range of records, splitting it in half until it is small enough.
+     *
+     * @param <A> the type of the result
+     */
+    private final class ScanTask<A> extends RecursiveTask<A> {
+        /**
+         * The version of the serialized form
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The numbers of the records to scan, or {@code null} for all of them
+         */
+        private final int[] records;
+        /**
+         * The first position to scan
+         */
+        private final int from;
+        /**
+         * One past the last position to scan
+         */
+        private final int to;
+        /**
+         * Creates a new result
+         */
+        private final Supplier<A> supplier;
+        /**
+         * Adds a record to a result
+         */
+        private final BiConsumer<A, GameRecord> accumulator;
+        /**
+         * Combines two results
+         */
+        private final BinaryOperator<A> combiner;
+
+        /**
+         * Creates a new {@link ScanTask}.
+         *
+         * @param records     the numbers of the records to scan, or {@code null} for all of them
+         * @param from        the first position to scan
+         * @param to          one past the last position to scan
+         * @param supplier    creates a new result
+         * @param accumulator adds a record to a result
+         * @param combiner    combines two results
+         */
+        ScanTask(int[] records, int from, int to, Supplier<A> supplier, BiConsumer<A, GameRecord> accumulator,
+                 BinaryOperator<A> combiner) {
+            this.records = records;
+            this.from = from;
+            this.to = to;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= SCAN_THRESHOLD) {
+                A result = supplier.get();
+                GameRecord record = new GameRecord();
+                for (int i = from; i < to; i++) {
+                    accumulator.accept(result, moveTo(record, records == null ? i : records[i]));
+                }
+                return result;
+            }
+
+            int mid = (from + to) >>> 1;
+            ScanTask<A> left = new ScanTask<>(records, from, mid, supplier, accumulator, combiner);
+            left.fork();
+            A right = new ScanTask<>(records, mid, to, supplier, accumulator, combiner).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+
+    /**
+     * A growable list of {@code int}s.
+     */
+    static final class IntList {
+        /**
+         * The values
+         */
+        private int[] values = new int[4];
+        /**
+         * The number of values
+         */
+        private int size;
+
+        /**
+         * Adds a value.
+         *
+         * @param value the value to add
+         */
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Returns the number of values.
+         *
+         * @return the number of values
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns a value.
+         *
+         * @param index the index of the value
+         * @return the value
+         */
+        int get(int index) {
+            return values[index];
+        }
+
+        /**
+         * Copies the values into a new array.
+         *
+         * @return the values
+         */
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import com.github.leftisttachyon.ticket2ride.game.Game;
+import com.github.leftisttachyon.ticket2ride.game.Player;
+import com.github.leftisttachyon.ticket2ride.game.Railway;
+import com.github.leftisttachyon.ticket2ride.game.Route;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.leftisttachyon.ticket2ride.game.io.GameArchive.*;
+
+/**
+ * A class that appends finished games to a {@link GameArchive}. Games are appended to the last segment of the
+ * archive until it reaches its maximum size; then a new segment is started. A segment is sealed by writing its
+ * {@link SegmentIndex} when it is full and when the writer is closed, and its index is removed when records are
+ * appended to it again. Appending to an archive that is open for reading is safe, but the reader only sees the records
+ * that existed when it was opened.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class GameArchiveWriter implements Closeable {
+    /**
+     * The directory of the archive
+     */
+    private final Path directory;
+    /**
+     * The size that segments are not allowed to grow past, unless they hold a single record
+     */
+    private final long maxSegmentSize;
+    /**
+     * The number of the current segment
+     */
+    private int segment;
+    /**
+     * The current segment
+     */
+    private FileChannel channel;
+    /**
+     * Scratch space for building records
+     */
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+    /**
+     * Writes into {@link #bytes}
+     */
+    private final DataOutputStream data = new DataOutputStream(bytes);
+
+    /**
+     * Opens the archive in the given directory for appending, creating it if needed.
+     *
+     * @param directory      the directory of the archive
+     * @param maxSegmentSize the size in bytes that segments are not allowed to grow past
+     * @throws IOException if the archive cannot be opened
+     */
+    public GameArchiveWriter(Path directory, long maxSegmentSize) throws IOException {
+        if (maxSegmentSize <= HEADER_SIZE || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size " + maxSegmentSize);
+        }
+
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        Files.createDirectories(directory);
+
+        int[] segments = listSegments(directory);
+        segment = segments.length == 0 ? 0 : segments[segments.length - 1];
+        // full segments left without an index by a crash
+        for (int i = 0; i < segments.length - 1; i++) {
+            Path file = directory.resolve(segmentName(segments[i]));
+            if (!Files.exists(SegmentIndex.indexFile(file))) {
+                log.info("Indexing archive segment {}", file);
+                SegmentIndex.write(file, map(file));
+            }
+        }
+        openSegment();
+    }
+
+    /**
+     * Appends the outcome of a finished {@link Game}: the final score, the {@link Route}s and the {@link Railway}s
+     * of every {@link Player}.
+     *
+     * @param game    the finished {@link Game}
+     * @param time    the time the game finished, in milliseconds since the epoch
+     * @param journal the journal of the game written by {@link com.github.leftisttachyon.ticket2ride.game.GameJournal},
+     *                or {@code null}
+     * @throws IOException if writing fails
+     */
+    public void append(Game game, long time, byte[] journal) throws IOException {
+        Player[] players = game.getPlayers();
+        if (players.length > GameRecord.MAX_PLAYERS) {
+            throw new IllegalArgumentException("Too many players: " + players.length);
+        }
+
+        bytes.reset();
+        data.writeInt(0);
+        data.writeLong(time);
+        writeString(game.getBoard().getMap().getName());
+        data.writeByte(players.length);
+        for (Player p : players) {
+            writeString(p.getName());
+            data.writeInt(p.getPoints());
+
+            List<Route> routes = p.getRoutes();
+            if (routes.size() > 0xFF) {
+                throw new IllegalArgumentException("Too many routes: " + routes.size());
+            }
+            data.writeByte(routes.size());
+            for (Route r : routes) {
+                data.writeShort(r.getId() | (p.isCompleted(r) ? GameRecord.COMPLETED : 0));
+            }
+
+            int[] railways = new int[p.getOwnedRailways().size()];
+            int n = 0;
+            for (Railway r : p.getOwnedRailways()) {
+                railways[n++] = r.getId();
+            }
+            Arrays.sort(railways);
+            data.writeShort(railways.length);
+            for (int id : railways) {
+                data.writeShort(id);
+            }
+        }
+        data.writeInt(journal == null ? 0 : journal.length);
+        if (journal != null) {
+            data.write(journal);
+        }
+
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(0, record.capacity());
+        if (channel.size() > HEADER_SIZE && channel.size() + record.capacity() > maxSegmentSize) {
+            seal();
+            segment++;
+            openSegment();
+        }
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /**
+     * Closes the current segment, writing its index.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        seal();
+    }
+
+    /**
+     * Closes the current segment and writes its index.
+     *
+     * @throws IOException if closing or writing the index fails
+     */
+    private void seal() throws IOException {
+        Path file = directory.resolve(segmentName(segment));
+        try {
+            SegmentIndex.write(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Opens the segment with the current number, writing its header if it is new and removing its index, which no
+     * longer matches once records are appended. A record cut off by a crash while it was being appended is removed,
+     * so that new records follow the last complete one.
+     *
+     * @throws IOException if the segment cannot be opened
+     */
+    private void openSegment() throws IOException {
+        Path file = directory.resolve(segmentName(segment));
+        Files.deleteIfExists(SegmentIndex.indexFile(file));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size == 0) {
+            log.debug("Starting archive segment {}", file);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(header, 0) || header.getInt(0) != MAGIC || header.getShort(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a game archive segment: " + file);
+        }
+
+        ByteBuffer length = ByteBuffer.allocate(4);
+        long end = HEADER_SIZE;
+        while (end + 4 <= size) {
+            length.clear();
+            readFully(length, end);
+            int n = length.getInt(0);
+            if (n < 4 || end + n > size) break;
+            end += n;
+        }
+        if (end < size) {
+            log.warn("Removing {} bytes of incomplete record at the end of {}", size - end, file);
+            channel.truncate(end);
+        }
+        channel.position(end);
+    }
+
+    /**
+     * Fills a buffer from the current segment.
+     *
+     * @param buffer   the buffer to fill
+     * @param position the position in the segment to read from
+     * @return whether the buffer was filled before the end of the segment
+     * @throws IOException if reading fails
+     */
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a string as a UTF-8 length and bytes.
+     *
+     * @param s the string, or {@code null} for an empty one
+     * @throws IOException if writing fails
+     */
+    private void writeString(String s) throws IOException {
+        byte[] utf = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+        if (utf.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long");
+        }
+        data.writeShort(utf.length);
+        data.write(utf);
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import com.github.leftisttachyon.ticket2ride.game.Game;
+import com.github.leftisttachyon.ticket2ride.game.GameMap;
+import com.github.leftisttachyon.ticket2ride.game.GameSnapshot;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+
+/**
+ * A class that reads and writes the compact binary form of the full state of a {@link Game}. Every encoded game is
+ * a whole number of bytes:
+ * <pre>
+ * 4 bits   version
+ * varint   number of railways on the map
+ * varint   number of routes on the map
+ * ...      the {@link GameSnapshot}, see {@link GameSnapshot#write(BitWriter)}
+ * </pre>
+ * The {@link GameMap} itself is not stored; the reader has to know which map the game was played on. The numbers of
+ * railways and routes are only there to catch the wrong map being used.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class GameCodec {
+    /**
+     * The current version of the format
+     */
+    private static final int VERSION = 1;
+    /**
+     * The number of bits used to write the version
+     */
+    private static final int VERSION_BITS = 4;
+
+    /**
+     * No instantiation for you!
+     */
+    private GameCodec() {
+    }
+
+    /**
+     * Encodes the given {@link Game}.
+     *
+     * @param game the {@link Game} to encode
+     * @return the encoded game
+     */
+    public static byte[] encode(Game game) {
+        BitWriter out = new BitWriter(256);
+        encode(game.snapshot(), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Appends the given snapshot to the given {@link BitWriter}, so that many games can be written into one buffer.
+     *
+     * @param snapshot the snapshot to encode
+     * @param out      the {@link BitWriter} to write to
+     */
+    public static void encode(GameSnapshot snapshot, BitWriter out) {
+        GameMap map = snapshot.getMap();
+        out.write(VERSION, VERSION_BITS);
+        out.writeVarInt(map.getNumRailways(), 5);
+        out.writeVarInt(map.getNumRoutes(), 5);
+        snapshot.write(out);
+        out.align();
+    }
+
+    /**
+     * Decodes a {@link Game}. The new {@link Game} has no listeners.
+     *
+     * @param map  the {@link GameMap} that the game was played on
+     * @param data the encoded game
+     * @return the decoded {@link Game}
+     * @throws IOException if the data does not hold a valid game on the given map
+     */
+    public static Game decode(GameMap map, byte[] data) throws IOException {
+        return decode(map, new BitReader(data)).fork();
+    }
+
+    /**
+     * Decodes the next game from the given {@link BitReader} into a new snapshot.
+     *
+     * @param map the {@link GameMap} that the game was played on
+     * @param in  the {@link BitReader} to read from
+     * @return the decoded snapshot
+     * @throws IOException if the data does not hold a valid game on the given map
+     */
+    public static GameSnapshot decode(GameMap map, BitReader in) throws IOException {
+        try {
+            readHeader(map, in);
+            GameSnapshot snapshot = GameSnapshot.read(map, in);
+            in.align();
+            return snapshot;
+        } catch (IllegalArgumentException | IllegalStateException | BufferUnderflowException e) {
+            throw new IOException("Corrupt game", e);
+        }
+    }
+
+    /**
+     * Decodes the next game from the given {@link BitReader} into an existing snapshot, reusing its arrays.
+     *
+     * @param in   the {@link BitReader} to read from
+     * @param into the snapshot to overwrite; it must be of a game with the same map and number of players
+     * @throws IOException if the data does not hold a valid game that fits the snapshot
+     */
+    public static void decode(BitReader in, GameSnapshot into) throws IOException {
+        try {
+            readHeader(into.getMap(), in);
+            into.read(in);
+            in.align();
+        } catch (IllegalArgumentException | IllegalStateException | BufferUnderflowException e) {
+            throw new IOException("Corrupt game", e);
+        }
+    }
+
+    /**
+     * Reads and checks the header of an encoded game.
+     *
+     * @param map the {@link GameMap} that the game is expected to be played on
+     * @param in  the {@link BitReader} to read from
+     * @throws IOException if the header does not match
+     */
+    private static void readHeader(GameMap map, BitReader in) throws IOException {
+        int version = in.readInt(VERSION_BITS);
+        if (version != VERSION) {
+            throw new IOException("Unsupported game version " + version);
+        }
+        if (in.readVarInt(5) != map.getNumRailways() || in.readVarInt(5) != map.getNumRoutes()) {
+            throw new IOException("The game was not played on map " + map.getName());
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A view of one finished game in a {@link GameArchive}. The view reads straight from the memory-mapped archive and
+ * can be moved from record to record, so scanning millions of games does not copy them onto the heap. Only the
+ * methods that return {@link String}s or journals allocate.<br>
+ * A record is laid out as follows, with all numbers big-endian:
+ * <pre>
+ * int   length of the record, including this field
+ * long  the time the game finished, in milliseconds since the epoch
+ * short UTF-8 length, then the name of the map
+ * byte  number of players, then per player:
+ *   short UTF-8 length, then the name of the player
+ *   int   points
+ *   byte  number of routes, then per route: short id, with the highest bit set if the route was completed
+ *   short number of railways, then per railway: short id
+ * int   length, then the journal of the game written by {@link com.github.leftisttachyon.ticket2ride.game.GameJournal}
+ * </pre>
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class GameRecord {
+    /**
+     * The largest number of players in one record
+     */
+    static final int MAX_PLAYERS = 0xFF;
+    /**
+     * The bit of a route id that marks the route as completed
+     */
+    static final int COMPLETED = 0x8000;
+
+    /**
+     * The segment that holds the record
+     */
+    private ByteBuffer buffer;
+    /**
+     * The offset of the record in {@link #buffer}
+     */
+    private int offset;
+    /**
+     * The number of players
+     */
+    private int numPlayers;
+    /**
+     * The offset of the data of every player, and after that the offset of the journal
+     */
+    private final int[] players = new int[MAX_PLAYERS + 1];
+
+    /**
+     * Moves this view to the record at the given offset.
+     *
+     * @param buffer the segment that holds the record
+     * @param offset the offset of the record
+     * @return this view
+     */
+    GameRecord moveTo(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+
+        int position = offset + 12;
+        position += 2 + (buffer.getShort(position) & 0xFFFF);
+        numPlayers = buffer.get(position++) & 0xFF;
+        for (int p = 0; p < numPlayers; p++) {
+            players[p] = position;
+            position += 2 + (buffer.getShort(position) & 0xFFFF) + 4;
+            position += 1 + 2 * (buffer.get(position) & 0xFF);
+            position += 2 + 2 * (buffer.getShort(position) & 0xFFFF);
+        }
+        players[numPlayers] = position;
+        return this;
+    }
+
+    /**
+     * Returns the time the game finished.
+     *
+     * @return the time, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return buffer.getLong(offset + 4);
+    }
+
+    /**
+     * Returns the name of the map that the game was played on.
+     *
+     * @return the name of the map, or an empty {@link String} if it had none
+     */
+    public String getMapName() {
+        return readString(offset + 12);
+    }
+
+    /**
+     * Returns the number of players.
+     *
+     * @return the number of players
+     */
+    public int getNumPlayers() {
+        return numPlayers;
+    }
+
+    /**
+     * Returns the name of a player.
+     *
+     * @param player the turn number of the player
+     * @return the name of the player, or an empty {@link String} if they had none
+     */
+    public String getPlayerName(int player) {
+        return readString(playerOffset(player));
+    }
+
+    /**
+     * Returns the final score of a player.
+     *
+     * @param player the turn number of the player
+     * @return the final score
+     */
+    public int getPoints(int player) {
+        int position = playerOffset(player);
+        return buffer.getInt(position + 2 + (buffer.getShort(position) & 0xFFFF));
+    }
+
+    /**
+     * Returns the turn number of the player with the highest score. Ties go to the player who went first.
+     *
+     * @return the turn number of the winner
+     */
+    public int getWinner() {
+        int winner = 0;
+        for (int p = 1; p < numPlayers; p++) {
+            if (getPoints(p) > getPoints(winner)) winner = p;
+        }
+        return winner;
+    }
+
+    /**
+     * Returns the number of routes that a player held at the end of the game.
+     *
+     * @param player the turn number of the player
+     * @return the number of routes
+     */
+    public int getNumRoutes(int player) {
+        return buffer.get(routesOffset(player)) & 0xFF;
+    }
+
+    /**
+     * Returns the id of a route that a player held, in the order they were drawn.
+     *
+     * @param player the turn number of the player
+     * @param index  the index of the route
+     * @return the id of the route
+     */
+    public int getRoute(int player, int index) {
+        return buffer.getShort(routeOffset(player, index)) & (COMPLETED - 1);
+    }
+
+    /**
+     * Returns whether a route that a player held was completed.
+     *
+     * @param player the turn number of the player
+     * @param index  the index of the route
+     * @return whether the route was completed
+     */
+    public boolean isCompleted(int player, int index) {
+        return (buffer.getShort(routeOffset(player, index)) & COMPLETED) != 0;
+    }
+
+    /**
+     * Returns the number of railways that a player owned at the end of the game.
+     *
+     * @param player the turn number of the player
+     * @return the number of railways
+     */
+    public int getNumRailways(int player) {
+        return buffer.getShort(railwaysOffset(player)) & 0xFFFF;
+    }
+
+    /**
+     * Returns the id of a railway that a player owned, in increasing order.
+     *
+     * @param player the turn number of the player
+     * @param index  the index of the railway
+     * @return the id of the railway
+     */
+    public int getRailway(int player, int index) {
+        if (index < 0 || index >= getNumRailways(player)) {
+            throw new IndexOutOfBoundsException("Railway " + index);
+        }
+        return buffer.getShort(railwaysOffset(player) + 2 + 2 * index) & 0xFFFF;
+    }
+
+    /**
+     * Returns the journal of the game, as written by {@link com.github.leftisttachyon.ticket2ride.game.GameJournal}.
+     *
+     * @return a copy of the journal; empty if none was archived
+     */
+    public byte[] getJournal() {
+        int position = players[numPlayers];
+        byte[] journal = new byte[buffer.getInt(position)];
+        for (int i = 0; i < journal.length; i++) {
+            journal[i] = buffer.get(position + 4 + i);
+        }
+        return journal;
+    }
+
+    /**
+     * Finds the data of a player.
+     *
+     * @param player the turn number of the player
+     * @return the offset of the data of the player
+     */
+    private int playerOffset(int player) {
+        if (player < 0 || player >= numPlayers) {
+            throw new IndexOutOfBoundsException("Player " + player + " out of " + numPlayers);
+        }
+        return players[player];
+    }
+
+    /**
+     * Finds the routes of a player.
+     *
+     * @param player the turn number of the player
+     * @return the offset of the number of routes
+     */
+    private int routesOffset(int player) {
+        int position = playerOffset(player);
+        return position + 2 + (buffer.getShort(position) & 0xFFFF) + 4;
+    }
+
+    /**
+     * Finds a route of a player.
+     *
+     * @param player the turn number of the player
+     * @param index  the index of the route
+     * @return the offset of the route
+     */
+    private int routeOffset(int player, int index) {
+        int position = routesOffset(player);
+        if (index < 0 || index >= (buffer.get(position) & 0xFF)) {
+            throw new IndexOutOfBoundsException("Route " + index);
+        }
+        return position + 1 + 2 * index;
+    }
+
+    /**
+     * Finds the railways of a player.
+     *
+     * @param player the turn number of the player
+     * @return the offset of the number of railways
+     */
+    private int railwaysOffset(int player) {
+        int position = routesOffset(player);
+        return position + 1 + 2 * (buffer.get(position) & 0xFF);
+    }
+
+    /**
+     * Reads a string stored as a UTF-8 length and bytes.
+     *
+     * @param position the offset of the length
+     * @return the string
+     */
+    private String readString(int position) {
+        byte[] bytes = new byte[buffer.getShort(position) & 0xFFFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import com.github.leftisttachyon.ticket2ride.game.GameMap;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide cache of {@link GameMap}s. Every map is only loaded and parsed once; afterwards, the same immutable
+ * {@link GameMap} is handed to everyone that asks for it.<br>
+ * Named maps are looked up on the classpath under {@code /maps/}, preferring the compiled binary form
+ * ({@code <name>.t2rm}, see {@link MapCodec}) over the human-readable source ({@code <name>.map}, see
+ * {@link MapReader}).
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class MapCache {
+    /**
+     * The extension of binary map files
+     */
+    public static final String BINARY_EXTENSION = ".t2rm";
+    /**
+     * The extension of human-readable map files
+     */
+    public static final String SOURCE_EXTENSION = ".map";
+    /**
+     * All loaded maps, keyed by name or by file path
+     */
+    private static final Map<String, GameMap> MAPS = new ConcurrentHashMap<>();
+
+    /**
+     * No instantiation for you!
+     */
+    private MapCache() {
+    }
+
+    /**
+     * Gets the map with the given name, loading it from the classpath if it has not been loaded or registered yet.
+     *
+     * @param name the name of the map
+     * @return the map with the given name
+     * @throws UncheckedIOException if the map cannot be found or loaded
+     */
+    public static GameMap get(String name) {
+        return MAPS.computeIfAbsent(name, MapCache::loadResource);
+    }
+
+    /**
+     * Gets the map stored in the given file, loading it if it has not been loaded yet. Files ending with
+     * {@value #BINARY_EXTENSION} are memory-mapped and read as binary maps; anything else is read as a
+     * human-readable map.
+     *
+     * @param file the file to load
+     * @return the map stored in the given file
+     * @throws UncheckedIOException if the map cannot be loaded
+     */
+    public static GameMap get(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        return MAPS.computeIfAbsent(normalized.toString(), key -> loadFile(normalized));
+    }
+
+    /**
+     * Registers an already-built map, such as a generated one, under its name. If a map with the same name is
+     * already cached, that one is kept and returned.
+     *
+     * @param map the map to register
+     * @return the map that is cached under the name of the given map
+     */
+    public static GameMap register(GameMap map) {
+        if (map.getName() == null) {
+            throw new IllegalArgumentException("Only named maps can be cached");
+        }
+
+        GameMap old = MAPS.putIfAbsent(map.getName(), map);
+        return old == null ? map : old;
+    }
+
+    /**
+     * Removes every map from this cache. {@link GameMap}s that are already in use stay valid.
+     */
+    public static void clear() {
+        MAPS.clear();
+    }
+
+    /**
+     * Loads the map with the given name from the classpath.
+     *
+     * @param name the name of the map
+     * @return the loaded map
+     */
+    private static GameMap loadResource(String name) {
+        try {
+            try (InputStream in = MapCache.class.getResourceAsStream("/maps/" + name + BINARY_EXTENSION)) {
+                if (in != null) {
+                    log.debug("Loading binary map {}", name);
+                    return MapCodec.read(name, ByteBuffer.wrap(in.readAllBytes()));
+                }
+            }
+
+            try (InputStream in = MapCache.class.getResourceAsStream("/maps/" + name + SOURCE_EXTENSION)) {
+                if (in != null) {
+                    log.debug("Loading map source {}", name);
+                    return MapReader.read(name, new InputStreamReader(in, StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        throw new UncheckedIOException(new FileNotFoundException("No map named " + name));
+    }
+
+    /**
+     * Loads the map stored in the given file.
+     *
+     * @param file the file to load
+     * @return the loaded map
+     */
+    private static GameMap loadFile(Path file) {
+        String fileName = file.getFileName().toString();
+        try {
+            if (fileName.endsWith(BINARY_EXTENSION)) {
+                return MapCodec.map(fileName.substring(0, fileName.length() - BINARY_EXTENSION.length()), file);
+            }
+
+            String name = fileName.endsWith(SOURCE_EXTENSION) ?
+                    fileName.substring(0, fileName.length() - SOURCE_EXTENSION.length()) : fileName;
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                return MapReader.read(name, reader);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
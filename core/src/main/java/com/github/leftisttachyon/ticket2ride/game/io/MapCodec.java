@@ -0,0 +1,150 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import com.github.leftisttachyon.ticket2ride.game.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class that reads and writes the compact binary map format. All numbers are big-endian:
+ * <pre>
+ * int   magic ("T2RM")
+ * short version
+ * short number of cities,   then per city:    short UTF-8 length, the UTF-8 bytes of the name
+ * short number of railways, then per railway: short city, short city, byte length, byte color ordinal
+ * short number of routes,   then per route:   short city, short city, short value
+ * </pre>
+ * Cities, railways and routes are stored in id order, so a decoded map gives out the same ids as the encoded one.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class MapCodec {
+    /**
+     * The magic number at the start of every binary map
+     */
+    private static final int MAGIC = 0x5432524D;
+    /**
+     * The current version of the format
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * No instantiation for you!
+     */
+    private MapCodec() {
+    }
+
+    /**
+     * Writes the given {@link GameMap} in the binary format.
+     *
+     * @param map the {@link GameMap} to write
+     * @param out the {@link OutputStream} to write to
+     * @throws IOException if writing fails
+     */
+    public static void write(GameMap map, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        CityGraph graph = map.getGraph();
+
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+
+        data.writeShort(graph.getNumCities());
+        for (int c = 0; c < graph.getNumCities(); c++) {
+            byte[] name = graph.getCityName(c).getBytes(StandardCharsets.UTF_8);
+            data.writeShort(name.length);
+            data.write(name);
+        }
+
+        data.writeShort(map.getNumRailways());
+        for (int i = 0; i < map.getNumRailways(); i++) {
+            Railway r = map.getRailway(i);
+            data.writeShort(r.getCity1());
+            data.writeShort(r.getCity2());
+            data.writeByte(r.getLength());
+            data.writeByte(r.getColor().ordinal());
+        }
+
+        data.writeShort(map.getNumRoutes());
+        for (int i = 0; i < map.getNumRoutes(); i++) {
+            Route r = map.getRoute(i);
+            data.writeShort(r.getCity1());
+            data.writeShort(r.getCity2());
+            data.writeShort(r.getValue());
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Reads a {@link GameMap} in the binary format from the given buffer, starting at its position.
+     *
+     * @param name   the name to give the map
+     * @param buffer the buffer to read from
+     * @return the read {@link GameMap}
+     * @throws IOException if the buffer does not hold a valid map
+     */
+    public static GameMap read(String name, ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Map " + name + " is not a binary map");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Map " + name + " has unsupported version " + version);
+            }
+
+            String[] cities = new String[buffer.getShort() & 0xFFFF];
+            for (int c = 0; c < cities.length; c++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                cities[c] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            Color[] colors = Color.values();
+            int numRailways = buffer.getShort() & 0xFFFF;
+            List<Railway> railways = new ArrayList<>(numRailways);
+            for (int i = 0; i < numRailways; i++) {
+                String dest1 = cities[buffer.getShort() & 0xFFFF], dest2 = cities[buffer.getShort() & 0xFFFF];
+                int length = buffer.get() & 0xFF;
+                railways.add(new Railway(length, colors[buffer.get()], dest1, dest2));
+            }
+
+            int numRoutes = buffer.getShort() & 0xFFFF;
+            List<Route> routes = new ArrayList<>(numRoutes);
+            for (int i = 0; i < numRoutes; i++) {
+                String dest1 = cities[buffer.getShort() & 0xFFFF], dest2 = cities[buffer.getShort() & 0xFFFF];
+                routes.add(new Route(dest1, dest2, buffer.getShort() & 0xFFFF));
+            }
+
+            return new GameMap(name, railways, routes);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Map " + name + " is corrupt", e);
+        }
+    }
+
+    /**
+     * Memory-maps the given file and reads a {@link GameMap} in the binary format from it.
+     *
+     * @param name the name to give the map
+     * @param file the file to read
+     * @return the read {@link GameMap}
+     * @throws IOException if the file cannot be read or does not hold a valid map
+     */
+    public static GameMap map(String name, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(name, buffer);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import com.github.leftisttachyon.ticket2ride.game.GameMap;
+import com.github.leftisttachyon.ticket2ride.game.Railway;
+import com.github.leftisttachyon.ticket2ride.game.Route;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class that reads and writes the human-readable map format. A map file has a {@code [railways]} section with one
+ * {@link Railway#toMessageString()} per line, followed by a {@code [routes]} section with one
+ * {@link Route#toMessageString()} per line. Blank lines and lines starting with {@code #} are ignored.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class MapReader {
+    /**
+     * The header of the railway section
+     */
+    private static final String RAILWAYS = "[railways]";
+    /**
+     * The header of the route section
+     */
+    private static final String ROUTES = "[routes]";
+
+    /**
+     * No instantiation for you!
+     */
+    private MapReader() {
+    }
+
+    /**
+     * Reads a {@link GameMap} from the given {@link Reader}.
+     *
+     * @param name   the name to give the map
+     * @param reader the {@link Reader} to read from
+     * @return the read {@link GameMap}
+     * @throws IOException if the map cannot be read or is malformed
+     */
+    public static GameMap read(String name, Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<Railway> railways = new ArrayList<>();
+        List<Route> routes = new ArrayList<>();
+        String section = null;
+
+        String line;
+        int lineNum = 0;
+        while ((line = in.readLine()) != null) {
+            lineNum++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            if (RAILWAYS.equals(line) || ROUTES.equals(line)) {
+                section = line;
+                continue;
+            }
+
+            try {
+                if (RAILWAYS.equals(section)) {
+                    railways.add(Railway.fromMessageString(line));
+                } else if (ROUTES.equals(section)) {
+                    routes.add(Route.fromMessageString(line));
+                } else {
+                    throw new IllegalArgumentException("Entry outside of a section");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNum + " of map " + name + ": " + e.getMessage(), e);
+            }
+        }
+
+        try {
+            return new GameMap(name, railways, routes);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Map " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the given {@link GameMap} in the human-readable format.
+     *
+     * @param map    the {@link GameMap} to write
+     * @param writer the {@link PrintWriter} to write to
+     */
+    public static void write(GameMap map, PrintWriter writer) {
+        writer.println(RAILWAYS);
+        for (int i = 0; i < map.getNumRailways(); i++) {
+            writer.println(map.getRailway(i).toMessageString());
+        }
+
+        writer.println();
+        writer.println(ROUTES);
+        for (int i = 0; i < map.getNumRoutes(); i++) {
+            writer.println(map.getRoute(i).toMessageString());
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,411 @@
+package com.github.leftisttachyon.ticket2ride.game.io;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The index of one segment of a {@link GameArchive}: where its records are, when they finished, and which records
+ * were played on every map and by every player. Once a segment is full, {@link GameArchiveWriter} writes its index
+ * next to it, and readers memory-map the index instead of reading every record. Names are looked up by binary search
+ * in the mapped file, so opening an archive costs nothing per name. An index is laid out as follows, with all numbers
+ * big-endian and all positions counted from the start of the file:
+ * <pre>
+ * int   magic ("T2RI")
+ * short version
+ * int   length of the indexed segment
+ * int   number of records, then per record: int offset in the segment, long time
+ * int   number of maps, then per map: int position of the name, int position of the records, int number of records
+ * int   number of players, laid out like the maps
+ * then the names, as short UTF-8 length and bytes, and the records, as int numbers within the segment
+ * </pre>
+ * Maps and players are sorted by the unsigned bytes of their names. An index whose length does not match its segment
+ * is stale and is ignored; the segment is then indexed on the heap when it is opened.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+final class SegmentIndex {
+    /**
+     * The magic number at the start of every index
+     */
+    static final int MAGIC = 0x54325249;
+    /**
+     * The current version of the format
+     */
+    static final short VERSION = 1;
+    /**
+     * The extension of index files
+     */
+    static final String EXTENSION = ".t2ri";
+    /**
+     * The offset of the number of records
+     */
+    private static final int RECORDS = 10;
+    /**
+     * The size of every record entry
+     */
+    private static final int RECORD_SIZE = 12;
+    /**
+     * The size of every map or player entry
+     */
+    private static final int ENTRY_SIZE = 12;
+
+    /**
+     * The index
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The number of records
+     */
+    private final int size;
+    /**
+     * The position of the number of maps
+     */
+    private final int maps;
+    /**
+     * The position of the number of players
+     */
+    private final int players;
+
+    /**
+     * Creates a new {@link SegmentIndex} that reads the given index.
+     *
+     * @param buffer the index
+     */
+    private SegmentIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        size = buffer.getInt(RECORDS);
+        maps = RECORDS + 4 + size * RECORD_SIZE;
+        players = maps + 4 + buffer.getInt(maps) * ENTRY_SIZE;
+    }
+
+    /**
+     * Opens the index of a segment, reading it from the index file if it is up to date and indexing the segment
+     * otherwise.
+     *
+     * @param file    the file of the segment
+     * @param segment the mapped segment
+     * @return the index
+     * @throws IOException if the segment is not valid
+     */
+    static SegmentIndex open(Path file, ByteBuffer segment) throws IOException {
+        Path indexFile = indexFile(file);
+        if (Files.exists(indexFile)) {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (isValid(buffer, segment.limit())) {
+                    return new SegmentIndex(buffer);
+                }
+                log.warn("Ignoring stale or damaged index {}", indexFile);
+            }
+        }
+        return new SegmentIndex(ByteBuffer.wrap(build(file, segment)));
+    }
+
+    /**
+     * Indexes a full segment and writes the index next to it. The index is written to a temporary file first, so
+     * that a crash never leaves a partial index behind.
+     *
+     * @param file    the file of the segment
+     * @param segment the mapped segment
+     * @throws IOException if the segment is not valid or the index cannot be written
+     */
+    static void write(Path file, ByteBuffer segment) throws IOException {
+        Path indexFile = indexFile(file);
+        Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Files.write(temporary, build(file, segment));
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the file of the index of a segment.
+     *
+     * @param file the file of the segment
+     * @return the file of the index
+     */
+    static Path indexFile(Path file) {
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.length() - GameArchive.SEGMENT_EXTENSION.length())
+                + EXTENSION);
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return the number of records
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the offset of a record in the segment.
+     *
+     * @param record the number of the record within the segment
+     * @return the offset
+     */
+    int getOffset(int record) {
+        return buffer.getInt(RECORDS + 4 + record * RECORD_SIZE);
+    }
+
+    /**
+     * Returns the time of a record.
+     *
+     * @param record the number of the record within the segment
+     * @return the time, in milliseconds since the epoch
+     */
+    long getTime(int record) {
+        return buffer.getLong(RECORDS + 8 + record * RECORD_SIZE);
+    }
+
+    /**
+     * Adds the records of the games played on the given map.
+     *
+     * @param mapName the name of the map, as UTF-8
+     * @param base    the number of the first record of the segment in the archive
+     * @param out     the list to add the numbers of the records to, in the order they were appended
+     */
+    void findMap(byte[] mapName, int base, GameArchive.IntList out) {
+        find(maps, mapName, base, out);
+    }
+
+    /**
+     * Adds the records of the games that the given player played in.
+     *
+     * @param playerName the name of the player, as UTF-8
+     * @param base       the number of the first record of the segment in the archive
+     * @param out        the list to add the numbers of the records to, in the order they were appended
+     */
+    void findPlayer(byte[] playerName, int base, GameArchive.IntList out) {
+        find(players, playerName, base, out);
+    }
+
+    /**
+     * Looks up a name in a table of maps or players by binary search.
+     *
+     * @param table the position of the table
+     * @param name  the name, as UTF-8
+     * @param base  the number of the first record of the segment in the archive
+     * @param out   the list to add the numbers of the records to
+     */
+    private void find(int table, byte[] name, int base, GameArchive.IntList out) {
+        int lo = 0, hi = buffer.getInt(table);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int entry = table + 4 + mid * ENTRY_SIZE;
+            int c = compare(buffer.getInt(entry), name);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid;
+            } else {
+                int records = buffer.getInt(entry + 4), count = buffer.getInt(entry + 8);
+                for (int i = 0; i < count; i++) {
+                    out.add(base + buffer.getInt(records + 4 * i));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Compares a name in the index with the given one by their unsigned bytes.
+     *
+     * @param position the position of the name in the index
+     * @param name     the name to compare with, as UTF-8
+     * @return a negative number, zero or a positive number as the name in the index is less than, equal to or greater
+     * than the given one
+     */
+    private int compare(int position, byte[] name) {
+        int length = buffer.getShort(position) & 0xFFFF;
+        for (int i = 0; i < Math.min(length, name.length); i++) {
+            int c = Integer.compare(buffer.get(position + 2 + i) & 0xFF, name[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(length, name.length);
+    }
+
+    /**
+     * Checks that an index belongs to a segment of the given length and that its tables fit in it.
+     *
+     * @param buffer the index
+     * @param length the length of the segment
+     * @return whether the index can be used
+     */
+    private static boolean isValid(ByteBuffer buffer, int length) {
+        try {
+            if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION || buffer.getInt(6) != length) {
+                return false;
+            }
+            long maps = RECORDS + 4 + (long) buffer.getInt(RECORDS) * RECORD_SIZE;
+            long players = maps + 4 + (long) buffer.getInt((int) maps) * ENTRY_SIZE;
+            long end = players + 4 + (long) buffer.getInt((int) players) * ENTRY_SIZE;
+            return buffer.getInt(RECORDS) >= 0 && end <= buffer.limit();
+        } catch (IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Indexes every record in a segment. A record cut off by a crash while it was being appended is ignored.
+     *
+     * @param file    the file of the segment
+     * @param segment the mapped segment
+     * @return the index
+     * @throws IOException if the segment is not valid
+     */
+    private static byte[] build(Path file, ByteBuffer segment) throws IOException {
+        GameArchive.IntList offsets = new GameArchive.IntList();
+        long[] times = new long[64];
+        Map<String, GameArchive.IntList> byMap = new HashMap<>();
+        Map<String, GameArchive.IntList> byPlayer = new HashMap<>();
+        try {
+            GameRecord record = new GameRecord();
+            int offset = GameArchive.HEADER_SIZE;
+            while (offset + 4 <= segment.limit()) {
+                int length = segment.getInt(offset);
+                if (length < 4 || offset + (long) length > segment.limit()) {
+                    log.warn("Ignoring {} bytes of incomplete record at the end of {}", segment.limit() - offset,
+                            file);
+                    break;
+                }
+
+                record.moveTo(segment, offset);
+                int id = offsets.size();
+                if (id == times.length) {
+                    times = Arrays.copyOf(times, id * 2);
+                }
+                offsets.add(offset);
+                times[id] = record.getTime();
+                add(byMap, record.getMapName(), id);
+                for (int p = 0; p < record.getNumPlayers(); p++) {
+                    String name = record.getPlayerName(p);
+                    if (!name.isEmpty()) {
+                        add(byPlayer, name, id);
+                    }
+                }
+                offset += length;
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt game archive segment: " + file, e);
+        }
+
+        List<byte[]> mapNames = sortedNames(byMap), playerNames = sortedNames(byPlayer);
+        int size = offsets.size();
+        int position = RECORDS + 4 + size * RECORD_SIZE + 4 + mapNames.size() * ENTRY_SIZE + 4
+                + playerNames.size() * ENTRY_SIZE;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(position + 64 * size);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(segment.limit());
+        data.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            data.writeInt(offsets.get(i));
+            data.writeLong(times[i]);
+        }
+        position = writeEntries(data, mapNames, byMap, position);
+        writeEntries(data, playerNames, byPlayer, position);
+        writeNames(data, mapNames, byMap);
+        writeNames(data, playerNames, byPlayer);
+        data.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Adds a record under a name.
+     *
+     * @param index the records by name
+     * @param name  the name
+     * @param id    the number of the record within the segment
+     */
+    private static void add(Map<String, GameArchive.IntList> index, String name, int id) {
+        GameArchive.IntList records = index.computeIfAbsent(name, k -> new GameArchive.IntList());
+        // a player can appear twice in the same game
+        if (records.size() == 0 || records.get(records.size() - 1) != id) {
+            records.add(id);
+        }
+    }
+
+    /**
+     * Sorts the names of an index by their unsigned bytes.
+     *
+     * @param index the records by name
+     * @return the names, as UTF-8
+     */
+    private static List<byte[]> sortedNames(Map<String, GameArchive.IntList> index) {
+        List<byte[]> names = new ArrayList<>();
+        for (String name : index.keySet()) {
+            byte[] utf = name.getBytes(StandardCharsets.UTF_8);
+            if (utf.length > 0xFFFF) {
+                throw new IllegalArgumentException("String too long");
+            }
+            names.add(utf);
+        }
+        names.sort(Arrays::compareUnsigned);
+        return names;
+    }
+
+    /**
+     * Writes the entries of a table of maps or players.
+     *
+     * @param data     where to write
+     * @param names    the sorted names, as UTF-8
+     * @param index    the records by name
+     * @param position the position that the name of the first entry is written at
+     * @return the position after the names and records of the entries
+     * @throws IOException if writing fails
+     */
+    private static int writeEntries(DataOutputStream data, List<byte[]> names, Map<String,
+            GameArchive.IntList> index, int position) throws IOException {
+        data.writeInt(names.size());
+        for (byte[] name : names) {
+            GameArchive.IntList records = index.get(new String(name, StandardCharsets.UTF_8));
+            int recordsAt = position + 2 + name.length;
+            data.writeInt(position);
+            data.writeInt(recordsAt);
+            data.writeInt(records.size());
+            position = recordsAt + 4 * records.size();
+        }
+        return position;
+    }
+
+    /**
+     * Writes the names and records of a table of maps or players, in the order of its entries.
+     *
+     * @param data  where to write
+     * @param names the sorted names, as UTF-8
+     * @param index the records by name
+     * @throws IOException if writing fails
+     */
+    private static void writeNames(DataOutputStream data, List<byte[]> names, Map<String, GameArchive.IntList> index)
+            throws IOException {
+        for (byte[] name : names) {
+            GameArchive.IntList records = index.get(new String(name, StandardCharsets.UTF_8));
+            data.writeShort(name.length);
+            data.write(name);
+            for (int i = 0; i < records.size(); i++) {
+                data.writeInt(records.get(i));
+            }
+        }
+    }}
@@ -0,0 +1,228 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.Board;
+import com.github.leftisttachyon.ticket2ride.game.Game;
+import com.github.leftisttachyon.ticket2ride.game.action.*;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link AsyncDispatcher} class.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class AsyncDispatcherTest {
+    /**
+     * Tests that every listener sees every event in order with every {@link WaitStrategy}
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void orderTest() throws InterruptedException {
+        for (WaitStrategy strategy : new WaitStrategy[]{
+                new BusySpinWaitStrategy(), new YieldingWaitStrategy(), new BlockingWaitStrategy()}) {
+            AsyncDispatcher<GameEvent> dispatcher = new AsyncDispatcher<>(8, strategy);
+            List<Integer> fast = Collections.synchronizedList(new ArrayList<>()),
+                    slow = Collections.synchronizedList(new ArrayList<>());
+            dispatcher.addListener(TurnChangeEvent.class, evt -> fast.add(evt.getNewTurn()));
+            dispatcher.addListener(TurnChangeEvent.class, evt -> {
+                if (evt.getNewTurn() % 16 == 0) Thread.yield();
+                slow.add(evt.getNewTurn());
+            });
+            dispatcher.start();
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                dispatcher.publish(new TurnChangeEvent(this, i));
+                dispatcher.publish(new GameStartedEvent(this));
+                expected.add(i);
+            }
+            dispatcher.close();
+
+            assertEquals(expected, fast);
+            assertEquals(expected, slow);
+            assertEquals(0, dispatcher.getBacklog());
+        }
+    }
+
+    /**
+     * Tests dispatching the events of a {@link Game}
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void gameTest() throws InterruptedException {
+        Game g = new Game(new Board(MapCache.get("us"), 7L), 2);
+        AsyncDispatcher<GameEvent> dispatcher = new AsyncDispatcher<>(16, new BlockingWaitStrategy());
+        List<String> commands = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.addListener(evt -> commands.add(evt.getActionCommand()));
+        dispatcher.start();
+        g.addActionListener(dispatcher);
+        g.addTurnChangeListener(dispatcher::eventFired);
+
+        g.startGame();
+        g.pickRandom();
+        g.pickRandom();
+        dispatcher.close();
+
+        assertEquals(List.of("STARTGAME", "PICK RANDOM", "PICK RANDOM", "TURN 1"), commands);
+    }
+
+    /**
+     * Tests that a consumer thread that is interrupted stops holding the publisher back, and that an interrupted
+     * thread closing the dispatcher does not lose its interrupt status
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test(timeout = 10000)
+    public void interruptTest() throws InterruptedException {
+        AsyncDispatcher<GameEvent> dispatcher = new AsyncDispatcher<>(4, new BlockingWaitStrategy());
+        AtomicReference<Thread> interrupted = new AtomicReference<>();
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.addListener(TurnChangeEvent.class, evt -> {
+            if (interrupted.compareAndSet(null, Thread.currentThread())) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.addListener(TurnChangeEvent.class, evt -> {
+            if (evt.getNewTurn() == 99) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            seen.add(evt.getNewTurn());
+        });
+        dispatcher.start();
+
+        dispatcher.publish(new TurnChangeEvent(this, 0));
+        while (interrupted.get() == null) {
+            Thread.yield();
+        }
+        interrupted.get().join();
+        // far more than the buffer holds
+        for (int i = 1; i < 100; i++) {
+            dispatcher.publish(new TurnChangeEvent(this, i));
+        }
+
+        // the other listener is stuck on the last event
+        Thread.currentThread().interrupt();
+        dispatcher.close();
+        assertTrue(Thread.interrupted());
+        release.countDown();
+        while (seen.size() < 100) {
+            Thread.yield();
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) seen.get(i));
+        }
+    }
+
+    /**
+     * Tests that closing the dispatcher wakes up a publisher that is waiting for room in a full buffer, with every
+     * {@link WaitStrategy}
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test(timeout = 10000)
+    public void fullCloseTest() throws InterruptedException {
+        for (WaitStrategy strategy : new WaitStrategy[]{
+                new BusySpinWaitStrategy(), new YieldingWaitStrategy(), new BlockingWaitStrategy()}) {
+            AsyncDispatcher<GameEvent> dispatcher = new AsyncDispatcher<>(4, strategy);
+            CountDownLatch release = new CountDownLatch(1);
+            List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+            dispatcher.addListener(TurnChangeEvent.class, evt -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                seen.add(evt.getNewTurn());
+            });
+            dispatcher.start();
+
+            AtomicReference<RuntimeException> failure = new AtomicReference<>();
+            AtomicInteger published = new AtomicInteger();
+            Thread publisher = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        dispatcher.publish(new TurnChangeEvent(this, i));
+                        published.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    failure.set(e);
+                }
+            });
+            publisher.start();
+            while (published.get() < 4) {
+                Thread.yield();
+            }
+
+            // the listener is stuck, so close() waits for it, but the publisher must give up
+            Thread closer = new Thread(dispatcher::close);
+            closer.start();
+            publisher.join();
+            assertTrue(failure.get() instanceof IllegalStateException);
+            assertTrue(closer.isAlive());
+
+            release.countDown();
+            closer.join();
+            assertEquals(published.get(), seen.size());
+        }
+    }
+
+    /**
+     * Tests that a listener can publish from its own dispatch thread, and that it is refused instead of deadlocking
+     * once its own unhandled events fill the buffer
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test(timeout = 10000)
+    public void republishTest() throws InterruptedException {
+        AsyncDispatcher<GameEvent> dispatcher = new AsyncDispatcher<>(4, new BlockingWaitStrategy());
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger refused = new AtomicInteger();
+        dispatcher.addListener(TurnChangeEvent.class, evt -> {
+            seen.add(evt.getNewTurn());
+            int fanOut = evt.getNewTurn() < 50 ? 1 : 8;
+            for (int i = 0; i < fanOut && evt.getNewTurn() < 60; i++) {
+                try {
+                    dispatcher.publish(new TurnChangeEvent(this, evt.getNewTurn() + 1));
+                } catch (IllegalStateException e) {
+                    refused.incrementAndGet();
+                }
+            }
+        });
+        dispatcher.start();
+
+        dispatcher.publish(new TurnChangeEvent(this, 0));
+        while (refused.get() == 0) {
+            Thread.yield();
+        }
+        dispatcher.close();
+
+        for (int i = 0; i <= 50; i++) {
+            assertEquals(i, (int) seen.get(i));
+        }
+    }
+
+    /**
+     * Tests that events cannot be published before the dispatcher starts
+     */
+    @Test(expected = IllegalStateException.class)
+    public void notStartedTest() {
+        new AsyncDispatcher<>(4, new YieldingWaitStrategy()).publish(new GameStartedEvent(this));
+    }
+}
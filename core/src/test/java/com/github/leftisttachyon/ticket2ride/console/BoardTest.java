@@ -1,8 +1,6 @@
 package com.github.leftisttachyon.ticket2ride.console;
 
-import com.github.leftisttachyon.ticket2ride.game.Board;
-import com.github.leftisttachyon.ticket2ride.game.Color;
-import com.github.leftisttachyon.ticket2ride.game.Railway;
+import com.github.leftisttachyon.ticket2ride.game.*;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Test;
 
@@ -55,8 +53,11 @@ public class BoardTest {
         log.info("{}", b.getCities());
         assertEquals(Set.of("a", "b"), b.getCities());
 
-        assertEquals(b.getRailways("a"), l);
-        assertEquals(b.getRailways("b"), l);
+        // registered railways are only equal to themselves, so compare with the railways of the map
+        GameMap map = b.getMap();
+        List<Railway> registered = List.of(map.getRailway(0), map.getRailway(1));
+        assertEquals(b.getRailways("a"), registered);
+        assertEquals(b.getRailways("b"), registered);
     }
 
     /**
@@ -93,6 +94,68 @@ public class BoardTest {
         assertEquals(e.hashCode(), b.getRailway(e1).hashCode());
     }
 
+    /**
+     * Tests that the integer-indexed {@link CityGraph} agrees with the {@link String}-based methods
+     *
+     * @see Board#getGraph()
+     */
+    @Test
+    public void graphTest() {
+        Board b = Board.createUSBoard();
+        CityGraph graph = b.getGraph();
+        assertEquals(b.getCities().size(), graph.getNumCities());
+
+        for (String city : b.getCities()) {
+            int id = graph.getCityId(city);
+            assertEquals(city, graph.getCityName(id));
+
+            List<Railway> railways = b.getRailways(city);
+            assertEquals(graph.endSlot(id) - graph.firstSlot(id), railways.size());
+            for (int slot = graph.firstSlot(id), i = 0; slot < graph.endSlot(id); slot++, i++) {
+                Railway r = b.getRailway(graph.slotRailway(slot));
+                assertSame(r, railways.get(i));
+                assertEquals(r.getOtherDestination(city), graph.getCityName(graph.slotCity(slot)));
+            }
+        }
+
+        assertEquals(-1, graph.getCityId("Atlantis"));
+    }
+
+    /**
+     * Tests the ids given out by a {@link GameMap}
+     *
+     * @see GameMap#indexOf(Railway)
+     */
+    @Test
+    public void registryTest() {
+        List<Railway> l = new LinkedList<>();
+        l.add(new Railway(1, Color.WHITE, "a", "b"));
+        l.add(new Railway(1, Color.WHITE, "a", "b"));
+        l.add(new Railway(2, Color.RED, "b", "c"));
+        Board b = new Board(l, List.of(new Route("a", "c", 3)));
+        GameMap map = b.getMap();
+
+        Railway first = map.getRailway(0), second = map.getRailway(1);
+        assertEquals(0, first.getId());
+        assertEquals(1, second.getId());
+        assertNotEquals(first, second);
+        // equality stays transitive: templates equal each other, but not the railways registered from them
+        assertEquals(l.get(0), l.get(1));
+        assertNotEquals(first, l.get(0));
+        assertNotEquals(l.get(1), second);
+        assertEquals(0, map.indexOf(l.get(1)));
+        assertEquals(map.getGraph().getCityId("b"), first.getCity2());
+
+        assertEquals(2, map.indexOf(new Railway(2, Color.RED, "c", "b")));
+        assertEquals(1, map.indexOf(second));
+        assertEquals(-1, map.indexOf(new Railway(2, Color.BLUE, "c", "b")));
+
+        Route route = map.getRoute(0);
+        assertEquals(0, map.indexOf(new Route("a", "c", 3)));
+        assertNotEquals(new Route("a", "c", 3), route);
+        assertEquals(map.getGraph().getCityId("c"), route.getCity2());
+    }
+
     /**
      * Tests {@link Board#getRailways(String)}
      */
@@ -0,0 +1,108 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.CardDeck;
+import com.github.leftisttachyon.ticket2ride.game.Color;
+import com.github.leftisttachyon.ticket2ride.game.GameRandom;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link CardDeck} class.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class CardDeckTest {
+    /**
+     * Tests that a new deck has the right cards and that the counts follow draws
+     */
+    @Test
+    public void countTest() {
+        CardDeck deck = new CardDeck(new GameRandom(1));
+        assertEquals(CardDeck.TOTAL_CARDS, deck.size());
+        assertEquals(CardDeck.RAINBOW_CARDS, deck.getRemaining(Color.RAINBOW));
+        assertEquals(CardDeck.CARDS_PER_COLOR, deck.getRemaining(Color.RED));
+        assertEquals(0, deck.getRemaining(Color.NONE));
+
+        Color c = deck.draw();
+        assertEquals(CardDeck.TOTAL_CARDS - 1, deck.size());
+        assertEquals((c == Color.RAINBOW ? CardDeck.RAINBOW_CARDS : CardDeck.CARDS_PER_COLOR) - 1,
+                deck.getRemaining(c));
+    }
+
+    /**
+     * Tests that the discard pile is shuffled back in once the deck runs out
+     */
+    @Test
+    public void reshuffleTest() {
+        CardDeck deck = new CardDeck(new GameRandom(2));
+        for (int i = 0; i < CardDeck.TOTAL_CARDS; i++) {
+            assertNotNull(deck.draw());
+        }
+        assertNull(deck.draw());
+
+        deck.discard(Color.BLUE, 3);
+        assertEquals(3, deck.getDiscarded(Color.BLUE));
+        assertEquals(Color.BLUE, deck.draw());
+        assertEquals(0, deck.getDiscardSize());
+        assertEquals(2, deck.size());
+        assertEquals(2, deck.getRemaining(Color.BLUE));
+    }
+
+    /**
+     * Tests that equal seeds give equal decks and that copies are independent
+     */
+    @Test
+    public void seedAndCopyTest() {
+        CardDeck a = new CardDeck(new GameRandom(42)), b = new CardDeck(new GameRandom(42));
+        CardDeck copy = a.copy();
+
+        for (int i = 0; i < CardDeck.TOTAL_CARDS; i++) {
+            Color c = a.draw();
+            assertEquals(c, b.draw());
+            a.discard(c, 1);
+        }
+
+        // a reshuffles its discards, the copy never drew anything
+        assertNotNull(a.draw());
+        assertEquals(CardDeck.TOTAL_CARDS, copy.size());
+    }
+
+    /**
+     * Tests that {@link CardDeck#rollback(int)} undoes draws, discards and reshuffles, so that the deck deals the
+     * same cards again afterwards
+     */
+    @Test
+    public void rollbackTest() {
+        CardDeck deck = new CardDeck(new GameRandom(3));
+        for (int i = 0; i < CardDeck.TOTAL_CARDS - 4; i++) {
+            deck.discard(deck.draw(), 1);
+        }
+
+        CardDeck before = deck.copy();
+        int mark = deck.mark();
+        StringBuilder first = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            Color c = deck.draw();
+            first.append(c);
+            if (i % 3 == 0) deck.discard(c, 1);
+        }
+        deck.rollback(mark);
+
+        assertEquals(before.size(), deck.size());
+        assertEquals(before.getDiscardSize(), deck.getDiscardSize());
+        for (Color c : Color.values()) {
+            assertEquals(before.getRemaining(c), deck.getRemaining(c));
+            assertEquals(before.getDiscarded(c), deck.getDiscarded(c));
+        }
+
+        StringBuilder second = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            Color c = deck.draw();
+            second.append(c);
+            if (i % 3 == 0) deck.discard(c, 1);
+        }
+        assertEquals(first.toString(), second.toString());
+    }
+}
@@ -0,0 +1,377 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.*;
+import com.github.leftisttachyon.ticket2ride.game.io.GameArchive;
+import com.github.leftisttachyon.ticket2ride.game.io.GameArchiveWriter;
+import com.github.leftisttachyon.ticket2ride.game.io.GameCodec;
+import com.github.leftisttachyon.ticket2ride.game.io.GameRecord;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link GameArchive} and {@link GameArchiveWriter}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class GameArchiveTest {
+    /**
+     * The names that players are picked from
+     */
+    private static final String[] NAMES = {"Alice", "Bob", "Carol", "Dave"};
+
+    /**
+     * A temporary directory for archives
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that archived games can be read back, indexed and scanned
+     */
+    @Test
+    public void archiveTest() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("archive");
+        Random random = new Random(3);
+        List<Game> games = new ArrayList<>();
+        List<byte[]> journals = new ArrayList<>();
+        long[] times = new long[12];
+
+        // small segments, so that the archive spans several of them
+        try (GameArchiveWriter writer = new GameArchiveWriter(directory, 1024)) {
+            for (int i = 0; i < times.length; i++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                Game g = play(random, bytes);
+                // out of order, so that the time index has to be sorted
+                times[i] = 1_000_000L * ((i * 7) % times.length);
+                writer.append(g, times[i], bytes.toByteArray());
+                games.add(g);
+                journals.add(bytes.toByteArray());
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1);
+        }
+
+        try (GameArchive archive = new GameArchive(directory)) {
+            assertEquals(games.size(), archive.size());
+            for (int i = 0; i < games.size(); i++) {
+                Game g = games.get(i);
+                GameRecord r = archive.get(i);
+                assertEquals(times[i], r.getTime());
+                assertEquals("us", r.getMapName());
+                assertEquals(g.getPlayers().length, r.getNumPlayers());
+                for (int p = 0; p < r.getNumPlayers(); p++) {
+                    Player player = g.getPlayer(p);
+                    assertEquals(player.getName(), r.getPlayerName(p));
+                    assertEquals(player.getPoints(), r.getPoints(p));
+                    assertEquals(player.getRoutes().size(), r.getNumRoutes(p));
+                    for (int j = 0; j < r.getNumRoutes(p); j++) {
+                        Route route = player.getRoutes().get(j);
+                        assertEquals(route.getId(), r.getRoute(p, j));
+                        assertEquals(player.isCompleted(route), r.isCompleted(p, j));
+                    }
+                    assertEquals(player.getOwnedRailways().size(), r.getNumRailways(p));
+                    for (int j = 0; j < r.getNumRailways(p); j++) {
+                        assertTrue(player.getOwnedRailways().contains(
+                                g.getBoard().getMap().getRailway(r.getRailway(p, j))));
+                    }
+                }
+                assertArrayEquals(journals.get(i), r.getJournal());
+
+                Game replayed = new GameReplayer(r.getJournal()).replay();
+                assertArrayEquals(GameCodec.encode(g), GameCodec.encode(replayed));
+            }
+
+            assertArrayEquals(expected(games.size(), i -> true), archive.byMap("us"));
+            assertEquals(0, archive.byMap("nowhere").length);
+            for (String name : NAMES) {
+                assertArrayEquals(name, expected(games.size(), i -> hasPlayer(games.get(i), name)),
+                        archive.byPlayer(name));
+            }
+
+            int[] all = archive.byTime(Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(games.size(), all.length);
+            for (int i = 1; i < all.length; i++) {
+                assertTrue(times[all[i - 1]] < times[all[i]]);
+            }
+
+            int[] range = archive.byTime(2_000_000L, 6_000_000L);
+            assertEquals(4, range.length);
+            for (int i = 0; i < range.length; i++) {
+                assertEquals(2_000_000L + 1_000_000L * i, times[range[i]]);
+            }
+
+            // win rate by first route, computed in parallel and sequentially
+            Map<Integer, int[]> parallel = archive.scan(HashMap::new, GameArchiveTest::countWins,
+                    GameArchiveTest::merge);
+            Map<Integer, int[]> sequential = new HashMap<>();
+            for (int i = 0; i < archive.size(); i++) {
+                countWins(sequential, archive.get(i));
+            }
+            assertEquals(sequential.keySet(), parallel.keySet());
+            for (Integer route : sequential.keySet()) {
+                assertArrayEquals(sequential.get(route), parallel.get(route));
+            }
+
+            int[] some = archive.byPlayer(NAMES[0]);
+            int counted = archive.scan(some, () -> new int[1], (count, r) -> count[0]++, (a, b) -> {
+                a[0] += b[0];
+                return a;
+            })[0];
+            assertEquals(some.length, counted);
+        }
+    }
+
+    /**
+     * Tests that full segments get an index on disk, and that missing, damaged and stale indexes fall back to reading
+     * the segment
+     */
+    @Test
+    public void indexTest() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("indexed");
+        String[] names = {"Zo\u00eb", "\u00c5sa", "Zed", "Abe"};
+        Random random = new Random(6);
+        try (GameArchiveWriter writer = new GameArchiveWriter(directory, 256)) {
+            for (int i = 0; i < 10; i++) {
+                Game g = play(random, null);
+                for (int p = 0; p < g.getPlayers().length; p++) {
+                    g.getPlayer(p).setName(names[(i + p) % names.length]);
+                }
+                writer.append(g, i, null);
+            }
+        }
+        List<Path> segments = files(directory, ".t2ra");
+        assertTrue(segments.size() > 1);
+        assertEquals(segments.size(), files(directory, ".t2ri").size());
+
+        List<int[]> indexed = lookups(directory, names);
+        assertEquals(10, indexed.get(0).length);
+        for (int i = 1; i < indexed.size(); i++) {
+            assertTrue(indexed.get(i).length > 0);
+        }
+
+        // a damaged index
+        Path first = files(directory, ".t2ri").get(0);
+        byte[] index = Files.readAllBytes(first);
+        Files.write(first, Arrays.copyOf(index, 20));
+        assertLookups(indexed, lookups(directory, names));
+
+        // no indexes at all, which the writer fills in for the full segments
+        for (Path file : files(directory, ".t2ri")) {
+            Files.delete(file);
+        }
+        assertLookups(indexed, lookups(directory, names));
+        new GameArchiveWriter(directory, 256).close();
+        assertEquals(segments.size(), files(directory, ".t2ri").size());
+        assertLookups(indexed, lookups(directory, names));
+
+        // appending makes the index of the last segment stale until the writer is closed
+        try (GameArchiveWriter writer = new GameArchiveWriter(directory, 1 << 20)) {
+            Game g = play(random, null);
+            for (int p = 0; p < g.getPlayers().length; p++) {
+                g.getPlayer(p).setName("Abe");
+            }
+            writer.append(g, 10, null);
+            assertEquals(segments.size() - 1, files(directory, ".t2ri").size());
+            assertEquals(11, lookups(directory, names).get(0).length);
+        }
+        assertEquals(segments.size(), files(directory, ".t2ri").size());
+        List<int[]> appended = lookups(directory, names);
+        assertEquals(11, appended.get(0).length);
+        assertArrayEquals(names[3], IntStream.concat(Arrays.stream(indexed.get(4)), IntStream.of(10)).toArray(),
+                appended.get(4));
+    }
+
+    /**
+     * Tests that a record cut off at the end of a segment is ignored, and that appending resumes after it
+     */
+    @Test
+    public void truncatedTest() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("truncated");
+        Random random = new Random(4);
+        try (GameArchiveWriter writer = new GameArchiveWriter(directory, 1 << 20)) {
+            writer.append(play(random, null), 1L, null);
+            writer.append(play(random, null), 2L, null);
+        }
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow(AssertionError::new);
+        }
+        byte[] data = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(data, data.length - 5));
+
+        try (GameArchive archive = new GameArchive(directory)) {
+            assertEquals(1, archive.size());
+            assertEquals(1L, archive.get(0).getTime());
+            assertEquals(0, archive.get(0).getJournal().length);
+        }
+
+        try (GameArchiveWriter writer = new GameArchiveWriter(directory, 1 << 20)) {
+            writer.append(play(random, null), 3L, null);
+        }
+        try (GameArchive archive = new GameArchive(directory)) {
+            assertEquals(2, archive.size());
+            assertEquals(3L, archive.get(1).getTime());
+        }
+
+        Files.write(segment, new byte[]{1, 2, 3}, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            new GameArchive(directory);
+            fail("A damaged segment was read");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * Lists the files in a directory with the given extension, sorted by name.
+     *
+     * @param directory the directory
+     * @param extension the extension
+     * @return the files
+     */
+    private static List<Path> files(Path directory, String extension) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.toString().endsWith(extension)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Opens an archive and looks up the records of the map "us" and of every given player.
+     *
+     * @param directory the directory of the archive
+     * @param names     the names of the players
+     * @return the records of the map, followed by the records of every player
+     */
+    private static List<int[]> lookups(Path directory, String[] names) throws IOException {
+        try (GameArchive archive = new GameArchive(directory)) {
+            List<int[]> found = new ArrayList<>();
+            found.add(archive.byMap("us"));
+            for (String name : names) {
+                int[] records = archive.byPlayer(name);
+                for (int id : records) {
+                    GameRecord r = archive.get(id);
+                    assertTrue(IntStream.range(0, r.getNumPlayers()).anyMatch(p -> name.equals(r.getPlayerName(p))));
+                    assertEquals(id, r.getTime());
+                }
+                found.add(records);
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Asserts that two results of {@link #lookups(Path, String[])} are equal.
+     *
+     * @param expected the expected records
+     * @param actual   the actual records
+     */
+    private static void assertLookups(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * Plays a random game to the end.
+     *
+     * @param random the source of the moves
+     * @param out    where to journal the game, or {@code null}
+     * @return the finished game
+     */
+    private static Game play(Random random, ByteArrayOutputStream out) throws IOException {
+        int numPlayers = 2 + random.nextInt(3);
+        Game g = new Game(new Board(MapCache.get("us"), random.nextLong()), numPlayers);
+        List<String> names = new ArrayList<>(Arrays.asList(NAMES));
+        Collections.shuffle(names, random);
+        for (int p = 0; p < numPlayers; p++) {
+            g.getPlayer(p).setName(names.get(p));
+        }
+
+        GameJournal journal = out == null ? null : GameJournal.attach(g, out, 8);
+        g.startGame();
+        int[] moves = new int[4096];
+        int n;
+        while ((n = g.generateMoves(moves)) > 0) {
+            assertTrue(g.applyMove(moves[random.nextInt(n)]));
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        return g;
+    }
+
+    /**
+     * Counts the games and wins of every first route.
+     *
+     * @param wins   the number of games and wins by route id
+     * @param record the game to count
+     */
+    private static void countWins(Map<Integer, int[]> wins, GameRecord record) {
+        int winner = record.getWinner();
+        for (int p = 0; p < record.getNumPlayers(); p++) {
+            int[] counts = wins.computeIfAbsent(record.getRoute(p, 0), k -> new int[2]);
+            counts[0]++;
+            if (p == winner) counts[1]++;
+        }
+    }
+
+    /**
+     * Merges two results of {@link #countWins(Map, GameRecord)}.
+     *
+     * @param a the first result
+     * @param b the second result
+     * @return the merged result
+     */
+    private static Map<Integer, int[]> merge(Map<Integer, int[]> a, Map<Integer, int[]> b) {
+        b.forEach((route, counts) -> {
+            int[] total = a.computeIfAbsent(route, k -> new int[2]);
+            total[0] += counts[0];
+            total[1] += counts[1];
+        });
+        return a;
+    }
+
+    /**
+     * Checks whether a player took part in a game.
+     *
+     * @param g    the game
+     * @param name the name of the player
+     * @return whether they took part
+     */
+    private static boolean hasPlayer(Game g, String name) {
+        for (Player p : g.getPlayers()) {
+            if (name.equals(p.getName())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lists the numbers below a bound that match a condition.
+     *
+     * @param size      the bound
+     * @param condition the condition
+     * @return the matching numbers
+     */
+    private static int[] expected(int size, IntPredicate condition) {
+        return IntStream.range(0, size).filter(condition).toArray();
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.*;
+import com.github.leftisttachyon.ticket2ride.game.io.BitReader;
+import com.github.leftisttachyon.ticket2ride.game.io.BitWriter;
+import com.github.leftisttachyon.ticket2ride.game.io.GameCodec;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link GameCodec}, {@link BitWriter} and {@link BitReader}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class GameCodecTest {
+    /**
+     * Tests that numbers of every width come back as they were written
+     */
+    @Test
+    public void bitsTest() {
+        Random random = new Random(1);
+        long[] values = new long[1000];
+        int[] widths = new int[values.length];
+
+        BitWriter out = new BitWriter(1);
+        for (int i = 0; i < values.length; i++) {
+            widths[i] = random.nextInt(65);
+            values[i] = widths[i] == 64 ? random.nextLong() : random.nextLong() & ((1L << widths[i]) - 1);
+            out.write(values[i], widths[i]);
+            out.writeSignedVarInt(values[i] >> 3, 1 + random.nextInt(7));
+        }
+
+        random = new Random(1);
+        BitReader in = new BitReader(out.toByteArray());
+        for (int i = 0; i < values.length; i++) {
+            random.nextInt(65);
+            random.nextLong();
+            assertEquals(values[i], in.read(widths[i]));
+            assertEquals(values[i] >> 3, in.readSignedVarInt(1 + random.nextInt(7)));
+        }
+        assertTrue(in.remaining() < 8);
+    }
+
+    /**
+     * Tests that games decode to the same state at every point of play, and that they are small
+     */
+    @Test
+    public void roundTripTest() throws IOException {
+        Random random = new Random(3);
+        int[] moves = new int[4096];
+        GameMap map = MapCache.get("us");
+        for (int game = 0; game < 5; game++) {
+            Game g = new Game(new Board(map, game), 2 + game % 3);
+            g.getPlayer(0).setName("Jed");
+            g.startGame();
+
+            int n;
+            do {
+                byte[] data = GameCodec.encode(g);
+                assertTrue(data.length + " bytes", data.length < 160);
+
+                Game decoded = GameCodec.decode(map, data);
+                assertEquals(g.getHash(), decoded.getHash());
+                assertArrayEquals(data, GameCodec.encode(decoded));
+                assertEquals("Jed", decoded.getPlayer(0).getName());
+                assertNull(decoded.getPlayer(1).getName());
+                for (int i = 0; i < g.getPlayers().length; i++) {
+                    Player expected = g.getPlayer(i), actual = decoded.getPlayer(i);
+                    assertEquals(expected.getPoints(), actual.getPoints());
+                    assertEquals(expected.getTrains(), actual.getTrains());
+                    assertEquals(expected.getRoutes(), actual.getRoutes());
+                    assertEquals(expected.getOwnedRailways(), actual.getOwnedRailways());
+                }
+
+                // the decks come back in the same order
+                CardDeck expected = g.getBoard().getDeck().copy(), actual = decoded.getBoard().getDeck().copy();
+                for (Color c; (c = expected.draw()) != null; ) {
+                    assertEquals(c, actual.draw());
+                }
+                TicketDeck tickets = g.getBoard().getTickets(), decodedTickets = decoded.getBoard().getTickets();
+                assertEquals(tickets.size(), decodedTickets.size());
+                for (int i = 0; i < tickets.size(); i++) {
+                    assertEquals(tickets.peek(i), decodedTickets.peek(i));
+                }
+
+                n = g.generateMoves(moves);
+                if (n > 0) {
+                    assertTrue(g.applyMove(moves[random.nextInt(n)]));
+                }
+            } while (n > 0);
+        }
+    }
+
+    /**
+     * Tests that many games can be written into one buffer and read back into one reused snapshot
+     */
+    @Test
+    public void streamTest() throws IOException {
+        GameMap map = MapCache.get("us");
+        Game g = new Game(new Board(map, 12L), 3);
+        g.startGame();
+
+        BitWriter out = new BitWriter();
+        List<byte[]> expected = new ArrayList<>();
+        int[] moves = new int[4096];
+        int n;
+        do {
+            expected.add(GameCodec.encode(g));
+            GameCodec.encode(g.snapshot(), out);
+            n = g.generateMoves(moves);
+            if (n > 0) {
+                assertTrue(g.applyMove(moves[expected.size() % n]));
+            }
+        } while (n > 0);
+
+        BitReader in = new BitReader(out.toByteArray());
+        GameSnapshot snapshot = g.snapshot();
+        for (byte[] bytes : expected) {
+            GameCodec.decode(in, snapshot);
+            assertArrayEquals(bytes, GameCodec.encode(snapshot.fork()));
+        }
+        assertEquals(0, in.remaining());
+    }
+
+    /**
+     * Tests that truncated data and data from another map are refused
+     */
+    @Test
+    public void corruptTest() {
+        Game g = new Game(new Board(MapCache.get("us"), 4L), 2);
+        g.startGame();
+        byte[] data = GameCodec.encode(g);
+
+        for (int length = 0; length < data.length; length++) {
+            assertCorrupt(MapCache.get("us"), Arrays.copyOf(data, length));
+        }
+
+        assertCorrupt(new GameMap(Arrays.asList(new Railway(2, Color.RED, "a", "b")),
+                Arrays.asList(new Route("a", "b", 2))), data);
+    }
+
+    /**
+     * Makes sure that the given data cannot be decoded.
+     *
+     * @param map  the map to decode with
+     * @param data the data to decode
+     */
+    private static void assertCorrupt(GameMap map, byte[] data) {
+        try {
+            GameCodec.decode(map, data);
+            fail("Decoded " + data.length + " corrupt bytes");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.*;
+import com.github.leftisttachyon.ticket2ride.game.io.GameCodec;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link GameJournal} and {@link GameReplayer}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class GameJournalTest {
+    /**
+     * Tests that every point of a journaled game can be reconstructed, by action and by turn
+     */
+    @Test
+    public void replayTest() throws IOException {
+        Random random = new Random(17);
+        Game g = new Game(new Board(MapCache.get("us"), 77L), 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameJournal journal = GameJournal.attach(g, bytes, 2);
+
+        // the encoded position after every action, and the number of actions before every turn
+        List<byte[]> positions = new ArrayList<>();
+        List<Integer> turnStarts = new ArrayList<>();
+        positions.add(GameCodec.encode(g));
+        turnStarts.add(0);
+
+        g.startGame();
+        positions.add(GameCodec.encode(g));
+        for (Player p : g.getPlayers()) {
+            if (random.nextBoolean()) {
+                assertTrue(g.returnRoute(p, p.getRoutes().get(0)));
+                positions.add(GameCodec.encode(g));
+            }
+        }
+
+        int[] moves = new int[4096];
+        int n;
+        while ((n = g.generateMoves(moves)) > 0) {
+            int turns = journal.getNumTurns();
+            assertTrue(g.applyMove(moves[random.nextInt(n)]));
+            positions.add(GameCodec.encode(g));
+            if (journal.getNumTurns() > turns) {
+                turnStarts.add(journal.getNumActions());
+            }
+        }
+        journal.close();
+        assertEquals(positions.size() - 1, journal.getNumActions());
+
+        GameReplayer replayer = new GameReplayer(bytes.toByteArray());
+        assertSame(MapCache.get("us"), replayer.getMap());
+        assertEquals(journal.getNumActions(), replayer.getNumActions());
+        assertEquals(journal.getNumTurns(), replayer.getNumTurns());
+
+        Game replayed = replayer.replay();
+        assertTrue(replayed.gameEnded());
+        assertEquals(g.getHash(), replayed.getHash());
+        assertArrayEquals(GameCodec.encode(g), GameCodec.encode(replayed));
+
+        for (int i = 0; i < positions.size(); i++) {
+            assertArrayEquals("action " + i, positions.get(i), GameCodec.encode(replayer.seekAction(i)));
+        }
+        for (int i = 0; i < turnStarts.size(); i++) {
+            assertArrayEquals("turn " + i, positions.get(turnStarts.get(i)),
+                    GameCodec.encode(replayer.seekTurn(i)));
+        }
+    }
+
+    /**
+     * Tests that moves cannot be made undoable while they are journaled, and that closing detaches the journal
+     */
+    @Test
+    public void detachTest() throws IOException {
+        Game g = new Game(new Board(MapCache.get("us"), 5L), 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameJournal journal = GameJournal.attach(g, bytes, 0);
+        g.startGame();
+
+        try {
+            g.makeMove(Move.pickRandom());
+            fail("Journaled moves were made undoable");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+
+        journal.close();
+        assertTrue(g.makeMove(Move.pickRandom()));
+        assertTrue(g.pickRandom());
+        assertEquals(1, new GameReplayer(bytes.toByteArray()).getNumActions());
+    }
+
+    /**
+     * Tests that damaged journals are refused
+     */
+    @Test
+    public void corruptTest() throws IOException {
+        Game g = new Game(new Board(MapCache.get("us"), 6L), 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GameJournal journal = GameJournal.attach(g, bytes, 1)) {
+            g.startGame();
+            g.pickRandom();
+            g.pickRandom();
+        }
+        byte[] data = bytes.toByteArray();
+        assertEquals(3, new GameReplayer(data).getNumActions());
+
+        for (int length = 0; length < data.length; length++) {
+            try {
+                new GameReplayer(Arrays.copyOf(data, length)).replay();
+                // cutting exactly between records leaves a shorter, valid journal
+                assertTrue(length > 12);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+}
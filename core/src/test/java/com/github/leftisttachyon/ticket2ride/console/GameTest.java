@@ -1,14 +1,24 @@
 package com.github.leftisttachyon.ticket2ride.console;
 
 import com.github.leftisttachyon.ticket2ride.game.*;
+import com.github.leftisttachyon.ticket2ride.game.action.*;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import com.sun.management.ThreadMXBean;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import static com.github.leftisttachyon.ticket2ride.game.Color.NONE;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * A class that tests {@link Game}
@@ -48,6 +58,55 @@ public class GameTest {
         assertEquals(2, p.getPoints());
     }
 
+    /**
+     * Tests {@link Game#claimRailway(Railway, int[])}
+     */
+    @Test
+    public void claimRailwayCountsTest() {
+        Game g = new Game(new Board(MapCache.get("us"), 5L), 1);
+        Player p = g.getPlayer(0);
+        g.pickRandom();
+        g.pickRandom();
+
+        int[] toUse = new int[Color.values().length];
+        for (Color c : Color.values()) {
+            toUse[c.ordinal()] = p.getNumCards(c);
+        }
+        int discarded = g.getBoard().getDeck().getDiscardSize();
+
+        Railway railway = new Railway(1, NONE, "Kansas City", "Omaha");
+        assertFalse(g.claimRailway(railway, toUse));
+        assertEquals(2, p.getNumCards());
+
+        toUse[Color.RAINBOW.ordinal()]++;
+        assertFalse(g.claimRailway(new Railway(2, NONE, "Nashville", "Saint Louis"), toUse));
+        toUse[Color.RAINBOW.ordinal()]--;
+
+        assertTrue(g.claimRailway(new Railway(2, NONE, "Nashville", "Saint Louis"), toUse));
+        assertEquals(0, p.getNumCards());
+        assertEquals(discarded + 2, g.getBoard().getDeck().getDiscardSize());
+        assertEquals(2, p.getPoints());
+    }
+
+    /**
+     * Tests that {@link Game}s on the same {@link GameMap} do not share claims
+     */
+    @Test
+    public void sharedMapTest() {
+        Game g1 = new Game(Board.createUSBoard(), 1), g2 = new Game(Board.createUSBoard(), 1);
+        assertSame(g1.getBoard().getMap(), g2.getBoard().getMap());
+
+        g1.pickRandom();
+        g1.pickRandom();
+        Railway railway = new Railway(2, NONE, "Nashville", "Saint Louis");
+        assertTrue(g1.claimRailway(railway, g1.getPlayer(0).getCards()));
+
+        assertTrue(g1.getBoard().isClaimed(railway));
+        assertEquals(0, g1.getBoard().getClaimedBy(railway));
+        assertFalse(g2.getBoard().isClaimed(railway));
+        assertEquals(-1, g2.getBoard().getClaimedBy(railway));
+    }
+
     /**
      * Tests {@link Game#pickCard(int)}
      */
@@ -86,4 +145,450 @@ public class GameTest {
 
         assertTrue(g.getCurrentPlayer().canReturnCard());
     }
+
+    /**
+     * Tests that typed events reach the listeners registered for them
+     */
+    @Test
+    public void eventTest() {
+        Game g = new Game(new Board(MapCache.get("us"), 3L), 1);
+        List<GameEvent> all = new ArrayList<>();
+        List<CardDrawnEvent> cards = new ArrayList<>();
+        List<Integer> turns = new ArrayList<>();
+        g.addActionListener(all::add);
+        g.addActionListener(CardDrawnEvent.class, cards::add);
+        g.addTurnChangeListener(evt -> turns.add(evt.getNewTurn()));
+
+        Color side = g.getBoard().getSideCards()[1];
+        if (side == Color.RAINBOW) side = null;
+        g.pickRandom();
+        assertEquals(1, cards.size());
+        assertTrue(cards.get(0).isFromDeck());
+        assertEquals("PICK RANDOM", cards.get(0).getActionCommand());
+        assertTrue(g.getPlayer(0).hasCards(cards.get(0).getColor(), 1));
+
+        if (side != null) {
+            assertTrue(g.pickCard(1));
+            assertEquals(2, cards.size());
+            assertEquals(side, cards.get(1).getColor());
+            assertEquals(1, cards.get(1).getIndex());
+            assertEquals(List.of(0), turns);
+        }
+
+        g.endGame();
+        assertTrue(all.get(all.size() - 1) instanceof GameEndedEvent);
+        assertEquals("ENDGAME", all.get(all.size() - 1).getActionCommand());
+
+        int before = all.size();
+        g.clearActionListeners();
+        g.pickRandom();
+        assertEquals(before, all.size());
+    }
+
+    /**
+     * Tests that every move listed by {@link Game#generateMoves(int[])} can be performed, until the game ends
+     */
+    @Test
+    public void generateMovesTest() {
+        Random random = new Random(11);
+        for (int game = 0; game < 20; game++) {
+            Game g = new Game(new Board(MapCache.get("us"), game), 2);
+            g.startGame();
+            int[] moves = new int[4096];
+
+            int steps = 0;
+            int n;
+            while ((n = g.generateMoves(moves)) > 0) {
+                assertTrue(n <= moves.length);
+                assertFalse(g.gameEnded());
+
+                int move = moves[random.nextInt(n)];
+                assertTrue(Move.toString(move), g.applyMove(move));
+                assertTrue(++steps < 1000);
+            }
+            assertTrue(g.gameEnded());
+            assertFalse(g.pickRandom());
+        }
+    }
+
+    /**
+     * Tests the claims listed by {@link Game#generateMoves(int[])} for a known hand
+     */
+    @Test
+    public void generateClaimsTest() {
+        Game g = new Game(new Board(List.of(
+                new Railway(2, Color.RED, "a", "b"),
+                new Railway(2, NONE, "b", "c"),
+                new Railway(5, Color.RED, "c", "d")),
+                List.of(new Route("a", "c", 3))), 1);
+        Player p = g.getPlayer(0);
+        p.addCard(Color.RED);
+        p.addCard(Color.BLUE);
+        p.addCard(Color.BLUE);
+        p.addCard(Color.RAINBOW);
+
+        int[] moves = new int[64];
+        int n = g.generateMoves(moves);
+        List<Integer> claims = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (Move.getType(moves[i]) == Move.CLAIM) claims.add(moves[i]);
+        }
+
+        // red-2: 1 red + 1 rainbow; grey-2: 1 red + 1 rainbow, 2 blue, 1 blue + 1 rainbow; red-5 is too long
+        assertEquals(List.of(
+                Move.claim(0, Color.RED, 1),
+                Move.claim(1, Color.BLUE, 0),
+                Move.claim(1, Color.BLUE, 1),
+                Move.claim(1, Color.RED, 1)), claims.stream().sorted().collect(Collectors.toList()));
+
+        // a buffer that is too small still gets the full count
+        assertEquals(n, g.generateMoves(new int[2]));
+
+        assertTrue(g.applyMove(Move.claim(1, Color.BLUE, 0)));
+        assertEquals(2, p.getNumCards());
+        assertTrue(p.hasCards(Color.RED, 1));
+        assertTrue(p.hasCards(Color.RAINBOW, 1));
+    }
+
+    /**
+     * Tests that {@link Game#unmakeMove()} exactly undoes {@link Game#makeMove(int)}, and that moves replayed after
+     * undoing them have the same results
+     */
+    @Test
+    public void makeUnmakeTest() {
+        Random random = new Random(5);
+        int[] moves = new int[4096];
+        for (int game = 0; game < 10; game++) {
+            Game g = new Game(new Board(MapCache.get("us"), 100 + game), 3);
+            g.startGame();
+
+            List<String> states = new ArrayList<>();
+            List<Integer> made = new ArrayList<>();
+            states.add(describe(g));
+            int n;
+            while ((n = g.generateMoves(moves)) > 0) {
+                int move = moves[random.nextInt(n)];
+                assertTrue(g.makeMove(move));
+                made.add(move);
+                states.add(describe(g));
+
+                // undo and redo a random number of moves in the middle of the game
+                if (random.nextInt(4) == 0) {
+                    int back = 1 + random.nextInt(made.size());
+                    for (int i = 0; i < back; i++) {
+                        g.unmakeMove();
+                        assertEquals(states.get(made.size() - 1 - i), describe(g));
+                    }
+                    for (int i = made.size() - back; i < made.size(); i++) {
+                        assertTrue(g.makeMove(made.get(i)));
+                        assertEquals(states.get(i + 1), describe(g));
+                    }
+                }
+            }
+            assertTrue(g.gameEnded());
+            assertEquals(made.size(), g.getUndoDepth());
+
+            for (int i = made.size() - 1; i >= 0; i--) {
+                g.unmakeMove();
+                assertEquals(states.get(i), describe(g));
+            }
+            assertFalse(g.gameEnded());
+        }
+    }
+
+    /**
+     * Tests that {@link Game#unmakeMove()} puts the {@link Route}s completed by a claim back in their places, on a map
+     * where short claims complete many {@link Route}s
+     */
+    @Test
+    public void unmakeCompletionTest() {
+        List<Railway> railways = new ArrayList<>();
+        List<Route> routes = new ArrayList<>();
+        String[] cities = {"a", "b", "c", "d", "e", "f"};
+        for (int i = 0; i < cities.length; i++) {
+            railways.add(new Railway(1, NONE, cities[i], cities[(i + 1) % cities.length]));
+            for (int j = i + 1; j < cities.length; j++) {
+                routes.add(new Route(cities[i], cities[j], j - i));
+            }
+        }
+        GameMap map = new GameMap(railways, routes);
+
+        Random random = new Random(11);
+        int[] moves = new int[4096];
+        int completions = 0;
+        for (int game = 0; game < 20; game++) {
+            Game g = new Game(new Board(map, game), 2);
+            g.startGame();
+
+            List<String> states = new ArrayList<>();
+            states.add(describe(g));
+            int n, made = 0;
+            while ((n = g.generateMoves(moves)) > 0) {
+                assertTrue(g.makeMove(moves[random.nextInt(n)]));
+                made++;
+                states.add(describe(g));
+                for (Player p : g.getPlayers()) {
+                    completions += p.getCompletedRoutes().size();
+                }
+            }
+
+            for (int i = made - 1; i >= 0; i--) {
+                g.unmakeMove();
+                assertEquals(states.get(i), describe(g));
+            }
+        }
+        assertTrue(completions > 0);
+    }
+
+    /**
+     * Tests that a game is scored only once, even when {@link Game#endGame()} is called after it ended by itself, and
+     * that undoing the last move and snapshots keep track of whether it was scored
+     */
+    @Test
+    public void finishOnceTest() {
+        Random random = new Random(3);
+        int[] moves = new int[4096];
+        Game g = new Game(new Board(MapCache.get("us"), 7L), 2);
+        int[] ended = new int[1];
+        g.addActionListener(evt -> {
+            if (evt instanceof GameEndedEvent) ended[0]++;
+        });
+        g.startGame();
+
+        int n, last = -1;
+        while ((n = g.generateMoves(moves)) > 0) {
+            last = moves[random.nextInt(n)];
+            assertTrue(g.makeMove(last));
+        }
+        assertTrue(g.gameEnded());
+        assertEquals(1, ended[0]);
+        String scored = describe(g);
+
+        g.endGame();
+        assertEquals(1, ended[0]);
+        assertEquals(scored, describe(g));
+
+        // a fork of a scored game is not scored again either
+        Game fork = g.fork();
+        fork.endGame();
+        assertEquals(scored, describe(fork));
+
+        // undoing the last move takes the scoring back, and making it again scores the game once more
+        g.unmakeMove();
+        assertFalse(g.gameEnded());
+        assertTrue(g.makeMove(last));
+        assertEquals(2, ended[0]);
+        assertEquals(scored, describe(g));
+        g.endGame();
+        assertEquals(2, ended[0]);
+        assertEquals(scored, describe(g));
+    }
+
+    /**
+     * Tests that illegal moves are refused by {@link Game#makeMove(int)} without leaving anything to undo
+     */
+    @Test
+    public void illegalMakeMoveTest() {
+        Game g = new Game(new Board(MapCache.get("us"), 1L), 2);
+        String before = describe(g);
+        assertFalse(g.makeMove(Move.claim(0, Color.RED, 0)));
+        assertFalse(g.makeMove(Move.pickCard(7)));
+        assertEquals(0, g.getUndoDepth());
+        assertEquals(before, describe(g));
+    }
+
+    /**
+     * Tests that {@link GameSnapshot#restore(Game)} and {@link Game#fork()} reproduce the captured state, and that
+     * forks play on independently of the original
+     */
+    @Test
+    public void snapshotTest() {
+        Random random = new Random(8);
+        int[] moves = new int[4096];
+        Game g = new Game(new Board(MapCache.get("us"), 42L), 3);
+        int[] events = new int[1];
+        g.addActionListener(evt -> events[0]++);
+        g.startGame();
+
+        GameSnapshot snapshot = g.snapshot();
+        int n;
+        for (int step = 0; (n = g.generateMoves(moves)) > 0; step++) {
+            if (step % 7 == 0) {
+                snapshot.capture(g);
+                String before = describe(g);
+
+                Game fork = g.fork();
+                assertSame(g.getBoard().getMap(), fork.getBoard().getMap());
+                assertEquals(before, describe(fork));
+
+                // playing on the fork leaves the original and its listeners alone
+                int forkMoves, numEvents = events[0];
+                while ((forkMoves = fork.generateMoves(moves)) > 0) {
+                    assertTrue(fork.applyMove(moves[random.nextInt(forkMoves)]));
+                }
+                assertEquals(before, describe(g));
+                assertEquals(numEvents, events[0]);
+
+                // the same moves from the same state have the same results
+                int move = moves[random.nextInt(g.generateMoves(moves))];
+                assertTrue(g.applyMove(move));
+                String after = describe(g);
+                snapshot.restore(g);
+                assertEquals(before, describe(g));
+                assertTrue(g.applyMove(move));
+                assertEquals(after, describe(g));
+            } else {
+                assertTrue(g.applyMove(moves[random.nextInt(n)]));
+            }
+        }
+        assertTrue(g.gameEnded());
+    }
+
+    /**
+     * Measures what restoring a {@link GameSnapshot} into a {@link Game} that is kept around costs: once the game has
+     * held every state before, restoring allocates nothing, unlike {@link Game#fork()}
+     */
+    @Test
+    public void restoreCostTest() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Random random = new Random(5);
+        int[] moves = new int[4096], draws = new int[4096], claims = new int[4096];
+        Game g = new Game(new Board(MapCache.get("us"), 17L), 3);
+        g.startGame();
+        List<GameSnapshot> snapshots = new ArrayList<>();
+        List<String> states = new ArrayList<>();
+        int n;
+        while ((n = g.generateMoves(moves)) > 0) {
+            snapshots.add(g.snapshot());
+            states.add(describe(g));
+            // the players have few trains, so mostly draw to play longer, but claim now and then
+            int numDraws = 0, numClaims = 0;
+            for (int i = 0; i < n; i++) {
+                int type = Move.getType(moves[i]);
+                if (type == Move.PICK_CARD || type == Move.PICK_RANDOM) {
+                    draws[numDraws++] = moves[i];
+                } else if (type == Move.CLAIM) {
+                    claims[numClaims++] = moves[i];
+                }
+            }
+            int move = numClaims > 0 && (numDraws == 0 || random.nextInt(8) == 0)
+                    ? claims[random.nextInt(numClaims)] : draws[random.nextInt(numDraws)];
+            assertTrue(g.applyMove(move));
+        }
+        assertTrue(snapshots.size() > 20);
+
+        // the first pass grows whatever has to grow
+        Game target = snapshots.get(0).fork();
+        for (int i = 0; i < snapshots.size(); i++) {
+            snapshots.get(i).restore(target);
+            assertEquals(states.get(i), describe(target));
+        }
+
+        long thread = Thread.currentThread().getId(), rounds = 1000;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < snapshots.size(); i++) {
+                snapshots.get(i).restore(target);
+            }
+        }
+        long restored = threads.getThreadAllocatedBytes(thread) - before;
+
+        before = threads.getThreadAllocatedBytes(thread);
+        Game fork = snapshots.get(snapshots.size() - 1).fork();
+        long forked = threads.getThreadAllocatedBytes(thread) - before;
+
+        log.info("Restoring {} snapshots {} times allocated {} bytes; one fork allocated {} bytes",
+                snapshots.size(), rounds, restored, forked);
+        // what little there is comes from measuring and compiling, not from restoring
+        assertTrue(restored < rounds * snapshots.size());
+        assertTrue(forked > restored);
+        assertEquals(states.get(states.size() - 1), describe(fork));
+    }
+
+    /**
+     * Tests that {@link Game#getHash()} depends on the state and not on how it was reached
+     */
+    @Test
+    public void hashTest() {
+        Random random = new Random(21);
+        int[] moves = new int[4096];
+        Game g = new Game(new Board(MapCache.get("us"), 9L), 2);
+        g.startGame();
+
+        // forks recompute the hash from scratch, and different hands or routes give different hashes
+        Map<Long, String> seen = new HashMap<>();
+        int n;
+        while ((n = g.generateMoves(moves)) > 0) {
+            long hash = g.getHash();
+            assertEquals(hash, g.fork().getHash());
+
+            String state = g.getTurn() + Arrays.toString(g.getBoard().getSideCards())
+                    + g.getPlayer(0).getCards() + g.getPlayer(0).getRoutes()
+                    + g.getPlayer(1).getCards() + g.getPlayer(1).getRoutes();
+            String previous = seen.put(hash, state);
+            assertTrue(previous == null || previous.equals(state));
+
+            int move = moves[random.nextInt(n)];
+            assertTrue(g.makeMove(move));
+            assertNotEquals(hash, g.getHash());
+            g.unmakeMove();
+            assertEquals(hash, g.getHash());
+            assertTrue(g.makeMove(move));
+        }
+    }
+
+    /**
+     * Describes everything about the state of the given {@link Game} that a move can change.
+     *
+     * @param g the {@link Game} to describe
+     * @return a {@link String} describing the state
+     */
+    private static String describe(Game g) {
+        StringBuilder sb = new StringBuilder();
+        Board b = g.getBoard();
+        sb.append(g.getHash()).append(' ');
+        sb.append(g.getTurn()).append(g.gameEnded()).append(Arrays.toString(b.getSideCards()));
+
+        CardDeck deck = b.getDeck();
+        sb.append(deck.size()).append('/').append(deck.getDiscardSize());
+        for (Color c : Color.values()) {
+            sb.append(',').append(deck.getRemaining(c)).append(':').append(deck.getDiscarded(c));
+        }
+        // the next draws depend on the order of the piles and the state of the generator
+        CardDeck copy = deck.copy();
+        for (Color c; (c = copy.draw()) != null; ) {
+            sb.append(c.ordinal());
+        }
+
+        TicketDeck tickets = b.getTickets();
+        for (int i = 0; i < tickets.size(); i++) {
+            sb.append(',').append(tickets.peek(i));
+        }
+        for (int i = 0; i < b.getNumRailways(); i++) {
+            sb.append(b.getClaimedBy(i));
+        }
+
+        int[] moves = new int[4096];
+        int n = g.generateMoves(moves);
+        sb.append(Arrays.toString(Arrays.copyOf(moves, Math.min(n, moves.length))));
+
+        int numCities = b.getGraph().getNumCities();
+        for (Player p : g.getPlayers()) {
+            sb.append('|').append(p.getCards()).append(p.getNumCards()).append(' ')
+                    .append(p.getPoints()).append(' ').append(p.getTrains()).append(' ')
+                    .append(p.getProjectedScore()).append(' ').append(p.canReturnCard()).append(' ')
+                    .append(p.getRoutes()).append(p.getCompletedRoutes()).append(p.getUncompletedRoutes())
+                    .append(new java.util.HashSet<>(p.getOwnedRailways())).append(p.getLongestConnection());
+            for (int c1 = 0; c1 < numCities; c1++) {
+                for (int c2 = c1 + 1; c2 < numCities; c2++) {
+                    sb.append(p.isConnected(c1, c2) ? '1' : '0');
+                }
+            }
+        }
+
+        return sb.toString();
+    }
 }
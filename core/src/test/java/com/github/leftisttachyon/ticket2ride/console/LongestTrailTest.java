@@ -0,0 +1,209 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.GameRandom;
+import com.github.leftisttachyon.ticket2ride.game.LongestTrail;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link LongestTrail} class.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class LongestTrailTest {
+    /**
+     * Tests a few hand-made shapes
+     */
+    @Test
+    public void shapeTest() {
+        LongestTrail trail = new LongestTrail();
+        assertEquals(0, trail.getLongest());
+
+        // a star with three arms: only two arms can be walked
+        trail.add(0, 1, 3);
+        trail.add(0, 2, 4);
+        trail.add(0, 3, 5);
+        assertEquals(9, trail.getLongest());
+
+        // closing a triangle between two arms lets the walk go around it
+        trail.add(1, 2, 1);
+        assertEquals(13, trail.getLongest());
+
+        // a separate, longer component wins
+        trail.add(10, 11, 6);
+        trail.add(11, 12, 6);
+        trail.add(12, 13, 2);
+        assertEquals(14, trail.getLongest());
+
+        trail.clear();
+        trail.add(5, 6, 2);
+        assertEquals(2, trail.getLongest());
+    }
+
+    /**
+     * Tests a figure eight, which can be walked in full
+     */
+    @Test
+    public void eulerTest() {
+        LongestTrail trail = new LongestTrail();
+        trail.add(0, 1, 1);
+        trail.add(1, 2, 1);
+        trail.add(2, 0, 1);
+        trail.add(0, 3, 1);
+        trail.add(3, 4, 1);
+        trail.add(4, 0, 1);
+        assertEquals(6, trail.getLongest());
+    }
+
+    /**
+     * Tests random graphs, including parallel railways, against a brute-force search
+     */
+    @Test
+    public void randomTest() {
+        GameRandom random = new GameRandom(99);
+        for (int round = 0; round < 200; round++) {
+            int numCities = 2 + random.nextInt(6), numRailways = 1 + random.nextInt(10);
+            int[] a = new int[numRailways], b = new int[numRailways], len = new int[numRailways];
+            LongestTrail trail = new LongestTrail();
+
+            for (int i = 0; i < numRailways; i++) {
+                a[i] = random.nextInt(numCities);
+                do {
+                    b[i] = random.nextInt(numCities);
+                } while (b[i] == a[i]);
+                len[i] = 1 + random.nextInt(6);
+
+                trail.add(a[i], b[i], len[i]);
+                if (random.nextInt(2) == 0) {
+                    assertEquals(bruteForce(a, b, len, i + 1), trail.getLongest());
+                }
+            }
+
+            assertEquals(bruteForce(a, b, len, numRailways), trail.getLongest());
+        }
+    }
+
+    /**
+     * Tests that {@link LongestTrail#removeLast()} restores the earlier results
+     */
+    @Test
+    public void removeLastTest() {
+        GameRandom random = new GameRandom(7);
+        for (int round = 0; round < 100; round++) {
+            int numCities = 2 + random.nextInt(6), numRailways = 1 + random.nextInt(10);
+            int[] a = new int[numRailways], b = new int[numRailways], len = new int[numRailways];
+            LongestTrail trail = new LongestTrail();
+
+            int n = 0;
+            for (int step = 0; step < 30; step++) {
+                if (n > 0 && (n == numRailways || random.nextInt(3) == 0)) {
+                    trail.removeLast();
+                    n--;
+                } else {
+                    a[n] = random.nextInt(numCities);
+                    do {
+                        b[n] = random.nextInt(numCities);
+                    } while (b[n] == a[n]);
+                    len[n] = 1 + random.nextInt(6);
+                    trail.add(a[n], b[n], len[n]);
+                    n++;
+                }
+
+                assertEquals(n, trail.size());
+                assertEquals(bruteForce(a, b, len, n), trail.getLongest());
+            }
+        }
+    }
+
+    /**
+     * Tests more railways than fit in a single {@code long} bitmask
+     */
+    @Test
+    public void wideTest() {
+        LongestTrail trail = new LongestTrail();
+        for (int i = 0; i < 150; i++) {
+            trail.add(i, i + 1, 1);
+        }
+        assertEquals(150, trail.getLongest());
+
+        for (int i = 0; i < 90; i++) {
+            trail.removeLast();
+        }
+        assertEquals(60, trail.size());
+        assertEquals(60, trail.getLongest());
+
+        // a second chain spanning the word boundary, then a railway joining both chains
+        for (int i = 0; i < 70; i++) {
+            trail.add(1000 + i, 1001 + i, 2);
+        }
+        assertEquals(140, trail.getLongest());
+        trail.add(60, 1000, 5);
+        assertEquals(205, trail.getLongest());
+        trail.removeLast();
+        assertEquals(140, trail.getLongest());
+
+        // random graphs among railways past the first word, next to a long filler chain
+        GameRandom random = new GameRandom(3);
+        for (int round = 0; round < 50; round++) {
+            int numCities = 2 + random.nextInt(6), numRailways = 1 + random.nextInt(10);
+            int[] a = new int[numRailways], b = new int[numRailways], len = new int[numRailways];
+            trail.clear();
+            for (int i = 0; i < 100; i++) {
+                trail.add(10 * i + 100, 10 * i + 101, 1);
+            }
+
+            for (int i = 0; i < numRailways; i++) {
+                a[i] = random.nextInt(numCities);
+                do {
+                    b[i] = random.nextInt(numCities);
+                } while (b[i] == a[i]);
+                len[i] = 1 + random.nextInt(6);
+                trail.add(a[i], b[i], len[i]);
+            }
+
+            assertEquals(bruteForce(a, b, len, numRailways), trail.getLongest());
+        }
+    }
+
+    /**
+     * Finds the longest trail by trying every walk.
+     *
+     * @param a   one endpoint of every railway
+     * @param b   the other endpoint of every railway
+     * @param len the length of every railway
+     * @param n   the number of railways to use
+     * @return the length of the longest trail
+     */
+    private static int bruteForce(int[] a, int[] b, int[] len, int n) {
+        int best = 0;
+        for (int v = 0; v < 8; v++) {
+            best = Math.max(best, walk(a, b, len, n, v, new boolean[n]));
+        }
+        return best;
+    }
+
+    /**
+     * Finds the longest walk from the given city that does not reuse railways.
+     *
+     * @param a    one endpoint of every railway
+     * @param b    the other endpoint of every railway
+     * @param len  the length of every railway
+     * @param n    the number of railways to use
+     * @param v    the current city
+     * @param used which railways were used
+     * @return the length of the longest walk
+     */
+    private static int walk(int[] a, int[] b, int[] len, int n, int v, boolean[] used) {
+        int best = 0;
+        for (int e = 0; e < n; e++) {
+            if (!used[e] && (a[e] == v || b[e] == v)) {
+                used[e] = true;
+                best = Math.max(best, len[e] + walk(a, b, len, n, a[e] == v ? b[e] : a[e], used));
+                used[e] = false;
+            }
+        }
+        return best;
+    }
+}
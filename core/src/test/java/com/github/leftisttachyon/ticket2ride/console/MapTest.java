@@ -0,0 +1,98 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.Board;
+import com.github.leftisttachyon.ticket2ride.game.GameMap;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCodec;
+import com.github.leftisttachyon.ticket2ride.game.io.MapReader;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests loading maps through {@link MapReader}, {@link MapCodec} and {@link MapCache}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class MapTest {
+    /**
+     * Tests that the compiled US map matches its source
+     */
+    @Test
+    public void binaryMatchesSourceTest() throws IOException {
+        GameMap source;
+        try (InputStream in = MapTest.class.getResourceAsStream("/maps/us.map")) {
+            source = MapReader.read("us", new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        assertSameMap(source, MapCache.get("us"));
+        assertEquals(100, source.getNumRailways());
+        assertEquals(30, source.getNumRoutes());
+    }
+
+    /**
+     * Tests that the {@link MapCache} only loads a map once
+     */
+    @Test
+    public void cacheTest() {
+        assertSame(MapCache.get("us"), MapCache.get("us"));
+        assertSame(Board.createUSBoard().getMap(), Board.createUSBoard().getMap());
+    }
+
+    /**
+     * Tests writing and reading back both formats
+     */
+    @Test
+    public void roundTripTest() throws IOException {
+        GameMap us = MapCache.get("us");
+
+        StringWriter text = new StringWriter();
+        MapReader.write(us, new PrintWriter(text));
+        assertSameMap(us, MapReader.read("us", new StringReader(text.toString())));
+
+        Path file = Files.createTempFile("us", MapCache.BINARY_EXTENSION);
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                MapCodec.write(us, out);
+            }
+            GameMap mapped = MapCache.get(file);
+            assertSameMap(us, mapped);
+            assertSame(mapped, MapCache.get(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that malformed maps are reported
+     */
+    @Test(expected = IOException.class)
+    public void malformedTest() throws IOException {
+        MapReader.read("bad", new StringReader("[railways]\n1|PURPLE|a|b\n"));
+    }
+
+    /**
+     * Asserts that the two given maps have the same railways and routes with the same ids.
+     *
+     * @param expected the expected map
+     * @param actual   the actual map
+     */
+    private static void assertSameMap(GameMap expected, GameMap actual) {
+        assertEquals(expected.getGraph().getCities(), actual.getGraph().getCities());
+        assertEquals(expected.getNumRailways(), actual.getNumRailways());
+        for (int i = 0; i < expected.getNumRailways(); i++) {
+            assertEquals(expected.getRailway(i).toMessageString(), actual.getRailway(i).toMessageString());
+        }
+
+        assertEquals(expected.getNumRoutes(), actual.getNumRoutes());
+        for (int i = 0; i < expected.getNumRoutes(); i++) {
+            assertEquals(expected.getRoute(i).toMessageString(), actual.getRoute(i).toMessageString());
+        }
+    }
+}
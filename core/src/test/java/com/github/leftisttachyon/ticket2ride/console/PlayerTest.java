@@ -0,0 +1,173 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.*;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.leftisttachyon.ticket2ride.game.Color.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link Player} class.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class PlayerTest {
+    /**
+     * Tests {@link Player#isCompleted(Route)} as {@link Railway}s are added and removed
+     */
+    @Test
+    public void completionTest() {
+        GameMap map = new GameMap(List.of(
+                new Railway(1, WHITE, "a", "b"),
+                new Railway(1, WHITE, "b", "c"),
+                new Railway(1, WHITE, "c", "d"),
+                new Railway(1, WHITE, "x", "y")),
+                List.of(new Route("a", "d", 5), new Route("a", "y", 5)));
+        Route ad = map.getRoute(0), ay = map.getRoute(1);
+        Player p = new Player("test");
+
+        // touching only one endpoint does not complete a route
+        p.addRailway(map.getRailway(0));
+        assertFalse(p.isCompleted(ad));
+
+        p.addRailway(map.getRailway(2));
+        assertFalse(p.isCompleted(ad));
+        p.addRailway(map.getRailway(1));
+        assertTrue(p.isCompleted(ad));
+
+        p.addRailway(map.getRailway(3));
+        assertFalse(p.isCompleted(ay));
+
+        p.removeRailway(map.getRailway(1));
+        assertFalse(p.isCompleted(ad));
+        assertTrue(p.isConnected(map.getGraph().getCityId("x"), map.getGraph().getCityId("y")));
+    }
+
+    /**
+     * Tests {@link Player#getOwnedRailways()} and {@link Player#ownsRailway(Railway)} as {@link Railway}s are added and
+     * removed in any order
+     */
+    @Test
+    public void ownedRailwaysTest() {
+        GameMap map = MapCache.get("us");
+        Player p = new Player("test");
+        Set<Railway> expected = new HashSet<>();
+        for (int id = 0; id < map.getNumRailways(); id += 3) {
+            p.addRailway(map.getRailway(id));
+            expected.add(map.getRailway(id));
+        }
+        p.addRailway(map.getRailway(0));
+        assertEquals(expected, p.getOwnedRailways());
+
+        for (int id = 0; id < map.getNumRailways(); id += 6) {
+            p.removeRailway(map.getRailway(id));
+            expected.remove(map.getRailway(id));
+        }
+        p.removeRailway(map.getRailway(1));
+        assertEquals(expected, p.getOwnedRailways());
+        assertEquals(expected, new HashSet<>(p.getOwnedRailways()));
+        for (int id = 0; id < map.getNumRailways(); id++) {
+            assertEquals(expected.contains(map.getRailway(id)), p.ownsRailway(map.getRailway(id)));
+        }
+        assertFalse(p.ownsRailway(new Railway(1, WHITE, "a", "b")));
+        assertFalse(p.getOwnedRailways().contains("Denver"));
+    }
+
+    /**
+     * Tests that unregistered {@link Railway}s are refused
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unregisteredTest() {
+        new Player("test").addRailway(new Railway(1, WHITE, "a", "b"));
+    }
+
+    /**
+     * Tests completion on the US map
+     */
+    @Test
+    public void usCompletionTest() {
+        GameMap map = MapCache.get("us");
+        Route route = map.getRoute(map.indexOf(new Route("Denver", "El Paso", 4)));
+        Player p = new Player("test");
+
+        p.addRailway(map.getRailway(map.indexOf(new Railway(2, NONE, "Santa Fe", "Denver"))));
+        assertFalse(p.isCompleted(route));
+        p.addRailway(map.getRailway(map.indexOf(new Railway(2, NONE, "Santa Fe", "El Paso"))));
+        assertTrue(p.isCompleted(route));
+    }
+
+    /**
+     * Tests the tracking of completed {@link Route}s and the projected score
+     */
+    @Test
+    public void projectedScoreTest() {
+        GameMap map = new GameMap(List.of(
+                new Railway(1, WHITE, "a", "b"),
+                new Railway(1, WHITE, "b", "c"),
+                new Railway(1, WHITE, "x", "y")),
+                List.of(new Route("a", "c", 5), new Route("a", "y", 3)));
+        Route ac = map.getRoute(0), ay = map.getRoute(1);
+        Player p = new Player("test");
+        List<Route> fired = new ArrayList<>();
+        p.addRouteCompletionListener(evt -> fired.add(evt.getRoute()));
+
+        p.addRoute(ac);
+        p.addRoute(ay);
+        assertEquals(-8, p.getProjectedScore());
+        assertEquals(List.of(ac, ay), p.getUncompletedRoutes());
+
+        p.addRailway(map.getRailway(0));
+        p.addPoints(2);
+        assertEquals(-6, p.getProjectedScore());
+        p.addRailway(map.getRailway(1));
+        assertEquals(List.of(ac), p.getCompletedRoutes());
+        assertEquals(List.of(ay), p.getUncompletedRoutes());
+        assertEquals(4, p.getProjectedScore());
+        assertEquals(List.of(ac), fired);
+
+        p.removeRailway(map.getRailway(1));
+        assertEquals(-6, p.getProjectedScore());
+        p.addRailway(map.getRailway(1));
+        assertEquals(List.of(ac, ac), fired);
+
+        p.incrementReturnAllowance();
+        assertTrue(p.removeRoute(ay));
+        assertEquals(7, p.getProjectedScore());
+
+        p.scoreRoutes();
+        p.scoreRoutes();
+        assertEquals(7, p.getPoints());
+        assertEquals(7, p.getProjectedScore());
+    }
+
+    /**
+     * Tests that {@link Player#getHash()} depends on the hand and not on the order it was collected in
+     */
+    @Test
+    public void hashTest() {
+        Player p1 = new Player("a"), p2 = new Player("b"), p3 = new Player("c");
+        p1.addCard(Color.RED);
+        p1.addCard(Color.BLUE);
+        p2.addCard(Color.BLUE);
+        p2.addCard(Color.RED);
+        p3.addCard(Color.RED);
+        p3.addCard(Color.RED);
+        assertEquals(p1.getHash(), p2.getHash());
+        assertNotEquals(p1.getHash(), p3.getHash());
+
+        p1.setTurn(1);
+        assertNotEquals(p1.getHash(), p2.getHash());
+        p1.removeCards(Map.of(Color.BLUE, 1));
+        p1.setTurn(-1);
+        p1.addCard(Color.RED);
+        assertEquals(p3.getHash(), p1.getHash());
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.leftisttachyon.ticket2ride.console;
+
+import com.github.leftisttachyon.ticket2ride.game.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link TicketDeck} class and seeded shuffling.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class TicketDeckTest {
+    /**
+     * Tests that every route is dealt exactly once and that returned routes go to the bottom
+     */
+    @Test
+    public void drawAndReturnTest() {
+        TicketDeck deck = new TicketDeck(30, new GameRandom(7));
+        boolean[] seen = new boolean[30];
+        int first = deck.peek(0);
+
+        for (int i = 0; i < 30; i++) {
+            int id = deck.draw();
+            assertFalse(seen[id]);
+            seen[id] = true;
+
+            if (i == 0) {
+                assertEquals(first, id);
+                deck.putBack(id);
+            }
+        }
+
+        assertEquals(1, deck.size());
+        assertEquals(first, deck.draw());
+        assertEquals(-1, deck.draw());
+    }
+
+    /**
+     * Tests that equal seeds give equal games
+     */
+    @Test
+    public void seededGameTest() {
+        Game g1 = new Game(new Board(Board.createUSBoard().getMap(), 1234L), 2),
+                g2 = new Game(new Board(Board.createUSBoard().getMap(), 1234L), 2);
+        g1.startGame();
+        g2.startGame();
+
+        assertArrayEquals(g1.getBoard().getSideCards(), g2.getBoard().getSideCards());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(g1.getPlayer(i).getRoutes(), g2.getPlayer(i).getRoutes());
+            assertEquals(g1.getPlayer(i).getCards(), g2.getPlayer(i).getCards());
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(g1.pickRandom(), g2.pickRandom());
+        }
+        assertEquals(Arrays.toString(g1.getBoard().getSideCards()), Arrays.toString(g2.getBoard().getSideCards()));
+        assertEquals(g1.getPlayer(0).getCards(), g2.getPlayer(0).getCards());
+    }
+}
@@ -0,0 +1,345 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A class that tells the users of a {@link ClientRegistry} who is in the lobby and who is busy. Changes are not sent
+ * as they happen: every tick, one thread compares the registry with what it announced last and sends
+ * <ul>
+ * <li>every user who was already told about the lobby one frame of the changes, encoded once and shared by all of
+ * them: {@code NEWCLIENTtrue}, {@code REMOVECLIENT}, {@code BUSY} and {@code FREE} lines</li>
+ * <li>every user who joined since the last tick one frame with everyone else in the lobby: {@code NEWCLIENTfalse}
+ * lines, each followed by a {@code BUSY} line if the user is busy</li>
+ * </ul>
+ * Changes that cancel out within a tick, like a user who joins and leaves, are never sent, and a login storm costs a
+ * write per user per tick instead of a write per pair of users. Only the tick thread touches what was announced, so
+ * the lines a user receives are always in a consistent order.
+ * <p>
+ * Frames of presence updates that pile up for a user who reads slowly can be collapsed with
+ * {@link #collapse(List)}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class BroadcastStage implements Closeable {
+    /**
+     * The default time between ticks, in milliseconds
+     */
+    public static final long DEFAULT_TICK = 25;
+    /**
+     * The longest line in a frame of presence updates
+     */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    /**
+     * The registry whose users are announced
+     */
+    private final ClientRegistry registry;
+    /**
+     * The thread that ticks
+     */
+    private final ScheduledExecutorService timer;
+    /**
+     * Whether the registry changed since the last tick
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    /**
+     * What was announced, by name; only touched by the tick thread
+     */
+    private final Map<String, Announced> announced = new HashMap<>();
+
+    /**
+     * Creates a new {@link BroadcastStage} and starts ticking.
+     *
+     * @param registry the registry whose users are announced
+     * @param tick     the time between ticks, in milliseconds
+     */
+    BroadcastStage(ClientRegistry registry, long tick) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("Invalid tick: " + tick);
+        }
+
+        this.registry = registry;
+        timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "broadcast-stage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::tickSafely, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Notes that a user joined, left, or became busy or free. They are announced on the next tick.
+     */
+    void changed() {
+        dirty.set(true);
+    }
+
+    /**
+     * Stops ticking. Changes not announced yet are dropped.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Ticks, without letting an exception stop the timer.
+     */
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            log.error("Cannot announce the lobby", e);
+        }
+    }
+
+    /**
+     * Announces the changes since the last tick. Must only be called by the thread that ticks, or while it does not.
+     */
+    void tick() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+
+        List<ClientRegistry.Member> members = registry.snapshot();
+        Map<String, ClientRegistry.Member> current = new HashMap<>(members.size() * 2);
+        for (ClientRegistry.Member member : members) {
+            current.put(member.getName(), member);
+        }
+
+        List<String> changes = new ArrayList<>();
+        for (Iterator<Announced> it = announced.values().iterator(); it.hasNext(); ) {
+            Announced old = it.next();
+            // a user who left and a new user with the same name are different users
+            if (current.get(old.member.getName()) != old.member) {
+                changes.add("REMOVECLIENT" + old.member.getName());
+                it.remove();
+            }
+        }
+
+        List<ClientRegistry.Member> joined = new ArrayList<>();
+        Set<ClientRegistry.Member> fresh = new HashSet<>();
+        for (ClientRegistry.Member member : members) {
+            Announced known = announced.get(member.getName());
+            boolean busy = member.isBusy();
+            if (known == null) {
+                joined.add(member);
+                fresh.add(member);
+                announced.put(member.getName(), new Announced(member, busy));
+                changes.add("NEWCLIENTtrue " + member.getName());
+                if (busy) {
+                    changes.add("BUSY" + member.getName());
+                }
+            } else if (known.busy != busy) {
+                known.busy = busy;
+                changes.add((busy ? "BUSY" : "FREE") + member.getName());
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            byte[] frame = LineEncoder.encode(changes);
+            for (ClientRegistry.Member member : members) {
+                if (announced.get(member.getName()).member == member && !fresh.contains(member)) {
+                    member.getClient().send(frame, Traffic.PRESENCE);
+                }
+            }
+        }
+        if (!joined.isEmpty()) {
+            introduce(members, joined);
+        }
+    }
+
+    /**
+     * Tells the users who joined since the last tick about everyone else.
+     *
+     * @param members the users
+     * @param joined  the users who joined
+     */
+    private void introduce(List<ClientRegistry.Member> members, List<ClientRegistry.Member> joined) {
+        // each user's lines are encoded once and copied into the frame of every new user
+        byte[][] entries = new byte[members.size()][];
+        Map<ClientRegistry.Member, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < entries.length; i++) {
+            ClientRegistry.Member member = members.get(i);
+            indexes.put(member, i);
+            String name = member.getName();
+            if (announced.get(name).busy) {
+                entries[i] = LineEncoder.encode(List.of("NEWCLIENTfalse " + name, "BUSY" + name));
+            } else {
+                entries[i] = LineEncoder.encode("NEWCLIENTfalse " + name);
+            }
+        }
+
+        for (ClientRegistry.Member member : joined) {
+            int index = indexes.get(member);
+            byte[] snapshot = LineEncoder.join(entries, index);
+            if (announced.get(member.getName()).busy) {
+                // like users who were already here, a busy user is told so
+                snapshot = LineEncoder.join(new byte[][]{snapshot, LineEncoder.encode("BUSY" + member.getName())}, -1);
+            }
+            if (snapshot.length > 0) {
+                member.getClient().send(snapshot, Traffic.PRESENCE);
+            }
+        }
+    }
+
+    /**
+     * Collapses frames of presence updates into one frame of the changes they add up to. A user who joined and left
+     * is left out, a user who became busy and free again is only told free, and so on.
+     *
+     * @param frames the frames, oldest first
+     * @return the collapsed frame, which may be empty
+     */
+    static byte[] collapse(List<byte[]> frames) {
+        Map<String, Change> changes = new LinkedHashMap<>();
+        LineDecoder decoder = new LineDecoder(MAX_LINE_LENGTH);
+        try {
+            for (byte[] frame : frames) {
+                ByteBuffer bytes = ByteBuffer.wrap(frame);
+                String line;
+                while ((line = decoder.decode(bytes)) != null) {
+                    if (line.startsWith("NEWCLIENT")) {
+                        int space = line.indexOf(' ');
+                        changes.computeIfAbsent(line.substring(space + 1), name -> new Change(false))
+                                .joined(Boolean.parseBoolean(line.substring(9, space)));
+                    } else if (line.startsWith("REMOVECLIENT")) {
+                        changes.computeIfAbsent(line.substring(12), name -> new Change(true)).left();
+                    } else if (line.startsWith("BUSY")) {
+                        changes.computeIfAbsent(line.substring(4), name -> new Change(true)).busy = true;
+                    } else if (line.startsWith("FREE")) {
+                        changes.computeIfAbsent(line.substring(4), name -> new Change(true)).busy = false;
+                    } else {
+                        throw new IllegalArgumentException("Not a presence update: " + line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Presence update too long", e);
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Change> entry : changes.entrySet()) {
+            entry.getValue().describe(entry.getKey(), lines);
+        }
+        return LineEncoder.encode(lines);
+    }
+
+    /**
+     * What a run of presence updates did to one user.
+     */
+    private static final class Change {
+        /**
+         * Whether the user was in the lobby before the updates
+         */
+        private final boolean before;
+        /**
+         * Whether the user is in the lobby after the updates
+         */
+        private boolean present;
+        /**
+         * Whether the user left and joined again
+         */
+        private boolean replaced;
+        /**
+         * The flag of the last {@code NEWCLIENT} line
+         */
+        private boolean fresh;
+        /**
+         * Whether the user is busy after the updates, or {@code null} if the updates did not say
+         */
+        private Boolean busy;
+
+        /**
+         * Creates a new {@link Change}.
+         *
+         * @param before whether the user was in the lobby before the updates
+         */
+        Change(boolean before) {
+            this.before = before;
+            present = before;
+        }
+
+        /**
+         * Notes that the user joined.
+         *
+         * @param fresh the flag of the {@code NEWCLIENT} line
+         */
+        void joined(boolean fresh) {
+            present = true;
+            this.fresh = fresh;
+            replaced = before;
+            busy = null;
+        }
+
+        /**
+         * Notes that the user left.
+         */
+        void left() {
+            present = false;
+            busy = null;
+        }
+
+        /**
+         * Writes the lines that have the same effect as the updates.
+         *
+         * @param name  the name of the user
+         * @param lines the list to add the lines to
+         */
+        void describe(String name, List<String> lines) {
+            if (before && (!present || replaced)) {
+                lines.add("REMOVECLIENT" + name);
+            }
+            if (present && (!before || replaced)) {
+                lines.add("NEWCLIENT" + fresh + " " + name);
+                if (Boolean.TRUE.equals(busy)) {
+                    lines.add("BUSY" + name);
+                }
+            } else if (present && busy != null) {
+                lines.add((busy ? "BUSY" : "FREE") + name);
+            }
+        }
+    }
+
+    /**
+     * What was announced about a user.
+     */
+    private static final class Announced {
+        /**
+         * The entry of the user
+         */
+        private final ClientRegistry.Member member;
+        /**
+         * Whether the user was announced as busy
+         */
+        private boolean busy;
+
+        /**
+         * Creates a new {@link Announced}.
+         *
+         * @param member the entry of the user
+         * @param busy   whether the user was announced as busy
+         */
+        Announced(ClientRegistry.Member member, boolean busy) {
+            this.member = member;
+            this.busy = busy;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A class that keeps track of the users in the lobby. There is no global lock: names are claimed with
+ * {@link ConcurrentHashMap#putIfAbsent(Object, Object)} and a user is made busy or free with a compare-and-set. The
+ * users are told about each other by a {@link BroadcastStage}, which batches the changes.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class ClientRegistry implements Closeable {
+    /**
+     * The users, by name
+     */
+    private final ConcurrentHashMap<String, Member> members = new ConcurrentHashMap<>();
+    /**
+     * Tells the users about each other
+     */
+    private final BroadcastStage stage;
+
+    /**
+     * Creates a new {@link ClientRegistry} that announces changes every {@value BroadcastStage#DEFAULT_TICK}
+     * milliseconds.
+     */
+    public ClientRegistry() {
+        this(BroadcastStage.DEFAULT_TICK);
+    }
+
+    /**
+     * Creates a new {@link ClientRegistry}.
+     *
+     * @param tick the time between announcements of changes, in milliseconds
+     */
+    public ClientRegistry(long tick) {
+        stage = new BroadcastStage(this, tick);
+    }
+
+    /**
+     * Registers a user under the given name. They and everyone else are told about each other on the next tick.
+     *
+     * @param name   the name of the user
+     * @param client the protocol handler of the user
+     * @return the entry of the user, or {@code null} if the name is already taken
+     */
+    public Member join(String name, MiniServer client) {
+        Member member = new Member(name, client);
+        if (members.putIfAbsent(name, member) != null) {
+            return null;
+        }
+        stage.changed();
+        return member;
+    }
+
+    /**
+     * Removes a user. Everyone is told that they left on the next tick.
+     *
+     * @param member the entry of the user
+     */
+    public void leave(Member member) {
+        if (members.remove(member.name, member)) {
+            stage.changed();
+        }
+    }
+
+    /**
+     * Finds a user.
+     *
+     * @param name the name of the user
+     * @return the entry of the user, or {@code null} if no user has the name
+     */
+    public Member get(String name) {
+        return members.get(name);
+    }
+
+    /**
+     * Counts the users.
+     *
+     * @return the number of users
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Copies the users. The copy may miss users who join or leave while it is made, but can be used freely
+     * afterwards.
+     *
+     * @return a list of the entries of the users
+     */
+    public List<Member> snapshot() {
+        return new ArrayList<>(members.values());
+    }
+
+    /**
+     * Makes two free users busy together, for a match. Either both are made busy or neither is.
+     *
+     * @param first  the entry of one user
+     * @param second the entry of the other user
+     * @return whether both users were free and are now busy
+     */
+    public boolean pair(Member first, Member second) {
+        if (first == second || !first.busy.compareAndSet(false, true)) {
+            return false;
+        }
+        if (!second.busy.compareAndSet(false, true)) {
+            first.busy.set(false);
+            return false;
+        }
+        stage.changed();
+        return true;
+    }
+
+    /**
+     * Makes a free user busy by themself, like a user who reconnects to a game in progress.
+     *
+     * @param member the entry of the user
+     * @return whether the user was free
+     */
+    public boolean occupy(Member member) {
+        if (!member.busy.compareAndSet(false, true)) {
+            return false;
+        }
+        stage.changed();
+        return true;
+    }
+
+    /**
+     * Makes a busy user free.
+     *
+     * @param member the entry of the user
+     * @return whether the user was busy
+     */
+    public boolean release(Member member) {
+        if (!member.busy.compareAndSet(true, false)) {
+            return false;
+        }
+        stage.changed();
+        return true;
+    }
+
+    /**
+     * Sends a line of chat to every user. The line is encoded once for all of them.
+     *
+     * @param line the line
+     */
+    public void broadcast(String line) {
+        byte[] bytes = LineEncoder.encode(line);
+        for (Member member : members.values()) {
+            member.client.send(bytes, Traffic.CHAT);
+        }
+    }
+
+    /**
+     * Returns what tells the users about each other.
+     *
+     * @return the stage
+     */
+    BroadcastStage getStage() {
+        return stage;
+    }
+
+    /**
+     * Stops announcing changes.
+     */
+    @Override
+    public void close() {
+        stage.close();
+    }
+
+    /**
+     * A user in the lobby.
+     */
+    public static final class Member {
+        /**
+         * The name of the user
+         */
+        @Getter
+        private final String name;
+        /**
+         * The protocol handler of the user
+         */
+        @Getter
+        private final MiniServer client;
+        /**
+         * Whether the user is in a match
+         */
+        private final AtomicBoolean busy = new AtomicBoolean();
+
+        /**
+         * Creates a new {@link Member}.
+         *
+         * @param name   the name of the user
+         * @param client the protocol handler of the user
+         */
+        private Member(String name, MiniServer client) {
+            this.name = name;
+            this.client = client;
+        }
+
+        /**
+         * Checks whether the user is in a match.
+         *
+         * @return whether the user is busy
+         */
+        public boolean isBusy() {
+            return busy.get();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+/**
+ * A connection to a client that exchanges lines of text. A {@link MiniServer} speaks the protocol over a
+ * {@link Connection} without knowing whether it is served by a thread of its own or by an event loop. Lines are sent
+ * through a bounded {@link OutboundQueue}, so sending never waits for the client; what happens when the client falls
+ * too far behind is decided by the {@link SlowConsumerPolicy} of the connection.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public interface Connection {
+    /**
+     * Sends a line of {@link Traffic#PROTOCOL} to the client. Can be called from any thread; lines sent by one thread
+     * arrive in order.
+     *
+     * @param line the line to send, without a line separator
+     */
+    default void send(String line) {
+        send(LineEncoder.encode(line), Traffic.PROTOCOL);
+    }
+
+    /**
+     * Sends lines that are already encoded. Can be called from any thread; the lines arrive together, and in order
+     * with lines sent by the same thread, unless the client falls behind and they are dropped or collapsed.
+     *
+     * @param lines   the bytes of the lines, each ended by a line separator; shared, so never changed
+     * @param traffic the kind of the lines
+     */
+    void send(byte[] lines, Traffic traffic);
+
+    /**
+     * Closes the connection. The {@link MiniServer} is told through {@link MiniServer#disconnected()}.
+     */
+    void close();
+}
@@ -0,0 +1,102 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class that creates the {@link Executor}s that run blocking connections. Every connection runs a task that reads
+ * for as long as it is open, and a short task that writes whenever lines are waiting to be sent, so an idle connection
+ * holds one thread. The kinds are:
+ * <ul>
+ * <li>{@code thread}: a new platform thread for every task, so a connection that is sent lines often also starts
+ * threads often</li>
+ * <li>{@code pool}: platform threads that are reused once their task ends; the default</li>
+ * <li>{@code virtual}: a new virtual thread for every task, if the JVM has them; a blocked virtual thread
+ * costs little more than its stack, so far more connections can be held than with platform threads</li>
+ * </ul>
+ * The server compiles for Java 11, so virtual threads are created by reflection, and {@code pool} is used instead
+ * when they are not available.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class ConnectionExecutors {
+    /**
+     * A new platform thread for every task
+     */
+    public static final String THREAD = "thread";
+    /**
+     * Reused platform threads
+     */
+    public static final String POOL = "pool";
+    /**
+     * A new virtual thread for every task
+     */
+    public static final String VIRTUAL = "virtual";
+
+    /**
+     * No instantiation for you!
+     */
+    private ConnectionExecutors() {
+    }
+
+    /**
+     * Creates an {@link Executor} of the given kind.
+     *
+     * @param kind {@value #THREAD}, {@value #POOL} or {@value #VIRTUAL}
+     * @return the {@link Executor}
+     * @throws IllegalArgumentException if the kind is unknown
+     */
+    public static Executor create(String kind) {
+        switch (kind) {
+            case THREAD:
+                ThreadFactory factory = threadFactory();
+                return task -> factory.newThread(task).start();
+            case POOL:
+                return Executors.newCachedThreadPool(threadFactory());
+            case VIRTUAL:
+                ExecutorService virtual = virtualThreads();
+                if (virtual != null) {
+                    return virtual;
+                }
+                log.warn("Virtual threads are not available; using a pool of threads");
+                return create(POOL);
+            default:
+                throw new IllegalArgumentException("Unknown connection executor " + kind);
+        }
+    }
+
+    /**
+     * Creates a factory of numbered platform threads for connections.
+     *
+     * @return the factory
+     */
+    private static ThreadFactory threadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return task -> new Thread(task, "connection-" + count.incrementAndGet());
+    }
+
+    /**
+     * Creates an {@link ExecutorService} that starts a virtual thread for every task.
+     *
+     * @return the {@link ExecutorService}, or {@code null} if the JVM has no virtual threads
+     */
+    private static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // preview releases throw unless previews are enabled
+            log.debug("Cannot create virtual threads", e.getCause());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A class that hosts {@link HostedGame}s and makes them survive restarts. Every game start, accepted action and game
+ * end is written to a {@link WriteAheadLog}, and an action is only passed on once it is on disk (see
+ * {@link #whenDurable(long, Runnable, Runnable)}). The log is replayed when the server starts, so every game that was
+ * still going on is back the way it was and its players can reconnect into it. A game also goes on while a player is
+ * disconnected; it only ends when a player exits, when it is over, or when a player stays away for longer than the
+ * reconnect timeout. None of the methods wait for the disk, so they can be called from event loops.<br>
+ * The records of the log are:
+ * <pre>
+ * START  int id, long seed, UTF map name, byte number of players, UTF names
+ * MOVE   int id, int move
+ * RETURN int id, byte seat, short route id
+ * END    int id
+ * </pre>
+ * When the server starts, the log is rewritten to hold only the games that are still going on.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class GameHost implements Closeable {
+    /**
+     * The map that new games are played on
+     */
+    public static final String DEFAULT_MAP = "us";
+    /**
+     * The default number of milliseconds that a disconnected player has to reconnect
+     */
+    public static final long DEFAULT_RECONNECT_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+    /**
+     * The record of a game start
+     */
+    private static final byte START = 1;
+    /**
+     * The record of a move
+     */
+    private static final byte MOVE = 2;
+    /**
+     * The record of a returned route
+     */
+    private static final byte RETURN = 3;
+    /**
+     * The record of a game end
+     */
+    private static final byte END = 4;
+
+    /**
+     * The log
+     */
+    private final WriteAheadLog wal;
+    /**
+     * The games that are going on, by id
+     */
+    private final Map<Integer, HostedGame> games = new HashMap<>();
+    /**
+     * Guards {@link #games} and {@link #nextId}
+     */
+    private final Lock gamesLock = new ReentrantLock();
+    /**
+     * Seeds new games
+     */
+    private final Random random = new SecureRandom();
+    /**
+     * The number of milliseconds that a disconnected player has to reconnect
+     */
+    private final long reconnectTimeout;
+    /**
+     * Ends games whose players did not reconnect in time
+     */
+    private final ScheduledExecutorService timer;
+    /**
+     * The id of the next game
+     */
+    private int nextId;
+
+    /**
+     * Opens the log in the given file and recovers every game that was going on. Disconnected players get the
+     * {@link #DEFAULT_RECONNECT_TIMEOUT} to reconnect.
+     *
+     * @param file the file of the log
+     * @throws IOException if the log cannot be read or opened
+     */
+    public GameHost(Path file) throws IOException {
+        this(file, DEFAULT_RECONNECT_TIMEOUT);
+    }
+
+    /**
+     * Opens the log in the given file and recovers every game that was going on.
+     *
+     * @param file             the file of the log
+     * @param reconnectTimeout the number of milliseconds that a disconnected player has to reconnect
+     * @throws IOException if the log cannot be read or opened
+     */
+    public GameHost(Path file, long reconnectTimeout) throws IOException {
+        if (reconnectTimeout < 0) {
+            throw new IllegalArgumentException("The reconnect timeout cannot be negative");
+        }
+        this.reconnectTimeout = reconnectTimeout;
+
+        Map<Integer, List<byte[]>> records = new LinkedHashMap<>();
+        WriteAheadLog.read(file, buffer -> {
+            byte[] record = new byte[buffer.remaining()];
+            buffer.get(record);
+            try {
+                recover(records, record);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Skipping a bad record in the game log", e);
+            }
+        });
+
+        List<byte[]> live = new ArrayList<>();
+        for (List<byte[]> game : records.values()) {
+            live.addAll(game);
+        }
+        WriteAheadLog.rewrite(file, live);
+        wal = new WriteAheadLog(file);
+        timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "reconnect-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (!games.isEmpty()) {
+            log.info("Recovered {} games", games.size());
+        }
+    }
+
+    /**
+     * Starts a new game on the {@link #DEFAULT_MAP}. The start does not need to be waited for: the log is written in
+     * order, so the start is on disk before any action of the game is.
+     *
+     * @param names the names of the players, by seat
+     * @return the new game
+     * @throws IOException if the game could not be logged
+     */
+    public HostedGame start(String... names) throws IOException {
+        gamesLock.lock();
+        try {
+            HostedGame game = new HostedGame(nextId++, random.nextLong(), DEFAULT_MAP, names);
+            wal.append(start(game));
+            games.put(game.getId(), game);
+            return game;
+        } finally {
+            gamesLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the game that a player was in and has not reconnected to yet.
+     *
+     * @param name the name of the player
+     * @return the game, or {@code null} if there is none
+     */
+    public HostedGame find(String name) {
+        List<HostedGame> live;
+        gamesLock.lock();
+        try {
+            live = new ArrayList<>(games.values());
+        } finally {
+            gamesLock.unlock();
+        }
+        // a game is never locked while holding gamesLock, since moves lock them the other way around
+        for (HostedGame game : live) {
+            int seat = game.seatOf(name);
+            if (seat >= 0 && game.getClient(seat) == null) {
+                return game;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Makes a move for a player and logs it. A move that ends the game ends it in the log. If the move cannot be
+     * logged, the game is dropped, since it no longer matches the log; it is recovered without the move next time.
+     *
+     * @param game the game
+     * @param seat the seat of the player
+     * @param move the move
+     * @return the sequence number of the record to wait for, or -1 if the move was illegal
+     * @throws IOException if the move could not be logged
+     */
+    public long move(HostedGame game, int seat, int move) throws IOException {
+        game.getLock().lock();
+        try {
+            if (!game.move(seat, move)) {
+                return -1;
+            }
+            long sequence = append(game, ByteBuffer.allocate(9).put(MOVE).putInt(game.getId()).putInt(move).array());
+            return game.isOver() ? end(game) : sequence;
+        } finally {
+            game.getLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a route for a player and logs it. Like {@link #move(HostedGame, int, int)}, the game is dropped if the
+     * return cannot be logged.
+     *
+     * @param game  the game
+     * @param seat  the seat of the player
+     * @param route the id of the route
+     * @return the sequence number of the record to wait for, or -1 if the route could not be returned
+     * @throws IOException if the return could not be logged
+     */
+    public long returnRoute(HostedGame game, int seat, int route) throws IOException {
+        game.getLock().lock();
+        try {
+            if (!game.returnRoute(seat, route)) {
+                return -1;
+            }
+            return append(game, ByteBuffer.allocate(8).put(RETURN).putInt(game.getId()).put((byte) seat)
+                    .putShort((short) route).array());
+        } finally {
+            game.getLock().unlock();
+        }
+    }
+
+    /**
+     * Runs an action once a record is on disk, without blocking. See
+     * {@link WriteAheadLog#whenDurable(long, Runnable, Runnable)}.
+     *
+     * @param sequence the sequence number of the record
+     * @param action   the action to run
+     * @param failed   the action to run instead if the log fails first
+     */
+    public void whenDurable(long sequence, Runnable action, Runnable failed) {
+        wal.whenDurable(sequence, action, failed);
+    }
+
+    /**
+     * Ends a game that was abandoned. If the end is lost in a crash, the game is recovered and can still be resumed.
+     *
+     * @param game the game
+     * @throws IOException if the end could not be logged
+     */
+    public void abandon(HostedGame game) throws IOException {
+        game.getLock().lock();
+        try {
+            if (isLive(game)) {
+                end(game);
+            }
+        } finally {
+            game.getLock().unlock();
+        }
+    }
+
+    /**
+     * Disconnects a player from a game without ending it. If nobody reconnects to the seat within the reconnect
+     * timeout, the game is ended in the log and the given action is run.
+     *
+     * @param game      the game
+     * @param seat      the seat of the player
+     * @param abandoned the action to run if the game ends because the player did not come back
+     */
+    public void disconnect(HostedGame game, int seat, Runnable abandoned) {
+        int absence = game.disconnect(seat);
+        timer.schedule(() -> {
+            try {
+                if (expire(game, seat, absence)) {
+                    abandoned.run();
+                }
+            } catch (IOException e) {
+                log.error("Cannot log the end of game {}", game.getId(), e);
+            }
+        }, reconnectTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the average number of records written per {@code fsync}.
+     *
+     * @return the average batch size
+     */
+    public double getAverageBatchSize() {
+        return wal.getAverageBatchSize();
+    }
+
+    /**
+     * Closes the log. Games that are still going on are recovered the next time.
+     *
+     * @throws IOException if the log could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        timer.shutdownNow();
+        wal.close();
+    }
+
+    /**
+     * Checks whether a game is still going on.
+     *
+     * @param game the game
+     * @return whether it is going on
+     */
+    private boolean isLive(HostedGame game) {
+        gamesLock.lock();
+        try {
+            return games.get(game.getId()) == game;
+        } finally {
+            gamesLock.unlock();
+        }
+    }
+
+    /**
+     * Ends a game if a seat has stayed empty since the given absence started.
+     *
+     * @param game    the game
+     * @param seat    the seat
+     * @param absence the number of the absence
+     * @return whether the game was ended
+     * @throws IOException if the end could not be logged
+     */
+    private boolean expire(HostedGame game, int seat, int absence) throws IOException {
+        game.getLock().lock();
+        try {
+            if (!isLive(game) || !game.isAbsent(seat, absence)) {
+                return false;
+            }
+            end(game);
+            return true;
+        } finally {
+            game.getLock().unlock();
+        }
+    }
+
+    /**
+     * Logs an action of a game that was already applied to it. If the action cannot be logged, the game is forgotten
+     * without ending it in the log, so that nobody resumes a game that holds an action the log does not.
+     *
+     * @param game   the game
+     * @param record the record of the action
+     * @return the sequence number of the record
+     * @throws IOException if the action could not be logged
+     */
+    private long append(HostedGame game, byte[] record) throws IOException {
+        try {
+            return wal.append(record);
+        } catch (IOException e) {
+            gamesLock.lock();
+            try {
+                games.remove(game.getId(), game);
+            } finally {
+                gamesLock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Logs the end of a game and forgets it.
+     *
+     * @param game the game
+     * @return the sequence number of the record
+     * @throws IOException if the end could not be logged
+     */
+    private long end(HostedGame game) throws IOException {
+        gamesLock.lock();
+        try {
+            games.remove(game.getId());
+        } finally {
+            gamesLock.unlock();
+        }
+        return wal.append(ByteBuffer.allocate(5).put(END).putInt(game.getId()).array());
+    }
+
+    /**
+     * Encodes the start of a game.
+     *
+     * @param game the game
+     * @return the record
+     * @throws IOException if encoding fails
+     */
+    private static byte[] start(HostedGame game) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(START);
+        out.writeInt(game.getId());
+        out.writeLong(game.getSeed());
+        out.writeUTF(game.getMapName());
+        out.writeByte(game.getNumPlayers());
+        for (int i = 0; i < game.getNumPlayers(); i++) {
+            out.writeUTF(game.getName(i));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replays a record of the log.
+     *
+     * @param records the records of every game that is still going on, by id
+     * @param record  the record
+     * @throws IOException if the record is malformed
+     */
+    private void recover(Map<Integer, List<byte[]>> records, byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        int id = in.readInt();
+        nextId = Math.max(nextId, id + 1);
+
+        if (type == START) {
+            long seed = in.readLong();
+            String map = in.readUTF();
+            String[] names = new String[in.readUnsignedByte()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            games.put(id, new HostedGame(id, seed, map, names));
+            records.put(id, new ArrayList<>(Collections.singletonList(record)));
+            return;
+        }
+
+        HostedGame game = games.get(id);
+        if (game == null) {
+            return;
+        }
+        boolean ok;
+        switch (type) {
+            case MOVE:
+                // moves are only logged on their player's turn
+                ok = game.move(game.getTurn(), in.readInt());
+                break;
+            case RETURN:
+                ok = game.returnRoute(in.readUnsignedByte(), in.readUnsignedShort());
+                break;
+            case END:
+                games.remove(id);
+                records.remove(id);
+                return;
+            default:
+                throw new IOException("Unknown record " + type);
+        }
+
+        if (!ok) {
+            log.warn("Game {} could not be recovered", id);
+            games.remove(id);
+            records.remove(id);
+        } else {
+            records.get(id).add(record);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import com.github.leftisttachyon.ticket2ride.game.Board;
+import com.github.leftisttachyon.ticket2ride.game.Game;
+import com.github.leftisttachyon.ticket2ride.game.GameMap;
+import com.github.leftisttachyon.ticket2ride.game.Move;
+import com.github.leftisttachyon.ticket2ride.game.Player;
+import com.github.leftisttachyon.ticket2ride.game.Route;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link Game} hosted by the server. The server checks every action against the hosted {@link Game} before passing
+ * it on, and remembers the accepted actions so that a client that reconnects can catch up. Everything about a game
+ * is determined by its seed and its actions, which is what {@link GameHost} logs.<br>
+ * The clients send actions as protocol lines:
+ * <pre>
+ * MOVE&lt;move&gt;      a move encoded by {@link Move}
+ * RETURN&lt;route&gt;   returns the {@link Route} with the given id
+ * </pre>
+ * The history sent to a client that reconnects holds the same lines, except that returned {@link Route}s also name
+ * the seat of the player who returned them, since moves are always made by the player whose turn it is but routes
+ * can be returned by either player:
+ * <pre>
+ * MOVE&lt;move&gt;
+ * RETURN&lt;seat&gt; &lt;route&gt;
+ * </pre>
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class HostedGame {
+    /**
+     * The prefix of a line holding a move
+     */
+    public static final String MOVE = "MOVE";
+    /**
+     * The prefix of a line returning a route
+     */
+    public static final String RETURN = "RETURN";
+
+    /**
+     * The id of this game
+     */
+    @Getter
+    private final int id;
+    /**
+     * The seed of the board
+     */
+    @Getter
+    private final long seed;
+    /**
+     * The name of the map
+     */
+    @Getter
+    private final String mapName;
+    /**
+     * The names of the players, by seat
+     */
+    private final String[] names;
+    /**
+     * The game
+     */
+    private final Game game;
+    /**
+     * The accepted actions, as protocol lines
+     */
+    private final List<String> history = new ArrayList<>();
+    /**
+     * The connected client of every seat, or {@code null}
+     */
+    private final MiniServer[] clients;
+    /**
+     * The number of times that the client of every seat has disconnected
+     */
+    private final int[] absences;
+    /**
+     * Guards the game, its history and its clients
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Creates and starts a new {@link HostedGame}.
+     *
+     * @param id      the id of the game
+     * @param seed    the seed of the board
+     * @param mapName the name of the map
+     * @param names   the names of the players, by seat
+     */
+    HostedGame(int id, long seed, String mapName, String[] names) {
+        this.id = id;
+        this.seed = seed;
+        this.mapName = mapName;
+        this.names = names.clone();
+        clients = new MiniServer[names.length];
+        absences = new int[names.length];
+
+        game = new Game(new Board(MapCache.get(mapName), seed), names.length);
+        for (int i = 0; i < names.length; i++) {
+            game.getPlayer(i).setName(names[i]);
+        }
+        game.startGame();
+    }
+
+    /**
+     * Returns the number of players.
+     *
+     * @return the number of players
+     */
+    public int getNumPlayers() {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of the player in a seat.
+     *
+     * @param seat the seat
+     * @return the name of the player
+     */
+    public String getName(int seat) {
+        return names[seat];
+    }
+
+    /**
+     * Finds the seat of a player.
+     *
+     * @param name the name of the player
+     * @return the seat, or -1 if they are not playing
+     */
+    public int seatOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the lock of this game. Holding it keeps the game, its history and its clients from changing.
+     *
+     * @return the lock
+     */
+    Lock getLock() {
+        return lock;
+    }
+
+    /**
+     * Returns whether the game has ended.
+     *
+     * @return whether the game has ended
+     */
+    public boolean isOver() {
+        lock.lock();
+        try {
+            return game.gameEnded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the seat of the player whose turn it is.
+     *
+     * @return the seat
+     */
+    public int getTurn() {
+        lock.lock();
+        try {
+            return game.getTurn();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the accepted actions so far.
+     *
+     * @return a copy of the accepted actions, as lines of the history described above
+     */
+    public List<String> getHistory() {
+        lock.lock();
+        try {
+            return new ArrayList<>(history);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes a move for a player, if it is their turn and the move is legal.
+     *
+     * @param seat the seat of the player
+     * @param move the move, encoded by {@link Move}
+     * @return whether the move was made
+     */
+    boolean move(int seat, int move) {
+        lock.lock();
+        try {
+            if (game.gameEnded() || game.getTurn() != seat) {
+                return false;
+            }
+            try {
+                if (!game.applyMove(move)) {
+                    return false;
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                return false;
+            }
+            history.add(MOVE + move);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a {@link Route} for a player.
+     *
+     * @param seat  the seat of the player
+     * @param route the id of the {@link Route}
+     * @return whether the {@link Route} was returned
+     */
+    boolean returnRoute(int seat, int route) {
+        lock.lock();
+        try {
+            GameMap map = game.getBoard().getMap();
+            if (game.gameEnded() || seat < 0 || seat >= names.length || route < 0 || route >= map.getNumRoutes()) {
+                return false;
+            }
+            Player player = game.getPlayer(seat);
+            if (!game.returnRoute(player, map.getRoute(route))) {
+                return false;
+            }
+            history.add(RETURN + seat + " " + route);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the client connected to a seat.
+     *
+     * @param seat the seat
+     * @return the client, or {@code null} if the player is not connected
+     */
+    MiniServer getClient(int seat) {
+        lock.lock();
+        try {
+            return clients[seat];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Connects a client to a seat.
+     *
+     * @param seat   the seat
+     * @param client the client, or {@code null} to disconnect the seat
+     */
+    void setClient(int seat, MiniServer client) {
+        lock.lock();
+        try {
+            clients[seat] = client;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Disconnects the client of a seat and starts a new absence of the seat.
+     *
+     * @param seat the seat
+     * @return the number of the absence, to pass to {@link #isAbsent(int, int)}
+     */
+    int disconnect(int seat) {
+        lock.lock();
+        try {
+            clients[seat] = null;
+            return ++absences[seat];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether a seat has stayed empty since the given absence started.
+     *
+     * @param seat    the seat
+     * @param absence the number of the absence, as returned by {@link #disconnect(int)}
+     * @return whether no client has connected to the seat since
+     */
+    boolean isAbsent(int seat, int absence) {
+        lock.lock();
+        try {
+            return clients[seat] == null && absences[seat] == absence;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A class that cuts bytes into lines the way {@link java.io.BufferedReader#readLine()} does: a line is ended by
+ * {@code \n}, {@code \r} or {@code \r\n}. It starts small and only grows for long lines, so idle connections cost
+ * little memory.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+final class LineDecoder {
+    /**
+     * The charset of the protocol; the platform charset, like {@link java.io.InputStreamReader}'s default
+     */
+    static final Charset CHARSET = Charset.defaultCharset();
+
+    /**
+     * The longest line allowed
+     */
+    private final int maxLength;
+    /**
+     * The bytes of the line being read
+     */
+    private byte[] line = new byte[64];
+    /**
+     * The number of bytes in {@link #line}
+     */
+    private int length;
+    /**
+     * Whether the last byte ended a line with {@code \r}, so that a {@code \n} right after it is skipped
+     */
+    private boolean skipLineFeed;
+
+    /**
+     * Creates a new {@link LineDecoder}.
+     *
+     * @param maxLength the longest line allowed, in bytes
+     */
+    LineDecoder(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Reads bytes until a line is complete.
+     *
+     * @param bytes the bytes to read; consumed up to the end of the line
+     * @return the line without its line separator, or {@code null} if the bytes ran out first
+     * @throws IOException if the line is too long
+     */
+    String decode(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            byte b = bytes.get();
+            if (b == '\n' && skipLineFeed) {
+                skipLineFeed = false;
+            } else if (b == '\n' || b == '\r') {
+                skipLineFeed = b == '\r';
+                String text = new String(line, 0, length, CHARSET);
+                length = 0;
+                return text;
+            } else {
+                skipLineFeed = false;
+                if (length == maxLength) {
+                    throw new IOException("Line longer than " + maxLength + " bytes");
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, Math.min(line.length * 2, maxLength));
+                }
+                line[length++] = b;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes the bytes of an unfinished line, for when the input ends without a line separator.
+     *
+     * @return the unfinished line, or {@code null} if there is none
+     */
+    String remainder() {
+        if (length == 0) {
+            return null;
+        }
+        String text = new String(line, 0, length, CHARSET);
+        length = 0;
+        return text;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * A class that turns lines into the bytes sent to clients, the reverse of {@link LineDecoder}. Lines that go to many
+ * clients are encoded once and the bytes are shared, so the bytes must never be changed after encoding.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+final class LineEncoder {
+    /**
+     * The end of every line sent
+     */
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(LineDecoder.CHARSET);
+
+    /**
+     * No instantiation for you!
+     */
+    private LineEncoder() {
+    }
+
+    /**
+     * Encodes a line.
+     *
+     * @param line the line, without a line separator
+     * @return the bytes of the line and a line separator
+     */
+    static byte[] encode(String line) {
+        return (line + System.lineSeparator()).getBytes(LineDecoder.CHARSET);
+    }
+
+    /**
+     * Encodes several lines into one frame, to be written at once.
+     *
+     * @param lines the lines, without line separators
+     * @return the bytes of every line, each followed by a line separator
+     */
+    static byte[] encode(List<String> lines) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(lines.size() * 24);
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(LineDecoder.CHARSET);
+            out.write(bytes, 0, bytes.length);
+            out.write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Joins encoded frames into one, leaving out one of them.
+     *
+     * @param frames the frames
+     * @param skip   the index of the frame to leave out, or -1 to keep every frame
+     * @return the joined frame
+     */
+    static byte[] join(byte[][] frames, int skip) {
+        int length = 0;
+        for (int i = 0; i < frames.length; i++) {
+            if (i != skip) {
+                length += frames[i].length;
+            }
+        }
+        byte[] joined = new byte[length];
+        int offset = 0;
+        for (int i = 0; i < frames.length; i++) {
+            if (i != skip) {
+                System.arraycopy(frames[i], 0, joined, offset, frames[i].length);
+                offset += frames[i].length;
+            }
+        }
+        return joined;
+    }
+}
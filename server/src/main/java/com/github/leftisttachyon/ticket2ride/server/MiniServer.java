@@ -2,15 +2,8 @@ package com.github.leftisttachyon.ticket2ride.server;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * A class that handles the client
@@ -22,44 +15,49 @@ import java.util.Set;
 public class MiniServer {
 
     /**
-     * A HashMap of every MiniServer created
+     * Every user with a name, and whether they are busy
      */
-    private static final HashMap<String, MiniServer> SERVERS = new HashMap<>();
+    private static final ClientRegistry REGISTRY = new ClientRegistry();
 
     /**
-     * A Set of MiniServers which are busy
+     * The host of server-side games, or null if games are only relayed
      */
-    private static final Set<MiniServer> BUSY = new HashSet<>();
+    private static GameHost host;
 
     /**
-     * A reader coming from the user
+     * The connection to the user
      */
-    private final BufferedReader in;
+    private final Connection connection;
 
     /**
-     * A writer going to the user
+     * The user's entry in {@link #REGISTRY}, or null if they have no name yet
      */
-    private final PrintWriter out;
-
-    /**
-     * The internal socket
-     */
-    public final Socket socket;
+    private volatile ClientRegistry.Member member;
 
     /**
      * Whether the user is currently in a game
      */
-    private boolean inGame;
+    private volatile boolean inGame;
 
     /**
      * The opponent, if any. If none, this is null.
      */
-    private MiniServer opponent;
+    private volatile MiniServer opponent;
 
     /**
      * This user's name
      */
-    private String name;
+    private volatile String name;
+
+    /**
+     * The game hosted for this user's match, if any. If none, this is null.
+     */
+    private volatile HostedGame game;
+
+    /**
+     * This user's seat in the hosted game
+     */
+    private int seat;
 
     /**
      * Creates a new MiniServer object with the given Socket
@@ -68,180 +66,422 @@ public class MiniServer {
      * @throws IOException if the in and out streams cannot be created
      */
     public MiniServer(Socket s) throws IOException {
-        socket = s;
-        in = new BufferedReader(new InputStreamReader(
-                socket.getInputStream()));
-        out = new PrintWriter(socket.getOutputStream(), true);
+        this(new SocketConnection(s));
+    }
+
+    /**
+     * Creates a new MiniServer object that speaks over the given Connection
+     *
+     * @param connection the Connection to use
+     */
+    public MiniServer(Connection connection) {
+        this.connection = connection;
         inGame = false;
         opponent = null;
     }
 
     /**
-     * Called to start interaction with the user
+     * Sets the host of server-side games. Matches started afterwards are hosted and logged by it, and users that
+     * reconnect are put back into their games.
+     *
+     * @param gameHost the host, or null to only relay games
+     */
+    public static void setHost(GameHost gameHost) {
+        host = gameHost;
+    }
+
+    /**
+     * Sends a line to the user.
+     *
+     * @param line the line, without a line separator
+     */
+    void send(String line) {
+        connection.send(line);
+    }
+
+    /**
+     * Sends lines that are already encoded to the user.
+     *
+     * @param lines   the bytes of the lines, each ended by a line separator
+     * @param traffic the kind of the lines
+     */
+    void send(byte[] lines, Traffic traffic) {
+        connection.send(lines, traffic);
+    }
+
+    /**
+     * Called to start interaction with the user on a thread of its own. Returns
+     * when the user disconnects.
+     *
+     * @throws IllegalStateException if this MiniServer was not created with a
+     *                               Socket
      */
     public void go() {
-        try (out; in) {
-            // Request a name from this client.  Keep requesting until
-            // a name is submitted that is not already used.  Note that
-            // checking for the existence of a name and adding the name
-            // must be done while locking the set of names.
-            while (true) {
-                out.println("SUBMITNAME");
-                // notify("SUBMITNAME", false);
-                // notify(name, true);
-                if ((name = in.readLine()) == null) {
+        if (!(connection instanceof SocketConnection)) {
+            throw new IllegalStateException("Not a blocking connection");
+        }
+        ((SocketConnection) connection).serve(this);
+    }
+
+    /**
+     * Called when the user has connected. Requests a name from them.
+     */
+    public void connected() {
+        connection.send("SUBMITNAME");
+        // notify("SUBMITNAME", false);
+    }
+
+    /**
+     * Called with every line that the user sends.
+     *
+     * @param line the line, without its line separator
+     */
+    public void receive(String line) {
+        // notify(line, true);
+        if (member == null) {
+            register(line);
+            return;
+        }
+
+        // println("\"" + line + "\"");
+        // handle input
+        if (line.equals("PING")) {
+            connection.send("PONG");
+        } else if (line.startsWith("NLM")) {
+            String message = "NLM" + name + ": " + line.substring(3);
+            REGISTRY.broadcast(message);
+        } else if (inGame) {
+            // the opponent may end the game at any time, so it is read once
+            HostedGame hosted = game;
+            MiniServer other = opponent;
+            if (line.startsWith("EXIT")) {
+                // exit the match
+                exit();
+            } else if (hosted != null && (line.startsWith(HostedGame.MOVE)
+                    || line.startsWith(HostedGame.RETURN))) {
+                play(line, hosted);
+            } else if (other != null) {
+                other.connection.send(line);
+            }
+        } else {
+            if (line.startsWith("CHALLENGE_C")) {
+                // Challenging for a match
+                String toChallenge = line.substring(11);
+                if (toChallenge.equals(name)) {
                     return;
                 }
-                if ("".equals(name) || "null".equals(name)) {
-                    continue;
-                }
-                synchronized (SERVERS) {
-                    if (!SERVERS.containsKey(name)) {
-                        for (Map.Entry<String, MiniServer> entry : SERVERS.entrySet()) {
-                            entry.getValue().out.println("NEWCLIENTtrue " + name);
-                            out.println("NEWCLIENTfalse " + entry.getKey());
-                        }
-                        SERVERS.put(name, this);
-                        break;
-                    }
-                }
-            }
 
-            // Now that a successful name has been chosen, add the
-            // socket's print writer to the set of all writers so
-            // this client can receive broadcast messages.
-            out.println("NAMEACCEPTED");
-            // notify("NAMEACCEPTED", false);
-
-            // Accept messages from this client and broadcast them.
-            // Ignore other clients that cannot be broadcasted to.
-            while (true) {
-                String line = in.readLine();
-                // notify(line, true);
-                if (line == null) {
-                    return;
+                ClientRegistry.Member challenged = REGISTRY.get(toChallenge);
+                if (challenged != null) {
+                    challenged.getClient().send("CHALLENGE_C" + name);
+                } else {
+                    log.warn("Opponent {} not found (149)", toChallenge);
                 }
+            } else if (line.startsWith("CHALLENGE_R")) {
+                // Challenge response: accept or reject
+                // Scanner temp = new Scanner(line.substring(11));
+                String[] data = line.substring(11).split(" ");
 
-                // println("\"" + line + "\"");
-                // handle input
-                if (line.equals("PING")) {
-                    out.println("PONG");
-                } else if (line.startsWith("NLM")) {
-                    String message = "NLM" + name + ": " + line.substring(3);
-                    for (MiniServer h : SERVERS.values()) {
-                        h.out.println(message);
-                    }
-                } else if (inGame) {
-                    if (line.startsWith("EXIT")) {
-                        // exit the match
-                        exit();
+                // Accepted!
+                String other = data[0];
+                ClientRegistry.Member otherM = REGISTRY.get(other);
+                if (otherM != null) {
+                    // pairing both users at once keeps either of them from being matched twice
+                    if (Boolean.parseBoolean(data[1]) && REGISTRY.pair(member, otherM)) {
+                        startMatch(otherM.getClient());
                     } else {
-                        opponent.out.println(line);
+                        otherM.getClient().send("CHALLENGE_Rfalse");
                     }
                 } else {
-                    if (line.startsWith("CHALLENGE_C")) {
-                        // Challenging for a match
-                        String toChallenge = line.substring(11);
-                        if (toChallenge.equals(name)) {
-                            continue;
-                        }
-
-                        if (SERVERS.containsKey(toChallenge)) {
-                            SERVERS.get(toChallenge).out.println("CHALLENGE_C" + name);
-                        } else {
-                            log.warn("Opponent {} not found (149)", toChallenge);
-                        }
-                    } else if (line.startsWith("CHALLENGE_R")) {
-                        // Challenge response: accept or reject
-                        // Scanner temp = new Scanner(line.substring(11));
-                        String[] data = line.substring(11).split(" ");
-
-                        // Accepted!
-                        String other = data[0];
-                        if (SERVERS.containsKey(other)) {
-                            MiniServer otherH = SERVERS.get(other);
-                            if (Boolean.parseBoolean(data[1]) && !BUSY.contains(otherH)) {
-                                startMatch(otherH);
-                            } else {
-                                otherH.out.println("CHALLENGE_Rfalse");
-                            }
-                        } else {
-                            log.info("Opponent {} not found (161)", other);
-                        }
-                    }
+                    log.info("Opponent {} not found (161)", other);
                 }
             }
-        } catch (IOException e) {
-            log.warn("An IOException was thrown", e);
-        } finally {
-            // This client is going down!  Remove its name and its print
-            // writer from the sets, and close its socket.
-            for (MiniServer h : SERVERS.values()) {
-                h.out.println("REMOVECLIENT" + name);
-            }
+        }
+    }
 
-            if (opponent != null) {
-                opponent.out.println("EXIT");
-                opponent.inGame = false;
-                for (MiniServer h : SERVERS.values()) {
-                    h.out.println("FREE" + opponent.name);
-                }
-                opponent = null;
-            }
-            SERVERS.remove(name);
+    /**
+     * Called once when the user has disconnected. A hosted game that is still going on is kept for the user to
+     * reconnect to, and their opponent is told that they are gone; any other match ends.
+     */
+    public void disconnected() {
+        if (member == null) {
+            return;
+        }
 
-            try {
-                socket.close();
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
+        // This client is going down!  Remove it from the registry.
+        HostedGame hosted = game;
+        boolean keep = hosted != null && !hosted.isOver();
+        if (keep) {
+            leave(hosted);
+        } else {
+            abandon();
+        }
+        REGISTRY.leave(member);
+        member = null;
+
+        if (!keep) {
+            releaseOpponent();
         }
     }
 
+    /**
+     * Tries to register the user under the name they submitted. Requests
+     * another name if it is empty or already used. The name is claimed
+     * atomically by the registry, so two users cannot both get it.
+     *
+     * @param submitted the submitted name
+     */
+    private void register(String submitted) {
+        if ("".equals(submitted) || "null".equals(submitted)) {
+            connection.send("SUBMITNAME");
+            return;
+        }
+        name = submitted;
+        member = REGISTRY.join(submitted, this);
+        if (member == null) {
+            name = null;
+            connection.send("SUBMITNAME");
+            return;
+        }
+
+        // Now that a successful name has been chosen, this client
+        // receives broadcast messages.
+        connection.send("NAMEACCEPTED");
+        // notify("NAMEACCEPTED", false);
+        resume();
+    }
+
     /**
      * Exits the current game. Notifies the opponent of the exit as well.
      */
     private void exit() {
+        abandon();
         inGame = false;
-        BUSY.remove(this);
+        REGISTRY.release(member);
 
-        for (MiniServer h : SERVERS.values()) {
-            h.out.println("FREE" + name);
-        }
-
-        if (opponent != null) {
-            opponent.out.println("EXIT");
-            opponent.inGame = false;
-            BUSY.remove(opponent);
-            for (MiniServer h : SERVERS.values()) {
-                h.out.println("FREE" + opponent.name);
-            }
+        releaseOpponent();
+    }
 
-            opponent = null;
+    /**
+     * Ends the match for the opponent, if any, and makes them free.
+     */
+    private void releaseOpponent() {
+        MiniServer other = opponent;
+        if (other == null) {
+            return;
+        }
+        opponent = null;
+        other.connection.send("EXIT");
+        other.inGame = false;
+        other.opponent = null;
+        // the opponent may have left already
+        ClientRegistry.Member otherMember = other.member;
+        if (otherMember != null) {
+            REGISTRY.release(otherMember);
         }
     }
 
     /**
      * Starts a match between this client and the given one. Also takes care of
-     * formalities like notifying other players that this server and the other
-     * one are now busy.
+     * formalities like notifying the other player. Both players must already
+     * have been made busy with {@link ClientRegistry#pair}.
      */
     private void startMatch(MiniServer other) {
         opponent = other;
         inGame = true;
-        opponent.out.println("CHALLENGE_Rtrue");
+        opponent.connection.send("CHALLENGE_Rtrue");
         opponent.opponent = this;
         opponent.inGame = true;
 
-        for (MiniServer h : SERVERS.values()) {
-            h.out.println("BUSY" + name);
-            h.out.println("BUSY" + opponent.name);
+        connection.send("ST");
+        opponent.connection.send("ST");
+
+        if (host != null) {
+            try {
+                HostedGame hosted = host.start(opponent.name, name);
+                opponent.join(hosted, 0);
+                join(hosted, 1);
+            } catch (IOException e) {
+                log.error("Cannot host the match of {} and {}", opponent.name, name, e);
+            }
         }
+    }
 
-        BUSY.add(opponent);
-        BUSY.add(this);
+    /**
+     * Joins a hosted game and tells the user their seat and the seed of the board.
+     *
+     * @param hosted the hosted game
+     * @param s      the seat of this user
+     */
+    private void join(HostedGame hosted, int s) {
+        game = hosted;
+        seat = s;
+        hosted.setClient(s, this);
+        connection.send("HOSTED" + s + " " + hosted.getSeed() + " " + hosted.getMapName());
+    }
 
-        out.println("ST");
-        opponent.out.println("ST");
+    /**
+     * Puts a user that reconnected back into the hosted game they were playing, if any. The user is sent the seed of
+     * the board and every action so far; their opponent, if connected, is told that they are back.
+     */
+    private void resume() {
+        if (host == null) {
+            return;
+        }
+        HostedGame hosted = host.find(name);
+        if (hosted == null) {
+            return;
+        }
+
+        if (!REGISTRY.occupy(member)) {
+            // matched with someone else before getting here
+            return;
+        }
+        game = hosted;
+        seat = hosted.seatOf(name);
+        inGame = true;
+
+        connection.send("RESUME" + seat + " " + hosted.getSeed() + " " + hosted.getMapName());
+        MiniServer other;
+        hosted.getLock().lock();
+        try {
+            for (String action : hosted.getHistory()) {
+                connection.send(action);
+            }
+            hosted.setClient(seat, this);
+            other = hosted.getClient(1 - seat);
+            if (other != null) {
+                opponent = other;
+                other.opponent = this;
+            }
+        } finally {
+            hosted.getLock().unlock();
+        }
+        if (other != null) {
+            other.connection.send("RECONNECT" + name);
+        }
+        log.info("{} reconnected to game {}", name, hosted.getId());
+    }
+
+    /**
+     * Checks an action in the hosted game. The action is passed on to the opponent once it is safely logged, and
+     * the user is told whether it was accepted. Does not wait for the log, so that it can run on an event loop. If
+     * the action cannot be logged, it is rejected and the match ends, since the game can no longer be recovered.
+     *
+     * @param line   the action
+     * @param hosted the game of the user when the action arrived
+     */
+    private void play(String line, HostedGame hosted) {
+        long sequence;
+        try {
+            if (line.startsWith(HostedGame.MOVE)) {
+                sequence = host.move(hosted, seat, Integer.parseInt(line.substring(HostedGame.MOVE.length())));
+            } else {
+                sequence = host.returnRoute(hosted, seat,
+                        Integer.parseInt(line.substring(HostedGame.RETURN.length())));
+            }
+        } catch (NumberFormatException e) {
+            sequence = -1;
+        } catch (IOException e) {
+            log.error("Cannot log an action of {}", name, e);
+            lost(line, hosted);
+            return;
+        }
+
+        if (sequence < 0) {
+            connection.send("INVALID" + line);
+            return;
+        }
+        MiniServer to = opponent;
+        host.whenDurable(sequence, () -> {
+            connection.send("OK" + line);
+            if (to != null) {
+                to.connection.send(line);
+            }
+        }, () -> {
+            log.error("Cannot log an action of {}", name);
+            lost(line, hosted);
+        });
+    }
+
+    /**
+     * Rejects an action that could not be logged and ends the match it was played in, if the user is still in it.
+     *
+     * @param line   the action
+     * @param hosted the game of the action
+     */
+    private void lost(String line, HostedGame hosted) {
+        connection.send("INVALID" + line);
+        if (game == hosted) {
+            exit();
+        }
+    }
+
+    /**
+     * Leaves a hosted game without ending it. The opponent stays in the game and is told that this user is gone; if
+     * this user does not reconnect in time, the game ends for the opponent too.
+     *
+     * @param hosted the hosted game
+     */
+    private void leave(HostedGame hosted) {
+        int s = seat;
+        game = null;
+        inGame = false;
+        MiniServer other = opponent;
+        opponent = null;
+        host.disconnect(hosted, s, () -> {
+            MiniServer remaining = hosted.getClient(1 - s);
+            if (remaining != null) {
+                remaining.abandoned(hosted);
+            }
+        });
+
+        if (other != null) {
+            other.opponent = null;
+            other.connection.send("DISCONNECT" + name);
+        }
+        log.info("{} left game {}", name, hosted.getId());
+    }
+
+    /**
+     * Ends the match of this user after their opponent did not reconnect to the given game in time.
+     *
+     * @param hosted the game that was ended
+     */
+    private void abandoned(HostedGame hosted) {
+        if (game != hosted) {
+            return;
+        }
+        game = null;
+        inGame = false;
+        opponent = null;
+        hosted.setClient(seat, null);
+        connection.send("EXIT");
+        ClientRegistry.Member m = member;
+        if (m != null) {
+            REGISTRY.release(m);
+        }
+    }
+
+    /**
+     * Ends the hosted game, if any, for this user and their opponent.
+     */
+    private void abandon() {
+        // the opponent may abandon the game at the same time, so it is read once
+        HostedGame hosted = game;
+        if (hosted == null) {
+            return;
+        }
+        try {
+            host.abandon(hosted);
+        } catch (IOException e) {
+            log.error("Cannot log the end of game {}", hosted.getId(), e);
+        }
+        hosted.setClient(seat, null);
+        game = null;
+        MiniServer other = opponent;
+        if (other != null) {
+            other.game = null;
+        }
     }
 }
@@ -0,0 +1,57 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import lombok.Getter;
+
+/**
+ * How much may wait to be sent to each client of a server, what happens when a client falls behind, and the
+ * {@link OutboundMetrics} that the clients' queues report to.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Getter
+public final class OutboundLimits {
+    /**
+     * The default number of bytes that may wait for a client
+     */
+    public static final int DEFAULT_LIMIT = 256 * 1024;
+
+    /**
+     * The number of bytes that may wait for a client
+     */
+    private final int limit;
+    /**
+     * What happens when more is sent to a client than may wait
+     */
+    private final SlowConsumerPolicy policy;
+    /**
+     * Counts what waits for the clients
+     */
+    private final OutboundMetrics metrics = new OutboundMetrics();
+
+    /**
+     * Creates a new {@link OutboundLimits} with the default limit and policy.
+     */
+    public OutboundLimits() {
+        this(DEFAULT_LIMIT, SlowConsumerPolicy.COLLAPSE_PRESENCE);
+    }
+
+    /**
+     * Creates a new {@link OutboundLimits}.
+     *
+     * @param limit  the number of bytes that may wait for a client; a single frame larger than this is still sent
+     *               to a client with nothing waiting
+     * @param policy what happens when more is sent to a client than may wait
+     */
+    public OutboundLimits(int limit, SlowConsumerPolicy policy) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid outbound limit: " + limit);
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("No slow consumer policy");
+        }
+
+        this.limit = limit;
+        this.policy = policy;
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what waits in the outbound queues of a server's clients, and what was given up because a client read too
+ * slowly. Updated by every connection at once without locking.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public final class OutboundMetrics {
+    /**
+     * The lines waiting in every queue, in frames
+     */
+    private final LongAdder queuedFrames = new LongAdder();
+    /**
+     * The lines waiting in every queue, in bytes
+     */
+    private final LongAdder queuedBytes = new LongAdder();
+    /**
+     * The most bytes that waited in one queue
+     */
+    private final AtomicLong deepest = new AtomicLong();
+    /**
+     * The frames of chat that were dropped
+     */
+    private final LongAdder droppedChat = new LongAdder();
+    /**
+     * The times that presence updates were collapsed
+     */
+    private final LongAdder collapses = new LongAdder();
+    /**
+     * The clients disconnected for reading too slowly
+     */
+    private final LongAdder disconnects = new LongAdder();
+
+    /**
+     * Gets the number of frames waiting in every queue.
+     *
+     * @return the number of frames
+     */
+    public long getQueuedFrames() {
+        return queuedFrames.sum();
+    }
+
+    /**
+     * Gets the number of bytes waiting in every queue.
+     *
+     * @return the number of bytes
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.sum();
+    }
+
+    /**
+     * Gets the most bytes that ever waited in one queue.
+     *
+     * @return the number of bytes
+     */
+    public long getDeepest() {
+        return deepest.get();
+    }
+
+    /**
+     * Gets the number of frames of chat that were dropped.
+     *
+     * @return the number of frames
+     */
+    public long getDroppedChat() {
+        return droppedChat.sum();
+    }
+
+    /**
+     * Gets the number of times that presence updates were collapsed.
+     *
+     * @return the number of times
+     */
+    public long getCollapses() {
+        return collapses.sum();
+    }
+
+    /**
+     * Gets the number of clients disconnected for reading too slowly.
+     *
+     * @return the number of clients
+     */
+    public long getDisconnects() {
+        return disconnects.sum();
+    }
+
+    /**
+     * Notes that frames were added to or taken from a queue.
+     *
+     * @param frames the change in frames
+     * @param bytes  the change in bytes
+     * @param depth  the bytes in the queue afterwards
+     */
+    void queued(int frames, long bytes, long depth) {
+        queuedFrames.add(frames);
+        queuedBytes.add(bytes);
+        if (depth > deepest.get()) {
+            deepest.accumulateAndGet(depth, Math::max);
+        }
+    }
+
+    /**
+     * Notes that a frame of chat was dropped.
+     */
+    void droppedChat() {
+        droppedChat.increment();
+    }
+
+    /**
+     * Notes that presence updates were collapsed.
+     */
+    void collapsed() {
+        collapses.increment();
+    }
+
+    /**
+     * Notes that a client was disconnected for reading too slowly.
+     */
+    void disconnected() {
+        disconnects.increment();
+    }
+
+    @Override
+    public String toString() {
+        return getQueuedFrames() + " frames (" + getQueuedBytes() + " bytes) queued, deepest queue "
+                + getDeepest() + " bytes; " + getDroppedChat() + " chat frames dropped, " + getCollapses()
+                + " presence collapses, " + getDisconnects() + " slow clients disconnected";
+    }
+}
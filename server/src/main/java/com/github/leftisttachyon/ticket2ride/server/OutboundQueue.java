@@ -0,0 +1,388 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The lines waiting to be sent to one client. Any thread may add lines, and only the writer of the connection takes
+ * them, so a sender never waits for a client that reads slowly. The queue holds at most the limit of its
+ * {@link OutboundLimits} in bytes; beyond that, its {@link SlowConsumerPolicy} decides what is given up.
+ * <p>
+ * The writer takes frames in two steps: {@link #peek(ByteBuffer[])} hands out the frames at the front, and
+ * {@link #remove(int)} takes away those that were written. Frames that were handed out, or have been partly written,
+ * are never dropped or collapsed. The writer does not have to wait for frames: {@link #offer(byte[], Traffic)} says
+ * when one should be started, and it stops once {@link #peek(ByteBuffer[])} finds nothing, so there is never more
+ * than one.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+final class OutboundQueue {
+    /**
+     * The outcomes of {@link #offer(byte[], Traffic)}
+     */
+    enum Result {
+        /**
+         * The lines were queued, and no writer is taking frames; one should be started
+         */
+        FIRST,
+        /**
+         * The lines were queued for the writer that is already taking frames
+         */
+        QUEUED,
+        /**
+         * The lines were chat and were dropped
+         */
+        DROPPED,
+        /**
+         * The lines did not fit, and the queue was closed; the connection should be closed
+         */
+        OVERFLOW,
+        /**
+         * The queue was already closed
+         */
+        CLOSED
+    }
+
+    /**
+     * The limit and policy of this queue, and the metrics it reports to
+     */
+    private final OutboundLimits limits;
+    /**
+     * Guards everything else
+     */
+    private final Lock lock = new ReentrantLock();
+    /**
+     * The frames, oldest first
+     */
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    /**
+     * The number of bytes in {@link #frames}
+     */
+    private long bytes;
+    /**
+     * The number of frames at the front that were handed to the writer
+     */
+    private int handedOut;
+    /**
+     * Whether the frame at the front has been partly written
+     */
+    private boolean started;
+    /**
+     * Whether a writer was started and has not found this queue empty since
+     */
+    private boolean draining;
+    /**
+     * Whether this queue is closed
+     */
+    private boolean closed;
+
+    /**
+     * Creates a new {@link OutboundQueue}.
+     *
+     * @param limits the limit and policy of the queue, and the metrics it reports to
+     */
+    OutboundQueue(OutboundLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Adds lines to the end of this queue, making room for them if the queue is full.
+     *
+     * @param lines   the bytes of the lines, each ended by a line separator; shared, so never changed
+     * @param traffic the kind of the lines
+     * @return what became of the lines
+     */
+    Result offer(byte[] lines, Traffic traffic) {
+        lock.lock();
+        try {
+            if (closed) {
+                return Result.CLOSED;
+            }
+
+            List<Frame> added = new ArrayList<>(2);
+            added.add(new Frame(lines, traffic));
+            if (!fits(lines.length)) {
+                SlowConsumerPolicy policy = limits.getPolicy();
+                if (policy.compareTo(SlowConsumerPolicy.DROP_CHAT) >= 0) {
+                    if (traffic == Traffic.CHAT) {
+                        limits.getMetrics().droppedChat();
+                        return Result.DROPPED;
+                    }
+                    dropChat();
+                }
+                if (!fits(lines.length) && policy.compareTo(SlowConsumerPolicy.COLLAPSE_PRESENCE) >= 0) {
+                    added = collapsePresence(added);
+                }
+                if (!fits(size(added))) {
+                    limits.getMetrics().disconnected();
+                    closeLocked();
+                    return Result.OVERFLOW;
+                }
+            }
+
+            for (Frame frame : added) {
+                frames.add(frame);
+                bytes += frame.size;
+                limits.getMetrics().queued(1, frame.size, bytes);
+            }
+            boolean first = !draining;
+            draining = true;
+            return first ? Result.FIRST : Result.QUEUED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands out the frames at the front of this queue. If there are none, the writer must stop: the next frame
+     * added starts another.
+     *
+     * @param into the array to put the frames in; at most its length are handed out
+     * @return the number of frames handed out, zero if the queue is empty or closed
+     */
+    int peek(ByteBuffer[] into) {
+        lock.lock();
+        try {
+            int count = handOut(into);
+            if (count == 0) {
+                draining = false;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes away frames that were handed out and written. Must be called by the writer, after every
+     * {@link #peek(ByteBuffer[])} that handed out frames, before frames are handed out again.
+     *
+     * @param written the number of frames at the front that were written completely
+     */
+    void remove(int written) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            for (int i = 0; i < written; i++) {
+                Frame frame = frames.poll();
+                bytes -= frame.size;
+                limits.getMetrics().queued(-1, -frame.size, bytes);
+            }
+            handedOut = 0;
+            // read by the thread that wrote it
+            Frame front = frames.peek();
+            started = front != null && front.buffer.position() > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes this queue, dropping the frames in it.
+     *
+     * @return whether the queue was open
+     */
+    boolean close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            closeLocked();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of frames waiting.
+     *
+     * @return the number of frames
+     */
+    int getDepth() {
+        lock.lock();
+        try {
+            return frames.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes waiting.
+     *
+     * @return the number of bytes
+     */
+    long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether more bytes can be added. A queue that is empty takes anything.
+     *
+     * @param size the number of bytes
+     * @return whether the bytes fit
+     */
+    private boolean fits(long size) {
+        return frames.isEmpty() || bytes + size <= limits.getLimit();
+    }
+
+    /**
+     * Hands out the frames at the front of this queue. Must be called while holding {@link #lock}.
+     *
+     * @param into the array to put the frames in
+     * @return the number of frames handed out
+     */
+    private int handOut(ByteBuffer[] into) {
+        if (closed) {
+            return 0;
+        }
+        int count = 0;
+        for (Frame frame : frames) {
+            if (count == into.length) {
+                break;
+            }
+            into[count++] = frame.buffer;
+        }
+        handedOut = count;
+        return count;
+    }
+
+    /**
+     * Drops the chat that the writer has not started on. Must be called while holding {@link #lock}.
+     */
+    private void dropChat() {
+        Iterator<Frame> it = removable();
+        while (it.hasNext()) {
+            Frame frame = it.next();
+            if (frame.traffic == Traffic.CHAT) {
+                it.remove();
+                bytes -= frame.size;
+                limits.getMetrics().queued(-1, -frame.size, bytes);
+                limits.getMetrics().droppedChat();
+            }
+        }
+    }
+
+    /**
+     * Takes the presence updates that the writer has not started on out of this queue, and collapses them and any in
+     * the frames to be added into one frame. Must be called while holding {@link #lock}.
+     *
+     * @param added the frames to be added
+     * @return the frames to add instead: the collapsed presence updates, then the rest
+     */
+    private List<Frame> collapsePresence(List<Frame> added) {
+        List<byte[]> updates = new ArrayList<>();
+        Iterator<Frame> it = removable();
+        while (it.hasNext()) {
+            Frame frame = it.next();
+            if (frame.traffic == Traffic.PRESENCE) {
+                it.remove();
+                bytes -= frame.size;
+                limits.getMetrics().queued(-1, -frame.size, bytes);
+                updates.add(frame.buffer.array());
+            }
+        }
+
+        List<Frame> rest = new ArrayList<>(added.size());
+        for (Frame frame : added) {
+            if (frame.traffic == Traffic.PRESENCE) {
+                updates.add(frame.buffer.array());
+            } else {
+                rest.add(frame);
+            }
+        }
+        if (updates.isEmpty()) {
+            return added;
+        }
+
+        limits.getMetrics().collapsed();
+        byte[] collapsed = BroadcastStage.collapse(updates);
+        if (collapsed.length > 0) {
+            rest.add(0, new Frame(collapsed, Traffic.PRESENCE));
+        }
+        return rest;
+    }
+
+    /**
+     * Iterates over the frames that may be dropped or collapsed: every frame but those handed out or partly written.
+     * Must be called while holding {@link #lock}.
+     *
+     * @return the iterator
+     */
+    private Iterator<Frame> removable() {
+        Iterator<Frame> it = frames.iterator();
+        for (int skip = Math.max(handedOut, started ? 1 : 0); skip > 0 && it.hasNext(); skip--) {
+            it.next();
+        }
+        return it;
+    }
+
+    /**
+     * Counts the bytes of frames.
+     *
+     * @param list the frames
+     * @return the number of bytes
+     */
+    private static long size(List<Frame> list) {
+        long size = 0;
+        for (Frame frame : list) {
+            size += frame.size;
+        }
+        return size;
+    }
+
+    /**
+     * Closes this queue. Must be called while holding {@link #lock}.
+     */
+    private void closeLocked() {
+        closed = true;
+        limits.getMetrics().queued(-frames.size(), -bytes, 0);
+        frames.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Lines waiting to be sent.
+     */
+    private static final class Frame {
+        /**
+         * The bytes of the lines; this connection's own position in them
+         */
+        private final ByteBuffer buffer;
+        /**
+         * The kind of the lines
+         */
+        private final Traffic traffic;
+        /**
+         * The number of bytes
+         */
+        private final int size;
+
+        /**
+         * Creates a new {@link Frame}.
+         *
+         * @param lines   the bytes of the lines
+         * @param traffic the kind of the lines
+         */
+        Frame(byte[] lines, Traffic traffic) {
+            buffer = ByteBuffer.wrap(lines);
+            this.traffic = traffic;
+            size = lines.length;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A server that serves every client from a few event loops instead of a thread per client. Each event loop owns a
+ * {@link Selector} and the non-blocking {@link SocketChannel}s of its clients, cuts what it reads into lines for
+ * their {@link MiniServer}s with a {@link LineDecoder} and writes out what they send. The protocol is the same as with
+ * {@link SocketConnection}s.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class SelectorServer implements Closeable {
+    /**
+     * The size of the read buffer of every event loop
+     */
+    private static final int READ_BUFFER_SIZE = 8192;
+    /**
+     * The longest line a client may send; longer lines close the connection
+     */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    /**
+     * The most buffers written with one call
+     */
+    private static final int MAX_GATHER = 64;
+
+    /**
+     * The channel that accepts clients
+     */
+    private final ServerSocketChannel server;
+    /**
+     * The event loops
+     */
+    private final EventLoop[] loops;
+
+    /**
+     * Creates a new {@link SelectorServer} with the default {@link OutboundLimits} and starts its event loops.
+     *
+     * @param port     the port to listen on
+     * @param numLoops the number of event loops
+     * @throws IOException if the server cannot be started
+     */
+    public SelectorServer(int port, int numLoops) throws IOException {
+        this(port, numLoops, new OutboundLimits());
+    }
+
+    /**
+     * Creates a new {@link SelectorServer} and starts its event loops.
+     *
+     * @param port     the port to listen on
+     * @param numLoops the number of event loops
+     * @param limits   how much may wait to be written to each client, and what happens when a client falls behind
+     * @throws IOException if the server cannot be started
+     */
+    public SelectorServer(int port, int numLoops, OutboundLimits limits) throws IOException {
+        if (numLoops <= 0) {
+            throw new IllegalArgumentException("Invalid number of event loops: " + numLoops);
+        }
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        loops = new EventLoop[numLoops];
+        for (int i = 0; i < numLoops; i++) {
+            loops[i] = new EventLoop(i, limits);
+        }
+    }
+
+    /**
+     * Returns the port that the server listens on, which is useful when it was created with port 0.
+     *
+     * @return the local port
+     */
+    int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts clients until the server is closed, handing them to the event loops in turn.
+     *
+     * @throws IOException if accepting fails
+     */
+    public void serve() throws IOException {
+        int next = 0;
+        while (server.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+
+            channel.configureBlocking(false);
+            EventLoop loop = loops[next];
+            next = (next + 1) % loops.length;
+            loop.execute(() -> loop.register(channel));
+        }
+    }
+
+    /**
+     * Stops accepting clients and stops the event loops, closing every connection.
+     *
+     * @throws IOException if the server cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (EventLoop loop : loops) {
+            loop.stop();
+        }
+    }
+
+    /**
+     * A thread that serves a share of the clients.
+     */
+    private static final class EventLoop implements Runnable {
+        /**
+         * The selector of the clients
+         */
+        private final Selector selector;
+        /**
+         * The thread of this loop
+         */
+        private final Thread thread;
+        /**
+         * Work handed to this loop by other threads
+         */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        /**
+         * The buffer that every client of this loop is read into
+         */
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        /**
+         * The outbound limits of the clients
+         */
+        private final OutboundLimits limits;
+        /**
+         * Whether this loop should keep running
+         */
+        private volatile boolean running = true;
+
+        /**
+         * Creates and starts a new {@link EventLoop}.
+         *
+         * @param index  the index of the loop, for its name
+         * @param limits the outbound limits of the clients
+         * @throws IOException if the selector cannot be opened
+         */
+        EventLoop(int index, OutboundLimits limits) throws IOException {
+            this.limits = limits;
+            selector = Selector.open();
+            thread = new Thread(this, "selector-loop-" + index);
+            thread.start();
+        }
+
+        /**
+         * Runs a task on this loop.
+         *
+         * @param task the task
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread) {
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Stops this loop.
+         */
+        void stop() {
+            running = false;
+            selector.wakeup();
+        }
+
+        /**
+         * Starts serving a new client.
+         *
+         * @param channel the channel of the client
+         */
+        void register(SocketChannel channel) {
+            ChannelConnection connection = new ChannelConnection(this, channel, limits);
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                log.warn("Cannot register a client", e);
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    log.warn("Cannot close a client", ex);
+                }
+                return;
+            }
+            connection.server.connected();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                // tasks added by this thread while it served the last keys have no wakeup to run them
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    log.error("The selector failed", e);
+                    break;
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ChannelConnection connection = (ChannelConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read(readBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                ((ChannelConnection) key.attachment()).closeNow();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the selector", e);
+            }
+        }
+    }
+
+    /**
+     * A {@link Connection} over a non-blocking {@link SocketChannel}. Everything but {@link #send(byte[], Traffic)} and
+     * {@link #close()} runs on its {@link EventLoop}.
+     */
+    private static final class ChannelConnection implements Connection {
+        /**
+         * The loop that serves this connection
+         */
+        private final EventLoop loop;
+        /**
+         * The channel of the client
+         */
+        private final SocketChannel channel;
+        /**
+         * The protocol handler of the client
+         */
+        private final MiniServer server;
+        /**
+         * The key of {@link #channel} in the selector of {@link #loop}
+         */
+        private SelectionKey key;
+        /**
+         * Cuts what the client sends into lines
+         */
+        private final LineDecoder decoder = new LineDecoder(MAX_LINE_LENGTH);
+        /**
+         * Scratch space for writing several buffers at once
+         */
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        /**
+         * The lines waiting to be written
+         */
+        private final OutboundQueue outbound;
+
+        /**
+         * Creates a new {@link ChannelConnection} and its {@link MiniServer}.
+         *
+         * @param loop    the loop that serves the connection
+         * @param channel the channel of the client
+         * @param limits  the outbound limits of the client
+         */
+        ChannelConnection(EventLoop loop, SocketChannel channel, OutboundLimits limits) {
+            this.loop = loop;
+            this.channel = channel;
+            outbound = new OutboundQueue(limits);
+            server = new MiniServer(this);
+        }
+
+        @Override
+        public void send(byte[] lines, Traffic traffic) {
+            switch (outbound.offer(lines, traffic)) {
+                case FIRST:
+                    // otherwise a flush is already scheduled or waiting for the channel
+                    loop.execute(this::flush);
+                    break;
+                case OVERFLOW:
+                    log.info("Disconnecting a client that reads too slowly");
+                    close();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void close() {
+            loop.execute(this::closeNow);
+        }
+
+        /**
+         * Reads what the client sent and passes every complete line to the {@link MiniServer}.
+         *
+         * @param buffer the buffer to read into
+         */
+        void read(ByteBuffer buffer) {
+            buffer.clear();
+            int read;
+            try {
+                read = channel.read(buffer);
+            } catch (IOException e) {
+                closeNow();
+                return;
+            }
+            if (read < 0) {
+                // like a BufferedReader, a last line without a line separator still counts
+                String last = decoder.remainder();
+                try {
+                    if (last != null) {
+                        server.receive(last);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("A client could not be served", e);
+                } finally {
+                    closeNow();
+                }
+                return;
+            }
+
+            buffer.flip();
+            try {
+                String line;
+                while (key.isValid() && (line = decoder.decode(buffer)) != null) {
+                    server.receive(line);
+                }
+            } catch (IOException e) {
+                log.warn("Closing a client", e);
+                closeNow();
+            } catch (RuntimeException e) {
+                log.warn("A client could not be served", e);
+                closeNow();
+            }
+        }
+
+        /**
+         * Writes as much as the channel takes, and waits for the channel if it does not take everything.
+         */
+        void flush() {
+            if (!key.isValid()) {
+                return;
+            }
+
+            try {
+                while (true) {
+                    int count = outbound.peek(gather);
+                    if (count == 0) {
+                        key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+
+                    channel.write(gather, 0, count);
+                    int written = 0;
+                    while (written < count && !gather[written].hasRemaining()) {
+                        written++;
+                    }
+                    Arrays.fill(gather, 0, count, null);
+                    outbound.remove(written);
+
+                    if (written < count) {
+                        // the socket buffer is full; continue when the channel is writable again
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                closeNow();
+            }
+        }
+
+        /**
+         * Closes the channel and tells the {@link MiniServer}, once.
+         */
+        void closeNow() {
+            if (!outbound.close()) {
+                return;
+            }
+
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close a client", e);
+            }
+            server.disconnected();
+        }
+    }
+}
@@ -7,6 +7,12 @@ import java.io.IOException;
 import java.net.BindException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main class; entry point of the application
@@ -18,7 +24,64 @@ import java.net.Socket;
 public class ServerMain {
 
     /**
-     * The main method; the entry point
+     * The system property that holds the file of the game log
+     */
+    public static final String GAME_LOG_PROPERTY = "ticket2ride.server.gamelog";
+
+    /**
+     * The system property that holds the number of seconds that a player who
+     * dropped out of a hosted game has to reconnect before the game ends
+     */
+    public static final String RECONNECT_TIMEOUT_PROPERTY = "ticket2ride.server.reconnectTimeout";
+
+    /**
+     * The system property that chooses how connections are served: "thread"
+     * for a thread per connection, or "selector" for a few event loops
+     */
+    public static final String MODE_PROPERTY = "ticket2ride.server.mode";
+
+    /**
+     * The system property that holds the number of event loops in selector
+     * mode; defaults to the number of processors
+     */
+    public static final String LOOPS_PROPERTY = "ticket2ride.server.loops";
+
+    /**
+     * The system property that chooses the executor of connections in thread
+     * mode; see {@link ConnectionExecutors}. Defaults to "pool", since every
+     * burst of lines to a client is written by a task of its own
+     */
+    public static final String EXECUTOR_PROPERTY = "ticket2ride.server.executor";
+
+    /**
+     * The system property that holds the number of bytes that may wait to be
+     * sent to a client; see {@link OutboundLimits}
+     */
+    public static final String OUTBOUND_LIMIT_PROPERTY = "ticket2ride.server.outboundLimit";
+
+    /**
+     * The system property that chooses what happens when a client reads too
+     * slowly: "disconnect", "drop-chat" or "collapse-presence"; see
+     * {@link SlowConsumerPolicy}
+     */
+    public static final String SLOW_CONSUMER_PROPERTY = "ticket2ride.server.slowConsumer";
+
+    /**
+     * The system property that holds the number of seconds between logs of
+     * the outbound queues; 0 turns them off
+     */
+    public static final String METRICS_PROPERTY = "ticket2ride.server.metricsInterval";
+
+    /**
+     * The port that the server listens on
+     */
+    public static final int PORT = 9001;
+
+    /**
+     * The main method; the entry point. Games are hosted and logged to the
+     * file in the {@value #GAME_LOG_PROPERTY} system property, if it is set.
+     * Connections are served as chosen by the {@value #MODE_PROPERTY} system
+     * property.
      *
      * @param args the command line arguments
      * @throws IOException if something goes wrong
@@ -26,13 +89,39 @@ public class ServerMain {
     public static void main(String[] args) throws IOException {
         log.info("The ticket to ride server is running.");
 
-        try (ServerSocket listener = new ServerSocket(9001)) {
-            while (true) {
-                Socket socket = listener.accept();
+        String gameLog = System.getProperty(GAME_LOG_PROPERTY);
+        if (gameLog != null) {
+            Path file = Paths.get(gameLog);
+            long timeout = Long.getLong(RECONNECT_TIMEOUT_PROPERTY,
+                    TimeUnit.MILLISECONDS.toSeconds(GameHost.DEFAULT_RECONNECT_TIMEOUT));
+            MiniServer.setHost(new GameHost(file, TimeUnit.SECONDS.toMillis(timeout)));
+            log.info("Hosting games, logged to {}; players have {} s to reconnect", file, timeout);
+        }
 
-                MiniServer h = new MiniServer(socket);
+        OutboundLimits limits = new OutboundLimits(
+                Integer.getInteger(OUTBOUND_LIMIT_PROPERTY, OutboundLimits.DEFAULT_LIMIT),
+                SlowConsumerPolicy.parse(System.getProperty(SLOW_CONSUMER_PROPERTY,
+                        SlowConsumerPolicy.COLLAPSE_PRESENCE.toString())));
+        log.info("Up to {} bytes may wait for a client; slow clients: {}", limits.getLimit(), limits.getPolicy());
+        logMetrics(limits.getMetrics(), Long.getLong(METRICS_PROPERTY, 60));
 
-                new Thread(h::go).start();
+        String mode = System.getProperty(MODE_PROPERTY, "thread");
+        try {
+            switch (mode) {
+                case "thread":
+                    String executor = System.getProperty(EXECUTOR_PROPERTY, ConnectionExecutors.POOL);
+                    log.info("Serving connections with the {} executor", executor);
+                    serveThreads(ConnectionExecutors.create(executor), limits);
+                    break;
+                case "selector":
+                    int loops = Integer.getInteger(LOOPS_PROPERTY, Runtime.getRuntime().availableProcessors());
+                    log.info("Serving connections with {} event loops", loops);
+                    try (SelectorServer server = new SelectorServer(PORT, loops, limits)) {
+                        server.serve();
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown server mode " + mode);
             }
         } catch (BindException be) {
             log.error("Cannot start server", be);
@@ -41,4 +130,42 @@ public class ServerMain {
             System.exit(1);
         }
     }
+
+    /**
+     * Logs the outbound queues every so often, on a thread of its own.
+     *
+     * @param metrics  the metrics of the queues
+     * @param interval the number of seconds between logs, or 0 for none
+     */
+    private static void logMetrics(OutboundMetrics metrics, long interval) {
+        if (interval <= 0) {
+            return;
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "outbound-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(() -> log.info("Outbound: {}", metrics), interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Serves every connection with a thread of its own to read, and a task of
+     * its own to write.
+     *
+     * @param executor runs the threads and tasks of every connection
+     * @param limits   the outbound limits of every connection
+     * @throws IOException if something goes wrong
+     */
+    private static void serveThreads(Executor executor, OutboundLimits limits) throws IOException {
+        try (ServerSocket listener = new ServerSocket(PORT)) {
+            while (true) {
+                Socket socket = listener.accept();
+
+                MiniServer h = new MiniServer(new SocketConnection(socket, executor, limits));
+
+                executor.execute(h::go);
+            }
+        }
+    }
 }
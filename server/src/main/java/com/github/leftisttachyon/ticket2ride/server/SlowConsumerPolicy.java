@@ -0,0 +1,60 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+/**
+ * What happens when the outbound queue of a client is full. Each policy tries everything the ones before it do:
+ * a client is disconnected only once nothing else makes room, since lines of {@link Traffic#PROTOCOL} are never
+ * given up.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * The client is disconnected
+     */
+    DISCONNECT("disconnect"),
+    /**
+     * Chat waiting for the client is dropped
+     */
+    DROP_CHAT("drop-chat"),
+    /**
+     * Chat waiting for the client is dropped, and presence updates waiting for the client are collapsed into the
+     * changes they add up to
+     */
+    COLLAPSE_PRESENCE("collapse-presence");
+
+    /**
+     * The name of the policy in configuration
+     */
+    private final String name;
+
+    /**
+     * Creates a new {@link SlowConsumerPolicy}.
+     *
+     * @param name the name of the policy in configuration
+     */
+    SlowConsumerPolicy(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Finds a policy by its name in configuration.
+     *
+     * @param name the name, like {@code drop-chat}
+     * @return the policy
+     * @throws IllegalArgumentException if no policy has the name
+     */
+    public static SlowConsumerPolicy parse(String name) {
+        for (SlowConsumerPolicy policy : values()) {
+            if (policy.name.equals(name)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown slow consumer policy " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Connection} over a blocking {@link Socket}, served by a thread of its own that reads. Lines sent to the
+ * client wait in an {@link OutboundQueue}; a writer task is only started when lines arrive and no writer is running,
+ * and it ends once the queue is empty, so an idle connection holds a single thread. Since a writer is started for
+ * every burst of lines, the writers should come from a pool or be virtual threads. The threads may be virtual
+ * threads: the connection reads and writes the socket's streams directly and only locks with a
+ * {@link java.util.concurrent.locks.ReentrantLock}, so a blocked connection never pins its carrier thread. Buffers are
+ * kept small, so that many idle connections can be held at once.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public class SocketConnection implements Connection {
+    /**
+     * The size of the read buffer
+     */
+    private static final int READ_BUFFER_SIZE = 512;
+    /**
+     * The size of the write buffer
+     */
+    private static final int WRITE_BUFFER_SIZE = 2048;
+    /**
+     * The longest line a client may send; longer lines close the connection
+     */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    /**
+     * The most frames written before flushing
+     */
+    private static final int MAX_BATCH = 64;
+
+    /**
+     * The internal socket
+     */
+    private final Socket socket;
+
+    /**
+     * The stream coming from the user
+     */
+    private final InputStream in;
+
+    /**
+     * The stream going to the user; only used by the writer
+     */
+    private final OutputStream out;
+
+    /**
+     * Runs the writers of this connection
+     */
+    private final Executor writers;
+
+    /**
+     * The lines waiting to be written
+     */
+    private final OutboundQueue outbound;
+
+    /**
+     * Creates a new SocketConnection with the given Socket, writers from a shared pool and the default
+     * {@link OutboundLimits}
+     *
+     * @param s the Socket to use
+     * @throws IOException if the in and out streams cannot be created
+     */
+    public SocketConnection(Socket s) throws IOException {
+        this(s, DefaultWriters.POOL, new OutboundLimits());
+    }
+
+    /**
+     * Creates a new SocketConnection with the given Socket
+     *
+     * @param s       the Socket to use
+     * @param writers runs the writer of the connection whenever lines are waiting
+     * @param limits  how much may wait to be written, and what happens when the client falls behind
+     * @throws IOException if the in and out streams cannot be created
+     */
+    public SocketConnection(Socket s, Executor writers, OutboundLimits limits) throws IOException {
+        socket = s;
+        in = socket.getInputStream();
+        out = new BufferedOutputStream(socket.getOutputStream(), WRITE_BUFFER_SIZE);
+        this.writers = writers;
+        outbound = new OutboundQueue(limits);
+    }
+
+    /**
+     * Reads lines and passes them to the given {@link MiniServer} until the client disconnects. Returns when the
+     * connection is closed.
+     *
+     * @param server the {@link MiniServer} to serve
+     */
+    public void serve(MiniServer server) {
+        try {
+            server.connected();
+            LineDecoder decoder = new LineDecoder(MAX_LINE_LENGTH);
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                String line;
+                while ((line = decoder.decode(bytes)) != null) {
+                    server.receive(line);
+                }
+            }
+            String last = decoder.remainder();
+            if (last != null) {
+                server.receive(last);
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                log.warn("An IOException was thrown", e);
+            }
+        } finally {
+            server.disconnected();
+            close();
+        }
+    }
+
+    @Override
+    public void send(byte[] lines, Traffic traffic) {
+        switch (outbound.offer(lines, traffic)) {
+            case FIRST:
+                writers.execute(this::write);
+                break;
+            case OVERFLOW:
+                log.info("Disconnecting a client that reads too slowly");
+                close();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void close() {
+        outbound.close();
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            log.warn("Cannot close the socket", ex);
+        }
+    }
+
+    /**
+     * Writes what is waiting until the queue is empty or closed, flushing after every batch.
+     */
+    private void write() {
+        ByteBuffer[] batch = new ByteBuffer[MAX_BATCH];
+        try {
+            int count;
+            while ((count = outbound.peek(batch)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    out.write(batch[i].array(), batch[i].arrayOffset(), batch[i].limit());
+                }
+                Arrays.fill(batch, 0, count, null);
+                out.flush();
+                outbound.remove(count);
+            }
+        } catch (IOException e) {
+            // like a PrintWriter, a failed write is noticed by the reader when the socket goes down
+            log.debug("Cannot write to a client", e);
+            close();
+        }
+    }
+
+    /**
+     * Holds the writers of connections created without an {@link Executor}, made when first needed.
+     */
+    private static final class DefaultWriters {
+        /**
+         * Reused platform threads
+         */
+        private static final Executor POOL = ConnectionExecutors.create(ConnectionExecutors.POOL);
+    }
+}
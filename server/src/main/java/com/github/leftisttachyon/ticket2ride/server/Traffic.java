@@ -0,0 +1,23 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+/**
+ * The kinds of lines sent to clients. When a client reads too slowly, the kind decides what may be given up; see
+ * {@link SlowConsumerPolicy}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public enum Traffic {
+    /**
+     * Lines that must arrive, like the answers to the client and the actions of their opponent
+     */
+    PROTOCOL,
+    /**
+     * Lobby chat, which can be dropped
+     */
+    CHAT,
+    /**
+     * Who is in the lobby and who is busy; a backlog can be collapsed into the changes it adds up to
+     */
+    PRESENCE
+}
@@ -0,0 +1,487 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead log with group commit. Records appended by any number of threads are collected by a single writer
+ * thread, which writes everything that has piled up since its last write and then forces it to disk with one
+ * {@code fsync}. A thread that needs its record to be durable waits for the batch that holds it, or asks for a
+ * callback once it is written, so the cost of a {@code fsync} is shared by every record that arrived while the
+ * previous one was running.<br>
+ * Every record is framed as:
+ * <pre>
+ * int length of the record
+ * int CRC-32 of the record
+ * the record
+ * </pre>
+ * A frame that was cut off or damaged by a crash ends the log.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+@Slf4j
+public final class WriteAheadLog implements Closeable {
+    /**
+     * The size of the frame around every record
+     */
+    private static final int FRAME_SIZE = 8;
+
+    /**
+     * The file of the log
+     */
+    private final FileChannel channel;
+    /**
+     * The thread that writes and syncs the log
+     */
+    private final Thread writer;
+    /**
+     * Guards everything below
+     */
+    private final Lock lock = new ReentrantLock();
+    /**
+     * Signalled when records are appended or the log is closed, for the writer
+     */
+    private final Condition work = lock.newCondition();
+    /**
+     * Signalled when records are written or the log fails, for the threads waiting for them
+     */
+    private final Condition written = lock.newCondition();
+    /**
+     * The frames that have not been written yet
+     */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    /**
+     * The frames being written; swapped with {@link #pending}
+     */
+    private ByteArrayOutputStream writing = new ByteArrayOutputStream(4096);
+    /**
+     * The number of records appended
+     */
+    private long appended;
+    /**
+     * The number of records that are on disk
+     */
+    private long durable;
+    /**
+     * The actions waiting for records to be written
+     */
+    private final List<Waiter> waiters = new ArrayList<>();
+    /**
+     * The actions whose records were already on disk, added while the writer was running {@link #waiters}; they run
+     * after them, so that they cannot overtake them
+     */
+    private final List<Waiter> late = new ArrayList<>();
+    /**
+     * Whether the writer is running the actions of written records
+     */
+    private boolean delivering;
+    /**
+     * The number of {@code fsync}s done
+     */
+    private long syncs;
+    /**
+     * Whether the log has been closed
+     */
+    private boolean closed;
+    /**
+     * The exception that stopped the writer, if any
+     */
+    private IOException failure;
+
+    /**
+     * Opens the log in the given file for appending, creating it if needed. A damaged tail is removed.
+     *
+     * @param file the file of the log
+     * @throws IOException if the log cannot be opened
+     */
+    public WriteAheadLog(Path file) throws IOException {
+        long end = read(file, record -> {
+        });
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > end) {
+            log.warn("Removing {} bytes of damaged records at the end of {}", channel.size() - end, file);
+            channel.truncate(end);
+        }
+        channel.position(end);
+
+        writer = new Thread(this::run, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Reads every intact record of a log, in order.
+     *
+     * @param file    the file of the log
+     * @param handler called with every record; the buffer is only valid during the call
+     * @return the length of the intact part of the log
+     * @throws IOException if the file cannot be read
+     */
+    public static long read(Path file, Consumer<ByteBuffer> handler) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= FRAME_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt(), checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+
+            handler.accept(record.asReadOnlyBuffer());
+            buffer.position(start + FRAME_SIZE + length);
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Replaces the contents of a log with the given records, atomically. The log must not be open.
+     *
+     * @param file    the file of the log
+     * @param records the new records
+     * @throws IOException if writing fails
+     */
+    public static void rewrite(Path file, List<byte[]> records) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (byte[] record : records) {
+                frame(bytes, record);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Appends a record without waiting for it to reach the disk.
+     *
+     * @param record the record
+     * @return the sequence number of the record, to pass to {@link #await(long)}
+     * @throws IOException if the log is closed or has failed
+     */
+    public long append(byte[] record) throws IOException {
+        lock.lock();
+        try {
+            check();
+            frame(pending, record);
+            work.signal();
+            return ++appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a record has reached the disk.
+     *
+     * @param sequence the sequence number of the record
+     * @throws IOException if the log failed before the record was written
+     */
+    public void await(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durable < sequence) {
+                // the writer drains every pending record before it stops, so only a failure ends the wait
+                if (failure != null) {
+                    throw new IOException("The log has failed", failure);
+                }
+                try {
+                    written.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the log", e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an action once a record has reached the disk. The action runs right away if the record is already on disk
+     * and on the writer thread otherwise, so it must not block. The actions of each thread run in the order of their
+     * records, and never before an action of an earlier record that is still waiting. If the log fails first, the
+     * action never runs.
+     *
+     * @param sequence the sequence number of the record
+     * @param action   the action to run
+     */
+    public void whenDurable(long sequence, Runnable action) {
+        whenDurable(sequence, action, () -> {
+        });
+    }
+
+    /**
+     * Runs an action once a record has reached the disk, or another action if the log fails before it does. Like
+     * {@link #whenDurable(long, Runnable)}, either action runs right away if the outcome is already known and on the
+     * writer thread otherwise, in the order of their records.
+     *
+     * @param sequence the sequence number of the record
+     * @param action   the action to run once the record is on disk
+     * @param failed   the action to run if the record will never be on disk
+     */
+    public void whenDurable(long sequence, Runnable action, Runnable failed) {
+        boolean lost;
+        lock.lock();
+        try {
+            if (durable < sequence && failure == null) {
+                waiters.add(new Waiter(sequence, action, failed));
+                return;
+            }
+            if (delivering && durable >= sequence) {
+                late.add(new Waiter(sequence, action, failed));
+                return;
+            }
+            lost = durable < sequence;
+        } finally {
+            lock.unlock();
+        }
+        (lost ? failed : action).run();
+    }
+
+    /**
+     * Appends a record and waits until it has reached the disk.
+     *
+     * @param record the record
+     * @throws IOException if the record could not be written
+     */
+    public void write(byte[] record) throws IOException {
+        await(append(record));
+    }
+
+    /**
+     * Returns the average number of records written per {@code fsync}.
+     *
+     * @return the average batch size
+     */
+    public double getAverageBatchSize() {
+        lock.lock();
+        try {
+            return syncs == 0 ? 0 : (double) durable / syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending record and closes the log.
+     *
+     * @throws IOException if the pending records could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        lock.lock();
+        try {
+            if (failure != null) throw failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throws if no more records can be written.
+     *
+     * @throws IOException if the log is closed or has failed
+     */
+    private void check() throws IOException {
+        if (failure != null) {
+            throw new IOException("The log has failed", failure);
+        }
+        if (closed) {
+            throw new IOException("The log is closed");
+        }
+    }
+
+    /**
+     * The loop of the writer thread: takes every pending record, writes them and syncs once.
+     */
+    private void run() {
+        while (true) {
+            long batchEnd;
+            lock.lock();
+            try {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        work.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+
+                ByteArrayOutputStream swap = writing;
+                writing = pending;
+                pending = swap;
+                batchEnd = appended;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(writing.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                writing.reset();
+            } catch (IOException e) {
+                log.error("Cannot write to the write-ahead log", e);
+                List<Waiter> lost;
+                lock.lock();
+                try {
+                    failure = e;
+                    lost = new ArrayList<>(waiters);
+                    waiters.clear();
+                    written.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                notify(lost, false);
+                return;
+            }
+
+            List<Waiter> ready = new ArrayList<>();
+            lock.lock();
+            try {
+                durable = batchEnd;
+                syncs++;
+                written.signalAll();
+                for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                    Waiter waiter = it.next();
+                    if (waiter.sequence <= batchEnd) {
+                        ready.add(waiter);
+                        it.remove();
+                    }
+                }
+                delivering = !ready.isEmpty();
+            } finally {
+                lock.unlock();
+            }
+            while (!ready.isEmpty()) {
+                notify(ready, true);
+                lock.lock();
+                try {
+                    ready = new ArrayList<>(late);
+                    late.clear();
+                    delivering = !ready.isEmpty();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the actions of waiters in the order of their records.
+     *
+     * @param list    the waiters
+     * @param durable whether their records are on disk, or will never be
+     */
+    private static void notify(List<Waiter> list, boolean durable) {
+        list.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        for (Waiter waiter : list) {
+            try {
+                (durable ? waiter.action : waiter.failed).run();
+            } catch (RuntimeException e) {
+                log.error("An action waiting for the log failed", e);
+            }
+        }
+    }
+
+    /**
+     * Frames a record.
+     *
+     * @param out    where to write the frame
+     * @param record the record
+     */
+    private static void frame(ByteArrayOutputStream out, byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        byte[] header = ByteBuffer.allocate(FRAME_SIZE).putInt(record.length).putInt((int) crc.getValue()).array();
+        out.write(header, 0, FRAME_SIZE);
+        out.write(record, 0, record.length);
+    }
+
+    /**
+     * An action waiting for a record to be written.
+     */
+    private static final class Waiter {
+        /**
+         * The sequence number of the record
+         */
+        private final long sequence;
+        /**
+         * The action to run once the record is on disk
+         */
+        private final Runnable action;
+        /**
+         * The action to run if the log fails first
+         */
+        private final Runnable failed;
+
+        /**
+         * Creates a new {@link Waiter}.
+         *
+         * @param sequence the sequence number of the record
+         * @param action   the action to run once the record is on disk
+         * @param failed   the action to run if the log fails first
+         */
+        Waiter(long sequence, Runnable action, Runnable failed) {
+            this.sequence = sequence;
+            this.action = action;
+            this.failed = failed;
+        }
+    }
+}
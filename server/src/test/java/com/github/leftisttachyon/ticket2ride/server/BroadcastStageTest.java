@@ -0,0 +1,242 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link BroadcastStage}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class BroadcastStageTest {
+    /**
+     * A tick so long that the stage only ticks when told to
+     */
+    private static final long MANUAL = 1_000_000_000L;
+
+    /**
+     * Tests that runs of presence updates collapse into the changes they add up to
+     */
+    @Test
+    public void collapseTest() {
+        String[][][] table = {
+                // frames, then the collapsed lines
+                {{"NEWCLIENTtrue a"}, {"NEWCLIENTtrue a"}},
+                {{"NEWCLIENTtrue a", "REMOVECLIENTa"}, {}},
+                {{"NEWCLIENTtrue a"}, {"REMOVECLIENTa"}, {}},
+                {{"REMOVECLIENTa"}, {"NEWCLIENTtrue a"}, {"REMOVECLIENTa", "NEWCLIENTtrue a"}},
+                {{"REMOVECLIENTa", "NEWCLIENTtrue a", "BUSYa"}, {"REMOVECLIENTa", "NEWCLIENTtrue a", "BUSYa"}},
+                {{"NEWCLIENTtrue a", "BUSYa"}, {"REMOVECLIENTa", "NEWCLIENTtrue a"}, {"NEWCLIENTtrue a"}},
+                {{"BUSYa"}, {"FREEa"}, {"FREEa"}},
+                {{"BUSYa", "FREEa", "BUSYa"}, {"BUSYa"}},
+                {{"BUSYa"}, {"REMOVECLIENTa"}, {"REMOVECLIENTa"}},
+                {{"NEWCLIENTfalse a", "BUSYa", "NEWCLIENTfalse b"}, {"NEWCLIENTfalse a", "BUSYa",
+                        "NEWCLIENTfalse b"}},
+                {{"NEWCLIENTtrue a"}, {"NEWCLIENTtrue b", "BUSYa"}, {"FREEa", "REMOVECLIENTb"},
+                        {"NEWCLIENTtrue a"}},
+                {{}, {}},
+        };
+        for (String[][] row : table) {
+            List<byte[]> frames = new ArrayList<>();
+            for (int i = 0; i < row.length - 1; i++) {
+                frames.add(LineEncoder.encode(Arrays.asList(row[i])));
+            }
+            assertEquals(Arrays.deepToString(row), Arrays.asList(row[row.length - 1]),
+                    decode(BroadcastStage.collapse(frames)));
+        }
+    }
+
+    /**
+     * Tests that lines that are not presence updates cannot be collapsed
+     */
+    @Test
+    public void collapseChatTest() {
+        try {
+            BroadcastStage.collapse(Collections.singletonList(LineEncoder.encode("NLMa: hi")));
+            fail("Chat was collapsed");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests what every user is told, tick by tick
+     */
+    @Test
+    public void tickTest() {
+        try (ClientRegistry registry = new ClientRegistry(MANUAL)) {
+            BroadcastStage stage = registry.getStage();
+
+            Recorder a = new Recorder();
+            ClientRegistry.Member alice = registry.join("a", a.client);
+            stage.tick();
+            // nobody else is there
+            assertEquals(Collections.emptyList(), a.frames);
+
+            Recorder b = new Recorder();
+            ClientRegistry.Member bob = registry.join("b", b.client);
+            stage.tick();
+            a.expect("NEWCLIENTtrue b");
+            b.expect("NEWCLIENTfalse a");
+
+            // joining and leaving within a tick is never announced
+            Recorder c = new Recorder();
+            registry.leave(registry.join("c", c.client));
+            stage.tick();
+            a.expect();
+            b.expect();
+            c.expect();
+
+            // a user who leaves and comes back under the same name is a different user
+            registry.leave(bob);
+            Recorder b2 = new Recorder();
+            ClientRegistry.Member bob2 = registry.join("b", b2.client);
+            stage.tick();
+            a.expect("REMOVECLIENTb", "NEWCLIENTtrue b");
+            b.expect();
+            b2.expect("NEWCLIENTfalse a");
+
+            // becoming busy and free within a tick cancels out
+            assertTrue(registry.pair(alice, bob2));
+            assertTrue(registry.release(alice));
+            assertTrue(registry.release(bob2));
+            stage.tick();
+            a.expect();
+            b2.expect();
+
+            assertTrue(registry.occupy(alice));
+            stage.tick();
+            a.expect("BUSYa");
+            b2.expect("BUSYa");
+
+            // a new user is told who is busy, and a new busy user is announced as busy
+            Recorder d = new Recorder();
+            ClientRegistry.Member dave = registry.join("d", d.client);
+            assertTrue(registry.occupy(dave));
+            stage.tick();
+            a.expect("NEWCLIENTtrue d", "BUSYd");
+            b2.expect("NEWCLIENTtrue d", "BUSYd");
+            assertEquals(1, d.frames.size());
+            List<String> snapshot = d.frames.remove(0);
+            assertEquals("BUSYd", snapshot.get(snapshot.size() - 1));
+            assertEquals(new HashSet<>(Arrays.asList("NEWCLIENTfalse a", "BUSYa", "NEWCLIENTfalse b", "BUSYd")),
+                    new HashSet<>(snapshot));
+            assertEquals(snapshot.indexOf("NEWCLIENTfalse a") + 1, snapshot.indexOf("BUSYa"));
+            assertEquals(4, snapshot.size());
+
+            // nothing changed
+            stage.tick();
+            a.expect();
+            b2.expect();
+            d.expect();
+        }
+    }
+
+    /**
+     * Tests that the stage ticks by itself
+     */
+    @Test
+    public void timerTest() throws InterruptedException {
+        try (ClientRegistry registry = new ClientRegistry(5)) {
+            Recorder a = new Recorder();
+            Recorder b = new Recorder();
+            registry.join("a", a.client);
+            registry.join("b", b.client);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((a.lines().size() + b.lines().size() < 2) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            // both joined within one tick, or one after the other
+            List<String> seen = new ArrayList<>(a.lines());
+            seen.addAll(b.lines());
+            assertTrue(seen.toString(), seen.contains("NEWCLIENTtrue b") || seen.contains("NEWCLIENTfalse b"));
+            assertTrue(seen.toString(), seen.contains("NEWCLIENTtrue a") || seen.contains("NEWCLIENTfalse a"));
+        }
+    }
+
+    /**
+     * Decodes a frame into its lines.
+     *
+     * @param frame the frame
+     * @return the lines
+     */
+    private static List<String> decode(byte[] frame) {
+        LineDecoder decoder = new LineDecoder(frame.length + 1);
+        ByteBuffer bytes = ByteBuffer.wrap(frame);
+        List<String> lines = new ArrayList<>();
+        try {
+            String line;
+            while ((line = decoder.decode(bytes)) != null) {
+                lines.add(line);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        assertNull(decoder.remainder());
+        return lines;
+    }
+
+    /**
+     * A client that remembers the presence updates it was sent.
+     */
+    private static final class Recorder implements Connection {
+        /**
+         * The protocol handler of the client
+         */
+        private final MiniServer client = new MiniServer(this);
+        /**
+         * The lines of every frame sent, oldest first
+         */
+        private final List<List<String>> frames = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void send(byte[] lines, Traffic traffic) {
+            assertEquals(Traffic.PRESENCE, traffic);
+            frames.add(decode(lines));
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * Returns every line sent so far.
+         *
+         * @return the lines
+         */
+        List<String> lines() {
+            List<String> lines = new ArrayList<>();
+            synchronized (frames) {
+                for (List<String> frame : frames) {
+                    lines.addAll(frame);
+                }
+            }
+            return lines;
+        }
+
+        /**
+         * Asserts that the client was sent exactly one frame since the last call, or none if no lines are given.
+         *
+         * @param lines the lines of the frame
+         */
+        void expect(String... lines) {
+            if (lines.length == 0) {
+                assertEquals(Collections.emptyList(), frames);
+            } else {
+                assertEquals(Collections.singletonList(Arrays.asList(lines)), frames);
+            }
+            frames.clear();
+        }
+    }
+}
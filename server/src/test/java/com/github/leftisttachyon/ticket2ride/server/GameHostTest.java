@@ -0,0 +1,186 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import com.github.leftisttachyon.ticket2ride.game.Game;
+import com.github.leftisttachyon.ticket2ride.game.Move;
+import com.github.leftisttachyon.ticket2ride.game.Route;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link GameHost}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class GameHostTest {
+    /**
+     * A temporary directory for logs
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that games going on are recovered the way they were, and that ended games are dropped from the log
+     */
+    @Test
+    public void recoveryTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("games.log");
+        Random random = new Random(11);
+        int id;
+        List<String> history;
+        int turn;
+        Game shadow;
+
+        try (GameHost host = new GameHost(file)) {
+            HostedGame live = host.start("Alice", "Bob");
+            shadow = HostedGameTest.shadow(live);
+            Route returned = shadow.getPlayer(0).getRoutes().get(0);
+            int routeId = shadow.getBoard().getMap().indexOf(returned);
+            assertTrue(host.returnRoute(live, 0, routeId) >= 0);
+            assertTrue(shadow.returnRoute(shadow.getPlayer(0), returned));
+            // players have few trains, so the game is kept going by only drawing cards
+            for (int i = 0; i < 20; i++) {
+                play(host, live, shadow, random, false);
+            }
+
+            HostedGame abandoned = host.start("Carol", "Dave");
+            play(host, abandoned, HostedGameTest.shadow(abandoned), random, true);
+            host.abandon(abandoned);
+
+            HostedGame finished = host.start("Erin", "Frank");
+            Game finishedShadow = HostedGameTest.shadow(finished);
+            while (!finished.isOver()) {
+                play(host, finished, finishedShadow, random, true);
+            }
+
+            id = live.getId();
+            history = live.getHistory();
+            turn = live.getTurn();
+            assertEquals(21, history.size());
+        }
+
+        try (GameHost host = new GameHost(file)) {
+            // only the game going on is left in the log: its start and its actions
+            int[] records = new int[1];
+            WriteAheadLog.read(file, record -> records[0]++);
+            assertEquals(1 + history.size(), records[0]);
+
+            assertNull(host.find("Carol"));
+            assertNull(host.find("Frank"));
+            assertNull(host.find("Nobody"));
+
+            HostedGame recovered = host.find("Bob");
+            assertNotNull(recovered);
+            assertSame(recovered, host.find("Alice"));
+            assertEquals(id, recovered.getId());
+            assertEquals(history, recovered.getHistory());
+            assertEquals(turn, recovered.getTurn());
+
+            // the recovered game goes on, and new games do not reuse ids
+            play(host, recovered, shadow, random, true);
+            assertTrue(host.start("Gina", "Hank").getId() > id);
+        }
+    }
+
+    /**
+     * Tests that a client sitting in a seat hides the game from {@link GameHost#find(String)}
+     */
+    @Test
+    public void findTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("find.log");
+        try (GameHost host = new GameHost(file)) {
+            HostedGame game = host.start("Alice", "Bob");
+            assertSame(game, host.find("Alice"));
+
+            game.setClient(0, new MiniServer(new Connection() {
+                @Override
+                public void send(byte[] lines, Traffic traffic) {
+                }
+
+                @Override
+                public void close() {
+                }
+            }));
+            assertNull(host.find("Alice"));
+            assertSame(game, host.find("Bob"));
+        }
+    }
+
+    /**
+     * Tests that a disconnected player ends the game only if they do not reconnect within the timeout
+     */
+    @Test(timeout = 10000)
+    public void reconnectTimeoutTest() throws IOException, InterruptedException {
+        Path file = folder.getRoot().toPath().resolve("timeout.log");
+        MiniServer client = new MiniServer(new Connection() {
+            @Override
+            public void send(byte[] lines, Traffic traffic) {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        try (GameHost host = new GameHost(file, 200)) {
+            HostedGame game = host.start("Alice", "Bob");
+            CountDownLatch abandoned = new CountDownLatch(1);
+
+            // coming back in time keeps the game going
+            host.disconnect(game, 0, abandoned::countDown);
+            game.setClient(0, client);
+            assertFalse(abandoned.await(500, TimeUnit.MILLISECONDS));
+            assertSame(game, host.find("Bob"));
+
+            // an earlier absence does not count against a later one
+            host.disconnect(game, 0, abandoned::countDown);
+            assertFalse(abandoned.await(50, TimeUnit.MILLISECONDS));
+            game.setClient(0, client);
+            host.disconnect(game, 0, abandoned::countDown);
+            assertTrue(abandoned.await(5, TimeUnit.SECONDS));
+            assertNull(host.find("Alice"));
+        }
+
+        try (GameHost host = new GameHost(file)) {
+            assertNull(host.find("Alice"));
+        }
+    }
+
+    /**
+     * Makes a random legal move in a hosted game and in the game that mirrors it.
+     *
+     * @param host   the host of the game
+     * @param game   the hosted game
+     * @param shadow the game that mirrors it
+     * @param random picks the move
+     * @param claims whether the move may claim a railway
+     * @throws IOException if the move could not be logged
+     */
+    private static void play(GameHost host, HostedGame game, Game shadow, Random random, boolean claims)
+            throws IOException {
+        int[] moves = new int[4096];
+        int n = shadow.generateMoves(moves);
+        if (!claims) {
+            int draws = 0;
+            for (int i = 0; i < n; i++) {
+                if (Move.getType(moves[i]) == Move.PICK_CARD || Move.getType(moves[i]) == Move.PICK_RANDOM) {
+                    moves[draws++] = moves[i];
+                }
+            }
+            n = draws;
+        }
+        assertTrue(n > 0);
+        int move = moves[random.nextInt(n)];
+        assertTrue(host.move(game, game.getTurn(), move) >= 0);
+        assertTrue(shadow.applyMove(move));
+    }
+}
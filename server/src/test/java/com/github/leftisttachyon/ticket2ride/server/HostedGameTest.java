@@ -0,0 +1,102 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import com.github.leftisttachyon.ticket2ride.game.Board;
+import com.github.leftisttachyon.ticket2ride.game.Color;
+import com.github.leftisttachyon.ticket2ride.game.Game;
+import com.github.leftisttachyon.ticket2ride.game.Move;
+import com.github.leftisttachyon.ticket2ride.game.Route;
+import com.github.leftisttachyon.ticket2ride.game.io.MapCache;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link HostedGame}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class HostedGameTest {
+    /**
+     * Tests that only the player whose turn it is can move
+     */
+    @Test
+    public void wrongSeatTest() {
+        HostedGame hosted = new HostedGame(0, 5L, "us", new String[]{"Alice", "Bob"});
+        Game shadow = shadow(hosted);
+        int[] moves = new int[4096];
+        assertTrue(shadow.generateMoves(moves) > 0);
+
+        int turn = hosted.getTurn();
+        assertFalse(hosted.move(1 - turn, moves[0]));
+        assertFalse(hosted.move(-1, moves[0]));
+        assertFalse(hosted.move(2, moves[0]));
+        assertEquals(Collections.emptyList(), hosted.getHistory());
+        assertEquals(turn, hosted.getTurn());
+
+        assertTrue(hosted.move(turn, moves[0]));
+        assertEquals(Collections.singletonList(HostedGame.MOVE + moves[0]), hosted.getHistory());
+    }
+
+    /**
+     * Tests that moves that do not decode to a legal move are rejected without changing the game
+     */
+    @Test
+    public void malformedTest() {
+        HostedGame hosted = new HostedGame(0, 5L, "us", new String[]{"Alice", "Bob"});
+        int turn = hosted.getTurn();
+        int[] malformed = {
+                -1,
+                7 << 28,
+                Move.pickCard(15),
+                Move.claim(Move.MAX_RAILWAY_ID, Color.RED, 0),
+                // a payment color that does not exist
+                Move.claim(0, Color.RED, 0) | 0xF << 4,
+                // more rainbow cards than the railway is long
+                Move.claim(0, Color.RED, 15),
+        };
+        for (int move : malformed) {
+            assertFalse(Integer.toHexString(move), hosted.move(turn, move));
+        }
+        assertEquals(Collections.emptyList(), hosted.getHistory());
+        assertEquals(turn, hosted.getTurn());
+    }
+
+    /**
+     * Tests that only routes that a player holds can be returned
+     */
+    @Test
+    public void returnRouteTest() {
+        HostedGame hosted = new HostedGame(0, 5L, "us", new String[]{"Alice", "Bob"});
+        Game shadow = shadow(hosted);
+        int routes = shadow.getBoard().getMap().getRoutes().size();
+        assertFalse(hosted.returnRoute(0, -1));
+        assertFalse(hosted.returnRoute(0, routes));
+        assertFalse(hosted.returnRoute(2, 0));
+
+        Route held = shadow.getPlayer(0).getRoutes().get(0);
+        int heldId = shadow.getBoard().getMap().indexOf(held);
+        assertFalse(hosted.returnRoute(1, heldId));
+        assertEquals(Collections.emptyList(), hosted.getHistory());
+
+        assertTrue(hosted.returnRoute(0, heldId));
+        assertEquals(Collections.singletonList(HostedGame.RETURN + "0 " + heldId), hosted.getHistory());
+    }
+
+    /**
+     * Creates a {@link Game} that starts out the same as a hosted one, to find legal moves with.
+     *
+     * @param hosted the hosted game
+     * @return the game
+     */
+    static Game shadow(HostedGame hosted) {
+        Game game = new Game(new Board(MapCache.get(hosted.getMapName()), hosted.getSeed()), hosted.getNumPlayers());
+        for (int i = 0; i < hosted.getNumPlayers(); i++) {
+            game.getPlayer(i).setName(hosted.getName(i));
+        }
+        game.startGame();
+        return game;
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link MiniServer} with games hosted by a {@link GameHost}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class MiniServerTest {
+    /**
+     * A temporary directory for logs
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Stops hosting games, since the host is shared by every {@link MiniServer}
+     */
+    @After
+    public void tearDown() {
+        MiniServer.setHost(null);
+    }
+
+    /**
+     * Tests that a player who drops out of a hosted game can reconnect into it, and that the game only ends once they
+     * stay away for longer than the reconnect timeout
+     *
+     * @throws IOException if the log cannot be opened
+     */
+    @Test(timeout = 10000)
+    public void disconnectTest() throws IOException {
+        try (GameHost host = new GameHost(folder.getRoot().toPath().resolve("disconnect.log"), 300)) {
+            MiniServer.setHost(host);
+            Recorder aliceLines = new Recorder(), bobLines = new Recorder();
+            MiniServer alice = login(aliceLines, "dcAlice");
+            MiniServer bob = login(bobLines, "dcBob");
+            alice.receive("CHALLENGE_CdcBob");
+            bob.receive("CHALLENGE_RdcAlice true");
+            assertTrue(aliceLines.has("HOSTED0 "));
+            assertTrue(bobLines.has("HOSTED1 "));
+
+            alice.disconnected();
+            assertTrue(bobLines.has("DISCONNECTdcAlice"));
+            assertFalse(bobLines.has("EXIT"));
+            HostedGame game = host.find("dcAlice");
+            assertNotNull(game);
+
+            // the seat is taken again before the timeout runs out, so the game goes on
+            Recorder againLines = new Recorder();
+            MiniServer again = login(againLines, "dcAlice");
+            assertTrue(againLines.has("RESUME0 " + game.getSeed()));
+            assertTrue(bobLines.has("RECONNECTdcAlice"));
+            again.receive("hello");
+            assertTrue(bobLines.has("hello"));
+            sleep(600);
+            assertFalse(bobLines.has("EXIT"));
+            assertNull(host.find("dcAlice"));
+
+            // staying away ends the game for the opponent
+            again.disconnected();
+            while (!bobLines.has("EXIT")) {
+                sleep(10);
+            }
+            assertNull(host.find("dcAlice"));
+            bob.disconnected();
+        }
+    }
+
+    /**
+     * Tests that exiting a hosted game ends it at once
+     *
+     * @throws IOException if the log cannot be opened
+     */
+    @Test(timeout = 10000)
+    public void exitTest() throws IOException {
+        try (GameHost host = new GameHost(folder.getRoot().toPath().resolve("exit.log"))) {
+            MiniServer.setHost(host);
+            Recorder aliceLines = new Recorder(), bobLines = new Recorder();
+            MiniServer alice = login(aliceLines, "exAlice");
+            MiniServer bob = login(bobLines, "exBob");
+            alice.receive("CHALLENGE_CexBob");
+            bob.receive("CHALLENGE_RexAlice true");
+
+            alice.receive("EXIT");
+            assertTrue(bobLines.has("EXIT"));
+            bob.disconnected();
+            assertNull(host.find("exAlice"));
+            assertNull(host.find("exBob"));
+            alice.disconnected();
+        }
+    }
+
+    /**
+     * Connects a user and registers their name.
+     *
+     * @param lines records the lines sent to the user
+     * @param name  the name of the user
+     * @return the user
+     */
+    private static MiniServer login(Recorder lines, String name) {
+        MiniServer client = new MiniServer(lines);
+        client.connected();
+        client.receive(name);
+        assertTrue(lines.has("NAMEACCEPTED"));
+        return client;
+    }
+
+    /**
+     * Sleeps without being interrupted.
+     *
+     * @param millis the number of milliseconds to sleep
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A {@link Connection} that remembers every line sent over it.
+     */
+    private static final class Recorder implements Connection {
+        /**
+         * The lines sent
+         */
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public synchronized void send(byte[] bytes, Traffic traffic) {
+            lines.addAll(Arrays.asList(new String(bytes, LineDecoder.CHARSET).split(System.lineSeparator())));
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * Checks whether a line that starts with the given prefix was sent.
+         *
+         * @param prefix the prefix
+         * @return whether such a line was sent
+         */
+        private synchronized boolean has(String prefix) {
+            for (String line : lines) {
+                if (line.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
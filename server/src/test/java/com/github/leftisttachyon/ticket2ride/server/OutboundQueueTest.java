@@ -0,0 +1,209 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link OutboundQueue}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class OutboundQueueTest {
+    /**
+     * Tests that a queue only disconnects under {@link SlowConsumerPolicy#DISCONNECT}, and takes anything while empty
+     */
+    @Test
+    public void overflowTest() {
+        OutboundLimits limits = new OutboundLimits(20, SlowConsumerPolicy.DISCONNECT);
+        OutboundQueue queue = new OutboundQueue(limits);
+
+        // bigger than the limit, but nothing is waiting
+        assertEquals(OutboundQueue.Result.FIRST, queue.offer(bytes('a', 30), Traffic.PROTOCOL));
+        assertEquals(Arrays.asList(text('a', 30)), drain(queue));
+
+        assertEquals(OutboundQueue.Result.FIRST, queue.offer(bytes('b', 10), Traffic.PROTOCOL));
+        assertEquals(OutboundQueue.Result.QUEUED, queue.offer(bytes('c', 10), Traffic.CHAT));
+        assertEquals(20, queue.getBytes());
+        assertEquals(OutboundQueue.Result.OVERFLOW, queue.offer(bytes('d', 1), Traffic.CHAT));
+
+        assertEquals(OutboundQueue.Result.CLOSED, queue.offer(bytes('e', 1), Traffic.PROTOCOL));
+        assertEquals(0, queue.getDepth());
+        assertEquals(0, queue.peek(new ByteBuffer[4]));
+        assertFalse(queue.close());
+
+        OutboundMetrics metrics = limits.getMetrics();
+        assertEquals(1, metrics.getDisconnects());
+        assertEquals(0, metrics.getQueuedFrames());
+        assertEquals(0, metrics.getQueuedBytes());
+        // in bytes
+        assertEquals(30, metrics.getDeepest());
+    }
+
+    /**
+     * Tests that a writer is only asked for when none is taking frames
+     */
+    @Test
+    public void writerTest() {
+        OutboundQueue queue = new OutboundQueue(new OutboundLimits());
+        ByteBuffer[] batch = new ByteBuffer[4];
+        assertEquals(OutboundQueue.Result.FIRST, queue.offer(bytes('a', 1), Traffic.PROTOCOL));
+        assertEquals(OutboundQueue.Result.QUEUED, queue.offer(bytes('b', 1), Traffic.PROTOCOL));
+        assertEquals(2, queue.peek(batch));
+        queue.remove(2);
+
+        // the queue is empty, but the writer has not seen that yet
+        assertEquals(OutboundQueue.Result.QUEUED, queue.offer(bytes('c', 1), Traffic.PROTOCOL));
+        assertEquals(1, queue.peek(batch));
+        queue.remove(1);
+        assertEquals(0, queue.peek(batch));
+
+        // the writer stopped
+        assertEquals(OutboundQueue.Result.FIRST, queue.offer(bytes('d', 1), Traffic.PROTOCOL));
+        assertEquals(1, queue.peek(batch));
+    }
+
+    /**
+     * Tests that chat is dropped to make room, both the chat waiting and the chat that does not fit
+     */
+    @Test
+    public void dropChatTest() {
+        OutboundLimits limits = new OutboundLimits(40, SlowConsumerPolicy.DROP_CHAT);
+        OutboundQueue queue = new OutboundQueue(limits);
+        queue.offer(bytes('a', 10), Traffic.PROTOCOL);
+        queue.offer(bytes('b', 10), Traffic.CHAT);
+        queue.offer(bytes('c', 10), Traffic.CHAT);
+
+        assertEquals(OutboundQueue.Result.DROPPED, queue.offer(bytes('d', 20), Traffic.CHAT));
+        assertEquals(3, queue.getDepth());
+        assertEquals(OutboundQueue.Result.QUEUED, queue.offer(bytes('e', 20), Traffic.PROTOCOL));
+        assertEquals(Arrays.asList(text('a', 10), text('e', 20)), drain(queue));
+
+        // what does not fit without the chat still disconnects
+        queue.offer(bytes('f', 30), Traffic.PROTOCOL);
+        assertEquals(OutboundQueue.Result.OVERFLOW, queue.offer(bytes('g', 20), Traffic.PROTOCOL));
+
+        OutboundMetrics metrics = limits.getMetrics();
+        assertEquals(3, metrics.getDroppedChat());
+        assertEquals(1, metrics.getDisconnects());
+        assertEquals(0, metrics.getQueuedBytes());
+    }
+
+    /**
+     * Tests that presence updates are collapsed into the changes they add up to
+     */
+    @Test
+    public void collapsePresenceTest() {
+        byte[] joinA = LineEncoder.encode("NEWCLIENTtrue a");
+        byte[] busyA = LineEncoder.encode("BUSYa");
+        byte[] joinB = LineEncoder.encode("NEWCLIENTtrue b");
+        byte[] leaveB = LineEncoder.encode("REMOVECLIENTb");
+        byte[] chat = LineEncoder.encode("NLMb: bye");
+        byte[] protocol = LineEncoder.encode("PONG");
+
+        OutboundLimits limits = new OutboundLimits(joinA.length + busyA.length + joinB.length + chat.length
+                + protocol.length, SlowConsumerPolicy.COLLAPSE_PRESENCE);
+        OutboundQueue queue = new OutboundQueue(limits);
+        queue.offer(joinA, Traffic.PRESENCE);
+        queue.offer(protocol, Traffic.PROTOCOL);
+        queue.offer(busyA, Traffic.PRESENCE);
+        queue.offer(chat, Traffic.CHAT);
+        queue.offer(joinB, Traffic.PRESENCE);
+
+        // the chat is dropped first, and is not enough
+        assertEquals(OutboundQueue.Result.QUEUED, queue.offer(leaveB, Traffic.PRESENCE));
+        assertEquals(2, queue.getDepth());
+        assertEquals(Arrays.asList(new String(protocol, LineDecoder.CHARSET),
+                new String(LineEncoder.encode(Arrays.asList("NEWCLIENTtrue a", "BUSYa")), LineDecoder.CHARSET)),
+                drain(queue));
+
+        OutboundMetrics metrics = limits.getMetrics();
+        assertEquals(1, metrics.getCollapses());
+        assertEquals(1, metrics.getDroppedChat());
+        assertEquals(0, metrics.getDisconnects());
+        assertEquals(0, metrics.getQueuedFrames());
+    }
+
+    /**
+     * Tests that frames handed to the writer, or partly written by it, are never dropped or collapsed
+     */
+    @Test
+    public void removableTest() {
+        OutboundLimits limits = new OutboundLimits(30, SlowConsumerPolicy.COLLAPSE_PRESENCE);
+        OutboundQueue queue = new OutboundQueue(limits);
+        queue.offer(bytes('a', 10), Traffic.CHAT);
+        queue.offer(bytes('b', 10), Traffic.CHAT);
+
+        // both frames are being written
+        ByteBuffer[] batch = new ByteBuffer[4];
+        assertEquals(2, queue.peek(batch));
+        assertEquals(OutboundQueue.Result.DROPPED, queue.offer(bytes('c', 20), Traffic.CHAT));
+        assertEquals(OutboundQueue.Result.OVERFLOW, queue.offer(bytes('d', 20), Traffic.PROTOCOL));
+        assertEquals(1, limits.getMetrics().getDroppedChat());
+
+        queue = new OutboundQueue(limits);
+        queue.offer(bytes('e', 10), Traffic.CHAT);
+        queue.offer(bytes('f', 10), Traffic.CHAT);
+        assertEquals(2, queue.peek(batch));
+        // the first frame was written partly
+        batch[0].position(4);
+        queue.remove(0);
+
+        // the second frame is no longer handed out and can be dropped, but the first cannot
+        assertEquals(OutboundQueue.Result.QUEUED, queue.offer(bytes('g', 20), Traffic.PROTOCOL));
+        assertEquals(2, queue.getDepth());
+        assertEquals(Arrays.asList(text('e', 10).substring(4), text('g', 20)), drain(queue));
+        assertEquals(2, limits.getMetrics().getDroppedChat());
+    }
+
+    /**
+     * Takes every frame out of a queue.
+     *
+     * @param queue the queue
+     * @return what is left of every frame, as text
+     */
+    private static List<String> drain(OutboundQueue queue) {
+        List<String> frames = new ArrayList<>();
+        ByteBuffer[] batch = new ByteBuffer[64];
+        int count;
+        while ((count = queue.peek(batch)) > 0) {
+            for (int i = 0; i < count; i++) {
+                ByteBuffer buffer = batch[i];
+                frames.add(new String(buffer.array(), buffer.position(), buffer.remaining(), LineDecoder.CHARSET));
+                buffer.position(buffer.limit());
+            }
+            queue.remove(count);
+        }
+        return frames;
+    }
+
+    /**
+     * Creates a frame of one repeated character.
+     *
+     * @param c      the character
+     * @param length the length of the frame
+     * @return the frame
+     */
+    private static byte[] bytes(char c, int length) {
+        return text(c, length).getBytes(LineDecoder.CHARSET);
+    }
+
+    /**
+     * Creates text of one repeated character.
+     *
+     * @param c      the character
+     * @param length the length of the text
+     * @return the text
+     */
+    private static String text(char c, int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
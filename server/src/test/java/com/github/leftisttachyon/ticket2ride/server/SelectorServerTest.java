@@ -0,0 +1,274 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link SelectorServer} end to end, with raw sockets over the loopback interface.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class SelectorServerTest {
+    /**
+     * How many bytes may wait for a client; far more than the socket buffers hold
+     */
+    private static final int LIMIT = 32 * 1024 * 1024;
+
+    /**
+     * The limits of the server
+     */
+    private OutboundLimits limits;
+    /**
+     * The server
+     */
+    private SelectorServer server;
+    /**
+     * The thread that accepts clients
+     */
+    private Thread acceptor;
+
+    /**
+     * Starts a server on a free port.
+     *
+     * @throws IOException if the server cannot be started
+     */
+    @Before
+    public void setUp() throws IOException {
+        limits = new OutboundLimits(LIMIT, SlowConsumerPolicy.DISCONNECT);
+        server = new SelectorServer(0, 1, limits);
+        acceptor = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "test-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Stops the server.
+     *
+     * @throws IOException          if the server cannot be closed
+     * @throws InterruptedException if the test is interrupted
+     */
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        server.close();
+        acceptor.join();
+    }
+
+    /**
+     * Tests naming, challenging and chatting, and that a client that disconnects ends the match of their opponent
+     * and frees their name
+     *
+     * @throws IOException if the sockets fail
+     */
+    @Test(timeout = 20000)
+    public void protocolTest() throws IOException {
+        try (Client alice = new Client(0); Client bob = new Client(0)) {
+            alice.expect("SUBMITNAME");
+            alice.send("");
+            alice.expect("SUBMITNAME");
+            alice.send("selAlice");
+            alice.expect("NAMEACCEPTED");
+            bob.expect("SUBMITNAME");
+            bob.send("selAlice");
+            bob.expect("SUBMITNAME");
+            bob.send("selBob");
+            bob.expect("NAMEACCEPTED");
+
+            alice.send("CHALLENGE_CselBob");
+            bob.expect("CHALLENGE_CselAlice");
+            bob.send("CHALLENGE_RselAlice true");
+            alice.expect("CHALLENGE_Rtrue");
+            alice.expect("ST");
+            bob.expect("ST");
+
+            alice.send("PING");
+            alice.expect("PONG");
+            bob.send("NLMhello there");
+            alice.expect("NLMselBob: hello there");
+            bob.expect("NLMselBob: hello there");
+
+            // lines in a match are relayed to the opponent
+            alice.send("someMove");
+            bob.expect("someMove");
+
+            // the server closes the connection and tells the MiniServer, which ends the match
+            alice.close();
+            bob.expect("EXIT");
+        }
+
+        try (Client again = new Client(0)) {
+            again.expect("SUBMITNAME");
+            again.send("selAlice");
+            again.expect("NAMEACCEPTED");
+        }
+    }
+
+    /**
+     * Tests that a last line without a line separator is still handled when the client stops sending
+     *
+     * @throws IOException if the sockets fail
+     */
+    @Test(timeout = 20000)
+    public void lastLineTest() throws IOException {
+        try (Client listener = new Client(0); Client carol = new Client(0)) {
+            listener.expect("SUBMITNAME");
+            listener.send("selListener");
+            listener.expect("NAMEACCEPTED");
+            carol.expect("SUBMITNAME");
+            carol.send("selCarol");
+            carol.expect("NAMEACCEPTED");
+
+            carol.out.write("NLMbye".getBytes(LineDecoder.CHARSET));
+            carol.out.flush();
+            carol.socket.shutdownOutput();
+
+            listener.expect("NLMselCarol: bye");
+            // and the server hangs up on the client
+            while (carol.in.readLine() != null) {
+                continue;
+            }
+        }
+    }
+
+    /**
+     * Tests that a client that does not read gets everything once it does: the server writes what the socket takes,
+     * queues the rest and writes it when the socket is writable again
+     *
+     * @throws IOException if the sockets fail
+     */
+    @Test(timeout = 60000)
+    public void slowReaderTest() throws IOException {
+        int pings = 1_000_000;
+        try (Client dave = new Client(4096)) {
+            dave.expect("SUBMITNAME");
+            dave.send("selDave");
+            dave.expect("NAMEACCEPTED");
+
+            // more replies than the socket buffers of the loopback interface hold, and none of them are read yet
+            byte[] ping = ("PING" + System.lineSeparator()).getBytes(LineDecoder.CHARSET);
+            byte[] burst = new byte[ping.length * 1000];
+            for (int i = 0; i < 1000; i++) {
+                System.arraycopy(ping, 0, burst, i * ping.length, ping.length);
+            }
+            for (int i = 0; i < pings / 1000; i++) {
+                dave.out.write(burst);
+            }
+            dave.out.flush();
+
+            // the socket cannot take it all, so the rest waits in the queue
+            while (limits.getMetrics().getDeepest() < 1024 * 1024) {
+                sleep(10);
+            }
+            assertTrue(limits.getMetrics().getQueuedBytes() > 0);
+
+            for (int i = 0; i < pings; i++) {
+                dave.expect("PONG");
+            }
+            while (limits.getMetrics().getQueuedBytes() > 0) {
+                sleep(10);
+            }
+            assertEquals(0, limits.getMetrics().getDisconnects());
+
+            // the connection still works afterwards
+            dave.send("PING");
+            dave.expect("PONG");
+        }
+    }
+
+    /**
+     * Sleeps without being interrupted.
+     *
+     * @param millis the number of milliseconds to sleep
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A client that speaks the protocol over a raw socket.
+     */
+    private final class Client implements Closeable {
+        /**
+         * The socket
+         */
+        private final Socket socket;
+        /**
+         * Reads the lines from the server
+         */
+        private final BufferedReader in;
+        /**
+         * Writes to the server
+         */
+        private final OutputStream out;
+
+        /**
+         * Connects a new {@link Client} to the server.
+         *
+         * @param receiveBuffer the size of the receive buffer of the socket, or 0 for the default
+         * @throws IOException if the client cannot connect
+         */
+        private Client(int receiveBuffer) throws IOException {
+            socket = new Socket();
+            if (receiveBuffer > 0) {
+                socket.setReceiveBufferSize(receiveBuffer);
+            }
+            socket.connect(new InetSocketAddress("localhost", server.getPort()));
+            socket.setSoTimeout(10000);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), LineDecoder.CHARSET));
+            out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        /**
+         * Sends a line to the server.
+         *
+         * @param line the line, without a line separator
+         * @throws IOException if the line cannot be sent
+         */
+        private void send(String line) throws IOException {
+            out.write(LineEncoder.encode(line));
+            out.flush();
+        }
+
+        /**
+         * Reads lines until one equals the given line, skipping lines about other users.
+         *
+         * @param expected the line
+         * @throws IOException if the line does not come
+         */
+        private void expect(String expected) throws IOException {
+            String line;
+            try {
+                while ((line = in.readLine()) != null) {
+                    if (line.equals(expected)) {
+                        return;
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                fail("Timed out waiting for " + expected);
+            }
+            fail("The server hung up before sending " + expected);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.leftisttachyon.ticket2ride.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link WriteAheadLog}.
+ *
+ * @author Jed Wang
+ * @since 1.0.0
+ */
+public class WriteAheadLogTest {
+    /**
+     * A temporary directory for logs
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that a frame cut off by a crash ends the log, and is removed when the log is opened again
+     */
+    @Test
+    public void tornTailTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("torn.log");
+        writeRecords(file, 5);
+        long intact = Files.size(file);
+
+        // the header of a frame promising more bytes than follow it
+        Files.write(file, ByteBuffer.allocate(11).putInt(100).putInt(0).put(new byte[3]).array(),
+                StandardOpenOption.APPEND);
+        assertEquals(intact, WriteAheadLog.read(file, record -> {
+        }));
+        assertRecords(records(0, 5), readAll(file));
+
+        // and a header that was not finished
+        Files.write(file, new byte[]{0, 0}, StandardOpenOption.APPEND);
+        assertEquals(intact, WriteAheadLog.read(file, record -> {
+        }));
+
+        new WriteAheadLog(file).close();
+        assertEquals(intact, Files.size(file));
+        assertRecords(records(0, 5), readAll(file));
+    }
+
+    /**
+     * Tests that a record with a bad checksum ends the log, and that records appended afterwards replace it
+     */
+    @Test
+    public void corruptTailTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("corrupt.log");
+        writeRecords(file, 5);
+        byte[] bytes = Files.readAllBytes(file);
+        // the last byte of the last record
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        assertRecords(records(0, 4), readAll(file));
+
+        try (WriteAheadLog wal = new WriteAheadLog(file)) {
+            wal.write(record(9));
+        }
+        List<byte[]> expected = records(0, 4);
+        expected.add(record(9));
+        assertRecords(expected, readAll(file));
+    }
+
+    /**
+     * Tests that records appended at the same time share {@code fsync}s
+     */
+    @Test
+    public void groupCommitTest() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("group.log");
+        int threads = 8, perThread = 200;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> appenders = new ArrayList<>();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        try (WriteAheadLog wal = new WriteAheadLog(file)) {
+            for (int t = 0; t < threads; t++) {
+                int first = t * perThread;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                        long last = 0;
+                        for (int i = 0; i < perThread; i++) {
+                            last = wal.append(record(first + i));
+                        }
+                        wal.await(last);
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                });
+                thread.start();
+                appenders.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : appenders) {
+                thread.join();
+            }
+
+            assertTrue(errors.isEmpty());
+            assertTrue("Average batch size " + wal.getAverageBatchSize(), wal.getAverageBatchSize() > 1);
+        }
+        assertEquals(threads * perThread, readAll(file).size());
+    }
+
+    /**
+     * Tests that the actions waiting for records run in the order of the records, even when some records are
+     * already on disk by the time their actions are added
+     */
+    @Test
+    public void whenDurableTest() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("durable.log");
+        int count = 2000;
+        List<Long> ran = Collections.synchronizedList(new ArrayList<>());
+        try (WriteAheadLog wal = new WriteAheadLog(file)) {
+            long last = 0;
+            for (int i = 0; i < count; i++) {
+                long sequence = wal.append(record(i));
+                // a record that is lost shows up as a negative number
+                wal.whenDurable(sequence, () -> ran.add(sequence), () -> ran.add(-sequence));
+                last = sequence;
+            }
+            wal.await(last);
+        }
+
+        assertEquals(count, ran.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i + 1, (long) ran.get(i));
+        }
+    }
+
+    /**
+     * Tests that a closed log refuses records
+     */
+    @Test
+    public void closedTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("closed.log");
+        WriteAheadLog wal = new WriteAheadLog(file);
+        wal.close();
+        try {
+            wal.append(record(0));
+            fail("A closed log took a record");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * Writes records to a new log.
+     *
+     * @param file  the file of the log
+     * @param count the number of records
+     * @throws IOException if writing fails
+     */
+    private static void writeRecords(Path file, int count) throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(file)) {
+            for (int i = 0; i < count; i++) {
+                wal.append(record(i));
+            }
+        }
+    }
+
+    /**
+     * Reads every intact record of a log.
+     *
+     * @param file the file of the log
+     * @return the records
+     * @throws IOException if reading fails
+     */
+    private static List<byte[]> readAll(Path file) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        WriteAheadLog.read(file, buffer -> {
+            byte[] record = new byte[buffer.remaining()];
+            buffer.get(record);
+            records.add(record);
+        });
+        return records;
+    }
+
+    /**
+     * Asserts that two lists of records are equal.
+     *
+     * @param expected the expected records
+     * @param actual   the actual records
+     */
+    private static void assertRecords(List<byte[]> expected, List<byte[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * Creates the records with numbers in a range.
+     *
+     * @param from the first number
+     * @param to   the number after the last
+     * @return the records
+     */
+    private static List<byte[]> records(int from, int to) {
+        List<byte[]> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add(record(i));
+        }
+        return records;
+    }
+
+    /**
+     * Creates a record whose length and contents depend on a number.
+     *
+     * @param number the number
+     * @return the record
+     */
+    private static byte[] record(int number) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + number % 7);
+        buffer.putInt(number);
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) number);
+        }
+        return buffer.array();
+    }
+}